@@ -0,0 +1,71 @@
+package com.ihome.service;
+
+import com.ihome.entity.Student;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 床位分配阶段基准：构建宿舍入住索引、为各分组预留宿舍、登记已安排的床位并收集剩余床位
+ * 分组结果在准备阶段用顺序填充算法预先算好，只测量库存与索引的开销
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationBedAssignmentBenchmark {
+
+    private static final long SEED = 20240901L;
+
+    @Param({"1000", "10000", "50000"})
+    public int students;
+
+    @Param({"20"})
+    public int buildings;
+
+    private SyntheticCampus campus;
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> genders = new ArrayList<>();
+    private final List<Integer> demands = new ArrayList<>();
+    private final List<List<BedPlacement>> placements = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        campus = SyntheticCampus.generate(students, buildings, SEED);
+        Map<String, RoommateProfile> profiles = campus.profiles();
+        BedInventory inventory = new BedInventory(campus.newOccupancyIndex());
+        GreedyRoomGroupingSolver solver = new GreedyRoomGroupingSolver();
+        for (Map.Entry<String, List<Student>> partition : campus.partitions().entrySet()) {
+            List<Student> members = partition.getValue();
+            String gender = members.get(0).getGender();
+            List<RoommateProfile> candidates = new ArrayList<>(members.size());
+            for (Student student : members) {
+                candidates.add(profiles.get(student.getId()));
+            }
+            keys.add(partition.getKey());
+            genders.add(gender);
+            demands.add(members.size());
+            placements.add(solver.solve(candidates,
+                    inventory.reserveRooms(partition.getKey(), gender, members.size()), Long.MAX_VALUE));
+        }
+    }
+
+    @Benchmark
+    public void reserveAndMarkTaken(Blackhole blackhole) {
+        BedInventory inventory = new BedInventory(campus.newOccupancyIndex());
+        for (int i = 0; i < keys.size(); i++) {
+            blackhole.consume(inventory.reserveRooms(keys.get(i), genders.get(i), demands.get(i)));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            inventory.markTaken(placements.get(i), genders.get(i));
+        }
+        blackhole.consume(inventory.remainingRooms("男"));
+        blackhole.consume(inventory.remainingRooms("女"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.ihome.service;
+
+import com.ihome.entity.Student;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分组阶段基准：各专业+性别分组在预留的宿舍内用室友分组算法安排床位
+ * 输入与分配服务一致（按兼容性分数排序的学生、按宿舍预留的房间），不设时间预算
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationGroupingBenchmark {
+
+    private static final long SEED = 20240901L;
+
+    @Param({"1000", "10000", "50000"})
+    public int students;
+
+    @Param({"20"})
+    public int buildings;
+
+    @Param({GreedyRoomGroupingSolver.NAME, ClusteringRoomGroupingSolver.NAME})
+    public String solver;
+
+    private RoomGroupingSolver groupingSolver;
+    private final List<List<RoommateProfile>> candidates = new ArrayList<>();
+    private final List<List<RoomSlot>> rooms = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        SyntheticCampus campus = SyntheticCampus.generate(students, buildings, SEED);
+        groupingSolver = ClusteringRoomGroupingSolver.NAME.equals(solver)
+                ? new ClusteringRoomGroupingSolver()
+                : new GreedyRoomGroupingSolver();
+
+        AllocationService allocationService = new AllocationService();
+        AllocationService.ScoringContext scoring = campus.scoringContext();
+        Map<String, RoommateProfile> profiles = campus.profiles();
+        BedInventory inventory = new BedInventory(campus.newOccupancyIndex());
+        for (Map.Entry<String, List<Student>> partition : campus.partitions().entrySet()) {
+            List<Student> members = partition.getValue();
+            double[] scores = allocationService.calculateCompatibilityScores(members, scoring,
+                    AllocationService.partitionRandom(SEED, partition.getKey()));
+            Integer[] order = new Integer[members.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+            List<RoommateProfile> sorted = new ArrayList<>(members.size());
+            for (int index : order) {
+                sorted.add(profiles.get(members.get(index).getId()));
+            }
+            candidates.add(sorted);
+            rooms.add(inventory.reserveRooms(partition.getKey(), members.get(0).getGender(), members.size()));
+        }
+    }
+
+    @Benchmark
+    public void solvePartitions(Blackhole blackhole) {
+        for (int i = 0; i < candidates.size(); i++) {
+            blackhole.consume(groupingSolver.solve(candidates.get(i), rooms.get(i), Long.MAX_VALUE));
+        }
+    }
+}
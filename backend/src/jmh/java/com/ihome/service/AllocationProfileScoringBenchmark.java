@@ -0,0 +1,43 @@
+package com.ihome.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 画像比较基准：一名学生与全部候选人逐一计算室友兼容度
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationProfileScoringBenchmark {
+
+    private static final long SEED = 20240901L;
+
+    @Param({"10000", "50000"})
+    public int students;
+
+    private RoommateProfile self;
+    private List<RoommateProfile> candidates;
+
+    @Setup
+    public void setUp() {
+        SyntheticCampus campus = SyntheticCampus.generate(students, 20, SEED);
+        candidates = new ArrayList<>(campus.profiles().values());
+        self = candidates.get(0);
+    }
+
+    @Benchmark
+    public double scoreAgainstAll() {
+        double total = 0.0;
+        for (RoommateProfile candidate : candidates) {
+            total += self.compatibilityWith(candidate);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ihome.service;
+
+import com.ihome.entity.Student;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 评分阶段基准：为每个专业+性别分组计算兼容性分数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationScoringBenchmark {
+
+    private static final long SEED = 20240901L;
+
+    @Param({"1000", "10000", "50000"})
+    public int students;
+
+    @Param({"20"})
+    public int buildings;
+
+    private AllocationService allocationService;
+    private AllocationService.ScoringContext scoring;
+    private Map<String, List<Student>> partitions;
+
+    @Setup
+    public void setUp() {
+        SyntheticCampus campus = SyntheticCampus.generate(students, buildings, SEED);
+        allocationService = new AllocationService();
+        scoring = campus.scoringContext();
+        partitions = campus.partitions();
+    }
+
+    @Benchmark
+    public void scorePartitions(Blackhole blackhole) {
+        for (Map.Entry<String, List<Student>> partition : partitions.entrySet()) {
+            blackhole.consume(allocationService.calculateCompatibilityScores(partition.getValue(), scoring,
+                    AllocationService.partitionRandom(SEED, partition.getKey())));
+        }
+    }
+}
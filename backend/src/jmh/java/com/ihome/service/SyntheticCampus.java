@@ -0,0 +1,148 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+
+import java.util.*;
+
+/**
+ * 基准测试用的合成校区
+ * 按固定种子生成学生、问卷答案、标签和楼栋/宿舍/床位，相同参数每次生成的数据完全一致。
+ * 男女各半，偶数号楼为男生楼、奇数号楼为女生楼，四人间上下铺各半，床位总数比学生多 10%
+ */
+public class SyntheticCampus {
+
+    private static final String[] MAJORS = {
+        "计算机科学", "软件工程", "电子信息", "机械工程", "土木工程", "工商管理", "英语", "数学"
+    };
+    private static final String[] SLEEP = {"早睡", "晚睡"};
+    private static final String[] CLEANLINESS = {"爱整洁", "一般"};
+    private static final String[] NOISE = {"安静", "能接受一点噪音"};
+    private static final String[] TAGS = {
+        "安静", "整洁", "早睡", "爱学习", "友善", "负责任", "守时", "吵闹", "晚睡", "作息不规律"
+    };
+    private static final int BEDS_PER_ROOM = 4;
+
+    private final List<Student> students = new ArrayList<>();
+    private final Map<String, QuestionnaireAnswer> answersByStudent = new HashMap<>();
+    private final Map<String, List<RoommateTag>> tagsByStudent = new HashMap<>();
+    private final List<Bed> beds = new ArrayList<>();
+    private final Map<String, String> buildingByDormitory = new HashMap<>();
+    private final Map<String, String> genderTypeByBuilding = new HashMap<>();
+
+    private SyntheticCampus() {
+    }
+
+    /**
+     * @param studentCount 学生人数
+     * @param buildingCount 楼栋数（至少 2，保证男女各有楼栋）
+     * @param seed 随机种子
+     */
+    public static SyntheticCampus generate(int studentCount, int buildingCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        SyntheticCampus campus = new SyntheticCampus();
+        int buildings = Math.max(2, buildingCount);
+
+        for (int i = 0; i < studentCount; i++) {
+            String studentId = String.format("S%06d", i);
+            Student student = new Student();
+            student.setId(studentId);
+            student.setName("学生" + i);
+            student.setGender(i % 2 == 0 ? "男" : "女");
+            student.setMajor(MAJORS[random.nextInt(MAJORS.length)]);
+            student.setGrade("2024");
+            student.setStatus("在校");
+            campus.students.add(student);
+
+            QuestionnaireAnswer answer = new QuestionnaireAnswer();
+            answer.setStudentId(studentId);
+            answer.setSleepTimePreference(SLEEP[random.nextInt(SLEEP.length)]);
+            answer.setCleanlinessLevel(CLEANLINESS[random.nextInt(CLEANLINESS.length)]);
+            answer.setNoiseTolerance(NOISE[random.nextInt(NOISE.length)]);
+            campus.answersByStudent.put(studentId, answer);
+
+            List<RoommateTag> tags = new ArrayList<>();
+            int tagCount = 1 + random.nextInt(4);
+            for (int t = 0; t < tagCount; t++) {
+                RoommateTag tag = new RoommateTag();
+                tag.setStudentId(studentId);
+                tag.setTagName(TAGS[random.nextInt(TAGS.length)]);
+                tags.add(tag);
+            }
+            campus.tagsByStudent.put(studentId, tags);
+        }
+
+        // 男女床位各自按人数的 110% 准备，分布在各自性别的楼栋中
+        int roomsPerGender = (int) Math.ceil(studentCount * 1.1 / 2 / BEDS_PER_ROOM);
+        for (int gender = 0; gender < 2; gender++) {
+            List<String> buildingIds = new ArrayList<>();
+            for (int b = gender; b < buildings; b += 2) {
+                String buildingId = String.format("BLD%03d", b);
+                campus.genderTypeByBuilding.put(buildingId, gender == 0 ? "M" : "F");
+                buildingIds.add(buildingId);
+            }
+            for (int r = 0; r < roomsPerGender; r++) {
+                String buildingId = buildingIds.get(r % buildingIds.size());
+                String dormitoryId = buildingId + "-" + String.format("%05d", r);
+                campus.buildingByDormitory.put(dormitoryId, buildingId);
+                for (int k = 0; k < BEDS_PER_ROOM; k++) {
+                    Bed bed = new Bed();
+                    bed.setId(dormitoryId + "-" + (k + 1));
+                    bed.setDormitoryId(dormitoryId);
+                    bed.setBedType(k % 2 == 0 ? "下铺" : "上铺");
+                    bed.setStatus("可用");
+                    campus.beds.add(bed);
+                }
+            }
+        }
+        return campus;
+    }
+
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    public List<Bed> getBeds() {
+        return beds;
+    }
+
+    /**
+     * 与分配服务相同的评分上下文，使用默认权重
+     */
+    public AllocationService.ScoringContext scoringContext() {
+        Map<String, Double> weights = new HashMap<>();
+        weights.put("TAG", 0.15);
+        weights.put("MAJOR", 0.35);
+        weights.put("BED_TYPE", 0.20);
+        return new AllocationService.ScoringContext(tagsByStudent, answersByStudent, weights, 1L);
+    }
+
+    public Map<String, RoommateProfile> profiles() {
+        Map<String, RoommateProfile> profiles = new HashMap<>();
+        for (Student student : students) {
+            profiles.put(student.getId(), new RoommateProfile(student,
+                    answersByStudent.get(student.getId()), tagsByStudent.get(student.getId())));
+        }
+        return profiles;
+    }
+
+    /**
+     * 新建一份全部床位空闲的宿舍入住索引
+     */
+    public DormitoryOccupancyIndex newOccupancyIndex() {
+        return new DormitoryOccupancyIndex(beds, buildingByDormitory, genderTypeByBuilding, Collections.emptyMap());
+    }
+
+    /**
+     * 与分配服务相同的专业+性别分组，键为 "专业/性别"
+     */
+    public Map<String, List<Student>> partitions() {
+        Map<String, List<Student>> partitions = new TreeMap<>();
+        for (Student student : students) {
+            partitions.computeIfAbsent(student.getMajor() + "/" + student.getGender(), k -> new ArrayList<>()).add(student);
+        }
+        return partitions;
+    }
+}
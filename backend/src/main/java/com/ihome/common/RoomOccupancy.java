@@ -0,0 +1,17 @@
+package com.ihome.common;
+
+import lombok.Data;
+
+/**
+ * 单个宿舍的床位占用汇总（宿舍表左连接床位表按宿舍分组的一行结果）
+ */
+@Data
+public class RoomOccupancy {
+    private String dormitoryId;
+    private String buildingId;
+    private Integer floorNumber;
+    private String roomNumber;
+    private String roomType;
+    private int totalBeds;
+    private int occupiedBeds;
+}
@@ -0,0 +1,74 @@
+package com.ihome.common;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按状态分组计数的一行结果（SELECT status, COUNT(*) ... GROUP BY status）
+ * 按其他列和状态联合分组时，groupId 为该列的值（如楼栋ID）
+ */
+public class StatusCount {
+    private String groupId;
+    private String status;
+    private long count;
+
+    public StatusCount() {}
+
+    public StatusCount(String status, long count) {
+        this.status = status;
+        this.count = count;
+    }
+
+    public StatusCount(String groupId, String status, long count) {
+        this.groupId = groupId;
+        this.status = status;
+        this.count = count;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * 转为 状态 -> 数量
+     */
+    public static Map<String, Long> toMap(List<StatusCount> counts) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (StatusCount count : counts) {
+            map.merge(count.getStatus(), count.getCount(), Long::sum);
+        }
+        return map;
+    }
+
+    /**
+     * 各状态数量之和
+     */
+    public static long total(List<StatusCount> counts) {
+        long total = 0;
+        for (StatusCount count : counts) {
+            total += count.getCount();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,13 @@
+package com.ihome.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 启用 @Scheduled 定时任务（调换推荐刷新、仪表盘对账、每日统计汇总等）
+ * 电费余额和缴费截止提醒会给学生发送通知，默认关闭，需配置 electricity.reminders.* 的 cron 才会执行
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -8,6 +8,7 @@ import com.ihome.mapper.DormitoryAllocationMapper;
 import com.ihome.mapper.StudentMapper;
 import com.ihome.mapper.BedMapper;
 import com.ihome.service.DormitoryService;
+import com.ihome.service.RoomHarmonyService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.web.bind.annotation.*;
@@ -23,17 +24,20 @@ public class DormitoryController {
     private final StudentMapper studentMapper;
     private final BedMapper bedMapper;
     private final DormitoryService dormitoryService;
+    private final RoomHarmonyService roomHarmonyService;
 
     public DormitoryController(DormitoryMapper dormitoryMapper, 
                                DormitoryAllocationMapper allocationMapper,
                                StudentMapper studentMapper,
                                BedMapper bedMapper,
-                               DormitoryService dormitoryService) {
+                               DormitoryService dormitoryService,
+                               RoomHarmonyService roomHarmonyService) {
         this.dormitoryMapper = dormitoryMapper;
         this.allocationMapper = allocationMapper;
         this.studentMapper = studentMapper;
         this.bedMapper = bedMapper;
         this.dormitoryService = dormitoryService;
+        this.roomHarmonyService = roomHarmonyService;
     }
 
     @GetMapping
@@ -233,6 +237,26 @@ public class DormitoryController {
         }
     }
 
+    @GetMapping("/{dormitoryId}/harmony")
+    @Operation(summary = "获取宿舍融洽度", description = "在住室友两两兼容度及作息、卫生、噪音答案分布")
+    public ApiResponse<Map<String, Object>> getDormitoryHarmony(@PathVariable String dormitoryId) {
+        try {
+            return ApiResponse.ok(roomHarmonyService.getHarmony(dormitoryId));
+        } catch (Exception e) {
+            return ApiResponse.error("获取宿舍融洽度失败: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/harmony/lowest")
+    @Operation(summary = "融洽度最低的宿舍", description = "按室友平均兼容度升序列出至少两人在住的宿舍")
+    public ApiResponse<List<Map<String, Object>>> getLowestHarmony(@RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ApiResponse.ok(roomHarmonyService.lowestHarmony(limit));
+        } catch (Exception e) {
+            return ApiResponse.error("获取宿舍融洽度失败: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/checkout")
     @Operation(summary = "学生申请退宿", description = "学生申请退宿，释放床位并更新分配状态")
     public ApiResponse<Map<String, Object>> checkout(@RequestParam String studentId) {
@@ -127,6 +127,69 @@ public class DormitorySwitchController {
         }
     }
 
+    /**
+     * 管理员查看待审核申请中可组成的多方调换方案
+     */
+    @GetMapping("/matches")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<Map<String, Object>>> getSwitchMatches() {
+        try {
+            return ApiResponse.ok(switchService.findSwitchMatches());
+        } catch (Exception e) {
+            return ApiResponse.error("匹配调换方案失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 管理员批准一个多方调换方案，方案内的申请一起执行
+     */
+    @PostMapping("/matches/execute")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> executeSwitchMatch(@RequestBody MatchExecuteRequest request) {
+        try {
+            if (request.getSwitchIds() == null || request.getSwitchIds().isEmpty()) {
+                return ApiResponse.error("调换方案不能为空");
+            }
+            Map<String, Object> result = switchService.executeSwitchMatch(request.getSwitchIds(), request.getReviewerId());
+            if ((Boolean) result.get("success")) {
+                return ApiResponse.ok(result);
+            } else {
+                return ApiResponse.error((String) result.get("message"));
+            }
+        } catch (Exception e) {
+            return ApiResponse.error("执行调换方案失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 管理员查看每个待审核申请对原宿舍和目标宿舍融洽度的影响
+     */
+    @GetMapping("/pending/evaluation")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<Map<String, Object>>> evaluatePendingSwitches() {
+        try {
+            return ApiResponse.ok(switchService.evaluatePendingSwitches());
+        } catch (Exception e) {
+            return ApiResponse.error("评估调换申请失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 评估一组调换申请同时执行后各相关宿舍融洽度的变化
+     */
+    @PostMapping("/evaluate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> evaluateSwitches(@RequestBody List<Integer> switchIds) {
+        try {
+            if (switchIds == null || switchIds.isEmpty()) {
+                return ApiResponse.error("调换申请不能为空");
+            }
+            return ApiResponse.ok(switchService.evaluateSwitches(switchIds));
+        } catch (Exception e) {
+            return ApiResponse.error("评估调换申请失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取调换申请详情
      */
@@ -174,5 +237,28 @@ public class DormitorySwitchController {
             this.reviewComment = reviewComment;
         }
     }
-}
 
+    /**
+     * 执行调换方案请求DTO
+     */
+    public static class MatchExecuteRequest {
+        private List<Integer> switchIds;
+        private String reviewerId;
+
+        public List<Integer> getSwitchIds() {
+            return switchIds;
+        }
+
+        public void setSwitchIds(List<Integer> switchIds) {
+            this.switchIds = switchIds;
+        }
+
+        public String getReviewerId() {
+            return reviewerId;
+        }
+
+        public void setReviewerId(String reviewerId) {
+            this.reviewerId = reviewerId;
+        }
+    }
+}
@@ -2,10 +2,13 @@ package com.ihome.controller;
 
 import com.ihome.common.ApiResponse;
 import com.ihome.entity.DormitoryAllocation;
-import com.ihome.entity.QuestionnaireAnswer;
 import com.ihome.entity.RoommateTag;
 import com.ihome.entity.Student;
 import com.ihome.mapper.*;
+import com.ihome.service.ExchangeRecommendationStore;
+import com.ihome.service.RoommateCompatibilityIndex;
+import com.ihome.service.RoommateProfile;
+import com.ihome.service.RoommateSimilarityIndex;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -15,7 +18,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 调换推荐控制器
@@ -39,13 +41,16 @@ public class ExchangeRecommendationController {
     private RoommateTagMapper roommateTagMapper;
 
     @Autowired
-    private BedMapper bedMapper;
+    private ExchangeRecommendationStore recommendationStore;
+
+    @Autowired
+    private RoommateSimilarityIndex similarityIndex;
 
     /**
      * 获取调换推荐列表
      */
     @GetMapping("/for-student")
-    @Operation(summary = "获取调换推荐列表", description = "获取基于匹配度算法的室友推荐列表")
+    @Operation(summary = "获取调换推荐列表", description = "获取基于匹配度算法的室友推荐列表（后台预先计算）")
     @PreAuthorize("hasRole('STUDENT')")
     public ApiResponse<List<Map<String, Object>>> getRecommendations(@RequestParam(required = false) String studentId) {
         try {
@@ -57,57 +62,59 @@ public class ExchangeRecommendationController {
                 studentId = authentication.getName();
             }
 
-            // 使用 final 变量保存 studentId，以便在 lambda 表达式中使用
-            final String finalStudentId = studentId;
-
-            // 获取学生当前宿舍信息
-            var currentAllocation = getCurrentAllocation(finalStudentId);
-            if (currentAllocation == null) {
-                return ApiResponse.error("您还没有分配宿舍");
+            // 从后台维护的推荐存储中按学号读取
+            List<Map<String, Object>> recommendations = recommendationStore.getRecommendations(studentId);
+            if (recommendations == null) {
+                // 存储中没有该学生：尚未入住，或刚入住、等待下次重建
+                if (getCurrentAllocation(studentId) == null) {
+                    return ApiResponse.error("您还没有分配宿舍");
+                }
+                recommendations = Collections.emptyList();
             }
 
-            // 获取室友列表
-            List<String> roommateIds = getRoommateIds(currentAllocation.getBedId());
-
-            // 获取所有其他学生（排除自己和室友）
-            List<Student> allStudents = studentMapper.selectList(null);
-            List<Student> candidateStudents = allStudents.stream()
-                .filter(s -> !s.getId().equals(finalStudentId) && !roommateIds.contains(s.getId()))
-                .collect(Collectors.toList());
-
-            // 计算匹配度并生成推荐
-            List<Map<String, Object>> recommendations = new ArrayList<>();
+            return ApiResponse.ok(recommendations);
+        } catch (Exception e) {
+            return ApiResponse.error("获取调换推荐失败: " + e.getMessage());
+        }
+    }
 
-            for (Student candidate : candidateStudents) {
-                double compatibilityScore = calculateCompatibility(finalStudentId, candidate.getId());
-                
-                if (compatibilityScore > 0.5) { // 只推荐匹配度超过50%的
-                    Map<String, Object> recommendation = new HashMap<>();
-                    recommendation.put("targetStudentId", candidate.getId());
-                    recommendation.put("targetStudentName", candidate.getName());
-                    recommendation.put("targetStudentMajor", candidate.getMajor());
-                    recommendation.put("targetStudentCollege", candidate.getCollege());
-                    recommendation.put("compatibilityScore", compatibilityScore);
-                    recommendation.put("recommendationReason", generateRecommendationReason(finalStudentId, candidate.getId(), compatibilityScore));
-                    
-                    recommendations.add(recommendation);
+    /**
+     * 全校范围查找相似同学
+     */
+    @GetMapping("/similar")
+    @Operation(summary = "查找相似同学", description = "在全校同性别学生中近似检索生活习惯和标签相似的同学，按匹配度排序")
+    @PreAuthorize("hasRole('STUDENT')")
+    public ApiResponse<List<Map<String, Object>>> getSimilarStudents(
+            @RequestParam(required = false) String studentId,
+            @RequestParam(defaultValue = "10") @Parameter(description = "返回人数") int limit) {
+        try {
+            if (studentId == null || studentId.isEmpty()) {
+                org.springframework.security.core.Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+                if (authentication == null || authentication.getName() == null) {
+                    return ApiResponse.error("未获取到学生ID");
                 }
+                studentId = authentication.getName();
             }
 
-            // 按匹配度降序排序
-            recommendations.sort((a, b) -> Double.compare(
-                (Double) b.get("compatibilityScore"),
-                (Double) a.get("compatibilityScore")
-            ));
-
-            // 限制返回前10个推荐
-            if (recommendations.size() > 10) {
-                recommendations = recommendations.subList(0, 10);
+            List<RoommateCompatibilityIndex.Match> matches = similarityIndex.similarStudents(studentId, limit);
+            if (matches == null) {
+                return ApiResponse.error("学生不存在");
             }
 
-            return ApiResponse.ok(recommendations);
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (RoommateCompatibilityIndex.Match match : matches) {
+                Student candidate = match.getStudent();
+                Map<String, Object> item = new HashMap<>();
+                item.put("targetStudentId", candidate.getId());
+                item.put("targetStudentName", candidate.getName());
+                item.put("targetStudentMajor", candidate.getMajor());
+                item.put("targetStudentCollege", candidate.getCollege());
+                item.put("compatibilityScore", match.getScore());
+                result.add(item);
+            }
+            return ApiResponse.ok(result);
         } catch (Exception e) {
-            return ApiResponse.error("获取调换推荐失败: " + e.getMessage());
+            return ApiResponse.error("查找相似同学失败: " + e.getMessage());
         }
     }
 
@@ -129,11 +136,13 @@ public class ExchangeRecommendationController {
                 return ApiResponse.error("学生不存在");
             }
 
-            // 计算各项匹配度
-            double questionnaireCompatibility = calculateQuestionnaireCompatibility(studentId, targetStudentId);
-            double tagCompatibility = calculateTagCompatibility(studentId, targetStudentId);
-            double majorCompatibility = calculateMajorCompatibility(student1, student2);
-            double overallScore = (questionnaireCompatibility * 0.4 + tagCompatibility * 0.3 + majorCompatibility * 0.3);
+            // 计算各项匹配度，算法与分配和调换推荐共用
+            RoommateProfile profile1 = loadProfile(student1);
+            RoommateProfile profile2 = loadProfile(student2);
+            double questionnaireCompatibility = profile1.questionnaireCompatibility(profile2);
+            double tagCompatibility = profile1.tagCompatibility(profile2);
+            double majorCompatibility = profile1.majorCompatibility(profile2);
+            double overallScore = profile1.compatibilityWith(profile2);
 
             Map<String, Object> details = new HashMap<>();
             details.put("overallScore", overallScore);
@@ -194,120 +203,14 @@ public class ExchangeRecommendationController {
     }
 
     /**
-     * 计算综合匹配度
-     */
-    private double calculateCompatibility(String studentId1, String studentId2) {
-        Student student1 = studentMapper.selectById(studentId1);
-        Student student2 = studentMapper.selectById(studentId2);
-
-        double questionnaireCompatibility = calculateQuestionnaireCompatibility(studentId1, studentId2);
-        double tagCompatibility = calculateTagCompatibility(studentId1, studentId2);
-        double majorCompatibility = calculateMajorCompatibility(student1, student2);
-
-        // 加权平均
-        return questionnaireCompatibility * 0.4 + tagCompatibility * 0.3 + majorCompatibility * 0.3;
-    }
-
-    /**
-     * 计算问卷匹配度
-     */
-    private double calculateQuestionnaireCompatibility(String studentId1, String studentId2) {
-        QuestionnaireAnswer qa1 = questionnaireMapper.selectByStudentId(studentId1);
-        QuestionnaireAnswer qa2 = questionnaireMapper.selectByStudentId(studentId2);
-
-        if (qa1 == null || qa2 == null) {
-            return 0.5; // 没有问卷时返回中等匹配度
-        }
-
-        double score = 0.0;
-        int factors = 0;
-
-        // 作息时间匹配
-        if (qa1.getSleepTimePreference() != null && qa2.getSleepTimePreference() != null) {
-            if (qa1.getSleepTimePreference().equals(qa2.getSleepTimePreference())) {
-                score += 1.0;
-            }
-            factors++;
-        }
-
-        // 卫生习惯匹配
-        if (qa1.getCleanlinessLevel() != null && qa2.getCleanlinessLevel() != null) {
-            if (qa1.getCleanlinessLevel().equals(qa2.getCleanlinessLevel())) {
-                score += 1.0;
-            }
-            factors++;
-        }
-
-        // 噪音容忍度匹配
-        if (qa1.getNoiseTolerance() != null && qa2.getNoiseTolerance() != null) {
-            if (qa1.getNoiseTolerance().equals(qa2.getNoiseTolerance())) {
-                score += 1.0;
-            }
-            factors++;
-        }
-
-        return factors > 0 ? score / factors : 0.5;
-    }
-
-    /**
-     * 计算标签匹配度
+     * 加载学生的室友匹配画像
      */
-    private double calculateTagCompatibility(String studentId1, String studentId2) {
-        List<RoommateTag> tags1 = roommateTagMapper.selectList(
+    private RoommateProfile loadProfile(Student student) {
+        List<RoommateTag> tags = roommateTagMapper.selectList(
             new com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<RoommateTag>()
-                .eq("student_id", studentId1)
+                .eq("student_id", student.getId())
         );
-
-        List<RoommateTag> tags2 = roommateTagMapper.selectList(
-            new com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<RoommateTag>()
-                .eq("student_id", studentId2)
-        );
-
-        if (tags1.isEmpty() || tags2.isEmpty()) {
-            return 0.5;
-        }
-
-        Set<String> tagNames1 = tags1.stream().map(RoommateTag::getTagName).collect(Collectors.toSet());
-        Set<String> tagNames2 = tags2.stream().map(RoommateTag::getTagName).collect(Collectors.toSet());
-
-        long commonTags = tagNames1.stream().filter(tagNames2::contains).count();
-        long totalTags = tagNames1.size() + tagNames2.size() - commonTags;
-
-        return totalTags > 0 ? (double) commonTags / totalTags : 0.5;
-    }
-
-    /**
-     * 计算专业匹配度
-     */
-    private double calculateMajorCompatibility(Student student1, Student student2) {
-        if (student1.getMajor() != null && student2.getMajor() != null) {
-            return student1.getMajor().equals(student2.getMajor()) ? 1.0 : 0.7;
-        }
-        return 0.5;
-    }
-
-    /**
-     * 生成推荐理由
-     */
-    private String generateRecommendationReason(String studentId1, String studentId2, double score) {
-        StringBuilder reason = new StringBuilder();
-        
-        Student student1 = studentMapper.selectById(studentId1);
-        Student student2 = studentMapper.selectById(studentId2);
-
-        if (student1 != null && student2 != null && student1.getMajor() != null && student2.getMajor() != null && student1.getMajor().equals(student2.getMajor())) {
-            reason.append("同专业学生；");
-        }
-
-        if (score > 0.8) {
-            reason.append("生活习惯高度匹配");
-        } else if (score > 0.6) {
-            reason.append("生活习惯匹配");
-        } else {
-            reason.append("生活习惯较为匹配");
-        }
-
-        return reason.toString();
+        return new RoommateProfile(student, questionnaireMapper.selectByStudentId(student.getId()), tags);
     }
 
     /**
@@ -324,26 +227,4 @@ public class ExchangeRecommendationController {
 
         return allocations.isEmpty() ? null : allocations.get(0);
     }
-
-    /**
-     * 获取室友列表
-     */
-    private List<String> getRoommateIds(String bedId) {
-        var bed = bedMapper.selectById(bedId);
-        if (bed == null) {
-            return new ArrayList<>();
-        }
-
-        // 通过bedId查找所有室友
-        var allocations = allocationMapper.selectList(
-            new com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<DormitoryAllocation>()
-                .eq("bed_id", bedId)
-                .eq("status", "在住")
-        );
-
-        return allocations.stream()
-            .map(DormitoryAllocation::getStudentId)
-            .collect(Collectors.toList());
-    }
 }
-
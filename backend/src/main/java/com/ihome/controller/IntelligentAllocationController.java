@@ -1,7 +1,16 @@
 package com.ihome.controller;
 
 import com.ihome.common.ApiResponse;
+import com.ihome.entity.AllocationRun;
+import com.ihome.entity.AllocationWaitlist;
+import com.ihome.service.AllocationJob;
+import com.ihome.service.AllocationJobService;
+import com.ihome.service.AllocationOptions;
+import com.ihome.service.AllocationRunService;
+import com.ihome.service.AlgorithmWeightsService;
 import com.ihome.service.AllocationService;
+import com.ihome.service.AllocationWaitlistService;
+import com.ihome.service.IncrementalAllocationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -20,26 +29,348 @@ public class IntelligentAllocationController {
     @Autowired
     private AllocationService allocationService;
 
+    @Autowired
+    private AllocationJobService allocationJobService;
+
+    @Autowired
+    private IncrementalAllocationService incrementalAllocationService;
+
+    @Autowired
+    private AllocationWaitlistService allocationWaitlistService;
+
+    @Autowired
+    private AlgorithmWeightsService weightsService;
+
+    @Autowired
+    private AllocationRunService allocationRunService;
+
     /**
      * 执行智能分配
      * @param studentIds 待分配的学生ID列表
+     * @param solver 室友分组算法：greedy（默认）或 clustering
+     * @param timeBudgetMs 分组算法时间预算（毫秒），可选
+     * @param parallel 是否并行计算各专业/性别分组
+     * @param seed 随机种子，可选；传入上次结果中的 seed 可复现分配
+     * @param refine 是否在分组后执行室友交换优化
+     * @param refineTimeBudgetMs 交换优化时间预算（毫秒），可选
      * @return 分配结果
      */
     @PostMapping("/intelligent")
     @PreAuthorize("hasRole('ADMIN')")
-    public ApiResponse<Map<String, Object>> intelligentAllocation(@RequestBody List<String> studentIds) {
+    public ApiResponse<Map<String, Object>> intelligentAllocation(@RequestBody List<String> studentIds,
+                                                                 @RequestParam(required = false) String solver,
+                                                                 @RequestParam(required = false) Long timeBudgetMs,
+                                                                 @RequestParam(defaultValue = "false") boolean parallel,
+                                                                 @RequestParam(required = false) Long seed,
+                                                                 @RequestParam(defaultValue = "false") boolean refine,
+                                                                 @RequestParam(required = false) Long refineTimeBudgetMs) {
         try {
             if (studentIds == null || studentIds.isEmpty()) {
                 return ApiResponse.error("学生ID列表不能为空");
             }
             
-            Map<String, Object> result = allocationService.intelligentAllocation(studentIds);
+            AllocationOptions options = buildOptions(solver, timeBudgetMs, parallel, seed, refine,
+                    refineTimeBudgetMs, null);
+            
+            Map<String, Object> result = allocationService.intelligentAllocation(studentIds, options);
             return ApiResponse.ok(result);
         } catch (Exception e) {
             return ApiResponse.error("智能分配失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 提交异步智能分配任务，立即返回任务ID
+     * @param studentIds 待分配的学生ID列表
+     * @param solver 室友分组算法：greedy（默认）或 clustering
+     * @param timeBudgetMs 分组算法时间预算（毫秒），可选
+     * @param parallel 是否并行计算各专业/性别分组
+     * @param seed 随机种子，可选；传入上次结果中的 seed 可复现分配
+     * @param refine 是否在分组后执行室友交换优化
+     * @param refineTimeBudgetMs 交换优化时间预算（毫秒），可选
+     * @return 任务状态
+     */
+    @PostMapping("/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> submitAllocationJob(@RequestBody List<String> studentIds,
+                                                               @RequestParam(required = false) String solver,
+                                                               @RequestParam(required = false) Long timeBudgetMs,
+                                                               @RequestParam(defaultValue = "false") boolean parallel,
+                                                               @RequestParam(required = false) Long seed,
+                                                               @RequestParam(defaultValue = "false") boolean refine,
+                                                               @RequestParam(required = false) Long refineTimeBudgetMs) {
+        try {
+            if (studentIds == null || studentIds.isEmpty()) {
+                return ApiResponse.error("学生ID列表不能为空");
+            }
+            
+            AllocationOptions options = buildOptions(solver, timeBudgetMs, parallel, seed, refine,
+                    refineTimeBudgetMs, null);
+            
+            AllocationJob job = allocationJobService.submit(studentIds, options);
+            return ApiResponse.ok(job.toStatusMap());
+        } catch (Exception e) {
+            return ApiResponse.error("提交分配任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询保留期内的全部分配任务
+     * @return 任务状态列表
+     */
+    @GetMapping("/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<Map<String, Object>>> listAllocationJobs() {
+        try {
+            return ApiResponse.ok(allocationJobService.listJobs());
+        } catch (Exception e) {
+            return ApiResponse.error("获取分配任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询分配任务进度，完成后包含分配结果
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> getAllocationJob(@PathVariable String jobId) {
+        try {
+            AllocationJob job = allocationJobService.getJob(jobId);
+            if (job == null) {
+                return ApiResponse.error("分配任务不存在或已过期");
+            }
+            return ApiResponse.ok(job.toStatusMap());
+        } catch (Exception e) {
+            return ApiResponse.error("获取分配任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取消分配任务；已开始写库或已提交的任务不能取消
+     * @param jobId 任务ID
+     * @return 取消结果
+     */
+    @DeleteMapping("/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<String> cancelAllocationJob(@PathVariable String jobId) {
+        try {
+            Map<String, Object> result = allocationJobService.cancel(jobId);
+            if (!(Boolean) result.get("success")) {
+                return ApiResponse.error((String) result.get("message"));
+            }
+            return ApiResponse.ok((String) result.get("message"));
+        } catch (Exception e) {
+            return ApiResponse.error("取消分配任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 模拟分配：完整执行分配流程但不写入数据库，用于调整权重后预览效果
+     * @param request 模拟请求（学生ID、分组算法、权重覆盖等）
+     * @return 预计分配结果、各楼栋入住率和分数分布
+     */
+    @PostMapping("/simulate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> simulateAllocation(@RequestBody SimulationRequest request) {
+        try {
+            if (request.getStudentIds() == null || request.getStudentIds().isEmpty()) {
+                return ApiResponse.error("学生ID列表不能为空");
+            }
+            
+            AllocationOptions options = buildOptions(request.getSolver(), request.getTimeBudgetMs(),
+                    request.isParallel(), request.getSeed(), request.isRefine(), request.getRefineTimeBudgetMs(),
+                    request.getWeights());
+            
+            Map<String, Object> result = allocationService.simulateAllocation(request.getStudentIds(), options);
+            return ApiResponse.ok(result);
+        } catch (Exception e) {
+            return ApiResponse.error("模拟分配失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取当前生效的算法权重及其版本号
+     * @return 权重快照
+     */
+    @GetMapping("/weights")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> getWeights() {
+        try {
+            return ApiResponse.ok(weightsService.getSnapshot().toMap());
+        } catch (Exception e) {
+            return ApiResponse.error("获取算法权重失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 调整算法权重，保存后生成新的权重版本
+     * @param weights 权重类型 -> 权重值（0-1）
+     * @return 更新后的权重快照
+     */
+    @PutMapping("/weights")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> updateWeights(@RequestBody Map<String, Double> weights) {
+        try {
+            if (weights == null || weights.isEmpty()) {
+                return ApiResponse.error("权重配置不能为空");
+            }
+            weightsService.updateWeights(weights);
+            return ApiResponse.ok(weightsService.getSnapshot().toMap());
+        } catch (Exception e) {
+            return ApiResponse.error("更新算法权重失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询最近的分配批次
+     * @param limit 返回条数，默认 20
+     * @return 分配批次列表（按时间倒序）
+     */
+    @GetMapping("/runs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<AllocationRun>> getAllocationRuns(@RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ApiResponse.ok(allocationRunService.listRuns(limit));
+        } catch (Exception e) {
+            return ApiResponse.error("获取分配批次失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询分配批次详情（分组算法、种子、权重）
+     * @param runId 批次ID
+     * @return 分配批次
+     */
+    @GetMapping("/runs/{runId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<AllocationRun> getAllocationRun(@PathVariable Long runId) {
+        try {
+            AllocationRun run = allocationRunService.getRun(runId);
+            if (run == null) {
+                return ApiResponse.error("分配批次不存在");
+            }
+            return ApiResponse.ok(run);
+        } catch (Exception e) {
+            return ApiResponse.error("获取分配批次失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 整体回滚一个分配批次：撤销其仍在住的分配记录并释放床位
+     * @param runId 批次ID
+     * @return 回滚结果
+     */
+    @PostMapping("/runs/{runId}/rollback")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> rollbackAllocationRun(@PathVariable Long runId) {
+        try {
+            return ApiResponse.ok(allocationRunService.rollback(runId));
+        } catch (Exception e) {
+            return ApiResponse.error("回滚分配批次失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 对比两个分配批次
+     * @param from 基准批次ID
+     * @param to 目标批次ID
+     * @return 新增、移除和床位变化的学生
+     */
+    @GetMapping("/runs/diff")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> diffAllocationRuns(@RequestParam Long from, @RequestParam Long to) {
+        try {
+            return ApiResponse.ok(allocationRunService.diff(from, to));
+        } catch (Exception e) {
+            return ApiResponse.error("对比分配批次失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 增量分配：把少量晚到学生直接安排进现有宿舍，不重新计算整个校区
+     * @param studentIds 待分配的学生ID列表
+     * @return 分配结果
+     */
+    @PostMapping("/incremental")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> incrementalAllocation(@RequestBody List<String> studentIds) {
+        try {
+            if (studentIds == null || studentIds.isEmpty()) {
+                return ApiResponse.error("学生ID列表不能为空");
+            }
+            return ApiResponse.ok(incrementalAllocationService.allocate(studentIds));
+        } catch (Exception e) {
+            return ApiResponse.error("增量分配失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 登记分配候补，有床位释放时按登记顺序自动分配
+     * @param studentIds 学生ID列表
+     * @return 新登记的人数
+     */
+    @PostMapping("/waitlist")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Integer> joinWaitlist(@RequestBody List<String> studentIds) {
+        try {
+            if (studentIds == null || studentIds.isEmpty()) {
+                return ApiResponse.error("学生ID列表不能为空");
+            }
+            return ApiResponse.ok(allocationWaitlistService.join(studentIds));
+        } catch (Exception e) {
+            return ApiResponse.error("登记候补失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询分配候补
+     * @param status 候补状态（等待中、已分配、已取消），可选
+     * @return 候补列表
+     */
+    @GetMapping("/waitlist")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<AllocationWaitlist>> getWaitlist(@RequestParam(required = false) String status) {
+        try {
+            return ApiResponse.ok(allocationWaitlistService.list(status));
+        } catch (Exception e) {
+            return ApiResponse.error("获取候补列表失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取消学生的分配候补
+     * @param studentId 学生ID
+     * @return 取消结果
+     */
+    @DeleteMapping("/waitlist/{studentId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<String> cancelWaitlist(@PathVariable String studentId) {
+        try {
+            if (!allocationWaitlistService.cancel(studentId)) {
+                return ApiResponse.error("该学生不在候补中");
+            }
+            return ApiResponse.ok("已取消候补");
+        } catch (Exception e) {
+            return ApiResponse.error("取消候补失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 立即按登记顺序处理分配候补
+     * @return 分配结果
+     */
+    @PostMapping("/waitlist/drain")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> drainWaitlist() {
+        try {
+            return ApiResponse.ok(allocationWaitlistService.drain());
+        } catch (Exception e) {
+            return ApiResponse.error("处理候补失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取分配建议
      * @param studentId 学生ID
@@ -110,6 +441,25 @@ public class IntelligentAllocationController {
         }
     }
 
+    /**
+     * 根据请求参数构造分配参数，未传入的参数使用默认值
+     * @param weights 权重覆盖，仅模拟分配使用，可为 null
+     */
+    private AllocationOptions buildOptions(String solver, Long timeBudgetMs, boolean parallel, Long seed,
+                                           boolean refine, Long refineTimeBudgetMs, Map<String, Double> weights) {
+        AllocationOptions options = AllocationOptions.defaults();
+        if (solver != null && !solver.trim().isEmpty()) {
+            options.setSolver(solver.trim());
+        }
+        options.setTimeBudgetMs(timeBudgetMs);
+        options.setParallel(parallel);
+        options.setSeed(seed);
+        options.setRefine(refine);
+        options.setRefineTimeBudgetMs(refineTimeBudgetMs);
+        options.setWeights(weights);
+        return options;
+    }
+
     /**
      * 批量分配请求DTO
      */
@@ -142,5 +492,82 @@ public class IntelligentAllocationController {
             this.reason = reason;
         }
     }
-}
 
+    /**
+     * 模拟分配请求DTO
+     */
+    public static class SimulationRequest {
+        private List<String> studentIds;
+        private String solver;
+        private Long timeBudgetMs;
+        private boolean parallel;
+        private Map<String, Double> weights;
+        private Long seed;
+        private boolean refine;
+        private Long refineTimeBudgetMs;
+
+        public List<String> getStudentIds() {
+            return studentIds;
+        }
+
+        public void setStudentIds(List<String> studentIds) {
+            this.studentIds = studentIds;
+        }
+
+        public String getSolver() {
+            return solver;
+        }
+
+        public void setSolver(String solver) {
+            this.solver = solver;
+        }
+
+        public Long getTimeBudgetMs() {
+            return timeBudgetMs;
+        }
+
+        public void setTimeBudgetMs(Long timeBudgetMs) {
+            this.timeBudgetMs = timeBudgetMs;
+        }
+
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        public void setParallel(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        public Map<String, Double> getWeights() {
+            return weights;
+        }
+
+        public void setWeights(Map<String, Double> weights) {
+            this.weights = weights;
+        }
+
+        public Long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(Long seed) {
+            this.seed = seed;
+        }
+
+        public boolean isRefine() {
+            return refine;
+        }
+
+        public void setRefine(boolean refine) {
+            this.refine = refine;
+        }
+
+        public Long getRefineTimeBudgetMs() {
+            return refineTimeBudgetMs;
+        }
+
+        public void setRefineTimeBudgetMs(Long refineTimeBudgetMs) {
+            this.refineTimeBudgetMs = refineTimeBudgetMs;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.ihome.controller;
 
 import com.ihome.common.ApiResponse;
 import com.ihome.entity.RoommateTag;
+import com.ihome.event.RoommateProfileChangedEvent;
 import com.ihome.mapper.RoommateTagMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -24,6 +26,9 @@ public class LifestyleTagController {
     @Autowired
     private RoommateTagMapper roommateTagMapper;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 获取所有可用的标签
      */
@@ -111,6 +116,7 @@ public class LifestyleTagController {
                 tag.setTagName(tagName);
                 roommateTagMapper.insert(tag);
             }
+            eventPublisher.publishEvent(RoommateProfileChangedEvent.of(studentId));
             
             return ApiResponse.ok("标签设置成功");
         } catch (Exception e) {
@@ -143,6 +149,7 @@ public class LifestyleTagController {
             tag.setStudentId(studentId);
             tag.setTagName(tagName);
             roommateTagMapper.insert(tag);
+            eventPublisher.publishEvent(RoommateProfileChangedEvent.of(studentId));
             
             return ApiResponse.ok("标签添加成功");
         } catch (Exception e) {
@@ -167,6 +174,7 @@ public class LifestyleTagController {
             );
             
             if (deleted > 0) {
+                eventPublisher.publishEvent(RoommateProfileChangedEvent.of(studentId));
                 return ApiResponse.ok("标签删除成功");
             } else {
                 return ApiResponse.error("标签不存在");
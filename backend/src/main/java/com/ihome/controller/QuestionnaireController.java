@@ -4,11 +4,13 @@ import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.ihome.common.ApiResponse;
 import com.ihome.entity.QuestionnaireAnswer;
 import com.ihome.entity.RoommateTag;
+import com.ihome.event.RoommateProfileChangedEvent;
 import com.ihome.mapper.QuestionnaireAnswerMapper;
 import com.ihome.mapper.RoommateTagMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,10 +22,13 @@ import java.util.*;
 public class QuestionnaireController {
     private final QuestionnaireAnswerMapper questionnaireMapper;
     private final RoommateTagMapper tagMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public QuestionnaireController(QuestionnaireAnswerMapper questionnaireMapper, RoommateTagMapper tagMapper) {
+    public QuestionnaireController(QuestionnaireAnswerMapper questionnaireMapper, RoommateTagMapper tagMapper,
+                                   ApplicationEventPublisher eventPublisher) {
         this.questionnaireMapper = questionnaireMapper;
         this.tagMapper = tagMapper;
+        this.eventPublisher = eventPublisher;
     }
 
     @PostMapping("/submit")
@@ -109,6 +114,8 @@ public class QuestionnaireController {
                 response.put("message", "标签冲突，请修改手动选择的标签");
                 response.put("conflicts", conflicts);
                 response.put("autoGeneratedTags", autoGeneratedTags);
+                // 问卷答案已更新，标签保持不变
+                eventPublisher.publishEvent(RoommateProfileChangedEvent.of(studentId));
                 return ApiResponse.error("标签冲突");
             }
 
@@ -139,6 +146,7 @@ public class QuestionnaireController {
                     tagMapper.insert(tag);
                 }
             }
+            eventPublisher.publishEvent(RoommateProfileChangedEvent.of(studentId));
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -4,11 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.ihome.common.ApiResponse;
 import com.ihome.entity.RepairOrder;
+import com.ihome.event.RequestStatusChangedEvent;
 import com.ihome.mapper.RepairOrderMapper;
 import com.ihome.service.NotificationService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -24,6 +26,9 @@ public class RepairController {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public RepairController(RepairOrderMapper repairMapper) {
         this.repairMapper = repairMapper;
     }
@@ -63,6 +68,7 @@ public class RepairController {
             }
             
             repairMapper.insert(repair);
+            eventPublisher.publishEvent(RequestStatusChangedEvent.repair(null, repair.getStatus()));
             
             return ApiResponse.ok(repair);
         } catch (Exception e) {
@@ -166,6 +172,7 @@ public class RepairController {
         
         // 发送状态更新通知给学生
         if (!oldStatus.equals(status)) {
+            eventPublisher.publishEvent(RequestStatusChangedEvent.repair(oldStatus, status));
             String title = "维修状态更新";
             String content = String.format("您的维修工单（工单号：%s）状态已更新为：%s", String.valueOf(repairId), status);
             String priority = "已完成".equals(status) ? "normal" : "high";
@@ -61,6 +61,23 @@ public class StatisticsController {
         }
     }
 
+    /**
+     * 获取楼栋使用情况（按楼层、宿舍和房型下钻）
+     */
+    @GetMapping("/dormitories/usage/buildings/{buildingId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> getBuildingUsageStatistics(@PathVariable String buildingId) {
+        try {
+            Map<String, Object> statistics = statisticsService.getBuildingUsageStatistics(buildingId);
+            if (statistics == null) {
+                return ApiResponse.error("楼栋不存在");
+            }
+            return ApiResponse.ok(statistics);
+        } catch (Exception e) {
+            return ApiResponse.error("获取楼栋使用统计失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取缴费统计报表
      */
@@ -109,12 +126,16 @@ public class StatisticsController {
 
     /**
      * 获取趋势分析数据
+     * @param granularity 统计粒度 day/week/month
      */
     @GetMapping("/trends")
     @PreAuthorize("hasRole('ADMIN')")
-    public ApiResponse<Map<String, Object>> getTrendAnalysis() {
+    public ApiResponse<Map<String, Object>> getTrendAnalysis(
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String granularity) {
         try {
-            Map<String, Object> trends = statisticsService.getTrendAnalysis();
+            Map<String, Object> trends = statisticsService.getTrendAnalysis(startDate, endDate, granularity);
             return ApiResponse.ok(trends);
         } catch (Exception e) {
             return ApiResponse.error("获取趋势分析失败: " + e.getMessage());
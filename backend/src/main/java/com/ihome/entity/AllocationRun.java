@@ -0,0 +1,65 @@
+package com.ihome.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分配批次实体
+ * 每次智能分配写库时生成一条记录，批次生成的分配记录通过 run_id 关联，可整体回滚或与其他批次对比
+ */
+@Data
+@TableName("allocation_runs")
+public class AllocationRun {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 分组算法
+     */
+    private String solver;
+
+    /**
+     * 随机种子，配合权重可复现本次分配
+     */
+    private Long seed;
+
+    /**
+     * 权重快照版本
+     */
+    private Long weightsVersion;
+
+    /**
+     * 本次使用的权重（JSON，含临时覆盖）
+     */
+    private String weights;
+
+    /**
+     * 状态 (已完成, 已回滚)
+     */
+    private String status;
+
+    /**
+     * 分配人数
+     */
+    private Integer totalAllocated;
+
+    /**
+     * 回滚时撤销的人数（已退宿的记录不计入）
+     */
+    private Integer rolledBackCount;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * 回滚时间
+     */
+    private LocalDateTime rolledBackAt;
+}
@@ -0,0 +1,45 @@
+package com.ihome.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分配候补实体
+ * 暂时没有合适床位的学生进入候补，有床位释放时按登记顺序自动分配
+ */
+@Data
+@TableName("allocation_waitlist")
+public class AllocationWaitlist {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 学生ID
+     */
+    private String studentId;
+
+    /**
+     * 状态 (等待中, 已分配, 已取消)
+     */
+    private String status;
+
+    /**
+     * 分配到的床位ID
+     */
+    private String bedId;
+
+    /**
+     * 登记时间
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * 分配时间
+     */
+    private LocalDateTime allocatedAt;
+}
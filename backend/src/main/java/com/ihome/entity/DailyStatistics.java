@@ -0,0 +1,62 @@
+package com.ihome.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日统计汇总实体
+ * 每天一行，由定时任务从业务表按天分组汇总写入，趋势分析按日期范围累加这些行，不再扫描业务表
+ */
+@Data
+@TableName("daily_statistics")
+public class DailyStatistics {
+
+    @TableId(type = IdType.INPUT)
+    private LocalDate statDate;
+
+    /**
+     * 入住人数（按入住日期）
+     */
+    private Integer checkIns;
+
+    /**
+     * 退宿人数（按退宿日期）
+     */
+    private Integer checkOuts;
+
+    /**
+     * 新建维修工单数（按创建时间）
+     */
+    private Integer repairsOpened;
+
+    /**
+     * 完成维修工单数（已完成工单按最后更新时间）
+     */
+    private Integer repairsClosed;
+
+    /**
+     * 调换申请数（按申请时间）
+     */
+    private Integer switchRequests;
+
+    /**
+     * 已支付的缴费笔数（按支付时间）
+     */
+    private Integer paymentCount;
+
+    /**
+     * 已支付的缴费金额
+     */
+    private BigDecimal paymentAmount;
+
+    /**
+     * 汇总时间
+     */
+    private LocalDateTime updatedAt;
+}
@@ -17,6 +17,7 @@ public class DormitoryAllocation {
     private LocalDate checkInDate;
     private LocalDate checkOutDate;
     private String status;
+    private Long runId;
 
     // Getters and Setters
     public Integer getId() { return id; }
@@ -33,6 +34,8 @@ public class DormitoryAllocation {
     public void setCheckOutDate(LocalDate checkOutDate) { this.checkOutDate = checkOutDate; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+    public Long getRunId() { return runId; }
+    public void setRunId(Long runId) { this.runId = runId; }
 }
 
 
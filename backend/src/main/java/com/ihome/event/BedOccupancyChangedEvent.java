@@ -0,0 +1,103 @@
+package com.ihome.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 床位入住变化事件
+ * 床位被分配（ASSIGNED）、释放（RELEASED）或在住学生换床（MOVED，如宿舍调换）后发布，
+ * 一次操作涉及的所有床位放在同一个事件中
+ */
+public class BedOccupancyChangedEvent {
+
+    public static final String ASSIGNED = "ASSIGNED";
+    public static final String RELEASED = "RELEASED";
+    public static final String MOVED = "MOVED";
+
+    private final String type;
+    private final List<BedChange> changes;
+
+    public BedOccupancyChangedEvent(String type, List<BedChange> changes) {
+        this.type = type;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public static BedOccupancyChangedEvent assigned(List<BedChange> changes) {
+        return new BedOccupancyChangedEvent(ASSIGNED, changes);
+    }
+
+    public static BedOccupancyChangedEvent released(List<BedChange> changes) {
+        return new BedOccupancyChangedEvent(RELEASED, changes);
+    }
+
+    /**
+     * 在住学生换床，每个变化记录新旧床位和宿舍
+     */
+    public static BedOccupancyChangedEvent moved(List<BedChange> changes) {
+        return new BedOccupancyChangedEvent(MOVED, changes);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public boolean isAssigned() {
+        return ASSIGNED.equals(type);
+    }
+
+    public boolean isReleased() {
+        return RELEASED.equals(type);
+    }
+
+    public boolean isMoved() {
+        return MOVED.equals(type);
+    }
+
+    public List<BedChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * 单张床位的变化：床位、所在宿舍和入住/退宿的学生
+     * 换床时床位和宿舍为新床位，fromBedId/fromDormitoryId 为原床位
+     */
+    public static class BedChange {
+        private final String bedId;
+        private final String dormitoryId;
+        private final String studentId;
+        private final String fromBedId;
+        private final String fromDormitoryId;
+
+        public BedChange(String bedId, String dormitoryId, String studentId) {
+            this(bedId, dormitoryId, studentId, null, null);
+        }
+
+        public BedChange(String bedId, String dormitoryId, String studentId, String fromBedId, String fromDormitoryId) {
+            this.bedId = bedId;
+            this.dormitoryId = dormitoryId;
+            this.studentId = studentId;
+            this.fromBedId = fromBedId;
+            this.fromDormitoryId = fromDormitoryId;
+        }
+
+        public String getBedId() {
+            return bedId;
+        }
+
+        public String getDormitoryId() {
+            return dormitoryId;
+        }
+
+        public String getStudentId() {
+            return studentId;
+        }
+
+        public String getFromBedId() {
+            return fromBedId;
+        }
+
+        public String getFromDormitoryId() {
+            return fromDormitoryId;
+        }
+    }
+}
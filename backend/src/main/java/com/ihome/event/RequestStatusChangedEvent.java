@@ -0,0 +1,59 @@
+package com.ihome.event;
+
+/**
+ * 维修工单或调换申请状态变化事件
+ * 新建时 fromStatus 为 null；一次操作把多条同状态的申请一起改为新状态时 count 为条数
+ */
+public class RequestStatusChangedEvent {
+
+    public static final String REPAIR = "REPAIR";
+    public static final String SWITCH = "SWITCH";
+
+    private final String requestType;
+    private final String fromStatus;
+    private final String toStatus;
+    private final int count;
+
+    public RequestStatusChangedEvent(String requestType, String fromStatus, String toStatus, int count) {
+        this.requestType = requestType;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+        this.count = count;
+    }
+
+    public static RequestStatusChangedEvent repair(String fromStatus, String toStatus) {
+        return new RequestStatusChangedEvent(REPAIR, fromStatus, toStatus, 1);
+    }
+
+    public static RequestStatusChangedEvent switchRequest(String fromStatus, String toStatus) {
+        return new RequestStatusChangedEvent(SWITCH, fromStatus, toStatus, 1);
+    }
+
+    public static RequestStatusChangedEvent switchRequests(String fromStatus, String toStatus, int count) {
+        return new RequestStatusChangedEvent(SWITCH, fromStatus, toStatus, count);
+    }
+
+    public String getRequestType() {
+        return requestType;
+    }
+
+    public boolean isRepair() {
+        return REPAIR.equals(requestType);
+    }
+
+    public boolean isSwitch() {
+        return SWITCH.equals(requestType);
+    }
+
+    public String getFromStatus() {
+        return fromStatus;
+    }
+
+    public String getToStatus() {
+        return toStatus;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
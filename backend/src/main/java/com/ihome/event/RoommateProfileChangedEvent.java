@@ -0,0 +1,25 @@
+package com.ihome.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 室友画像变化事件
+ * 学生的问卷答案或标签修改后发布，依赖兼容度的缓存据此局部刷新
+ */
+public class RoommateProfileChangedEvent {
+
+    private final List<String> studentIds;
+
+    public RoommateProfileChangedEvent(List<String> studentIds) {
+        this.studentIds = Collections.unmodifiableList(studentIds);
+    }
+
+    public static RoommateProfileChangedEvent of(String studentId) {
+        return new RoommateProfileChangedEvent(Collections.singletonList(studentId));
+    }
+
+    public List<String> getStudentIds() {
+        return studentIds;
+    }
+}
@@ -2,12 +2,27 @@ package com.ihome.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.ihome.entity.AlgorithmWeights;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 /**
  * 算法权重配置Mapper
  */
 @Mapper
 public interface AlgorithmWeightsMapper extends BaseMapper<AlgorithmWeights> {
-}
 
+    /**
+     * 当前权重版本号；尚未发生过权重变更时返回 null
+     */
+    @Select("SELECT version FROM algorithm_weights_version WHERE id = 1")
+    Long selectVersion();
+
+    @Update("UPDATE algorithm_weights_version SET version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = 1")
+    int incrementVersion();
+
+    @Insert("INSERT INTO algorithm_weights_version (id, version) VALUES (1, #{version})")
+    int insertVersion(@Param("version") long version);
+}
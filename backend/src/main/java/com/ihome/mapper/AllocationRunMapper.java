@@ -0,0 +1,30 @@
+package com.ihome.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ihome.entity.AllocationRun;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface AllocationRunMapper extends BaseMapper<AllocationRun> {
+
+    /**
+     * 按创建时间倒序查询最近的分配批次
+     */
+    @Select("SELECT * FROM allocation_runs ORDER BY id DESC LIMIT #{limit}")
+    List<AllocationRun> selectRecent(@Param("limit") int limit);
+
+    /**
+     * 将已完成的批次标记为已回滚，并发回滚时只有一方能成功
+     * @return 更新的行数
+     */
+    @Update("UPDATE allocation_runs SET status = '已回滚', rolled_back_count = #{count}, rolled_back_at = #{rolledBackAt} " +
+            "WHERE id = #{runId} AND status = '已完成'")
+    int markRolledBack(@Param("runId") Long runId, @Param("count") int count,
+                       @Param("rolledBackAt") LocalDateTime rolledBackAt);
+}
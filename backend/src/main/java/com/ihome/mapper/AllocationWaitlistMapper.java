@@ -0,0 +1,22 @@
+package com.ihome.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ihome.entity.AllocationWaitlist;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface AllocationWaitlistMapper extends BaseMapper<AllocationWaitlist> {
+
+    /**
+     * 按登记顺序查询等待中的候补
+     */
+    @Select("SELECT * FROM allocation_waitlist WHERE status = '等待中' ORDER BY created_at, id LIMIT #{limit}")
+    List<AllocationWaitlist> selectWaiting(@Param("limit") int limit);
+
+    @Select("SELECT * FROM allocation_waitlist WHERE student_id = #{studentId} AND status = '等待中' LIMIT 1")
+    AllocationWaitlist selectWaitingByStudentId(@Param("studentId") String studentId);
+}
@@ -1,10 +1,52 @@
 package com.ihome.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ihome.common.StatusCount;
 import com.ihome.entity.Bed;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
-public interface BedMapper extends BaseMapper<Bed> {}
+public interface BedMapper extends BaseMapper<Bed> {
+
+    /**
+     * 批量更新床位状态，仅更新当前状态为 expectedStatus 的床位（调用方需保证集合非空）
+     * @return 实际更新的行数
+     */
+    @Update("<script>" +
+            "UPDATE beds SET status = #{status} WHERE status = #{expectedStatus} AND id IN " +
+            "<foreach collection='bedIds' item='bedId' open='(' separator=',' close=')'>" +
+            "#{bedId}" +
+            "</foreach>" +
+            "</script>")
+    int updateStatusByIds(@Param("bedIds") Collection<String> bedIds,
+                          @Param("expectedStatus") String expectedStatus,
+                          @Param("status") String status);
+
+    /**
+     * 释放某次分配批次仍在住记录占用的床位（一条 UPDATE，须在撤销分配记录之前执行）
+     * @return 实际释放的床位数
+     */
+    @Update("UPDATE beds SET status = '可用' WHERE status = '已占用' AND id IN " +
+            "(SELECT bed_id FROM dormitory_allocations WHERE run_id = #{runId} AND status = '在住')")
+    int releaseByRunId(@Param("runId") Long runId);
 
+    /**
+     * 按状态统计床位数
+     */
+    @Select("SELECT status, COUNT(*) AS count FROM beds GROUP BY status")
+    List<StatusCount> countByStatus();
 
+    /**
+     * 按楼栋和状态统计床位数，groupId 为楼栋ID
+     */
+    @Select("SELECT d.building_id AS group_id, b.status AS status, COUNT(*) AS count FROM beds b " +
+            "JOIN dormitories d ON b.dormitory_id = d.id " +
+            "GROUP BY d.building_id, b.status")
+    List<StatusCount> countByBuildingAndStatus();
+}
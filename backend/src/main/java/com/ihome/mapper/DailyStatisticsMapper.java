@@ -0,0 +1,99 @@
+package com.ihome.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ihome.entity.DailyStatistics;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DailyStatisticsMapper extends BaseMapper<DailyStatistics> {
+
+    /**
+     * 日期范围 [from, to) 内已汇总的行，按日期升序
+     */
+    @Select("SELECT * FROM daily_statistics WHERE stat_date >= #{from} AND stat_date < #{to} ORDER BY stat_date")
+    List<DailyStatistics> selectRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 删除日期范围 [from, to) 内的汇总行，重新汇总前调用，保证重复执行结果一致
+     */
+    @Delete("DELETE FROM daily_statistics WHERE stat_date >= #{from} AND stat_date < #{to}")
+    int deleteRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 多行插入汇总行（调用方需保证列表非空）
+     */
+    @Insert("<script>" +
+            "INSERT INTO daily_statistics (stat_date, check_ins, check_outs, repairs_opened, repairs_closed, " +
+            "switch_requests, payment_count, payment_amount) VALUES " +
+            "<foreach collection='rows' item='r' separator=','>" +
+            "(#{r.statDate}, #{r.checkIns}, #{r.checkOuts}, #{r.repairsOpened}, #{r.repairsClosed}, " +
+            "#{r.switchRequests}, #{r.paymentCount}, #{r.paymentAmount})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("rows") List<DailyStatistics> rows);
+
+    /**
+     * 汇总任务已处理到的日期（含），从未执行过时返回 null
+     */
+    @Select("SELECT processed_date FROM statistics_watermarks WHERE name = #{name}")
+    LocalDate selectWatermark(@Param("name") String name);
+
+    @Insert("INSERT INTO statistics_watermarks (name, processed_date) VALUES (#{name}, #{processedDate})")
+    int insertWatermark(@Param("name") String name, @Param("processedDate") LocalDate processedDate);
+
+    @Update("UPDATE statistics_watermarks SET processed_date = #{processedDate}, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE name = #{name}")
+    int updateWatermark(@Param("name") String name, @Param("processedDate") LocalDate processedDate);
+
+    /**
+     * 每天入住人数（被撤销的分配批次记录不计入）
+     */
+    @Select("SELECT check_in_date AS stat_date, COUNT(*) AS check_ins FROM dormitory_allocations " +
+            "WHERE check_in_date >= #{from} AND check_in_date < #{to} AND status <> '已撤销' " +
+            "GROUP BY check_in_date")
+    List<DailyStatistics> countCheckIns(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 每天退宿人数
+     */
+    @Select("SELECT check_out_date AS stat_date, COUNT(*) AS check_outs FROM dormitory_allocations " +
+            "WHERE check_out_date >= #{from} AND check_out_date < #{to} AND status = '已退宿' " +
+            "GROUP BY check_out_date")
+    List<DailyStatistics> countCheckOuts(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 每天新建的维修工单数
+     */
+    @Select("SELECT CAST(created_at AS DATE) AS stat_date, COUNT(*) AS repairs_opened FROM repair_orders " +
+            "WHERE created_at >= #{from} AND created_at < #{to} " +
+            "GROUP BY CAST(created_at AS DATE)")
+    List<DailyStatistics> countRepairsOpened(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 每天完成的维修工单数（工单没有完成时间，按已完成工单的最后更新时间）
+     */
+    @Select("SELECT CAST(updated_at AS DATE) AS stat_date, COUNT(*) AS repairs_closed FROM repair_orders " +
+            "WHERE status = '已完成' AND updated_at >= #{from} AND updated_at < #{to} " +
+            "GROUP BY CAST(updated_at AS DATE)")
+    List<DailyStatistics> countRepairsClosed(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 每天提交的调换申请数
+     */
+    @Select("SELECT CAST(apply_time AS DATE) AS stat_date, COUNT(*) AS switch_requests FROM dormitory_switches " +
+            "WHERE apply_time >= #{from} AND apply_time < #{to} " +
+            "GROUP BY CAST(apply_time AS DATE)")
+    List<DailyStatistics> countSwitchRequests(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 每天已支付的缴费笔数和金额
+     */
+    @Select("SELECT CAST(payment_time AS DATE) AS stat_date, COUNT(*) AS payment_count, " +
+            "COALESCE(SUM(amount), 0) AS payment_amount FROM payment_records " +
+            "WHERE status = '已支付' AND payment_time >= #{from} AND payment_time < #{to} " +
+            "GROUP BY CAST(payment_time AS DATE)")
+    List<DailyStatistics> sumPayments(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
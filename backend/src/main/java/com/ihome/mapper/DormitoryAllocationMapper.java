@@ -2,10 +2,17 @@ package com.ihome.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.ihome.entity.DormitoryAllocation;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface DormitoryAllocationMapper extends BaseMapper<DormitoryAllocation> {
@@ -17,6 +24,72 @@ public interface DormitoryAllocationMapper extends BaseMapper<DormitoryAllocatio
     
     @Select("SELECT * FROM dormitory_allocations WHERE student_id = #{studentId} AND status = '在住' LIMIT 1")
     DormitoryAllocation selectByStudentId(String studentId);
-}
 
+    /**
+     * 批量查询学生的在住分配记录（调用方需保证集合非空）
+     */
+    @Select("<script>" +
+            "SELECT * FROM dormitory_allocations WHERE status = '在住' AND student_id IN " +
+            "<foreach collection='studentIds' item='studentId' open='(' separator=',' close=')'>" +
+            "#{studentId}" +
+            "</foreach>" +
+            "</script>")
+    List<DormitoryAllocation> selectActiveByStudentIds(@Param("studentIds") Collection<String> studentIds);
+
+    /**
+     * 各宿舍在住学生的性别（每个宿舍、性别一行）
+     */
+    @Select("SELECT b.dormitory_id AS dormitoryId, s.gender AS gender FROM dormitory_allocations da " +
+            "JOIN beds b ON da.bed_id = b.id " +
+            "JOIN students s ON da.student_id = s.id " +
+            "WHERE da.status = '在住' " +
+            "GROUP BY b.dormitory_id, s.gender")
+    List<Map<String, Object>> selectResidentGenders();
+
+    /**
+     * 全部在住学生及其所在宿舍（按床位所属宿舍）
+     */
+    @Select("SELECT da.student_id AS studentId, b.dormitory_id AS dormitoryId FROM dormitory_allocations da " +
+            "JOIN beds b ON da.bed_id = b.id " +
+            "WHERE da.status = '在住'")
+    List<Map<String, Object>> selectResidentDormitories();
 
+    /**
+     * 某个宿舍的在住学生学号
+     */
+    @Select("SELECT da.student_id FROM dormitory_allocations da " +
+            "JOIN beds b ON da.bed_id = b.id " +
+            "WHERE b.dormitory_id = #{dormitoryId} AND da.status = '在住'")
+    List<String> selectResidentIdsByDormitoryId(@Param("dormitoryId") String dormitoryId);
+
+    /**
+     * 多行插入分配记录，并回填自增ID（调用方需保证列表非空）
+     */
+    @Insert("<script>" +
+            "INSERT INTO dormitory_allocations (student_id, dormitory_id, bed_id, check_in_date, status, run_id) VALUES " +
+            "<foreach collection='allocations' item='a' separator=','>" +
+            "(#{a.studentId}, #{a.dormitoryId}, #{a.bedId}, #{a.checkInDate}, #{a.status}, #{a.runId})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "allocations.id", keyColumn = "id")
+    int insertBatch(@Param("allocations") List<DormitoryAllocation> allocations);
+
+    /**
+     * 某次分配批次生成的全部分配记录
+     */
+    @Select("SELECT * FROM dormitory_allocations WHERE run_id = #{runId} ORDER BY id")
+    List<DormitoryAllocation> selectByRunId(@Param("runId") Long runId);
+
+    /**
+     * 某次分配批次生成、仍在住的分配记录
+     */
+    @Select("SELECT * FROM dormitory_allocations WHERE run_id = #{runId} AND status = '在住'")
+    List<DormitoryAllocation> selectActiveByRunId(@Param("runId") Long runId);
+
+    /**
+     * 撤销某次分配批次仍在住的全部分配记录（一条 UPDATE）
+     */
+    @Update("UPDATE dormitory_allocations SET status = '已撤销', check_out_date = #{checkOutDate} " +
+            "WHERE run_id = #{runId} AND status = '在住'")
+    int revokeByRunId(@Param("runId") Long runId, @Param("checkOutDate") LocalDate checkOutDate);
+}
@@ -1,10 +1,35 @@
 package com.ihome.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ihome.common.RoomOccupancy;
 import com.ihome.entity.Dormitory;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 @Mapper
- public interface DormitoryMapper extends BaseMapper<Dormitory> {}
+public interface DormitoryMapper extends BaseMapper<Dormitory> {
 
+    /**
+     * 全部宿舍的ID和所属楼栋（只查两列）
+     */
+    @Select("SELECT id, building_id FROM dormitories")
+    List<Dormitory> selectBuildingIds();
 
+    /**
+     * 按宿舍汇总床位总数和已占用数，宿舍表左连接床位表一次分组查询
+     * @param buildingId 只汇总该楼栋；为 null 时汇总全部楼栋
+     */
+    @Select("<script>" +
+            "SELECT d.id AS dormitory_id, d.building_id, d.floor_number, d.room_number, d.room_type, " +
+            "COUNT(b.id) AS total_beds, " +
+            "COALESCE(SUM(CASE WHEN b.status = '已占用' THEN 1 ELSE 0 END), 0) AS occupied_beds " +
+            "FROM dormitories d LEFT JOIN beds b ON b.dormitory_id = d.id " +
+            "<if test='buildingId != null'>WHERE d.building_id = #{buildingId} </if>" +
+            "GROUP BY d.id, d.building_id, d.floor_number, d.room_number, d.room_type " +
+            "ORDER BY d.building_id, d.floor_number, d.room_number" +
+            "</script>")
+    List<RoomOccupancy> selectRoomOccupancy(@Param("buildingId") String buildingId);
+}
@@ -1,6 +1,7 @@
 package com.ihome.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ihome.common.StatusCount;
 import com.ihome.entity.DormitorySwitch;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
@@ -33,5 +34,10 @@ public interface DormitorySwitchMapper extends BaseMapper<DormitorySwitch> {
      */
     @Select("SELECT * FROM dormitory_switches WHERE target_student_id = #{targetStudentId} AND status = '待审核'")
     List<DormitorySwitch> selectByTargetStudentId(String targetStudentId);
-}
 
+    /**
+     * 按状态统计调换申请数
+     */
+    @Select("SELECT status, COUNT(*) AS count FROM dormitory_switches GROUP BY status")
+    List<StatusCount> countByStatus();
+}
@@ -3,11 +3,26 @@ package com.ihome.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.ihome.entity.QuestionnaireAnswer;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
+import java.util.List;
+
 @Mapper
 public interface QuestionnaireAnswerMapper extends BaseMapper<QuestionnaireAnswer> {
     
     @Select("SELECT * FROM questionnaire_answers WHERE student_id = #{studentId}")
     QuestionnaireAnswer selectByStudentId(String studentId);
-}
\ No newline at end of file
+
+    /**
+     * 批量查询一组学生的问卷答案（调用方需保证集合非空）
+     */
+    @Select("<script>" +
+            "SELECT * FROM questionnaire_answers WHERE student_id IN " +
+            "<foreach collection='studentIds' item='studentId' open='(' separator=',' close=')'>" +
+            "#{studentId}" +
+            "</foreach>" +
+            "</script>")
+    List<QuestionnaireAnswer> selectByStudentIds(@Param("studentIds") Collection<String> studentIds);
+}
@@ -1,10 +1,19 @@
 package com.ihome.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ihome.common.StatusCount;
 import com.ihome.entity.RepairOrder;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
 
-@Mapper
- public interface RepairOrderMapper extends BaseMapper<RepairOrder> {}
+import java.util.List;
 
+@Mapper
+public interface RepairOrderMapper extends BaseMapper<RepairOrder> {
 
+    /**
+     * 按状态统计维修工单数
+     */
+    @Select("SELECT status, COUNT(*) AS count FROM repair_orders GROUP BY status")
+    List<StatusCount> countByStatus();
+}
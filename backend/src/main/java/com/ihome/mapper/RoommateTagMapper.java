@@ -7,6 +7,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -16,6 +17,17 @@ public interface RoommateTagMapper extends BaseMapper<RoommateTag> {
     @Select("SELECT * FROM roommate_tags WHERE student_id = #{studentId}")
     List<RoommateTag> selectByStudentId(String studentId);
 
+    /**
+     * 批量查询一组学生的标签（调用方需保证集合非空）
+     */
+    @Select("<script>" +
+            "SELECT * FROM roommate_tags WHERE student_id IN " +
+            "<foreach collection='studentIds' item='studentId' open='(' separator=',' close=')'>" +
+            "#{studentId}" +
+            "</foreach>" +
+            "</script>")
+    List<RoommateTag> selectByStudentIds(@Param("studentIds") Collection<String> studentIds);
+
     @Delete("DELETE FROM roommate_tags WHERE student_id = #{studentId}")
     void deleteByStudentId(@Param("studentId") String studentId);
 
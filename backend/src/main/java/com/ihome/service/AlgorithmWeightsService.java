@@ -0,0 +1,164 @@
+package com.ihome.service;
+
+import com.ihome.entity.AlgorithmWeights;
+import com.ihome.mapper.AlgorithmWeightsMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 算法权重配置服务
+ * 权重在内存中保存为不可变快照，读取不访问数据库；
+ * 权重变更在同一事务中递增数据库中的版本号，提交后重新加载并原子替换快照。
+ * 版本号保存在数据库中，重启或多实例部署时同一版本号始终对应同一组权重
+ */
+@Service
+public class AlgorithmWeightsService {
+
+    /**
+     * 尚未发生过权重变更（版本表中没有记录）时的版本号
+     */
+    static final long INITIAL_VERSION = 1;
+
+    @Autowired
+    private AlgorithmWeightsMapper weightsMapper;
+
+    private final AtomicReference<WeightSnapshot> current = new AtomicReference<>();
+
+    /**
+     * 当前权重快照，首次使用时从数据库加载
+     */
+    public WeightSnapshot getSnapshot() {
+        WeightSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = current.get();
+                if (snapshot == null) {
+                    snapshot = reload();
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 从数据库重新加载权重和版本号并替换快照
+     * 加载权重前后各读取一次版本号，两次不同说明期间有权重变更提交，重新加载
+     */
+    public synchronized WeightSnapshot reload() {
+        long version = currentVersion();
+        while (true) {
+            // 默认权重
+            Map<String, Double> weights = new HashMap<>();
+            weights.put("TAG", 0.15);        // 标签匹配度
+            weights.put("MAJOR", 0.35);      // 专业匹配度
+            weights.put("BED_TYPE", 0.20);   // 床位类型匹配度
+
+            Map<String, AlgorithmWeights> rowsByType = new HashMap<>();
+            for (AlgorithmWeights config : weightsMapper.selectList(null)) {
+                rowsByType.put(config.getWeightType(), config);
+                if (Boolean.TRUE.equals(config.getEnabled())) {
+                    weights.put(config.getWeightType(), config.getWeightValue());
+                }
+            }
+
+            long after = currentVersion();
+            if (after == version) {
+                WeightSnapshot snapshot = new WeightSnapshot(version, weights, rowsByType);
+                current.set(snapshot);
+                return snapshot;
+            }
+            version = after;
+        }
+    }
+
+    private long currentVersion() {
+        Long version = weightsMapper.selectVersion();
+        return version != null ? version : INITIAL_VERSION;
+    }
+
+    /**
+     * 更新单个权重，不存在时新建；事务提交后生效
+     */
+    @Transactional
+    public void updateWeight(String weightType, Double weightValue) {
+        AlgorithmWeights weight = getSnapshot().getRow(weightType);
+        if (weight != null) {
+            AlgorithmWeights updated = new AlgorithmWeights();
+            updated.setId(weight.getId());
+            updated.setWeightValue(weightValue);
+            updated.setLastUpdated(LocalDateTime.now());
+            weightsMapper.updateById(updated);
+        } else {
+            // 创建新的权重配置
+            weight = new AlgorithmWeights();
+            weight.setWeightType(weightType);
+            weight.setWeightValue(weightValue);
+            weight.setEnabled(true);
+            weight.setDescription("动态调整的权重配置");
+            weight.setCreatedAt(LocalDateTime.now());
+            weight.setLastUpdated(LocalDateTime.now());
+            weightsMapper.insert(weight);
+        }
+        commitNewVersion();
+    }
+
+    /**
+     * 批量更新权重（管理员调整），整体在一个事务中提交后生效
+     */
+    @Transactional
+    public void updateWeights(Map<String, Double> weights) {
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() < 0.0 || entry.getValue() > 1.0) {
+                throw new IllegalArgumentException("权重值必须在0到1之间: " + entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            updateWeight(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 在当前事务中递增版本号，事务提交后才替换快照，回滚的修改和版本号都不会被读到；没有事务时立即替换
+     * 同一事务内的多次修改只生成一个新版本
+     */
+    private void commitNewVersion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            incrementVersion();
+            reload();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        incrementVersion();
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reload();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(AlgorithmWeightsService.this);
+            }
+        });
+    }
+
+    /**
+     * 版本表中还没有记录时插入第一条，版本号从初始版本的下一个开始
+     */
+    private void incrementVersion() {
+        if (weightsMapper.incrementVersion() == 0) {
+            weightsMapper.insertVersion(INITIAL_VERSION + 1);
+        }
+    }
+}
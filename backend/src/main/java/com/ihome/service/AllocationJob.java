@@ -0,0 +1,225 @@
+package com.ihome.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * 异步智能分配任务
+ * 记录任务状态、每个专业/性别分组的进度和最终结果，同时作为分配过程的回调
+ */
+public class AllocationJob implements AllocationMonitor {
+
+    public static final String STATUS_PENDING = "排队中";
+    public static final String STATUS_RUNNING = "运行中";
+    public static final String STATUS_COMPLETED = "已完成";
+    public static final String STATUS_FAILED = "已失败";
+    public static final String STATUS_CANCELLED = "已取消";
+
+    private final String id;
+    private final List<String> studentIds;
+    private final AllocationOptions options;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile String status = STATUS_PENDING;
+    private volatile boolean cancelRequested;
+    private boolean persisting;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile Map<String, Object> result;
+    private volatile String errorMessage;
+    private volatile Future<?> future;
+
+    /**
+     * 分组标识 -> [人数, 已安排, 剩余, 是否完成]
+     */
+    private final Map<String, int[]> partitions = new LinkedHashMap<>();
+    private int persisted;
+    private int totalToPersist;
+
+    public AllocationJob(String id, List<String> studentIds, AllocationOptions options) {
+        this.id = id;
+        this.studentIds = studentIds;
+        this.options = options;
+    }
+
+    @Override
+    public synchronized void onPartitionsCreated(Map<String, Integer> partitionSizes) {
+        partitions.clear();
+        partitionSizes.forEach((key, size) -> partitions.put(key, new int[]{size, 0, 0, 0}));
+    }
+
+    @Override
+    public synchronized void onPartitionSolved(String partitionKey, int placed, int leftovers) {
+        int[] progress = partitions.computeIfAbsent(partitionKey, k -> new int[4]);
+        progress[1] = placed;
+        progress[2] = leftovers;
+        progress[3] = 1;
+    }
+
+    @Override
+    public synchronized void onPersisted(int persisted, int total) {
+        this.persisted = persisted;
+        this.totalToPersist = total;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    /**
+     * 进入写库阶段，与 requestCancel 互斥：先请求取消则不再写库，先进入写库则拒绝之后的取消
+     */
+    @Override
+    public synchronized boolean beginPersisting() {
+        if (cancelRequested) {
+            return false;
+        }
+        persisting = true;
+        return true;
+    }
+
+    /**
+     * 开始执行：排队期间已取消的任务直接结束
+     * @return 可以开始执行时返回 true
+     */
+    synchronized boolean start() {
+        if (isFinished()) {
+            return false;
+        }
+        if (cancelRequested) {
+            finish(STATUS_CANCELLED);
+            return false;
+        }
+        startedAt = LocalDateTime.now();
+        status = STATUS_RUNNING;
+        return true;
+    }
+
+    synchronized void complete(Map<String, Object> result) {
+        this.result = result;
+        finish(STATUS_COMPLETED);
+    }
+
+    synchronized void fail(String errorMessage) {
+        this.errorMessage = errorMessage;
+        finish(STATUS_FAILED);
+    }
+
+    synchronized void finish(String status) {
+        finishedAt = LocalDateTime.now();
+        this.status = status;
+    }
+
+    /**
+     * 请求取消：排队中的任务直接取消；运行中的任务只设置取消标记，由分配在下一个检查点停止，不中断线程；
+     * 已开始写库或已提交的任务不能再取消
+     * @return 取消结果（success、message）
+     */
+    synchronized Map<String, Object> requestCancel() {
+        Map<String, Object> result = new HashMap<>();
+        if (isFinished()) {
+            result.put("success", false);
+            result.put("message", "分配任务已结束");
+            return result;
+        }
+        if (persisting) {
+            result.put("success", false);
+            result.put("message", "分配结果正在写入或已提交，无法取消");
+            return result;
+        }
+        cancelRequested = true;
+        result.put("success", true);
+        if (STATUS_PENDING.equals(status)) {
+            // 任务尚未开始执行，从执行队列中移除
+            Future<?> queued = future;
+            if (queued != null) {
+                queued.cancel(false);
+            }
+            finish(STATUS_CANCELLED);
+            result.put("message", "分配任务已取消");
+        } else {
+            result.put("message", "已请求取消分配任务");
+        }
+        return result;
+    }
+
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status) || STATUS_CANCELLED.equals(status);
+    }
+
+    /**
+     * 任务状态快照，包含各分组进度，完成后附带分配结果
+     */
+    public synchronized Map<String, Object> toStatusMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("jobId", id);
+        map.put("status", status);
+        map.put("studentCount", studentIds.size());
+        map.put("solver", options.getSolver());
+        map.put("parallel", options.isParallel());
+        map.put("createdAt", createdAt);
+        map.put("startedAt", startedAt);
+        map.put("finishedAt", finishedAt);
+
+        int solvedPartitions = 0;
+        List<Map<String, Object>> partitionProgress = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : partitions.entrySet()) {
+            int[] progress = entry.getValue();
+            Map<String, Object> item = new HashMap<>();
+            item.put("partition", entry.getKey());
+            item.put("students", progress[0]);
+            item.put("placed", progress[1]);
+            item.put("leftovers", progress[2]);
+            item.put("solved", progress[3] == 1);
+            partitionProgress.add(item);
+            solvedPartitions += progress[3];
+        }
+        map.put("partitions", partitionProgress);
+        map.put("solvedPartitions", solvedPartitions);
+        map.put("totalPartitions", partitions.size());
+        map.put("persisted", persisted);
+        map.put("totalToPersist", totalToPersist);
+
+        if (result != null) {
+            map.put("result", result);
+        }
+        if (errorMessage != null) {
+            map.put("error", errorMessage);
+        }
+        return map;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<String> getStudentIds() {
+        return studentIds;
+    }
+
+    public AllocationOptions getOptions() {
+        return options;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Map<String, Object> getResult() {
+        return result;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+}
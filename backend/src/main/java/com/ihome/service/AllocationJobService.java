@@ -0,0 +1,114 @@
+package com.ihome.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * 异步智能分配任务服务
+ * 提交后立即返回任务ID，分配在虚拟线程中执行；任务结果在保留期内可查询
+ */
+@Service
+public class AllocationJobService {
+
+    @Autowired
+    private AllocationService allocationService;
+
+    /**
+     * 已结束任务的保留时间（分钟）
+     */
+    @Value("${allocation.jobs.retention-minutes:60}")
+    private long retentionMinutes = 60;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, AllocationJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 提交异步分配任务
+     * @return 新建的任务
+     */
+    public AllocationJob submit(List<String> studentIds, AllocationOptions options) {
+        evictExpiredJobs();
+
+        AllocationJob job = new AllocationJob(UUID.randomUUID().toString(), new ArrayList<>(studentIds), options);
+        options.setMonitor(job);
+        jobs.put(job.getId(), job);
+        job.setFuture(executor.submit(() -> run(job)));
+        return job;
+    }
+
+    private void run(AllocationJob job) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            job.complete(allocationService.intelligentAllocation(job.getStudentIds(), job.getOptions()));
+        } catch (Exception e) {
+            // 取消后在检查点抛出的 CancellationException 按取消处理
+            if (job.isCancelled()) {
+                job.finish(AllocationJob.STATUS_CANCELLED);
+            } else {
+                job.fail(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 查询任务
+     * @return 任务不存在或已过期时返回 null
+     */
+    public AllocationJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 按创建时间倒序列出保留期内的任务状态
+     */
+    public List<Map<String, Object>> listJobs() {
+        evictExpiredJobs();
+        return jobs.values().stream()
+                .map(AllocationJob::toStatusMap)
+                .sorted(Comparator.comparing((Map<String, Object> job) -> (LocalDateTime) job.get("createdAt")).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 取消尚未开始写库的任务
+     * @return 取消结果（success、message）；任务不存在、已结束或已开始写库时 success 为 false
+     */
+    public Map<String, Object> cancel(String jobId) {
+        AllocationJob job = jobs.get(jobId);
+        if (job == null) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", "分配任务不存在或已过期");
+            return result;
+        }
+        return job.requestCancel();
+    }
+
+    private void evictExpiredJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() != null
+                && job.getFinishedAt().isBefore(threshold));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,50 @@
+package com.ihome.service;
+
+import java.util.Map;
+
+/**
+ * 智能分配运行过程的回调：汇报进度，并允许调用方取消
+ * 分组回调可能在并行分配线程中调用，实现需保证线程安全
+ */
+public interface AllocationMonitor {
+
+    /**
+     * 不做任何处理的默认实现
+     */
+    AllocationMonitor NONE = new AllocationMonitor() {
+    };
+
+    /**
+     * 学生已按专业/性别划分完成
+     * @param partitionSizes 分组标识 -> 分组人数
+     */
+    default void onPartitionsCreated(Map<String, Integer> partitionSizes) {
+    }
+
+    /**
+     * 一个分组计算完成
+     */
+    default void onPartitionSolved(String partitionKey, int placed, int leftovers) {
+    }
+
+    /**
+     * 计算完成、即将写库时调用；此后不再接受取消，避免在数据库调用或事务提交途中打断
+     * @return 已请求取消时返回 false，分配不再写库
+     */
+    default boolean beginPersisting() {
+        return !isCancelled();
+    }
+
+    /**
+     * 一批分配记录已写入
+     */
+    default void onPersisted(int persisted, int total) {
+    }
+
+    /**
+     * 是否已请求取消；取消后分配在下一个检查点抛出 CancellationException，开始写库后不再检查
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
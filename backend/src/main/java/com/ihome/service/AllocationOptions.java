@@ -0,0 +1,118 @@
+package com.ihome.service;
+
+import java.util.Map;
+
+/**
+ * 智能分配运行参数
+ */
+public class AllocationOptions {
+
+    /**
+     * 室友分组算法：greedy（顺序填充，默认）、clustering（兼容度聚类）
+     */
+    private String solver = GreedyRoomGroupingSolver.NAME;
+
+    /**
+     * 分组算法的时间预算（毫秒），为空时使用 allocation.solver.time-budget-ms 配置
+     */
+    private Long timeBudgetMs;
+
+    /**
+     * 是否并行计算各专业/性别分组，线程数由 allocation.parallelism 配置
+     */
+    private boolean parallel;
+
+    /**
+     * 分组完成后是否执行室友交换优化（按楼栋+性别并行）
+     */
+    private boolean refine;
+
+    /**
+     * 交换优化的时间预算（毫秒），为空时使用 allocation.refinement.time-budget-ms 配置
+     */
+    private Long refineTimeBudgetMs;
+
+    /**
+     * 权重覆盖（TAG、MAJOR、BED_TYPE 等），为空时使用数据库中的权重配置
+     */
+    private Map<String, Double> weights;
+
+    /**
+     * 评分随机因子的种子，为空时每次运行随机生成；
+     * 相同种子、相同数据的两次运行得到相同的分配结果
+     */
+    private Long seed;
+
+    /**
+     * 进度回调与取消检查，异步分配任务使用
+     */
+    private AllocationMonitor monitor = AllocationMonitor.NONE;
+
+    public static AllocationOptions defaults() {
+        return new AllocationOptions();
+    }
+
+    public String getSolver() {
+        return solver;
+    }
+
+    public void setSolver(String solver) {
+        this.solver = solver;
+    }
+
+    public Long getTimeBudgetMs() {
+        return timeBudgetMs;
+    }
+
+    public void setTimeBudgetMs(Long timeBudgetMs) {
+        this.timeBudgetMs = timeBudgetMs;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isRefine() {
+        return refine;
+    }
+
+    public void setRefine(boolean refine) {
+        this.refine = refine;
+    }
+
+    public Long getRefineTimeBudgetMs() {
+        return refineTimeBudgetMs;
+    }
+
+    public void setRefineTimeBudgetMs(Long refineTimeBudgetMs) {
+        this.refineTimeBudgetMs = refineTimeBudgetMs;
+    }
+
+    public Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(Map<String, Double> weights) {
+        this.weights = weights;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public AllocationMonitor getMonitor() {
+        return monitor;
+    }
+
+    public void setMonitor(AllocationMonitor monitor) {
+        this.monitor = monitor != null ? monitor : AllocationMonitor.NONE;
+    }
+}
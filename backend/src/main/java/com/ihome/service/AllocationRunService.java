@@ -0,0 +1,188 @@
+package com.ihome.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ihome.entity.AllocationRun;
+import com.ihome.entity.DormitoryAllocation;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.mapper.AllocationRunMapper;
+import com.ihome.mapper.BedMapper;
+import com.ihome.mapper.DormitoryAllocationMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 分配批次服务
+ * 记录每次智能分配的参数，支持按批次整体回滚和两个批次之间的差异对比
+ */
+@Service
+public class AllocationRunService {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Autowired
+    private AllocationRunMapper runMapper;
+
+    @Autowired
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Autowired
+    private BedMapper bedMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 在当前分配事务中登记一个新批次
+     * @param weights 本次实际使用的权重（含临时覆盖）
+     * @return 已插入并回填ID的批次
+     */
+    public AllocationRun createRun(String solver, long seed, long weightsVersion, Map<String, Double> weights,
+                                   int totalAllocated) {
+        AllocationRun run = new AllocationRun();
+        run.setSolver(solver);
+        run.setSeed(seed);
+        run.setWeightsVersion(weightsVersion);
+        run.setWeights(toJson(new TreeMap<>(weights)));
+        run.setStatus("已完成");
+        run.setTotalAllocated(totalAllocated);
+        run.setCreatedAt(LocalDateTime.now());
+        runMapper.insert(run);
+        return run;
+    }
+
+    /**
+     * 最近的分配批次
+     */
+    public List<AllocationRun> listRuns(int limit) {
+        return runMapper.selectRecent(Math.max(1, limit));
+    }
+
+    public AllocationRun getRun(Long runId) {
+        return runMapper.selectById(runId);
+    }
+
+    /**
+     * 整体回滚一个分配批次
+     * 固定几条语句完成：查询在住记录（用于通知）、释放床位、撤销分配记录、标记批次，与批次人数无关。
+     * 批次生成后已退宿的学生不受影响；回滚提交后发布床位释放事件，候补学生可以接着分配
+     * @return 回滚结果
+     */
+    @Transactional
+    public Map<String, Object> rollback(Long runId) {
+        AllocationRun run = runMapper.selectById(runId);
+        if (run == null) {
+            throw new IllegalArgumentException("分配批次不存在: " + runId);
+        }
+        if (!"已完成".equals(run.getStatus())) {
+            throw new IllegalStateException("分配批次已回滚: " + runId);
+        }
+
+        List<DormitoryAllocation> active = allocationMapper.selectActiveByRunId(runId);
+        int releasedBeds = bedMapper.releaseByRunId(runId);
+        int revoked = allocationMapper.revokeByRunId(runId, LocalDate.now());
+        if (runMapper.markRolledBack(runId, revoked, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException("分配批次正在被其他操作回滚: " + runId);
+        }
+
+        if (!active.isEmpty()) {
+            eventPublisher.publishEvent(BedOccupancyChangedEvent.released(active.stream()
+                    .map(allocation -> new BedOccupancyChangedEvent.BedChange(allocation.getBedId(),
+                            allocation.getDormitoryId(), allocation.getStudentId()))
+                    .collect(Collectors.toList())));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("runId", runId);
+        result.put("revokedAllocations", revoked);
+        result.put("releasedBeds", releasedBeds);
+        result.put("totalAllocated", run.getTotalAllocated());
+        return result;
+    }
+
+    /**
+     * 对比两个分配批次：只在目标批次中出现的学生、只在基准批次中出现的学生，以及床位发生变化的学生
+     * @param fromRunId 基准批次
+     * @param toRunId 目标批次
+     * @return 差异结果
+     */
+    public Map<String, Object> diff(Long fromRunId, Long toRunId) {
+        AllocationRun from = runMapper.selectById(fromRunId);
+        AllocationRun to = runMapper.selectById(toRunId);
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("分配批次不存在: " + (from == null ? fromRunId : toRunId));
+        }
+
+        Map<String, DormitoryAllocation> before = byStudent(allocationMapper.selectByRunId(fromRunId));
+        Map<String, DormitoryAllocation> after = byStudent(allocationMapper.selectByRunId(toRunId));
+
+        List<Map<String, Object>> added = new ArrayList<>();
+        List<Map<String, Object>> moved = new ArrayList<>();
+        int unchanged = 0;
+        for (Map.Entry<String, DormitoryAllocation> entry : after.entrySet()) {
+            DormitoryAllocation previous = before.get(entry.getKey());
+            DormitoryAllocation current = entry.getValue();
+            if (previous == null) {
+                added.add(describe(current));
+            } else if (Objects.equals(previous.getBedId(), current.getBedId())) {
+                unchanged++;
+            } else {
+                Map<String, Object> change = new HashMap<>();
+                change.put("studentId", current.getStudentId());
+                change.put("fromDormitoryId", previous.getDormitoryId());
+                change.put("fromBedId", previous.getBedId());
+                change.put("toDormitoryId", current.getDormitoryId());
+                change.put("toBedId", current.getBedId());
+                moved.add(change);
+            }
+        }
+        List<Map<String, Object>> removed = before.entrySet().stream()
+                .filter(entry -> !after.containsKey(entry.getKey()))
+                .map(entry -> describe(entry.getValue()))
+                .collect(Collectors.toList());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("fromRun", from);
+        result.put("toRun", to);
+        result.put("added", added);
+        result.put("removed", removed);
+        result.put("moved", moved);
+        result.put("unchangedCount", unchanged);
+        return result;
+    }
+
+    /**
+     * 按学生索引批次的分配记录（按ID顺序，同一学生保留最后一条）
+     */
+    private Map<String, DormitoryAllocation> byStudent(List<DormitoryAllocation> allocations) {
+        Map<String, DormitoryAllocation> byStudent = new TreeMap<>();
+        for (DormitoryAllocation allocation : allocations) {
+            byStudent.put(allocation.getStudentId(), allocation);
+        }
+        return byStudent;
+    }
+
+    private Map<String, Object> describe(DormitoryAllocation allocation) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("studentId", allocation.getStudentId());
+        row.put("dormitoryId", allocation.getDormitoryId());
+        row.put("bedId", allocation.getBedId());
+        row.put("status", allocation.getStatus());
+        return row;
+    }
+
+    private static String toJson(Map<String, Double> weights) {
+        try {
+            return JSON.writeValueAsString(weights);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("权重序列化失败", e);
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package com.ihome.service;
 
 import com.ihome.entity.*;
+import com.ihome.event.BedOccupancyChangedEvent;
 import com.ihome.mapper.*;
+import com.ihome.service.constraint.AllocationConstraint;
+import com.ihome.service.constraint.ConstraintEvaluator;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 
 /**
@@ -39,143 +50,520 @@ public class AllocationService {
     private AllocationFeedbackMapper feedbackMapper;
     
     @Autowired
-    private AlgorithmWeightsMapper weightsMapper;
+    private AlgorithmWeightsService weightsService;
+    
+    @Autowired
+    private BuildingMapper buildingMapper;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private AllocationRunService runService;
+
+    @Autowired
+    private RoommateCompatibilityIndex compatibilityIndex;
 
     /**
-     * 智能分配算法
+     * 分配约束插件，默认使用内置约束
+     */
+    @Autowired(required = false)
+    private List<AllocationConstraint> constraints = AllocationConstraint.defaults();
+
+    /**
+     * 分组算法默认时间预算（毫秒）
+     */
+    @Value("${allocation.solver.time-budget-ms:3000}")
+    private long defaultTimeBudgetMs = 3000;
+
+    /**
+     * 室友交换优化的默认时间预算（毫秒）
+     */
+    @Value("${allocation.refinement.time-budget-ms:1000}")
+    private long defaultRefineTimeBudgetMs = 1000;
+
+    /**
+     * 并行分配线程数，0 表示使用 CPU 核数
+     */
+    @Value("${allocation.parallelism:0}")
+    private int parallelism;
+
+    private volatile ForkJoinPool allocationPool;
+
+    /**
+     * 分配结果写库的每批行数
+     */
+    @Value("${allocation.batch-size:500}")
+    private int batchSize = 500;
+
+    /**
+     * 可选的室友分组算法，按名称索引
+     */
+    private final Map<String, RoomGroupingSolver> groupingSolvers = Map.of(
+            GreedyRoomGroupingSolver.NAME, new GreedyRoomGroupingSolver(),
+            ClusteringRoomGroupingSolver.NAME, new ClusteringRoomGroupingSolver()
+    );
+
+    private final RoommateSwapRefiner swapRefiner = new RoommateSwapRefiner();
+
+    /**
+     * 智能分配算法（使用默认参数）
      * @param studentIds 待分配的学生ID列表
      * @return 分配结果
      */
     @Transactional
     public Map<String, Object> intelligentAllocation(List<String> studentIds) {
-        Map<String, Object> result = new HashMap<>();
-        List<Map<String, Object>> allocations = new ArrayList<>();
-        List<String> unallocatedStudents = new ArrayList<>();
+        return intelligentAllocation(studentIds, AllocationOptions.defaults());
+    }
+
+    /**
+     * 智能分配算法
+     * @param studentIds 待分配的学生ID列表
+     * @param options 分配参数（分组算法、时间预算、是否并行）
+     * @return 分配结果
+     */
+    @Transactional
+    public Map<String, Object> intelligentAllocation(List<String> studentIds, AllocationOptions options) {
+        AllocationPlan plan = planAllocation(studentIds, options);
+        if (!options.getMonitor().beginPersisting()) {
+            throw new CancellationException("分配任务已取消");
+        }
+
+        // 登记分配批次，并在当前事务中分批写入带批次号的分配记录
+        AllocationRun run = runService.createRun(plan.solver.getName(), plan.seed, plan.weightsVersion,
+                plan.weights, plan.placements.size());
+        List<Map<String, Object>> allocations = persistPlacements(plan.placements, run.getId(), options.getMonitor());
+        if (!plan.placements.isEmpty()) {
+            eventPublisher.publishEvent(BedOccupancyChangedEvent.assigned(plan.placements.stream()
+                    .map(placement -> new BedOccupancyChangedEvent.BedChange(placement.getBed().getId(),
+                            placement.getDormitoryId(), placement.getStudent().getStudentId()))
+                    .collect(Collectors.toList())));
+        }
+
+        Map<String, Object> result = buildAllocationResult(plan, allocations);
+        result.put("runId", run.getId());
+        return result;
+    }
+
+    /**
+     * 模拟分配（试运行）
+     * 基于当前数据快照完整执行分配流程，但不写入任何分配记录、不修改床位状态，
+     * 可通过 options 中的权重覆盖反复试算
+     * @param studentIds 待分配的学生ID列表
+     * @param options 分配参数（分组算法、时间预算、是否并行、权重覆盖）
+     * @return 预计分配结果、各楼栋入住率和分数分布
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> simulateAllocation(List<String> studentIds, AllocationOptions options) {
+        AllocationPlan plan = planAllocation(studentIds, options);
+
+        List<Map<String, Object>> allocations = new ArrayList<>(plan.placements.size());
+        for (BedPlacement placement : plan.placements) {
+            allocations.add(describePlacement(placement, null));
+        }
+
+        Map<String, Object> result = buildAllocationResult(plan, allocations);
+        result.put("simulated", true);
+        result.put("occupancyByBuilding", projectOccupancyByBuilding(plan));
+        result.put("scoreDistribution", summarizeScores(plan.scoresByStudent.values()));
+        return result;
+    }
+
+    /**
+     * 按批量大小分批查询学生，查询次数只与批数有关；结果按传入的学生ID顺序排列，不存在的学生跳过
+     */
+    private List<Student> loadStudents(List<String> studentIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(studentIds));
+        Map<String, Student> studentsById = new HashMap<>(ids.size() * 2);
+        int chunkSize = Math.max(1, batchSize);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<String> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            for (Student student : studentMapper.selectBatchIds(chunk)) {
+                studentsById.put(student.getId(), student);
+            }
+        }
+        List<Student> students = new ArrayList<>(studentsById.size());
+        for (String id : ids) {
+            Student student = studentsById.get(id);
+            if (student != null) {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+
+    /**
+     * 计算分配方案（只读数据库，不写入任何数据）
+     */
+    private AllocationPlan planAllocation(List<String> studentIds, AllocationOptions options) {
+        RoomGroupingSolver solver = groupingSolvers.get(options.getSolver());
+        if (solver == null) {
+            throw new IllegalArgumentException("未知的分组算法: " + options.getSolver());
+        }
+        long timeBudgetMs = options.getTimeBudgetMs() != null ? options.getTimeBudgetMs() : defaultTimeBudgetMs;
+        long deadlineNanos = System.nanoTime() + timeBudgetMs * 1_000_000L;
+        AllocationMonitor monitor = options.getMonitor();
+        long seed = options.getSeed() != null ? options.getSeed() : newSeed();
 
         // 1. 获取所有待分配学生信息
-        List<Student> students = studentIds.stream()
-                .map(studentMapper::selectById)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        List<Student> students = loadStudents(studentIds);
 
-        // 2. 获取所有可用床位
-        List<Bed> availableBeds = bedMapper.selectList(null).stream()
+        // 2. 获取所有床位，筛选出可用床位
+        List<Bed> allBeds = bedMapper.selectList(null);
+        List<Bed> availableBeds = allBeds.stream()
                 .filter(bed -> "可用".equals(bed.getStatus()))
                 .collect(Collectors.toList());
 
-        // 3. 按专业和性别分组学生
-        Map<String, Map<String, List<Student>>> studentsByMajorAndGender = students.stream()
+        // 3. 评分阶段：一次性加载本批学生的标签、问卷和权重配置
+        ScoringContext scoring = loadScoringContext(students);
+        if (options.getWeights() != null) {
+            scoring.weights.putAll(options.getWeights());
+        }
+        Map<String, RoommateProfile> profiles = buildProfiles(students, scoring);
+
+        // 4. 加载宿舍入住索引，按宿舍划分床位库存
+        List<Building> buildings = buildingMapper.selectList(null);
+        BedInventory inventory = new BedInventory(loadOccupancyIndex(availableBeds, buildings));
+        ConstraintEvaluator evaluator = new ConstraintEvaluator(constraints, availableBeds, inventory.getIndex());
+
+        // 5. 按专业和硬约束需求类（性别、无障碍等）分组学生，
+        //    各需求类允许的床位在预留之前一次性剪枝，每个分组只预留自己允许入住的床位
+        Map<String, Map<String, List<Student>>> studentsByMajorAndRequirement = students.stream()
                 .collect(Collectors.groupingBy(Student::getMajor,
-                        Collectors.groupingBy(Student::getGender)));
+                        Collectors.groupingBy(student -> evaluator.requirementOf(profiles.get(student.getId())))));
+        Map<String, Integer> permittedBedCounts = evaluator.prepare(studentsByMajorAndRequirement.values().stream()
+                .flatMap(byRequirement -> byRequirement.keySet().stream())
+                .collect(Collectors.toSet()));
 
-        // 4. 为每个专业和性别的学生进行分配
-        for (Map.Entry<String, Map<String, List<Student>>> majorEntry : studentsByMajorAndGender.entrySet()) {
-            String major = majorEntry.getKey();
-            Map<String, List<Student>> genderGroups = majorEntry.getValue();
-            
-            for (Map.Entry<String, List<Student>> genderEntry : genderGroups.entrySet()) {
-                String gender = genderEntry.getKey();
-                List<Student> genderStudents = genderEntry.getValue();
-                
-                // 按问卷匹配度排序
-                List<Student> sortedStudents = sortStudentsByCompatibility(genderStudents);
-                
-                // 分配床位（确保同性别分配）
-                List<Map<String, Object>> genderAllocations = allocateStudentsToBedsByGender(sortedStudents, availableBeds, gender);
-                allocations.addAll(genderAllocations);
+        List<AllocationPartition> partitions = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<Student>>> majorEntry : studentsByMajorAndRequirement.entrySet()) {
+            for (Map.Entry<String, List<Student>> requirementEntry : majorEntry.getValue().entrySet()) {
+                partitions.add(new AllocationPartition(majorEntry.getKey(),
+                        requirementEntry.getValue().get(0).getGender(), requirementEntry.getKey(),
+                        requirementEntry.getValue()));
+            }
+        }
+        // 允许床位少的需求类先预留，避免下铺、低楼层等稀缺床位被普通分组占用
+        partitions.sort(Comparator.comparingInt(partition -> permittedBedCounts.get(partition.requirement)));
+        for (AllocationPartition partition : partitions) {
+            partition.rooms = inventory.reserveRooms(partition.getKey(), partition.gender, partition.students.size(),
+                    bed -> evaluator.permits(partition.requirement, bed));
+        }
+        Map<String, Integer> partitionSizes = new LinkedHashMap<>();
+        for (AllocationPartition partition : partitions) {
+            partitionSizes.put(partition.getKey(), partition.students.size());
+        }
+        monitor.onPartitionsCreated(partitionSizes);
+
+        // 6. 各分组在自己的宿舍内计算床位安排，并行模式下由分配线程池执行
+        if (options.isParallel() && partitions.size() > 1) {
+            solvePartitionsInParallel(partitions, scoring, profiles, solver, seed, deadlineNanos, monitor);
+        } else {
+            for (AllocationPartition partition : partitions) {
+                solvePartition(partition, scoring, profiles, solver, seed, deadlineNanos, monitor);
+            }
+        }
+        checkCancelled(monitor);
+
+        // 7. 合并各分组结果，预留宿舍不足的学生再使用各分组用剩的床位
+        AllocationPlan plan = new AllocationPlan(solver, seed, scoring.weightsVersion, scoring.weights,
+                students, allBeds, buildings, inventory.getIndex());
+        Map<String, List<RoommateProfile>> leftoversByRequirement = new LinkedHashMap<>();
+        for (AllocationPartition partition : partitions) {
+            inventory.markTaken(partition.placements, partition.gender);
+            plan.placements.addAll(partition.placements);
+            for (int i = 0; i < partition.students.size(); i++) {
+                plan.scoresByStudent.put(partition.students.get(i).getId(), partition.scores[i]);
+            }
+            if (!partition.leftovers.isEmpty()) {
+                leftoversByRequirement.computeIfAbsent(partition.requirement, k -> new ArrayList<>())
+                        .addAll(partition.leftovers);
+            }
+        }
+        for (Map.Entry<String, List<RoommateProfile>> entry : leftoversByRequirement.entrySet()) {
+            String gender = entry.getValue().get(0).getStudent().getGender();
+            List<BedPlacement> spillover = solver.solve(entry.getValue(),
+                    inventory.remainingRooms(gender, bed -> evaluator.permits(entry.getKey(), bed)), deadlineNanos);
+            inventory.markTaken(spillover, gender);
+            plan.placements.addAll(spillover);
+        }
+
+        // 8. 可选：在同楼栋同性别的宿舍之间交换学生，提高室友兼容度
+        if (options.isRefine() && !plan.placements.isEmpty()) {
+            checkCancelled(monitor);
+            long refineBudgetMs = options.getRefineTimeBudgetMs() != null
+                    ? options.getRefineTimeBudgetMs() : defaultRefineTimeBudgetMs;
+            refinePlacements(plan, evaluator, seed, System.nanoTime() + refineBudgetMs * 1_000_000L);
+            checkCancelled(monitor);
+        }
+        return plan;
+    }
+
+    /**
+     * 按楼栋+性别划分床位安排，在分配线程池中并行执行室友交换优化
+     * 交换不跨楼栋、不跨性别，宿舍性别约束保持不变；
+     * 目标函数包含软约束加分，交换后双方床位仍须满足各自的硬约束
+     */
+    private void refinePlacements(AllocationPlan plan, ConstraintEvaluator evaluator, long seed, long deadlineNanos) {
+        Map<String, List<BedPlacement>> groups = new TreeMap<>();
+        for (BedPlacement placement : plan.placements) {
+            String buildingId = plan.index.getBuildingId(placement.getDormitoryId());
+            String key = (buildingId != null ? buildingId : "-") + "/" + placement.getStudent().getStudent().getGender();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(placement);
+        }
+
+        List<String> keys = new ArrayList<>(groups.keySet());
+        RoommateSwapRefiner.Result[] results = new RoommateSwapRefiner.Result[keys.size()];
+        if (keys.size() > 1) {
+            ForkJoinPool pool = getAllocationPool();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                int group = i;
+                tasks.add(pool.submit(() -> results[group] = swapRefiner.refine(groups.get(keys.get(group)),
+                        evaluator::objective, evaluator::permits,
+                        partitionRandom(seed, "refine/" + keys.get(group)), deadlineNanos)));
             }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } else {
+            results[0] = swapRefiner.refine(groups.get(keys.get(0)), evaluator::objective, evaluator::permits,
+                    partitionRandom(seed, "refine/" + keys.get(0)), deadlineNanos);
+        }
+
+        plan.placements.clear();
+        int swaps = 0;
+        long pairs = 0;
+        double scoreBefore = 0.0;
+        double scoreAfter = 0.0;
+        for (RoommateSwapRefiner.Result result : results) {
+            plan.placements.addAll(result.getPlacements());
+            swaps += result.getSwaps();
+            pairs += result.getPairs();
+            scoreBefore += result.getScoreBefore();
+            scoreAfter += result.getScoreAfter();
         }
 
-        // 5. 记录未分配的学生
+        Map<String, Object> refinement = new HashMap<>();
+        refinement.put("groups", keys.size());
+        refinement.put("swaps", swaps);
+        refinement.put("averageCompatibilityBefore", pairs > 0 ? scoreBefore / pairs : 0.0);
+        refinement.put("averageCompatibilityAfter", pairs > 0 ? scoreAfter / pairs : 0.0);
+        plan.refinement = refinement;
+    }
+
+    /**
+     * 组装分配结果，并记录未分配的学生
+     */
+    private Map<String, Object> buildAllocationResult(AllocationPlan plan, List<Map<String, Object>> allocations) {
         Set<String> allocatedStudentIds = allocations.stream()
                 .map(allocation -> (String) allocation.get("studentId"))
                 .collect(Collectors.toSet());
         
-        unallocatedStudents = students.stream()
+        List<String> unallocatedStudents = plan.students.stream()
                 .map(Student::getId)
                 .filter(id -> !allocatedStudentIds.contains(id))
                 .collect(Collectors.toList());
 
+        Map<String, Object> result = new HashMap<>();
         result.put("allocations", allocations);
         result.put("unallocatedStudents", unallocatedStudents);
         result.put("totalAllocated", allocations.size());
         result.put("totalUnallocated", unallocatedStudents.size());
+        result.put("solver", plan.solver.getName());
+        result.put("seed", plan.seed);
+        result.put("weightsVersion", plan.weightsVersion);
+        if (plan.refinement != null) {
+            result.put("refinement", plan.refinement);
+        }
 
         return result;
     }
 
+    /**
+     * 按楼栋统计当前入住情况和按方案分配后的预计入住情况
+     */
+    private List<Map<String, Object>> projectOccupancyByBuilding(AllocationPlan plan) {
+        Map<String, String> buildingNames = plan.buildings.stream()
+                .collect(Collectors.toMap(Building::getId,
+                        building -> Objects.toString(building.getBuildingName(), building.getId()), (a, b) -> a));
+
+        Map<String, int[]> counts = new TreeMap<>(); // [总床位, 当前已占用, 本次新增]
+        for (Bed bed : plan.allBeds) {
+            String buildingId = plan.index.getBuildingId(bed.getDormitoryId());
+            if (buildingId == null) {
+                continue;
+            }
+            int[] count = counts.computeIfAbsent(buildingId, k -> new int[3]);
+            count[0]++;
+            if ("已占用".equals(bed.getStatus())) {
+                count[1]++;
+            }
+        }
+        for (BedPlacement placement : plan.placements) {
+            String buildingId = plan.index.getBuildingId(placement.getDormitoryId());
+            if (buildingId != null) {
+                counts.computeIfAbsent(buildingId, k -> new int[3])[2]++;
+            }
+        }
+
+        List<Map<String, Object>> occupancy = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int[] count = entry.getValue();
+            int projected = count[1] + count[2];
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("buildingId", entry.getKey());
+            stats.put("buildingName", buildingNames.getOrDefault(entry.getKey(), entry.getKey()));
+            stats.put("totalBeds", count[0]);
+            stats.put("occupiedBeds", count[1]);
+            stats.put("newlyAllocated", count[2]);
+            stats.put("projectedOccupiedBeds", projected);
+            stats.put("occupancyRate", count[0] > 0 ? (double) count[1] / count[0] * 100 : 0);
+            stats.put("projectedOccupancyRate", count[0] > 0 ? (double) projected / count[0] * 100 : 0);
+            occupancy.add(stats);
+        }
+        return occupancy;
+    }
+
+    /**
+     * 统计兼容性分数分布：最小值、最大值、平均值以及按 0.1 分段的直方图
+     */
+    private Map<String, Object> summarizeScores(Collection<Double> scores) {
+        Map<String, Object> distribution = new HashMap<>();
+        DoubleSummaryStatistics summary = scores.stream().mapToDouble(Double::doubleValue).summaryStatistics();
+        distribution.put("count", summary.getCount());
+        distribution.put("min", summary.getCount() > 0 ? summary.getMin() : 0.0);
+        distribution.put("max", summary.getCount() > 0 ? summary.getMax() : 0.0);
+        distribution.put("average", summary.getAverage());
+
+        Map<String, Integer> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            histogram.put(String.format("%.1f-%.1f", i / 10.0, (i + 1) / 10.0), 0);
+        }
+        histogram.put("1.0+", 0);
+        for (double score : scores) {
+            int bucket = (int) Math.floor(Math.max(score, 0.0) * 10);
+            String key = bucket >= 10 ? "1.0+" : String.format("%.1f-%.1f", bucket / 10.0, (bucket + 1) / 10.0);
+            histogram.merge(key, 1, Integer::sum);
+        }
+        distribution.put("histogram", histogram);
+        return distribution;
+    }
+
     /**
      * 根据兼容性对学生进行排序
+     * 每个学生的分数只计算一次，再按下标排序
      */
-    private List<Student> sortStudentsByCompatibility(List<Student> students) {
-        return students.stream()
-                .sorted((s1, s2) -> {
-                    // 计算兼容性分数
-                    double score1 = calculateCompatibilityScore(s1, students);
-                    double score2 = calculateCompatibilityScore(s2, students);
-                    return Double.compare(score2, score1); // 降序排列
-                })
+    private List<Student> sortStudentsByCompatibility(List<Student> students, double[] scores) {
+        Integer[] order = new Integer[students.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a])); // 降序排列
+
+        List<Student> sorted = new ArrayList<>(students.size());
+        for (int index : order) {
+            sorted.add(students.get(index));
+        }
+        return sorted;
+    }
+
+    /**
+     * 加载评分所需数据：本批学生的全部标签、问卷答案和当前权重配置
+     * 标签和问卷按批量大小分批查询，查询次数只与批数有关
+     */
+    private ScoringContext loadScoringContext(List<Student> students) {
+        Map<String, List<RoommateTag>> tagsByStudent = new HashMap<>();
+        Map<String, QuestionnaireAnswer> answersByStudent = new HashMap<>();
+        List<String> studentIds = students.stream()
+                .map(Student::getId)
                 .collect(Collectors.toList());
+        int chunkSize = Math.max(1, batchSize);
+        for (int from = 0; from < studentIds.size(); from += chunkSize) {
+            List<String> chunk = studentIds.subList(from, Math.min(from + chunkSize, studentIds.size()));
+            for (RoommateTag tag : tagMapper.selectByStudentIds(chunk)) {
+                tagsByStudent.computeIfAbsent(tag.getStudentId(), k -> new ArrayList<>()).add(tag);
+            }
+            for (QuestionnaireAnswer answer : questionnaireMapper.selectByStudentIds(chunk)) {
+                answersByStudent.put(answer.getStudentId(), answer);
+            }
+        }
+        WeightSnapshot weights = weightsService.getSnapshot();
+        return new ScoringContext(tagsByStudent, answersByStudent, new HashMap<>(weights.getWeights()),
+                weights.getVersion());
     }
 
     /**
-     * 计算学生与同专业其他学生的兼容性分数（使用动态权重）
+     * 为本批学生构建室友匹配画像
      */
-    private double calculateCompatibilityScore(Student student, List<Student> allStudents) {
-        List<RoommateTag> tags = tagMapper.selectByStudentId(student.getId());
-        
-        // 获取动态权重配置
-        Map<String, Double> weights = getDynamicWeights();
-        
-        double score = 0.0;
-        
-        // 1. 标签匹配度 - 包含问卷自动生成标签和手动选择标签
-        score += calculateTagScore(tags) * weights.getOrDefault("TAG", 0.15);
-        
-        // 2. 专业匹配度 - 次要因素
-        score += calculateMajorScore(student, allStudents) * weights.getOrDefault("MAJOR", 0.35);
-        
-        // 3. 床位类型匹配度
-        score += calculateBedTypeScore(student) * weights.getOrDefault("BED_TYPE", 0.20);
-        
-        // 4. 随机因子 - 避免完全相同的分数
-        score += Math.random() * 0.1;
-        
-        return score;
+    private Map<String, RoommateProfile> buildProfiles(List<Student> students, ScoringContext scoring) {
+        Map<String, RoommateProfile> profiles = new HashMap<>();
+        for (Student student : students) {
+            profiles.put(student.getId(), new RoommateProfile(student,
+                    scoring.answersByStudent.get(student.getId()),
+                    scoring.tagsByStudent.get(student.getId())));
+        }
+        return profiles;
     }
-    
+
     /**
-     * 获取动态权重配置
+     * 生成新的随机种子，限制在 2^53 以内，前端 JSON 数字不丢精度
      */
-    private Map<String, Double> getDynamicWeights() {
-        Map<String, Double> weights = new HashMap<>();
-        
-        // 默认权重（更新后的权重分配）
-        weights.put("TAG", 0.15);        // 标签匹配度
-        weights.put("MAJOR", 0.35);      // 专业匹配度
-        weights.put("BED_TYPE", 0.20);   // 床位类型匹配度
-        
-        // 从数据库获取实际权重配置
-        List<AlgorithmWeights> weightConfigs = weightsMapper.selectList(null);
-        for (AlgorithmWeights config : weightConfigs) {
-            if (config.getEnabled()) {
-                weights.put(config.getWeightType(), config.getWeightValue());
-            }
+    private static long newSeed() {
+        return ThreadLocalRandom.current().nextLong(1L << 53);
+    }
+
+    /**
+     * 分组的随机数发生器只由运行种子和分组键决定，
+     * 与分组的计算顺序、是否并行无关
+     */
+    static RandomGenerator partitionRandom(long seed, String partitionKey) {
+        return new SplittableRandom(seed * 31 + partitionKey.hashCode());
+    }
+
+    /**
+     * 计算一组学生中每个学生的兼容性分数（使用动态权重）
+     * @param random 随机因子的来源，传入固定种子的发生器可复现分数
+     * @return 与 students 下标一一对应的分数
+     */
+    double[] calculateCompatibilityScores(List<Student> students, ScoringContext scoring, RandomGenerator random) {
+        Map<String, Long> majorCounts = new HashMap<>();
+        for (Student student : students) {
+            majorCounts.merge(student.getMajor(), 1L, Long::sum);
         }
-        
-        return weights;
+
+        double tagWeight = scoring.weights.getOrDefault("TAG", 0.15);
+        double majorWeight = scoring.weights.getOrDefault("MAJOR", 0.35);
+        double bedTypeWeight = scoring.weights.getOrDefault("BED_TYPE", 0.20);
+
+        double[] scores = new double[students.size()];
+        for (int i = 0; i < scores.length; i++) {
+            Student student = students.get(i);
+            double score = 0.0;
+
+            // 1. 标签匹配度 - 包含问卷自动生成标签和手动选择标签
+            score += calculateTagScore(scoring.tagsByStudent.get(student.getId())) * tagWeight;
+
+            // 2. 专业匹配度 - 次要因素
+            score += calculateMajorScore(majorCounts.get(student.getMajor()), students.size()) * majorWeight;
+
+            // 3. 床位类型匹配度
+            score += calculateBedTypeScore(student) * bedTypeWeight;
+
+            // 4. 随机因子 - 避免完全相同的分数
+            score += random.nextDouble() * 0.1;
+
+            scores[i] = score;
+        }
+        return scores;
     }
     
     /**
      * 计算专业匹配度分数
      */
-    private double calculateMajorScore(Student student, List<Student> allStudents) {
-        long sameMajorCount = allStudents.stream()
-                .filter(s -> s.getMajor().equals(student.getMajor()))
-                .count();
-        
+    private double calculateMajorScore(long sameMajorCount, int totalStudents) {
         // 同专业学生越多，匹配度越高
-        return Math.min(sameMajorCount / (double) allStudents.size(), 1.0);
+        return Math.min(sameMajorCount / (double) totalStudents, 1.0);
     }
 
 
@@ -224,97 +612,231 @@ public class AllocationService {
 
 
     /**
-     * 将学生按性别分配到床位
+     * 计算单个分组的床位安排（不访问数据库，可在工作线程中执行）
      */
-    private List<Map<String, Object>> allocateStudentsToBedsByGender(List<Student> students, List<Bed> availableBeds, String gender) {
-        List<Map<String, Object>> allocations = new ArrayList<>();
-        
-        // 按宿舍分组床位，并检查宿舍性别约束
-        Map<String, List<Bed>> bedsByDormitory = availableBeds.stream()
-                .collect(Collectors.groupingBy(Bed::getDormitoryId));
-        
-        // 优先分配下铺，确保同性别分配
-        for (Map.Entry<String, List<Bed>> entry : bedsByDormitory.entrySet()) {
-            String dormitoryId = entry.getKey();
-            List<Bed> beds = entry.getValue();
-            
-            // 检查宿舍是否已有其他性别的学生
-            if (!isDormitoryGenderCompatible(dormitoryId, gender)) {
-                continue; // 跳过不兼容的宿舍
-            }
-            
-            // 按床位类型排序：下铺优先
-            beds.sort((b1, b2) -> {
-                if ("下铺".equals(b1.getBedType()) && !"下铺".equals(b2.getBedType())) {
-                    return -1;
-                } else if (!"下铺".equals(b1.getBedType()) && "下铺".equals(b2.getBedType())) {
-                    return 1;
+    private void solvePartition(AllocationPartition partition, ScoringContext scoring,
+                                Map<String, RoommateProfile> profiles, RoomGroupingSolver solver,
+                                long seed, long deadlineNanos, AllocationMonitor monitor) {
+        checkCancelled(monitor);
+
+        // 按问卷匹配度排序
+        partition.scores = calculateCompatibilityScores(partition.students, scoring,
+                partitionRandom(seed, partition.getKey()));
+        List<RoommateProfile> candidates = sortStudentsByCompatibility(partition.students, partition.scores).stream()
+                .map(student -> profiles.get(student.getId()))
+                .collect(Collectors.toList());
+
+        partition.placements = solver.solve(candidates, partition.rooms, deadlineNanos);
+
+        Set<String> placedStudentIds = partition.placements.stream()
+                .map(placement -> placement.getStudent().getStudent().getId())
+                .collect(Collectors.toSet());
+        partition.leftovers = candidates.stream()
+                .filter(candidate -> !placedStudentIds.contains(candidate.getStudent().getId()))
+                .collect(Collectors.toList());
+        monitor.onPartitionSolved(partition.getKey(), partition.placements.size(), partition.leftovers.size());
+    }
+
+    private void checkCancelled(AllocationMonitor monitor) {
+        if (monitor.isCancelled()) {
+            throw new CancellationException("分配任务已取消");
+        }
+    }
+
+    /**
+     * 在分配线程池中并行计算各分组
+     * 各分组的宿舍已预先划分，互不重叠，结果与顺序执行一致
+     */
+    private void solvePartitionsInParallel(List<AllocationPartition> partitions, ScoringContext scoring,
+                                           Map<String, RoommateProfile> profiles, RoomGroupingSolver solver,
+                                           long seed, long deadlineNanos, AllocationMonitor monitor) {
+        ForkJoinPool pool = getAllocationPool();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions.size());
+        for (AllocationPartition partition : partitions) {
+            tasks.add(pool.submit(() -> solvePartition(partition, scoring, profiles, solver, seed, deadlineNanos, monitor)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private ForkJoinPool getAllocationPool() {
+        ForkJoinPool pool = allocationPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = allocationPool;
+                if (pool == null) {
+                    int size = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+                    pool = new ForkJoinPool(size);
+                    allocationPool = pool;
                 }
-                return 0;
-            });
+            }
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdownAllocationPool() {
+        if (allocationPool != null) {
+            allocationPool.shutdown();
+        }
+    }
+
+    /**
+     * 加载本次运行的宿舍入住索引：宿舍所属楼栋和楼层、楼栋性别类型和各宿舍在住学生性别
+     * 查询次数固定，与宿舍数量无关
+     */
+    private DormitoryOccupancyIndex loadOccupancyIndex(List<Bed> availableBeds, List<Building> buildings) {
+        Map<String, String> buildingByDormitory = new HashMap<>();
+        Map<String, Integer> floorByDormitory = new HashMap<>();
+        for (Dormitory dormitory : dormitoryMapper.selectList(null)) {
+            if (dormitory.getBuildingId() != null) {
+                buildingByDormitory.put(dormitory.getId(), dormitory.getBuildingId());
+            }
+            if (dormitory.getFloorNumber() != null) {
+                floorByDormitory.put(dormitory.getId(), dormitory.getFloorNumber());
+            }
+        }
+        Map<String, String> genderTypeByBuilding = new HashMap<>();
+        for (Building building : buildings) {
+            if (building.getGenderType() != null) {
+                genderTypeByBuilding.put(building.getId(), building.getGenderType());
+            }
+        }
+        Map<String, String> residentGenders = new HashMap<>();
+        for (Map<String, Object> row : allocationMapper.selectResidentGenders()) {
+            String dormitoryId = (String) row.get("dormitoryId");
+            String gender = (String) row.get("gender");
+            residentGenders.merge(dormitoryId, gender,
+                    (a, b) -> a.equals(b) ? a : DormitoryOccupancyIndex.MIXED);
+        }
+        return new DormitoryOccupancyIndex(availableBeds, buildingByDormitory, genderTypeByBuilding, residentGenders,
+                floorByDormitory);
+    }
+
+    /**
+     * 分批写入分配记录并占用床位
+     * 每批一条多行 INSERT 和一条 UPDATE ... IN，任何一批失败都会回滚整个分配事务
+     * @param runId 分配批次ID，写入每条分配记录
+     */
+    private List<Map<String, Object>> persistPlacements(List<BedPlacement> placements, Long runId,
+                                                        AllocationMonitor monitor) {
+        List<Map<String, Object>> allocations = new ArrayList<>(placements.size());
+        int chunkSize = Math.max(1, batchSize);
+        for (int from = 0; from < placements.size(); from += chunkSize) {
+            List<BedPlacement> chunk = placements.subList(from, Math.min(from + chunkSize, placements.size()));
             
-            // 为每个宿舍分配学生
-            for (int i = 0; i < Math.min(students.size(), beds.size()); i++) {
-                Student student = students.get(i);
-                Bed bed = beds.get(i);
-                
-                // 创建分配记录
+            // 创建分配记录
+            List<DormitoryAllocation> rows = new ArrayList<>(chunk.size());
+            List<String> bedIds = new ArrayList<>(chunk.size());
+            for (BedPlacement placement : chunk) {
                 DormitoryAllocation allocation = new DormitoryAllocation();
-                allocation.setStudentId(student.getId());
-                allocation.setBedId(bed.getId());
+                allocation.setStudentId(placement.getStudent().getStudent().getId());
+                allocation.setDormitoryId(placement.getDormitoryId());
+                allocation.setBedId(placement.getBed().getId());
                 allocation.setCheckInDate(java.time.LocalDate.now());
                 allocation.setStatus("在住");
-                
-                allocationMapper.insert(allocation);
-                
-                // 更新床位状态
-                bed.setStatus("已占用");
-                bedMapper.updateById(bed);
-                
-                // 记录分配结果
-                Map<String, Object> allocationResult = new HashMap<>();
-                allocationResult.put("studentId", student.getId());
-                allocationResult.put("studentName", student.getName());
-                allocationResult.put("bedId", bed.getId());
-                allocationResult.put("dormitoryId", dormitoryId);
-                allocationResult.put("bedType", bed.getBedType());
-                allocationResult.put("gender", gender);
-                allocationResult.put("allocationId", allocation.getId());
-                
-                allocations.add(allocationResult);
+                allocation.setRunId(runId);
+                rows.add(allocation);
+                bedIds.add(placement.getBed().getId());
             }
+            
+            // 更新床位状态：若有床位已被其他操作占用则整体回滚
+            int occupied = bedMapper.updateStatusByIds(bedIds, "可用", "已占用");
+            if (occupied != bedIds.size()) {
+                throw new IllegalStateException("部分床位已被占用，请重新分配");
+            }
+            allocationMapper.insertBatch(rows);
+            
+            // 记录分配结果
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).getBed().setStatus("已占用");
+                allocations.add(describePlacement(chunk.get(i), rows.get(i).getId()));
+            }
+            monitor.onPersisted(allocations.size(), placements.size());
         }
-        
         return allocations;
     }
 
     /**
-     * 检查宿舍性别兼容性
-     * 确保宿舍中只有同性别学生
+     * 将一条床位安排转换为分配结果（模拟分配时 allocationId 为空）
      */
-    private boolean isDormitoryGenderCompatible(String dormitoryId, String gender) {
-        // 查询宿舍中已有的学生分配
-        List<DormitoryAllocation> existingAllocations = allocationMapper.selectByDormitoryId(dormitoryId);
-        
-        if (existingAllocations.isEmpty()) {
-            return true; // 空宿舍，可以分配
+    private Map<String, Object> describePlacement(BedPlacement placement, Integer allocationId) {
+        Student student = placement.getStudent().getStudent();
+        Bed bed = placement.getBed();
+        
+        Map<String, Object> allocationResult = new HashMap<>();
+        allocationResult.put("studentId", student.getId());
+        allocationResult.put("studentName", student.getName());
+        allocationResult.put("bedId", bed.getId());
+        allocationResult.put("dormitoryId", placement.getDormitoryId());
+        allocationResult.put("bedType", bed.getBedType());
+        allocationResult.put("gender", student.getGender());
+        allocationResult.put("allocationId", allocationId);
+        return allocationResult;
+    }
+
+    /**
+     * 一次分配的计算结果（尚未写库）
+     */
+    private static class AllocationPlan {
+        private final RoomGroupingSolver solver;
+        private final long seed;
+        private final long weightsVersion;
+        private final Map<String, Double> weights;
+        private final List<Student> students;
+        private final List<Bed> allBeds;
+        private final List<Building> buildings;
+        private final DormitoryOccupancyIndex index;
+        private final List<BedPlacement> placements = new ArrayList<>();
+        private final Map<String, Double> scoresByStudent = new HashMap<>();
+        private Map<String, Object> refinement;
+
+        AllocationPlan(RoomGroupingSolver solver, long seed, long weightsVersion, Map<String, Double> weights,
+                       List<Student> students, List<Bed> allBeds, List<Building> buildings,
+                       DormitoryOccupancyIndex index) {
+            this.solver = solver;
+            this.seed = seed;
+            this.weightsVersion = weightsVersion;
+            this.weights = weights;
+            this.students = students;
+            this.allBeds = allBeds;
+            this.buildings = buildings;
+            this.index = index;
         }
-        
-        // 检查已有学生的性别
-        for (DormitoryAllocation allocation : existingAllocations) {
-            if ("在住".equals(allocation.getStatus())) {
-                Student student = studentMapper.selectById(allocation.getStudentId());
-                if (student != null && !gender.equals(student.getGender())) {
-                    return false; // 发现不同性别的学生
-                }
-            }
+    }
+
+    /**
+     * 一个专业+需求类分组及其预留的宿舍和计算结果
+     */
+    private static class AllocationPartition {
+        private final String major;
+        private final String gender;
+        private final String requirement;
+        private final List<Student> students;
+        private List<RoomSlot> rooms = Collections.emptyList();
+        private List<BedPlacement> placements = Collections.emptyList();
+        private List<RoommateProfile> leftovers = Collections.emptyList();
+        private double[] scores = new double[0];
+
+        AllocationPartition(String major, String gender, String requirement, List<Student> students) {
+            this.major = major;
+            this.gender = gender;
+            this.requirement = requirement;
+            this.students = students;
+        }
+
+        /**
+         * 分组键，普通学生为 "专业/性别"，有额外需求的学生如 "专业/性别/行动不便"
+         */
+        String getKey() {
+            return major + "/" + ConstraintEvaluator.label(requirement);
         }
-        
-        return true; // 所有学生都是同性别
     }
 
     /**
      * 获取分配建议
+     * 从室友兼容度索引读取同专业同性别中最兼容的同学，不再逐个评分排序
      */
     public Map<String, Object> getAllocationSuggestions(String studentId) {
         Map<String, Object> result = new HashMap<>();
@@ -325,28 +847,16 @@ public class AllocationService {
             return result;
         }
         
-        // 获取同专业同性别学生
-        List<Student> sameMajorStudents = studentMapper.selectByMajor(student.getMajor());
-        List<Student> sameGenderStudents = sameMajorStudents.stream()
-                .filter(s -> s.getGender().equals(student.getGender()))
-                .collect(Collectors.toList());
-        
-        // 计算兼容性
-        List<Map<String, Object>> compatibleStudents = sameGenderStudents.stream()
-                .filter(s -> !s.getId().equals(studentId))
-                .map(s -> {
+        List<Map<String, Object>> compatibleStudents = compatibilityIndex.topMatches(student, 5).stream() // 返回前5个最兼容的学生
+                .map(match -> {
+                    Student s = match.getStudent();
                     Map<String, Object> suggestion = new HashMap<>();
                     suggestion.put("studentId", s.getId());
                     suggestion.put("studentName", s.getName());
                     suggestion.put("gender", s.getGender());
-                    suggestion.put("compatibilityScore", calculateCompatibilityScore(s, sameGenderStudents));
+                    suggestion.put("compatibilityScore", match.getScore());
                     return suggestion;
                 })
-                .sorted((s1, s2) -> Double.compare(
-                    (Double) s2.get("compatibilityScore"),
-                    (Double) s1.get("compatibilityScore")
-                ))
-                .limit(5) // 返回前5个最兼容的学生
                 .collect(Collectors.toList());
         
         result.put("suggestions", compatibleStudents);
@@ -393,37 +903,11 @@ public class AllocationService {
         
         // 如果满意度低于3分，降低问卷权重，提高专业权重
         if (satisfactionScore < 3.0) {
-            updateWeight("QUESTIONNAIRE", 0.3);
-            updateWeight("MAJOR", 0.5);
+            weightsService.updateWeight("QUESTIONNAIRE", 0.3);
+            weightsService.updateWeight("MAJOR", 0.5);
         } else if (satisfactionScore > 4.0) {
             // 如果满意度高于4分，提高问卷权重
-            updateWeight("QUESTIONNAIRE", 0.6);
-        }
-    }
-    
-    /**
-     * 更新权重配置
-     */
-    private void updateWeight(String weightType, Double weightValue) {
-        AlgorithmWeights weight = weightsMapper.selectList(null).stream()
-                .filter(w -> w.getWeightType().equals(weightType))
-                .findFirst()
-                .orElse(null);
-        
-        if (weight != null) {
-            weight.setWeightValue(weightValue);
-            weight.setLastUpdated(LocalDateTime.now());
-            weightsMapper.updateById(weight);
-        } else {
-            // 创建新的权重配置
-            weight = new AlgorithmWeights();
-            weight.setWeightType(weightType);
-            weight.setWeightValue(weightValue);
-            weight.setEnabled(true);
-            weight.setDescription("动态调整的权重配置");
-            weight.setCreatedAt(LocalDateTime.now());
-            weight.setLastUpdated(LocalDateTime.now());
-            weightsMapper.insert(weight);
+            weightsService.updateWeight("QUESTIONNAIRE", 0.6);
         }
     }
     
@@ -475,7 +959,9 @@ public class AllocationService {
         result.put("satisfactionDistribution", satisfactionDistribution);
         
         // 当前权重配置
-        result.put("currentWeights", getDynamicWeights());
+        WeightSnapshot weights = weightsService.getSnapshot();
+        result.put("currentWeights", weights.getWeights());
+        result.put("weightsVersion", weights.getVersion());
         
         return result;
     }
@@ -488,4 +974,23 @@ public class AllocationService {
                 .filter(feedback -> feedback.getStudentId().equals(studentId))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * 评分阶段的预加载数据
+     */
+    static class ScoringContext {
+        private final Map<String, List<RoommateTag>> tagsByStudent;
+        private final Map<String, QuestionnaireAnswer> answersByStudent;
+        private final Map<String, Double> weights;
+        private final long weightsVersion;
+
+        ScoringContext(Map<String, List<RoommateTag>> tagsByStudent,
+                       Map<String, QuestionnaireAnswer> answersByStudent,
+                       Map<String, Double> weights, long weightsVersion) {
+            this.tagsByStudent = tagsByStudent;
+            this.answersByStudent = answersByStudent;
+            this.weights = weights;
+            this.weightsVersion = weightsVersion;
+        }
+    }
 }
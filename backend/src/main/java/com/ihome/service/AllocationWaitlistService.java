@@ -0,0 +1,141 @@
+package com.ihome.service;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.ihome.entity.AllocationWaitlist;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.mapper.AllocationWaitlistMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 分配候补服务
+ * 暂时无法分配的学生登记候补，床位释放（如退宿）后按登记顺序自动增量分配
+ */
+@Service
+public class AllocationWaitlistService {
+
+    @Autowired
+    private AllocationWaitlistMapper waitlistMapper;
+
+    @Autowired
+    private IncrementalAllocationService incrementalAllocationService;
+
+    /**
+     * 每次自动处理的最大候补人数
+     */
+    @Value("${allocation.waitlist.drain-batch-size:50}")
+    private int drainBatchSize = 50;
+
+    /**
+     * 登记候补，已在候补中的学生不会重复登记
+     * @return 新登记的人数
+     */
+    @Transactional
+    public int join(List<String> studentIds) {
+        int added = 0;
+        for (String studentId : new LinkedHashSet<>(studentIds)) {
+            if (waitlistMapper.selectWaitingByStudentId(studentId) != null) {
+                continue;
+            }
+            AllocationWaitlist entry = new AllocationWaitlist();
+            entry.setStudentId(studentId);
+            entry.setStatus("等待中");
+            entry.setCreatedAt(LocalDateTime.now());
+            waitlistMapper.insert(entry);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * 按登记顺序查询候补，status 为空时返回全部
+     */
+    public List<AllocationWaitlist> list(String status) {
+        return waitlistMapper.selectList(
+                Wrappers.<AllocationWaitlist>lambdaQuery()
+                        .eq(status != null, AllocationWaitlist::getStatus, status)
+                        .orderByAsc(AllocationWaitlist::getCreatedAt)
+                        .orderByAsc(AllocationWaitlist::getId)
+        );
+    }
+
+    /**
+     * 取消学生的候补
+     * @return 存在等待中的候补并已取消时返回 true
+     */
+    @Transactional
+    public boolean cancel(String studentId) {
+        AllocationWaitlist entry = waitlistMapper.selectWaitingByStudentId(studentId);
+        if (entry == null) {
+            return false;
+        }
+        entry.setStatus("已取消");
+        waitlistMapper.updateById(entry);
+        return true;
+    }
+
+    /**
+     * 按登记顺序为候补学生增量分配床位
+     * @return 分配结果，包含本次处理的候补人数
+     */
+    @Transactional
+    public Map<String, Object> drain() {
+        List<AllocationWaitlist> waiting = waitlistMapper.selectWaiting(drainBatchSize);
+        if (waiting.isEmpty()) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("allocations", Collections.emptyList());
+            result.put("totalAllocated", 0);
+            result.put("processed", 0);
+            return result;
+        }
+
+        Map<String, Object> result = incrementalAllocationService.allocate(waiting.stream()
+                .map(AllocationWaitlist::getStudentId)
+                .collect(Collectors.toList()));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allocations = (List<Map<String, Object>>) result.get("allocations");
+        Map<String, String> bedByStudent = new HashMap<>();
+        for (Map<String, Object> allocation : allocations) {
+            bedByStudent.put((String) allocation.get("studentId"), (String) allocation.get("bedId"));
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> alreadyResident = new HashSet<>((List<String>) result.get("alreadyResident"));
+        LocalDateTime now = LocalDateTime.now();
+        for (AllocationWaitlist entry : waiting) {
+            String bedId = bedByStudent.get(entry.getStudentId());
+            if (bedId != null || alreadyResident.contains(entry.getStudentId())) {
+                // 已通过其他途径入住的学生同样结束候补
+                entry.setStatus("已分配");
+                entry.setBedId(bedId);
+                entry.setAllocatedAt(now);
+                waitlistMapper.updateById(entry);
+            }
+        }
+        result.put("processed", waiting.size());
+        return result;
+    }
+
+    /**
+     * 床位释放（或调换腾出床位）并提交后，在新事务中自动处理候补
+     * 处理失败只回滚本次候补分配，不影响已提交的退宿操作，候补保留到下次床位释放
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onBedOccupancyChanged(BedOccupancyChangedEvent event) {
+        if (event.isReleased() || event.isMoved()) {
+            drain();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 一次分配运行中的床位库存
+ * 床位按宿舍预先划分，每间宿舍只能被一个分组预留，
+ * 因此并行计算的各分组之间不会抢到同一张床位
+ */
+public class BedInventory {
+
+    private final DormitoryOccupancyIndex index;
+
+    /**
+     * 宿舍ID -> 预留该宿舍的分组
+     */
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+
+    public BedInventory(DormitoryOccupancyIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * 原子地预留一间宿舍，并将其标记为该性别使用
+     * @return 预留成功返回 true，已被其他分组预留返回 false
+     */
+    public boolean reserve(String dormitoryId, String owner, String gender) {
+        if (owners.putIfAbsent(dormitoryId, owner) != null) {
+            return false;
+        }
+        index.claim(dormitoryId, gender);
+        return true;
+    }
+
+    /**
+     * 按宿舍顺序为分组预留同性别可入住的宿舍，直到床位数不少于需求人数
+     */
+    public List<RoomSlot> reserveRooms(String owner, String gender, int demand) {
+        return reserveRooms(owner, gender, demand, bed -> true);
+    }
+
+    /**
+     * 按宿舍顺序为分组预留同性别可入住的宿舍，只计入硬约束允许的床位，直到床位数不少于需求人数
+     * 没有允许床位的宿舍不会被预留；房间中不允许的床位留给其他分组的剩余分配
+     */
+    public List<RoomSlot> reserveRooms(String owner, String gender, int demand, Predicate<Bed> permitted) {
+        List<RoomSlot> reserved = new ArrayList<>();
+        int capacity = 0;
+        for (String dormitoryId : index.candidateDormitories(gender)) {
+            if (capacity >= demand) {
+                break;
+            }
+            List<Bed> beds = permittedFreeBeds(dormitoryId, permitted);
+            if (!beds.isEmpty() && reserve(dormitoryId, owner, gender)) {
+                reserved.add(new RoomSlot(dormitoryId, beds));
+                capacity += beds.size();
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * 记录已经安排出去的床位
+     */
+    public void markTaken(List<BedPlacement> placements, String gender) {
+        for (BedPlacement placement : placements) {
+            index.occupy(placement.getBed(), gender);
+        }
+    }
+
+    /**
+     * 各分组用剩的床位：同性别宿舍中尚未安排的床位，以及未被预留的宿舍
+     */
+    public List<RoomSlot> remainingRooms(String gender) {
+        return remainingRooms(gender, bed -> true);
+    }
+
+    /**
+     * 各分组用剩的床位中硬约束允许的部分
+     */
+    public List<RoomSlot> remainingRooms(String gender, Predicate<Bed> permitted) {
+        List<RoomSlot> remaining = new ArrayList<>();
+        for (String dormitoryId : index.candidateDormitories(gender)) {
+            List<Bed> beds = permittedFreeBeds(dormitoryId, permitted);
+            if (!beds.isEmpty()) {
+                remaining.add(new RoomSlot(dormitoryId, beds));
+            }
+        }
+        return remaining;
+    }
+
+    private List<Bed> permittedFreeBeds(String dormitoryId, Predicate<Bed> permitted) {
+        List<Bed> beds = index.getFreeBeds(dormitoryId);
+        beds.removeIf(bed -> !permitted.test(bed));
+        return beds;
+    }
+
+    public DormitoryOccupancyIndex getIndex() {
+        return index;
+    }
+}
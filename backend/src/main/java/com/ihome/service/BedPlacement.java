@@ -0,0 +1,29 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+
+/**
+ * 分组算法的输出：某个学生被安排到某张床位
+ */
+public class BedPlacement {
+
+    private final RoommateProfile student;
+    private final Bed bed;
+
+    public BedPlacement(RoommateProfile student, Bed bed) {
+        this.student = student;
+        this.bed = bed;
+    }
+
+    public RoommateProfile getStudent() {
+        return student;
+    }
+
+    public Bed getBed() {
+        return bed;
+    }
+
+    public String getDormitoryId() {
+        return bed.getDormitoryId();
+    }
+}
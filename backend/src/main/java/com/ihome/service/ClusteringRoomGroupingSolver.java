@@ -0,0 +1,106 @@
+package com.ihome.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 兼容度聚类算法
+ * 逐个房间"选种子、再扩充"：以剩余学生中排序最靠前者为种子，
+ * 再从候选窗口中挑选与已选室友兼容度之和最高的学生，直到房间住满。
+ *
+ * 学生先按生活习惯分组键排序，习惯相近的学生相邻，
+ * 因此只需考察固定大小的候选窗口，复杂度为 O(n × 窗口 × 房间人数)，
+ * 单个分区数万人也能在秒级完成。超出时间预算后，剩余房间退化为顺序填充。
+ */
+public class ClusteringRoomGroupingSolver implements RoomGroupingSolver {
+
+    public static final String NAME = "clustering";
+
+    /**
+     * 每次挑选室友时考察的候选人数
+     */
+    private static final int CANDIDATE_WINDOW = 64;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<BedPlacement> solve(List<RoommateProfile> students, List<RoomSlot> rooms, long deadlineNanos) {
+        int n = students.size();
+        List<BedPlacement> placements = new ArrayList<>();
+        if (n == 0 || rooms.isEmpty()) {
+            return placements;
+        }
+
+        // 按生活习惯分组键稳定排序，同组内保持原有的兼容性分数顺序
+        String[] habitKeys = new String[n];
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            habitKeys[i] = students.get(i).getHabitKey();
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, Comparator.comparing(i -> habitKeys[i]));
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = boxed[i];
+        }
+
+        // 用数组双向链表维护尚未分配的学生（下标 n 为哨兵），删除为 O(1)
+        int head = n;
+        int[] next = new int[n + 1];
+        int[] prev = new int[n + 1];
+        for (int pos = 0; pos <= n; pos++) {
+            next[pos] = (pos + 1) % (n + 1);
+            prev[pos] = (pos + n) % (n + 1);
+        }
+
+        int remaining = n;
+        boolean timedOut = false;
+        List<RoommateProfile> members = new ArrayList<>();
+        for (RoomSlot room : rooms) {
+            if (remaining == 0) {
+                break;
+            }
+            if (!timedOut && System.nanoTime() > deadlineNanos) {
+                timedOut = true;
+            }
+
+            members.clear();
+            int capacity = Math.min(room.getCapacity(), remaining);
+            for (int k = 0; k < capacity; k++) {
+                int chosen = next[head];
+                if (!timedOut && !members.isEmpty()) {
+                    // 在候选窗口内挑选与已选室友兼容度之和最高的学生
+                    double bestScore = -1;
+                    int pos = next[head];
+                    for (int scanned = 0; pos != head && scanned < CANDIDATE_WINDOW; scanned++, pos = next[pos]) {
+                        RoommateProfile candidate = students.get(order[pos]);
+                        double score = 0;
+                        for (RoommateProfile member : members) {
+                            score += candidate.compatibilityWith(member);
+                        }
+                        if (score > bestScore) {
+                            bestScore = score;
+                            chosen = pos;
+                        }
+                    }
+                }
+
+                // 从链表中移除已选学生
+                next[prev[chosen]] = next[chosen];
+                prev[next[chosen]] = prev[chosen];
+                remaining--;
+
+                RoommateProfile student = students.get(order[chosen]);
+                members.add(student);
+                placements.add(new BedPlacement(student, room.getFreeBeds().get(k)));
+            }
+        }
+        return placements;
+    }
+}
@@ -0,0 +1,349 @@
+package com.ihome.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.ihome.common.StatusCount;
+import com.ihome.entity.Dormitory;
+import com.ihome.entity.DormitoryAllocation;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RequestStatusChangedEvent;
+import com.ihome.mapper.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 管理员仪表盘计数器
+ * 床位（按楼栋）、维修工单和调换申请的各状态数量以及在住人数常驻内存，
+ * 选床、退宿、调换、维修状态更新等写操作提交后按事件增减，仪表盘直接读取，不再查询数据库。
+ *
+ * 没有发布事件的写操作（如管理员直接修改床位、删除学生）会造成偏差，
+ * 由定时对账任务用分组计数查询重新加载全部计数器来纠正；学生、宿舍、缴费总数只在对账时更新
+ */
+@Service
+public class DashboardCounterStore {
+
+    private static final String OCCUPIED = "已占用";
+    private static final String AVAILABLE = "可用";
+
+    /**
+     * 一次对账中因事件到达而重新查询的最多次数
+     */
+    private static final int MAX_RELOADS = 3;
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardCounterStore.class);
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private DormitoryMapper dormitoryMapper;
+
+    @Autowired
+    private BedMapper bedMapper;
+
+    @Autowired
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Autowired
+    private PaymentRecordMapper paymentMapper;
+
+    @Autowired
+    private RepairOrderMapper repairMapper;
+
+    @Autowired
+    private DormitorySwitchMapper switchMapper;
+
+    /**
+     * 当前计数；为 null 表示尚未加载
+     */
+    private Counters counters;
+
+    /**
+     * 对账加载期间到达的事件；不在对账时为 null
+     */
+    private List<Object> pendingEvents;
+
+    /**
+     * 仪表盘统计数据，首次调用时从数据库加载
+     */
+    public synchronized Map<String, Object> getDashboardStatistics() {
+        if (counters == null) {
+            counters = load();
+        }
+        return counters.toMap();
+    }
+
+    /**
+     * 定时对账：重新加载全部计数器，纠正未经事件的写操作造成的偏差；尚未加载时跳过
+     *
+     * 查询在锁外进行，期间到达的事件照常作用在旧计数上。加载结果不能直接叠加这些事件：
+     * 事件提交时可能已被某项查询读到。因此只要加载期间有事件到达，就从数据库重新查询这些事件涉及的计数
+     * （床位和在住人数、维修或调换状态），直到某次查询期间没有新事件再替换；
+     * 多次重查后仍有事件到达时保留旧计数，等下次对账
+     */
+    @Scheduled(fixedDelayString = "${dashboard.counters.reconcile-interval-ms:300000}",
+            initialDelayString = "${dashboard.counters.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        synchronized (this) {
+            if (counters == null || pendingEvents != null) {
+                return;
+            }
+            pendingEvents = new ArrayList<>();
+        }
+        try {
+            Counters fresh = load();
+            for (int attempt = 0; ; attempt++) {
+                List<Object> arrived;
+                synchronized (this) {
+                    if (pendingEvents.isEmpty()) {
+                        if (counters != null) {
+                            counters = fresh;
+                        }
+                        return;
+                    }
+                    arrived = pendingEvents;
+                    pendingEvents = new ArrayList<>();
+                }
+                if (attempt >= MAX_RELOADS) {
+                    logger.warn("仪表盘计数对账期间写操作频繁，保留当前计数等待下次对账");
+                    return;
+                }
+                reload(fresh, arrived);
+            }
+        } catch (Exception e) {
+            logger.error("仪表盘计数对账失败: {}", e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                pendingEvents = null;
+            }
+        }
+    }
+
+    /**
+     * 清空计数器，下次读取时重新加载
+     */
+    public synchronized void invalidateAll() {
+        counters = null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBedOccupancyChanged(BedOccupancyChangedEvent event) {
+        record(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRequestStatusChanged(RequestStatusChangedEvent event) {
+        record(event);
+    }
+
+    /**
+     * 作用到当前计数，对账加载期间同时记录下来；调用方持有锁
+     */
+    private void record(Object event) {
+        if (counters == null) {
+            return;
+        }
+        apply(counters, event);
+        if (pendingEvents != null) {
+            pendingEvents.add(event);
+        }
+    }
+
+    private static void apply(Counters target, Object event) {
+        if (event instanceof BedOccupancyChangedEvent) {
+            applyBedChange(target, (BedOccupancyChangedEvent) event);
+        } else if (event instanceof RequestStatusChangedEvent) {
+            applyStatusChange(target, (RequestStatusChangedEvent) event);
+        }
+    }
+
+    private static void applyBedChange(Counters target, BedOccupancyChangedEvent event) {
+        for (BedOccupancyChangedEvent.BedChange change : event.getChanges()) {
+            if (event.isAssigned()) {
+                target.moveBed(change.getDormitoryId(), AVAILABLE, OCCUPIED);
+                target.allocatedStudents++;
+            } else if (event.isReleased()) {
+                target.moveBed(change.getDormitoryId(), OCCUPIED, AVAILABLE);
+                target.allocatedStudents--;
+            } else if (event.isMoved()) {
+                target.moveBed(change.getFromDormitoryId(), OCCUPIED, AVAILABLE);
+                target.moveBed(change.getDormitoryId(), AVAILABLE, OCCUPIED);
+            }
+        }
+    }
+
+    private static void applyStatusChange(Counters target, RequestStatusChangedEvent event) {
+        if (Objects.equals(event.getFromStatus(), event.getToStatus())) {
+            return;
+        }
+        Map<String, Long> statuses = event.isRepair() ? target.repairStatus
+                : event.isSwitch() ? target.switchStatus : null;
+        if (statuses == null) {
+            return;
+        }
+        if (event.getFromStatus() != null) {
+            statuses.merge(event.getFromStatus(), (long) -event.getCount(), Long::sum);
+        }
+        if (event.getToStatus() != null) {
+            statuses.merge(event.getToStatus(), (long) event.getCount(), Long::sum);
+        }
+    }
+
+    /**
+     * 从数据库加载全部计数，每张表一次计数或分组查询
+     */
+    private Counters load() {
+        Counters loaded = new Counters();
+        loaded.totalStudents = studentMapper.selectCount(null);
+        loaded.totalDormitories = dormitoryMapper.selectCount(null);
+        loaded.totalPayments = paymentMapper.selectCount(null);
+        for (Dormitory dormitory : dormitoryMapper.selectBuildingIds()) {
+            loaded.buildingByDormitory.put(dormitory.getId(), dormitory.getBuildingId());
+        }
+        loadBeds(loaded);
+        loadRepairs(loaded);
+        loadSwitches(loaded);
+        loaded.reconciledAt = LocalDateTime.now();
+        return loaded;
+    }
+
+    /**
+     * 重新查询 events 涉及的计数
+     */
+    private void reload(Counters target, List<Object> events) {
+        boolean beds = false;
+        boolean repairs = false;
+        boolean switches = false;
+        for (Object event : events) {
+            if (event instanceof BedOccupancyChangedEvent) {
+                beds = true;
+            } else if (event instanceof RequestStatusChangedEvent) {
+                repairs |= ((RequestStatusChangedEvent) event).isRepair();
+                switches |= ((RequestStatusChangedEvent) event).isSwitch();
+            }
+        }
+        if (beds) {
+            loadBeds(target);
+        }
+        if (repairs) {
+            loadRepairs(target);
+        }
+        if (switches) {
+            loadSwitches(target);
+        }
+    }
+
+    private void loadBeds(Counters target) {
+        target.allocatedStudents = allocationMapper.selectCount(
+                new QueryWrapper<DormitoryAllocation>().eq("status", "在住"));
+        target.bedStatus.clear();
+        target.bedStatus.putAll(StatusCount.toMap(bedMapper.countByStatus()));
+        target.bedStatusByBuilding.clear();
+        for (StatusCount count : bedMapper.countByBuildingAndStatus()) {
+            if (count.getGroupId() == null) {
+                continue;
+            }
+            target.bedStatusByBuilding.computeIfAbsent(count.getGroupId(), k -> new LinkedHashMap<>())
+                    .merge(count.getStatus(), count.getCount(), Long::sum);
+        }
+    }
+
+    private void loadRepairs(Counters target) {
+        target.repairStatus.clear();
+        target.repairStatus.putAll(StatusCount.toMap(repairMapper.countByStatus()));
+    }
+
+    private void loadSwitches(Counters target) {
+        target.switchStatus.clear();
+        target.switchStatus.putAll(StatusCount.toMap(switchMapper.countByStatus()));
+    }
+
+    private static class Counters {
+        private long totalStudents;
+        private long totalDormitories;
+        private long totalPayments;
+        private long allocatedStudents;
+        private final Map<String, String> buildingByDormitory = new HashMap<>();
+        private final Map<String, Long> bedStatus = new LinkedHashMap<>();
+        private final Map<String, Map<String, Long>> bedStatusByBuilding = new TreeMap<>();
+        private final Map<String, Long> repairStatus = new LinkedHashMap<>();
+        private final Map<String, Long> switchStatus = new LinkedHashMap<>();
+        private LocalDateTime reconciledAt;
+
+        /**
+         * 一张床位从 from 状态变为 to 状态；宿舍不在已加载的楼栋映射中时只更新全校计数
+         */
+        void moveBed(String dormitoryId, String from, String to) {
+            bedStatus.merge(from, -1L, Long::sum);
+            bedStatus.merge(to, 1L, Long::sum);
+            String buildingId = dormitoryId != null ? buildingByDormitory.get(dormitoryId) : null;
+            Map<String, Long> building = buildingId != null ? bedStatusByBuilding.get(buildingId) : null;
+            if (building != null) {
+                building.merge(from, -1L, Long::sum);
+                building.merge(to, 1L, Long::sum);
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> statistics = new HashMap<>();
+
+            long unallocatedStudents = totalStudents - allocatedStudents;
+            statistics.put("totalStudents", totalStudents);
+            statistics.put("allocatedStudents", allocatedStudents);
+            statistics.put("unallocatedStudents", unallocatedStudents);
+            statistics.put("allocationRate", totalStudents > 0 ? (double) allocatedStudents / totalStudents * 100 : 0);
+
+            long totalBeds = sum(bedStatus);
+            long occupiedBeds = bedStatus.getOrDefault(OCCUPIED, 0L);
+            statistics.put("totalDormitories", totalDormitories);
+            statistics.put("totalBeds", totalBeds);
+            statistics.put("occupiedBeds", occupiedBeds);
+            statistics.put("availableBeds", totalBeds - occupiedBeds);
+            statistics.put("occupancyRate", totalBeds > 0 ? (double) occupiedBeds / totalBeds * 100 : 0);
+            statistics.put("bedStatus", new LinkedHashMap<>(bedStatus));
+
+            List<Map<String, Object>> buildings = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Long>> entry : bedStatusByBuilding.entrySet()) {
+                long buildingBeds = sum(entry.getValue());
+                long buildingOccupied = entry.getValue().getOrDefault(OCCUPIED, 0L);
+                Map<String, Object> building = new HashMap<>();
+                building.put("buildingId", entry.getKey());
+                building.put("totalBeds", buildingBeds);
+                building.put("occupiedBeds", buildingOccupied);
+                building.put("availableBeds", entry.getValue().getOrDefault(AVAILABLE, 0L));
+                building.put("occupancyRate", buildingBeds > 0 ? (double) buildingOccupied / buildingBeds * 100 : 0);
+                buildings.add(building);
+            }
+            statistics.put("buildings", buildings);
+
+            statistics.put("totalPayments", totalPayments);
+            // PaymentRecord没有status字段，暂时设为0
+            statistics.put("pendingPayments", 0L);
+
+            statistics.put("totalRepairs", sum(repairStatus));
+            statistics.put("pendingRepairs", repairStatus.getOrDefault("待处理", 0L));
+            statistics.put("repairStatus", new LinkedHashMap<>(repairStatus));
+
+            statistics.put("totalSwitches", sum(switchStatus));
+            statistics.put("pendingSwitches", switchStatus.getOrDefault("待审核", 0L));
+            statistics.put("switchStatus", new LinkedHashMap<>(switchStatus));
+
+            statistics.put("countersReconciledAt", reconciledAt);
+            return statistics;
+        }
+
+        private static long sum(Map<String, Long> counts) {
+            long total = 0;
+            for (long count : counts.values()) {
+                total += count;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 宿舍入住索引
+ * 每次分配运行开始时加载一次，记录每间宿舍的住户性别和空闲床位位图，
+ * 并在床位分配后同步更新，代替逐间宿舍查询在住学生
+ */
+public class DormitoryOccupancyIndex {
+
+    /**
+     * 宿舍中已有不同性别的住户
+     */
+    public static final String MIXED = "MIXED";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, String> buildingByDormitory;
+    private final Map<String, String> genderTypeByBuilding;
+    private final Map<String, Integer> floorByDormitory;
+
+    public DormitoryOccupancyIndex(List<Bed> availableBeds,
+                                   Map<String, String> buildingByDormitory,
+                                   Map<String, String> genderTypeByBuilding,
+                                   Map<String, String> residentGenders) {
+        this(availableBeds, buildingByDormitory, genderTypeByBuilding, residentGenders, Collections.emptyMap());
+    }
+
+    /**
+     * @param availableBeds 当前可用床位
+     * @param buildingByDormitory 宿舍ID -> 楼栋ID
+     * @param genderTypeByBuilding 楼栋ID -> 楼栋性别类型（M/F/MIXED）
+     * @param residentGenders 宿舍ID -> 在住学生性别（多种性别时为 MIXED）
+     * @param floorByDormitory 宿舍ID -> 楼层
+     */
+    public DormitoryOccupancyIndex(List<Bed> availableBeds,
+                                   Map<String, String> buildingByDormitory,
+                                   Map<String, String> genderTypeByBuilding,
+                                   Map<String, String> residentGenders,
+                                   Map<String, Integer> floorByDormitory) {
+        this.buildingByDormitory = buildingByDormitory;
+        this.genderTypeByBuilding = genderTypeByBuilding;
+        this.floorByDormitory = floorByDormitory;
+
+        Map<String, List<Bed>> bedsByDormitory = availableBeds.stream()
+                .collect(Collectors.groupingBy(Bed::getDormitoryId, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<Bed>> item : bedsByDormitory.entrySet()) {
+            List<Bed> beds = item.getValue();
+            // 按床位类型排序：下铺优先
+            beds.sort(Comparator.comparing(bed -> !"下铺".equals(bed.getBedType())));
+
+            Entry entry = new Entry(item.getKey(), beds);
+            entry.residentGender = residentGenders.get(item.getKey());
+            entries.put(item.getKey(), entry);
+        }
+    }
+
+    /**
+     * 把学生性别转换为楼栋性别类型代码
+     */
+    public static String genderCode(String gender) {
+        if ("男".equals(gender)) {
+            return "M";
+        }
+        if ("女".equals(gender)) {
+            return "F";
+        }
+        return gender;
+    }
+
+    /**
+     * 楼栋性别类型是否允许该性别入住；未配置或 MIXED 的楼栋不限制
+     */
+    public boolean isBuildingCompatible(String dormitoryId, String gender) {
+        String buildingId = buildingByDormitory.get(dormitoryId);
+        String genderType = buildingId != null ? genderTypeByBuilding.get(buildingId) : null;
+        return genderType == null || MIXED.equals(genderType) || genderType.equals(genderCode(gender));
+    }
+
+    /**
+     * 宿舍是否可以入住该性别：楼栋性别类型允许，且宿舍为空或住户同性别
+     */
+    public boolean isGenderCompatible(String dormitoryId, String gender) {
+        if (!isBuildingCompatible(dormitoryId, gender)) {
+            return false;
+        }
+        Entry entry = entries.get(dormitoryId);
+        return entry == null || entry.residentGender == null || entry.residentGender.equals(gender);
+    }
+
+    /**
+     * 可入住该性别、仍有空闲床位的宿舍（按楼栋性别类型预先剪枝）
+     */
+    public List<String> candidateDormitories(String gender) {
+        List<String> candidates = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.freeBeds.isEmpty() && isGenderCompatible(entry.dormitoryId, gender)) {
+                candidates.add(entry.dormitoryId);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 宿舍的空闲床位（下铺在前）
+     */
+    public List<Bed> getFreeBeds(String dormitoryId) {
+        Entry entry = entries.get(dormitoryId);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        List<Bed> freeBeds = new ArrayList<>(entry.freeBeds.cardinality());
+        for (int i = entry.freeBeds.nextSetBit(0); i >= 0; i = entry.freeBeds.nextSetBit(i + 1)) {
+            freeBeds.add(entry.beds.get(i));
+        }
+        return freeBeds;
+    }
+
+    public int getFreeBedCount(String dormitoryId) {
+        Entry entry = entries.get(dormitoryId);
+        return entry == null ? 0 : entry.freeBeds.cardinality();
+    }
+
+    /**
+     * 宿舍当前的住户性别，空宿舍返回 null
+     */
+    public String getResidentGender(String dormitoryId) {
+        Entry entry = entries.get(dormitoryId);
+        return entry == null ? null : entry.residentGender;
+    }
+
+    public String getBuildingId(String dormitoryId) {
+        return buildingByDormitory.get(dormitoryId);
+    }
+
+    /**
+     * 宿舍所在楼层，未知时返回 null
+     */
+    public Integer getFloorNumber(String dormitoryId) {
+        return floorByDormitory.get(dormitoryId);
+    }
+
+    /**
+     * 将空宿舍预先标记为某一性别使用
+     */
+    public void claim(String dormitoryId, String gender) {
+        Entry entry = entries.get(dormitoryId);
+        if (entry != null && entry.residentGender == null) {
+            entry.residentGender = gender;
+        }
+    }
+
+    /**
+     * 床位已分配给该性别的学生
+     */
+    public void occupy(Bed bed, String gender) {
+        Entry entry = entries.get(bed.getDormitoryId());
+        if (entry == null) {
+            return;
+        }
+        Integer position = entry.positions.get(bed.getId());
+        if (position != null) {
+            entry.freeBeds.clear(position);
+        }
+        if (entry.residentGender == null) {
+            entry.residentGender = gender;
+        } else if (!entry.residentGender.equals(gender)) {
+            entry.residentGender = MIXED;
+        }
+    }
+
+    private static class Entry {
+        private final String dormitoryId;
+        private final List<Bed> beds;
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final BitSet freeBeds = new BitSet();
+        private String residentGender;
+
+        Entry(String dormitoryId, List<Bed> beds) {
+            this.dormitoryId = dormitoryId;
+            this.beds = beds;
+            for (int i = 0; i < beds.size(); i++) {
+                positions.put(beds.get(i).getId(), i);
+                freeBeds.set(i);
+            }
+        }
+    }
+}
@@ -4,13 +4,16 @@ import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.ihome.entity.Bed;
 import com.ihome.entity.Dormitory;
 import com.ihome.entity.DormitoryAllocation;
+import com.ihome.event.BedOccupancyChangedEvent;
 import com.ihome.mapper.BedMapper;
 import com.ihome.mapper.DormitoryAllocationMapper;
 import com.ihome.mapper.DormitoryMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -18,11 +21,14 @@ public class DormitoryService {
     private final DormitoryMapper dormitoryMapper;
     private final BedMapper bedMapper;
     private final DormitoryAllocationMapper allocationMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public DormitoryService(DormitoryMapper dormitoryMapper, BedMapper bedMapper, DormitoryAllocationMapper allocationMapper) {
+    public DormitoryService(DormitoryMapper dormitoryMapper, BedMapper bedMapper, DormitoryAllocationMapper allocationMapper,
+                            ApplicationEventPublisher eventPublisher) {
         this.dormitoryMapper = dormitoryMapper;
         this.bedMapper = bedMapper;
         this.allocationMapper = allocationMapper;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<Dormitory> listDormitories(String buildingId, String status) {
@@ -69,6 +75,9 @@ public class DormitoryService {
             dorm.setStatus("已满");
         }
         dormitoryMapper.updateById(dorm);
+
+        eventPublisher.publishEvent(BedOccupancyChangedEvent.assigned(List.of(
+                new BedOccupancyChangedEvent.BedChange(bedId, bed.getDormitoryId(), studentId))));
     }
 
     @Transactional
@@ -81,12 +90,14 @@ public class DormitoryService {
         if (allocs.isEmpty()) throw new IllegalStateException("当前未在住");
         
         // 处理所有在住的分配记录
+        List<BedOccupancyChangedEvent.BedChange> released = new ArrayList<>();
         for (DormitoryAllocation alloc : allocs) {
             // 释放床位
             Bed bed = bedMapper.selectById(alloc.getBedId());
             if (bed != null) {
                 bed.setStatus("可用");
                 bedMapper.updateById(bed);
+                released.add(new BedOccupancyChangedEvent.BedChange(bed.getId(), bed.getDormitoryId(), studentId));
                 Dormitory dorm = dormitoryMapper.selectById(bed.getDormitoryId());
                 if (dorm != null) {
                     dorm.setCurrentOccupancy(Math.max(0, dorm.getCurrentOccupancy() - 1));
@@ -102,6 +113,11 @@ public class DormitoryService {
             alloc.setCheckOutDate(LocalDate.now());
             allocationMapper.updateById(alloc);
         }
+
+        // 提交后同步增量分配状态，并自动处理候补
+        if (!released.isEmpty()) {
+            eventPublisher.publishEvent(BedOccupancyChangedEvent.released(released));
+        }
     }
 }
 
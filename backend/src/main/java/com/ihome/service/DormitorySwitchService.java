@@ -1,13 +1,17 @@
 package com.ihome.service;
 
 import com.ihome.entity.*;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RequestStatusChangedEvent;
 import com.ihome.mapper.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 宿舍调换服务类
@@ -31,6 +35,14 @@ public class DormitorySwitchService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RoomHarmonyService roomHarmonyService;
+
+    private final SwitchCycleMatcher cycleMatcher = new SwitchCycleMatcher();
+
     /**
      * 学生提交调换申请
      */
@@ -90,6 +102,7 @@ public class DormitorySwitchService {
             
             // 6. 保存申请
             switchMapper.insert(switchRequest);
+            eventPublisher.publishEvent(RequestStatusChangedEvent.switchRequest(null, "待审核"));
             
             // 7. 发送通知给管理员
             String title = "新的宿舍调换申请";
@@ -106,6 +119,21 @@ public class DormitorySwitchService {
             result.put("success", true);
             result.put("message", "调换申请提交成功");
             result.put("switchId", switchRequest.getId());
+
+            // 8. 重新匹配多方调换，新申请促成了可执行方案时提醒管理员
+            Map<String, Object> match = findMatchFor(switchRequest.getId());
+            if (match != null) {
+                result.put("matchProposal", match);
+                notificationService.sendSwitchNotification(
+                        switchRequest.getId().toString(),
+                        "admin",
+                        "admin",
+                        "发现可执行的多方调换",
+                        String.format("学生 %s 的调换申请与其他 %d 个申请可以组成%s，请及时审核。",
+                                switchRequest.getApplicantId(), (Integer) match.get("size") - 1, match.get("type")),
+                        "high"
+                );
+            }
             
         } catch (Exception e) {
             result.put("success", false);
@@ -166,6 +194,7 @@ public class DormitorySwitchService {
                 switchRequest.setCompleteTime(LocalDateTime.now());
                 switchMapper.updateById(switchRequest);
             }
+            eventPublisher.publishEvent(RequestStatusChangedEvent.switchRequest("待审核", status));
             
             // 5. 发送审核结果通知给学生
             String title = "宿舍调换申请审核结果";
@@ -221,11 +250,20 @@ public class DormitorySwitchService {
                 
                 // 执行双方调换
                 String tempBedId = applicantAllocation.getBedId();
+                String tempDormitoryId = applicantAllocation.getDormitoryId();
                 applicantAllocation.setBedId(targetAllocation.getBedId());
+                applicantAllocation.setDormitoryId(targetAllocation.getDormitoryId());
                 targetAllocation.setBedId(tempBedId);
+                targetAllocation.setDormitoryId(tempDormitoryId);
                 
                 allocationMapper.updateById(applicantAllocation);
                 allocationMapper.updateById(targetAllocation);
+
+                eventPublisher.publishEvent(BedOccupancyChangedEvent.moved(List.of(
+                        new BedOccupancyChangedEvent.BedChange(applicantAllocation.getBedId(), applicantAllocation.getDormitoryId(),
+                                applicantAllocation.getStudentId(), targetAllocation.getBedId(), targetAllocation.getDormitoryId()),
+                        new BedOccupancyChangedEvent.BedChange(targetAllocation.getBedId(), targetAllocation.getDormitoryId(),
+                                targetAllocation.getStudentId(), applicantAllocation.getBedId(), applicantAllocation.getDormitoryId()))));
                 
                 result.put("success", true);
                 result.put("message", "双方调换完成");
@@ -246,7 +284,10 @@ public class DormitorySwitchService {
                 }
                 
                 // 更新申请人分配
+                String fromBedId = applicantAllocation.getBedId();
+                String fromDormitoryId = applicantAllocation.getDormitoryId();
                 applicantAllocation.setBedId(switchRequest.getTargetBedId());
+                applicantAllocation.setDormitoryId(targetBed.getDormitoryId());
                 allocationMapper.updateById(applicantAllocation);
                 
                 // 更新床位状态
@@ -256,6 +297,11 @@ public class DormitorySwitchService {
                 
                 bedMapper.updateById(currentBed);
                 bedMapper.updateById(targetBed);
+
+                eventPublisher.publishEvent(BedOccupancyChangedEvent.moved(List.of(
+                        new BedOccupancyChangedEvent.BedChange(targetBed.getId(), targetBed.getDormitoryId(),
+                                applicantAllocation.getStudentId(), fromBedId,
+                                fromDormitoryId != null ? fromDormitoryId : currentBed.getDormitoryId()))));
                 
                 result.put("success", true);
                 result.put("message", "床位调换完成");
@@ -272,6 +318,265 @@ public class DormitorySwitchService {
         return result;
     }
 
+    /**
+     * 匹配全部待审核申请中的多方调换方案（循环调换和以空闲床位结尾的链式调换）
+     */
+    public List<Map<String, Object>> findSwitchMatches() {
+        List<Map<String, Object>> matches = new ArrayList<>();
+        for (SwitchCycleMatcher.Proposal proposal : computeProposals()) {
+            matches.add(toMap(proposal));
+        }
+        return matches;
+    }
+
+    /**
+     * 管理员批准一个多方调换方案，方案内的申请全部执行或全部不执行
+     * 执行前按最新数据重新匹配，方案已不成立（申请被取消、床位被占用等）时拒绝执行
+     * @param switchIds 方案包含的申请ID
+     */
+    @Transactional
+    public Map<String, Object> executeSwitchMatch(List<Integer> switchIds, String reviewerId) {
+        Map<String, Object> result = new HashMap<>();
+        Set<Integer> requested = new TreeSet<>(switchIds);
+        SwitchCycleMatcher.Proposal proposal = null;
+        for (SwitchCycleMatcher.Proposal candidate : computeProposals()) {
+            if (candidate.getSwitchIds().equals(requested)) {
+                proposal = candidate;
+                break;
+            }
+        }
+        if (proposal == null) {
+            result.put("success", false);
+            result.put("message", "调换方案已失效，请重新匹配");
+            return result;
+        }
+
+        List<SwitchCycleMatcher.Move> moves = proposal.getMoves();
+        List<String> studentIds = new ArrayList<>();
+        List<String> toBedIds = new ArrayList<>();
+        for (SwitchCycleMatcher.Move move : moves) {
+            studentIds.add(move.getStudentId());
+            toBedIds.add(move.getToBedId());
+        }
+        Map<String, DormitoryAllocation> allocationByStudent = new HashMap<>();
+        for (DormitoryAllocation allocation : allocationMapper.selectActiveByStudentIds(studentIds)) {
+            allocationByStudent.put(allocation.getStudentId(), allocation);
+        }
+        Map<String, Bed> bedById = new HashMap<>();
+        for (Bed bed : bedMapper.selectBatchIds(toBedIds)) {
+            bedById.put(bed.getId(), bed);
+        }
+
+        // 链式调换：空闲床位被占用、链头原床位空出；条件更新失败说明床位已被其他操作占用
+        if (proposal.getFreeBedId() != null) {
+            if (bedMapper.updateStatusByIds(Collections.singletonList(proposal.getFreeBedId()), "可用", "已占用") != 1) {
+                throw new IllegalStateException("床位 " + proposal.getFreeBedId() + " 已被占用");
+            }
+            bedMapper.updateStatusByIds(Collections.singletonList(proposal.getVacatedBedId()), "已占用", "可用");
+        }
+        List<BedOccupancyChangedEvent.BedChange> changes = new ArrayList<>();
+        for (SwitchCycleMatcher.Move move : moves) {
+            DormitoryAllocation allocation = allocationByStudent.get(move.getStudentId());
+            Bed toBed = bedById.get(move.getToBedId());
+            if (allocation == null || toBed == null || !move.getFromBedId().equals(allocation.getBedId())) {
+                throw new IllegalStateException("学生 " + move.getStudentId() + " 的住宿分配已变化");
+            }
+            String fromDormitoryId = allocation.getDormitoryId();
+            allocation.setBedId(toBed.getId());
+            allocation.setDormitoryId(toBed.getDormitoryId());
+            allocationMapper.updateById(allocation);
+            changes.add(new BedOccupancyChangedEvent.BedChange(toBed.getId(), toBed.getDormitoryId(), move.getStudentId(),
+                    move.getFromBedId(), fromDormitoryId));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        String comment = String.format("%s（%d人）", proposal.getType(), moves.size());
+        List<DormitorySwitch> approved = switchMapper.selectBatchIds(requested);
+        for (DormitorySwitch switchRequest : approved) {
+            switchRequest.setStatus("已通过");
+            switchRequest.setReviewTime(now);
+            switchRequest.setReviewerId(reviewerId);
+            switchRequest.setReviewComment(comment);
+            switchRequest.setCompleteTime(now);
+            switchMapper.updateById(switchRequest);
+            notificationService.sendSwitchNotification(
+                    switchRequest.getId().toString(),
+                    switchRequest.getApplicantId(),
+                    "student",
+                    "宿舍调换申请审核结果",
+                    String.format("您的宿舍调换申请审核结果：已通过，审核意见：%s", comment),
+                    "normal"
+            );
+        }
+        eventPublisher.publishEvent(BedOccupancyChangedEvent.moved(changes));
+        eventPublisher.publishEvent(RequestStatusChangedEvent.switchRequests("待审核", "已通过", approved.size()));
+
+        result.put("success", true);
+        result.put("message", "多方调换完成");
+        result.put("proposal", toMap(proposal));
+        return result;
+    }
+
+    /**
+     * 评估一组调换申请同时执行后，各相关宿舍融洽度的变化
+     */
+    public Map<String, Object> evaluateSwitches(List<Integer> switchIds) {
+        List<DormitorySwitch> switches = switchMapper.selectBatchIds(switchIds);
+        // 申请人自己的换床排在前面：同一学生既是申请人又是他人的目标时，以其本人的申请为准
+        Collection<List<RoomHarmonyService.PlannedMove>> resolved = resolveMoves(switches).values();
+        List<RoomHarmonyService.PlannedMove> moves = new ArrayList<>();
+        for (List<RoomHarmonyService.PlannedMove> switchMoves : resolved) {
+            moves.add(switchMoves.get(0));
+        }
+        for (List<RoomHarmonyService.PlannedMove> switchMoves : resolved) {
+            moves.addAll(switchMoves.subList(1, switchMoves.size()));
+        }
+        Map<String, Object> evaluation = roomHarmonyService.evaluateMoves(moves);
+        evaluation.put("switchIds", switches.stream().map(DormitorySwitch::getId).sorted().collect(Collectors.toList()));
+        return evaluation;
+    }
+
+    /**
+     * 逐个评估全部待审核申请对原宿舍和目标宿舍融洽度的影响，供审核列表展示
+     */
+    public List<Map<String, Object>> evaluatePendingSwitches() {
+        List<DormitorySwitch> pending = switchMapper.selectPendingSwitches();
+        Map<Integer, List<RoomHarmonyService.PlannedMove>> movesBySwitch = resolveMoves(pending);
+        List<Map<String, Object>> evaluations = new ArrayList<>();
+        for (DormitorySwitch request : pending) {
+            List<RoomHarmonyService.PlannedMove> moves = movesBySwitch.get(request.getId());
+            if (moves == null) {
+                continue;
+            }
+            Map<String, Object> evaluation = roomHarmonyService.evaluateMoves(moves);
+            evaluation.put("switchId", request.getId());
+            evaluation.put("applicantId", request.getApplicantId());
+            evaluations.add(evaluation);
+        }
+        return evaluations;
+    }
+
+    /**
+     * 把申请解析为学生换宿舍的计划（两次查询：目标学生的分配、相关床位）
+     * 指定目标学生的申请是双方互换；目标不明确或床位不存在的申请不在结果中
+     */
+    private Map<Integer, List<RoomHarmonyService.PlannedMove>> resolveMoves(List<DormitorySwitch> switches) {
+        Set<String> targetStudentIds = new HashSet<>();
+        for (DormitorySwitch request : switches) {
+            if (request.getTargetStudentId() != null && !request.getTargetStudentId().trim().isEmpty()) {
+                targetStudentIds.add(request.getTargetStudentId());
+            }
+        }
+        Map<String, String> bedByTargetStudent = new HashMap<>();
+        if (!targetStudentIds.isEmpty()) {
+            for (DormitoryAllocation allocation : allocationMapper.selectActiveByStudentIds(targetStudentIds)) {
+                bedByTargetStudent.put(allocation.getStudentId(), allocation.getBedId());
+            }
+        }
+        Set<String> bedIds = new HashSet<>(bedByTargetStudent.values());
+        for (DormitorySwitch request : switches) {
+            if (request.getCurrentBedId() != null) {
+                bedIds.add(request.getCurrentBedId());
+            }
+            if (request.getTargetBedId() != null && !request.getTargetBedId().trim().isEmpty()) {
+                bedIds.add(request.getTargetBedId());
+            }
+        }
+        Map<String, String> dormitoryByBed = new HashMap<>();
+        if (!bedIds.isEmpty()) {
+            for (Bed bed : bedMapper.selectBatchIds(bedIds)) {
+                dormitoryByBed.put(bed.getId(), bed.getDormitoryId());
+            }
+        }
+
+        Map<Integer, List<RoomHarmonyService.PlannedMove>> movesBySwitch = new LinkedHashMap<>();
+        for (DormitorySwitch request : switches) {
+            String fromDormitoryId = dormitoryByBed.get(request.getCurrentBedId());
+            boolean withStudent = request.getTargetStudentId() != null && !request.getTargetStudentId().trim().isEmpty();
+            String targetBedId = withStudent ? bedByTargetStudent.get(request.getTargetStudentId()) : request.getTargetBedId();
+            String toDormitoryId = targetBedId != null ? dormitoryByBed.get(targetBedId) : null;
+            if (fromDormitoryId == null || toDormitoryId == null) {
+                continue;
+            }
+            List<RoomHarmonyService.PlannedMove> moves = new ArrayList<>(2);
+            moves.add(new RoomHarmonyService.PlannedMove(request.getApplicantId(), fromDormitoryId, toDormitoryId));
+            if (withStudent) {
+                moves.add(new RoomHarmonyService.PlannedMove(request.getTargetStudentId(), toDormitoryId, fromDormitoryId));
+            }
+            movesBySwitch.put(request.getId(), moves);
+        }
+        return movesBySwitch;
+    }
+
+    /**
+     * 包含指定申请的调换方案，没有时返回 null；匹配失败不影响申请提交
+     */
+    private Map<String, Object> findMatchFor(Integer switchId) {
+        try {
+            for (SwitchCycleMatcher.Proposal proposal : computeProposals()) {
+                if (proposal.getSwitchIds().contains(switchId)) {
+                    return toMap(proposal);
+                }
+            }
+        } catch (Exception e) {
+            // 匹配只是提示，忽略错误
+        }
+        return null;
+    }
+
+    /**
+     * 加载待审核申请、目标学生床位和想要的床位状态（共三次查询）并匹配
+     */
+    private List<SwitchCycleMatcher.Proposal> computeProposals() {
+        List<DormitorySwitch> pending = switchMapper.selectPendingSwitches();
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> targetStudentIds = new HashSet<>();
+        Set<String> targetBedIds = new HashSet<>();
+        for (DormitorySwitch request : pending) {
+            if (request.getTargetStudentId() != null && !request.getTargetStudentId().trim().isEmpty()) {
+                targetStudentIds.add(request.getTargetStudentId());
+            } else if (request.getTargetBedId() != null && !request.getTargetBedId().trim().isEmpty()) {
+                targetBedIds.add(request.getTargetBedId());
+            }
+        }
+        Map<String, String> bedByTargetStudent = new HashMap<>();
+        if (!targetStudentIds.isEmpty()) {
+            for (DormitoryAllocation allocation : allocationMapper.selectActiveByStudentIds(targetStudentIds)) {
+                bedByTargetStudent.put(allocation.getStudentId(), allocation.getBedId());
+            }
+        }
+        Set<String> freeBeds = new HashSet<>();
+        if (!targetBedIds.isEmpty()) {
+            for (Bed bed : bedMapper.selectBatchIds(targetBedIds)) {
+                if ("可用".equals(bed.getStatus())) {
+                    freeBeds.add(bed.getId());
+                }
+            }
+        }
+        return cycleMatcher.match(pending, bedByTargetStudent, freeBeds);
+    }
+
+    private Map<String, Object> toMap(SwitchCycleMatcher.Proposal proposal) {
+        List<Map<String, Object>> moves = new ArrayList<>();
+        for (SwitchCycleMatcher.Move move : proposal.getMoves()) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("switchId", move.getSwitchId());
+            item.put("studentId", move.getStudentId());
+            item.put("fromBedId", move.getFromBedId());
+            item.put("toBedId", move.getToBedId());
+            moves.add(item);
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", proposal.getType());
+        map.put("size", moves.size());
+        map.put("switchIds", new ArrayList<>(proposal.getSwitchIds()));
+        map.put("freeBedId", proposal.getFreeBedId());
+        map.put("moves", moves);
+        return map;
+    }
+
     /**
      * 获取学生的调换申请列表
      */
@@ -325,6 +630,7 @@ public class DormitorySwitchService {
             switchRequest.setReviewComment("学生主动取消");
             
             switchMapper.updateById(switchRequest);
+            eventPublisher.publishEvent(RequestStatusChangedEvent.switchRequest("待审核", "已取消"));
             
             result.put("success", true);
             result.put("message", "申请已取消");
@@ -243,9 +243,9 @@ public class ElectricityService {
     }
 
     /**
-     * 定时检查电费余额提醒
+     * 定时检查电费余额提醒，默认关闭；通过 electricity.reminders.balance-cron 配置执行时间（如每天上午9点 "0 0 9 * * ?"）
      */
-    @Scheduled(cron = "0 0 9 * * ?") // 每天上午9点执行
+    @Scheduled(cron = "${electricity.reminders.balance-cron:-}")
     public void checkBalanceReminders() {
         List<ElectricityReminder> enabledReminders = reminderMapper.selectEnabledBalanceReminders();
         
@@ -273,9 +273,9 @@ public class ElectricityService {
     }
 
     /**
-     * 定时检查缴费截止日期提醒
+     * 定时检查缴费截止日期提醒，默认关闭；通过 electricity.reminders.due-date-cron 配置执行时间（如每天上午10点 "0 0 10 * * ?"）
      */
-    @Scheduled(cron = "0 0 10 * * ?") // 每天上午10点执行
+    @Scheduled(cron = "${electricity.reminders.due-date-cron:-}")
     public void checkDueDateReminders() {
         List<ElectricityReminder> enabledReminders = reminderMapper.selectEnabledDueDateReminders();
         
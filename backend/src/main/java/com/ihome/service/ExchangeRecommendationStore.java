@@ -0,0 +1,475 @@
+package com.ihome.service;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.ihome.entity.DormitoryAllocation;
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.DormitoryAllocationMapper;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 调换推荐候选存储
+ * 后台为每名在住学生预先计算最匹配的调换对象（同性别、在住、不同宿舍、匹配度超过 50%），
+ * 查询时按学号直接读取。启动后由定时任务在后台完成首次构建。
+ *
+ * 问卷答案、标签和专业完全相同的学生与任何人的匹配度都相同，先按画像特征分组，只计算组与组之间的匹配度。
+ * 候选组不再与同性别的所有组逐一比较：复用 {@link RoommateSimilarityIndex} 的 MinHash 分桶，
+ * 只比较至少在一个带上同桶的组；没有问卷和标签的组无法分桶，与同专业的组互为候选（彼此匹配度相同）。
+ * 候选关系是对称的。
+ *
+ * 问卷、标签或入住变化后只记录变化的学生，定时任务增量刷新：重新加载这些学生，
+ * 只为他们新旧分组的候选组重新计算推荐；超过最长使用时间时全量重建，纠正可能的偏差
+ */
+@Service
+public class ExchangeRecommendationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeRecommendationStore.class);
+
+    /**
+     * 推荐的最低匹配度
+     */
+    private static final double MIN_SCORE = 0.5;
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Autowired
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Autowired
+    private RoommateTagMapper roommateTagMapper;
+
+    /**
+     * 每名学生保留的候选人数
+     */
+    @Value("${exchange.recommendations.candidates-per-student:10}")
+    private int candidatesPerStudent = 10;
+
+    /**
+     * 全量重建的最长间隔（分钟）
+     */
+    @Value("${exchange.recommendations.max-age-minutes:30}")
+    private long maxAgeMinutes = 30;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 画像或入住有变化、等待增量刷新的学生
+     */
+    private final Set<String> dirtyStudents = ConcurrentHashMap.newKeySet();
+
+    // 以下索引只在持有对象锁时访问
+
+    /**
+     * 在住学生ID -> 画像
+     */
+    private final Map<String, RoommateProfile> profiles = new HashMap<>();
+
+    private final Map<String, String> dormitoryByStudent = new HashMap<>();
+
+    /**
+     * 性别和画像特征 -> 组
+     */
+    private final Map<String, Group> groups = new HashMap<>();
+
+    /**
+     * 每个带一张桶表：桶键 -> 组
+     */
+    private final List<Map<Long, Set<Group>>> buckets = new ArrayList<>(RoommateSimilarityIndex.BANDS);
+
+    /**
+     * 性别和专业 -> 组，用于没有问卷和标签的组
+     */
+    private final Map<String, Set<Group>> groupsByMajor = new HashMap<>();
+
+    public ExchangeRecommendationStore() {
+        for (int band = 0; band < RoommateSimilarityIndex.BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 读取学生的调换推荐
+     * @return 按匹配度降序的推荐；学生当前不在住（或尚未计入存储）时返回 null
+     */
+    public List<Map<String, Object>> getRecommendations(String studentId) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = ensureBuilt();
+        }
+        return current.recommendationsByStudent.get(studentId);
+    }
+
+    /**
+     * 定时检查：启动后立即执行首次构建；超过最长使用时间时全量重建，否则只刷新有变化的学生
+     */
+    @Scheduled(fixedDelayString = "${exchange.recommendations.refresh-interval-ms:60000}",
+            initialDelayString = "${exchange.recommendations.initial-delay-ms:0}")
+    public void refreshIfStale() {
+        try {
+            Snapshot current = snapshot;
+            if (current == null || current.builtAt.isBefore(LocalDateTime.now().minusMinutes(maxAgeMinutes))) {
+                rebuild();
+            } else if (!dirtyStudents.isEmpty()) {
+                refreshDirty();
+            }
+        } catch (Exception e) {
+            logger.error("重建调换推荐失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoommateProfileChanged(RoommateProfileChangedEvent event) {
+        dirtyStudents.addAll(event.getStudentIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBedOccupancyChanged(BedOccupancyChangedEvent event) {
+        for (BedOccupancyChangedEvent.BedChange change : event.getChanges()) {
+            if (change.getStudentId() != null) {
+                dirtyStudents.add(change.getStudentId());
+            }
+        }
+    }
+
+    public LocalDateTime getBuiltAt() {
+        Snapshot current = snapshot;
+        return current != null ? current.builtAt : null;
+    }
+
+    /**
+     * 尚未构建时构建；等待锁期间其他线程已构建完成则直接返回
+     */
+    private synchronized Snapshot ensureBuilt() {
+        Snapshot current = snapshot;
+        return current != null ? current : rebuild();
+    }
+
+    /**
+     * 全量重建推荐候选（固定 4 次查询：在住记录、问卷、标签、学生）
+     */
+    public synchronized Snapshot rebuild() {
+        // 先清空变化记录，重建期间发生的变化在下次检查时增量刷新
+        dirtyStudents.clear();
+        LocalDateTime builtAt = LocalDateTime.now();
+
+        profiles.clear();
+        dormitoryByStudent.clear();
+        groups.clear();
+        buckets.forEach(Map::clear);
+        groupsByMajor.clear();
+
+        for (DormitoryAllocation allocation : allocationMapper.selectList(
+                Wrappers.<DormitoryAllocation>query().eq("status", "在住"))) {
+            dormitoryByStudent.put(allocation.getStudentId(), dormitoryOf(allocation));
+        }
+        Map<String, QuestionnaireAnswer> answersByStudent = new HashMap<>();
+        for (QuestionnaireAnswer answer : questionnaireMapper.selectList(null)) {
+            answersByStudent.put(answer.getStudentId(), answer);
+        }
+        Map<String, List<RoommateTag>> tagsByStudent = new HashMap<>();
+        for (RoommateTag tag : roommateTagMapper.selectList(null)) {
+            tagsByStudent.computeIfAbsent(tag.getStudentId(), k -> new ArrayList<>()).add(tag);
+        }
+
+        // 只有在住学生参与推荐
+        for (Student student : studentMapper.selectList(null)) {
+            if (dormitoryByStudent.containsKey(student.getId())) {
+                add(new RoommateProfile(student, answersByStudent.get(student.getId()),
+                        tagsByStudent.get(student.getId())));
+            }
+        }
+        dormitoryByStudent.keySet().retainAll(profiles.keySet());
+
+        Map<String, List<Map<String, Object>>> recommendations = new HashMap<>();
+        for (Group group : groups.values()) {
+            buildRecommendations(group, recommendations);
+        }
+        Snapshot rebuilt = new Snapshot(recommendations, builtAt);
+        snapshot = rebuilt;
+        return rebuilt;
+    }
+
+    /**
+     * 增量刷新有变化的学生（4 次按学生ID的批量查询）
+     * 先从索引中移除这些学生、再按最新数据加入，只为新旧分组的候选组（含自身）中的学生重新计算推荐；
+     * 候选关系对称，推荐中可能出现变化学生的组都在其中
+     */
+    public synchronized Snapshot refreshDirty() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return rebuild();
+        }
+        List<String> changed = new ArrayList<>(dirtyStudents);
+        dirtyStudents.removeAll(changed);
+        if (changed.isEmpty()) {
+            return current;
+        }
+
+        Map<String, List<Map<String, Object>>> recommendations = new HashMap<>(current.recommendationsByStudent);
+        Set<Group> affected = new HashSet<>();
+        for (String studentId : changed) {
+            RoommateProfile previous = profiles.get(studentId);
+            if (previous != null) {
+                Group group = groups.get(groupKey(previous));
+                affected.add(group);
+                affected.addAll(candidateGroups(group));
+                remove(previous);
+            }
+            recommendations.remove(studentId);
+        }
+
+        for (DormitoryAllocation allocation : allocationMapper.selectList(Wrappers.<DormitoryAllocation>query()
+                .eq("status", "在住").in("student_id", changed))) {
+            dormitoryByStudent.put(allocation.getStudentId(), dormitoryOf(allocation));
+        }
+        Map<String, QuestionnaireAnswer> answersByStudent = new HashMap<>();
+        for (QuestionnaireAnswer answer : questionnaireMapper.selectByStudentIds(changed)) {
+            answersByStudent.put(answer.getStudentId(), answer);
+        }
+        Map<String, List<RoommateTag>> tagsByStudent = new HashMap<>();
+        for (RoommateTag tag : roommateTagMapper.selectByStudentIds(changed)) {
+            tagsByStudent.computeIfAbsent(tag.getStudentId(), k -> new ArrayList<>()).add(tag);
+        }
+        for (Student student : studentMapper.selectBatchIds(changed)) {
+            if (dormitoryByStudent.containsKey(student.getId())) {
+                RoommateProfile profile = new RoommateProfile(student, answersByStudent.get(student.getId()),
+                        tagsByStudent.get(student.getId()));
+                Group group = add(profile);
+                affected.add(group);
+                affected.addAll(candidateGroups(group));
+            }
+        }
+        dormitoryByStudent.keySet().retainAll(profiles.keySet());
+
+        for (Group group : affected) {
+            if (!group.members.isEmpty()) {
+                buildRecommendations(group, recommendations);
+            }
+        }
+        Snapshot refreshed = new Snapshot(recommendations, current.builtAt);
+        snapshot = refreshed;
+        return refreshed;
+    }
+
+    private Group add(RoommateProfile profile) {
+        profiles.put(profile.getStudentId(), profile);
+        Group group = groups.computeIfAbsent(groupKey(profile), key -> {
+            Group created = new Group(key, profile);
+            if (created.bandKeys != null) {
+                for (int band = 0; band < RoommateSimilarityIndex.BANDS; band++) {
+                    buckets.get(band).computeIfAbsent(created.bandKeys[band], k -> new HashSet<>()).add(created);
+                }
+            }
+            groupsByMajor.computeIfAbsent(created.majorKey, k -> new HashSet<>()).add(created);
+            return created;
+        });
+        group.members.add(profile);
+        return group;
+    }
+
+    private void remove(RoommateProfile profile) {
+        profiles.remove(profile.getStudentId());
+        dormitoryByStudent.remove(profile.getStudentId());
+        Group group = groups.get(groupKey(profile));
+        group.members.removeIf(member -> member.getStudentId().equals(profile.getStudentId()));
+        if (!group.members.isEmpty()) {
+            return;
+        }
+        groups.remove(group.key);
+        if (group.bandKeys != null) {
+            for (int band = 0; band < RoommateSimilarityIndex.BANDS; band++) {
+                Map<Long, Set<Group>> table = buckets.get(band);
+                Set<Group> bucket = table.get(group.bandKeys[band]);
+                bucket.remove(group);
+                if (bucket.isEmpty()) {
+                    table.remove(group.bandKeys[band]);
+                }
+            }
+        }
+        Set<Group> sameMajor = groupsByMajor.get(group.majorKey);
+        sameMajor.remove(group);
+        if (sameMajor.isEmpty()) {
+            groupsByMajor.remove(group.majorKey);
+        }
+    }
+
+    /**
+     * 组的候选组（不含自身，已限定同性别）：至少在一个带上同桶的组；
+     * 自身或对方没有问卷和标签时，同专业的组也互为候选
+     */
+    private Set<Group> candidateGroups(Group group) {
+        Set<Group> candidates = new HashSet<>();
+        Set<Group> sameMajor = groupsByMajor.getOrDefault(group.majorKey, Collections.emptySet());
+        if (group.bandKeys == null) {
+            candidates.addAll(sameMajor);
+        } else {
+            for (int band = 0; band < RoommateSimilarityIndex.BANDS; band++) {
+                Set<Group> bucket = buckets.get(band).get(group.bandKeys[band]);
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+            for (Group other : sameMajor) {
+                if (other.bandKeys == null) {
+                    candidates.add(other);
+                }
+            }
+        }
+        candidates.removeIf(other -> other == group || !other.gender.equals(group.gender));
+        return candidates;
+    }
+
+    /**
+     * 为一个组的所有学生计算候选
+     */
+    private void buildRecommendations(Group group, Map<String, List<Map<String, Object>>> recommendations) {
+        RoommateProfile representative = group.members.get(0);
+
+        // 本组与候选组（含本组）的匹配度，只保留超过阈值的组，降序排列
+        List<ScoredGroup> ranked = new ArrayList<>();
+        List<Group> compared = new ArrayList<>(candidateGroups(group));
+        compared.add(group);
+        for (Group other : compared) {
+            double score = representative.compatibilityWith(other.members.get(0));
+            if (score > MIN_SCORE) {
+                ranked.add(new ScoredGroup(other.members, score, other.key));
+            }
+        }
+        ranked.sort(Comparator.comparingDouble((ScoredGroup scored) -> scored.score).reversed()
+                .thenComparing(scored -> scored.key));
+
+        for (RoommateProfile student : group.members) {
+            String dormitoryId = dormitoryByStudent.get(student.getStudentId());
+            List<Map<String, Object>> candidates = new ArrayList<>(candidatesPerStudent);
+            for (ScoredGroup scored : ranked) {
+                for (RoommateProfile candidate : scored.members) {
+                    if (candidates.size() >= candidatesPerStudent) {
+                        break;
+                    }
+                    // 排除自己和同宿舍的室友
+                    if (candidate == student
+                            || Objects.equals(dormitoryId, dormitoryByStudent.get(candidate.getStudentId()))) {
+                        continue;
+                    }
+                    candidates.add(describe(student.getStudent(), candidate.getStudent(), scored.score));
+                }
+                if (candidates.size() >= candidatesPerStudent) {
+                    break;
+                }
+            }
+            recommendations.put(student.getStudentId(), Collections.unmodifiableList(candidates));
+        }
+    }
+
+    private static String dormitoryOf(DormitoryAllocation allocation) {
+        return allocation.getDormitoryId() != null ? allocation.getDormitoryId() : allocation.getBedId();
+    }
+
+    private Map<String, Object> describe(Student student, Student candidate, double score) {
+        Map<String, Object> recommendation = new HashMap<>();
+        recommendation.put("targetStudentId", candidate.getId());
+        recommendation.put("targetStudentName", candidate.getName());
+        recommendation.put("targetStudentMajor", candidate.getMajor());
+        recommendation.put("targetStudentCollege", candidate.getCollege());
+        recommendation.put("compatibilityScore", score);
+        recommendation.put("recommendationReason", recommendationReason(student, candidate, score));
+        return Collections.unmodifiableMap(recommendation);
+    }
+
+    /**
+     * 生成推荐理由
+     */
+    private String recommendationReason(Student student, Student candidate, double score) {
+        StringBuilder reason = new StringBuilder();
+        if (student.getMajor() != null && student.getMajor().equals(candidate.getMajor())) {
+            reason.append("同专业学生；");
+        }
+        if (score > 0.8) {
+            reason.append("生活习惯高度匹配");
+        } else if (score > 0.6) {
+            reason.append("生活习惯匹配");
+        } else {
+            reason.append("生活习惯较为匹配");
+        }
+        return reason.toString();
+    }
+
+    /**
+     * 分组键：性别、问卷答案、标签集合和专业都相同的学生在同一组
+     */
+    private static String groupKey(RoommateProfile profile) {
+        return Objects.toString(profile.getStudent().getGender(), "") + "#" + profile.getHabitKey() + "#"
+                + new TreeSet<>(profile.getTagNames()) + "#" + Objects.toString(profile.getStudent().getMajor(), "");
+    }
+
+    /**
+     * 画像特征相同的一组学生；组的成员随增量刷新变化，特征和桶键不变
+     */
+    private static class Group {
+        private final String key;
+        private final String gender;
+        private final String majorKey;
+        private final long[] bandKeys;
+        private final List<RoommateProfile> members = new ArrayList<>();
+
+        Group(String key, RoommateProfile profile) {
+            this.key = key;
+            this.gender = Objects.toString(profile.getStudent().getGender(), "");
+            this.majorKey = gender + "#" + Objects.toString(profile.getStudent().getMajor(), "");
+            this.bandKeys = RoommateSimilarityIndex.bandKeys(profile.features());
+        }
+    }
+
+    private static class ScoredGroup {
+        private final List<RoommateProfile> members;
+        private final double score;
+        private final String key;
+
+        ScoredGroup(List<RoommateProfile> members, double score, String key) {
+            this.members = members;
+            this.score = score;
+            this.key = key;
+        }
+    }
+
+    /**
+     * 一次重建的结果，发布后不再修改
+     */
+    public static class Snapshot {
+        private final Map<String, List<Map<String, Object>>> recommendationsByStudent;
+        private final LocalDateTime builtAt;
+
+        Snapshot(Map<String, List<Map<String, Object>>> recommendationsByStudent, LocalDateTime builtAt) {
+            this.recommendationsByStudent = recommendationsByStudent;
+            this.builtAt = builtAt;
+        }
+
+        public int getStudentCount() {
+            return recommendationsByStudent.size();
+        }
+
+        public LocalDateTime getBuiltAt() {
+            return builtAt;
+        }
+    }
+}
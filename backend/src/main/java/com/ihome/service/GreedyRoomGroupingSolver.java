@@ -0,0 +1,35 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 顺序填充算法（默认）
+ * 按学生排序依次填满每个房间，不考虑同房间学生之间的兼容度
+ */
+public class GreedyRoomGroupingSolver implements RoomGroupingSolver {
+
+    public static final String NAME = "greedy";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<BedPlacement> solve(List<RoommateProfile> students, List<RoomSlot> rooms, long deadlineNanos) {
+        List<BedPlacement> placements = new ArrayList<>();
+        int next = 0;
+        for (RoomSlot room : rooms) {
+            for (Bed bed : room.getFreeBeds()) {
+                if (next >= students.size()) {
+                    return placements;
+                }
+                placements.add(new BedPlacement(students.get(next++), bed));
+            }
+        }
+        return placements;
+    }
+}
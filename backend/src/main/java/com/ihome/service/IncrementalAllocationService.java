@@ -0,0 +1,322 @@
+package com.ihome.service;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.ihome.entity.*;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.mapper.*;
+import com.ihome.service.constraint.AllocationConstraint;
+import com.ihome.service.constraint.ConstraintEvaluator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 增量分配服务
+ * 维护一份常驻内存的分配状态（各宿舍空闲床位、在住学生画像），
+ * 把少量晚到学生直接安排进最合适的未住满宿舍，无需重新计算整个校区。
+ * 与批量分配使用同一组约束插件，硬约束（如无障碍需求）同样剪掉不允许的床位
+ */
+@Service
+public class IncrementalAllocationService {
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private DormitoryMapper dormitoryMapper;
+
+    @Autowired
+    private BuildingMapper buildingMapper;
+
+    @Autowired
+    private BedMapper bedMapper;
+
+    @Autowired
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Autowired
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Autowired
+    private RoommateTagMapper tagMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 分配约束插件，默认使用内置约束
+     */
+    @Autowired(required = false)
+    private List<AllocationConstraint> constraints = AllocationConstraint.defaults();
+
+    /**
+     * 内存状态的最长使用时间（秒），超时后重新加载，
+     * 以吸收未通过事件通知的床位变更
+     */
+    @Value("${allocation.incremental.state-ttl-seconds:300}")
+    private long stateTtlSeconds = 300;
+
+    private LiveAllocationState state;
+    private long stateLoadedAtNanos;
+
+    /**
+     * 将一批学生增量分配到现有宿舍
+     * 已在住的学生会被跳过（记入 alreadyResident）；床位不足时剩余学生记入未分配列表
+     * @param studentIds 待分配的学生ID列表
+     * @return 分配结果
+     */
+    @Transactional
+    public synchronized Map<String, Object> allocate(List<String> studentIds) {
+        LiveAllocationState live = currentState();
+
+        List<String> pendingIds = new ArrayList<>();
+        List<String> alreadyResident = new ArrayList<>();
+        for (String studentId : new LinkedHashSet<>(studentIds)) {
+            if (live.isResident(studentId)) {
+                alreadyResident.add(studentId);
+            } else {
+                pendingIds.add(studentId);
+            }
+        }
+        Map<String, RoommateProfile> profiles = loadProfiles(pendingIds);
+        // 本次开始时的空闲床位和住户；之后新住进的同性别住户由内存状态本身检查
+        ConstraintEvaluator evaluator = new ConstraintEvaluator(constraints, live.getFreeBeds(),
+                live.toOccupancyIndex());
+
+        List<BedPlacement> placements = new ArrayList<>();
+        List<String> unallocatedStudents = new ArrayList<>();
+        for (String studentId : pendingIds) {
+            RoommateProfile profile = profiles.get(studentId);
+            BedPlacement placement = profile != null
+                    ? live.place(profile, bed -> evaluator.permits(profile, bed)) : null;
+            if (placement != null) {
+                placements.add(placement);
+            } else {
+                unallocatedStudents.add(studentId);
+            }
+        }
+
+        List<Map<String, Object>> allocations;
+        try {
+            allocations = persist(placements);
+        } catch (RuntimeException e) {
+            invalidate();
+            throw e;
+        }
+        invalidateOnRollback();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("allocations", allocations);
+        result.put("unallocatedStudents", unallocatedStudents);
+        result.put("alreadyResident", alreadyResident);
+        result.put("totalAllocated", allocations.size());
+        result.put("totalUnallocated", unallocatedStudents.size());
+        result.put("remainingFreeBeds", live.getFreeBedCount());
+        return result;
+    }
+
+    /**
+     * 当前内存状态中的空闲床位数
+     */
+    public synchronized int getFreeBedCount() {
+        return currentState().getFreeBedCount();
+    }
+
+    /**
+     * 丢弃内存状态，下次使用时重新加载
+     */
+    public synchronized void invalidate() {
+        state = null;
+    }
+
+    /**
+     * 床位变化提交后同步内存状态；先于候补处理执行
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void onBedOccupancyChanged(BedOccupancyChangedEvent event) {
+        if (state == null || event.getChanges().isEmpty()) {
+            return;
+        }
+        if (event.isMoved()) {
+            // 换床同时改变空闲床位和宿舍住户，直接丢弃状态，下次使用时重新加载
+            state = null;
+            return;
+        }
+        if (event.isAssigned() && event.getChanges().stream()
+                .allMatch(change -> change.getStudentId() != null && state.isResident(change.getStudentId()))) {
+            return; // 增量分配自身发布的事件，状态已是最新
+        }
+        List<String> bedIds = event.getChanges().stream()
+                .map(BedOccupancyChangedEvent.BedChange::getBedId)
+                .collect(Collectors.toList());
+        Map<String, Bed> beds = bedMapper.selectBatchIds(bedIds).stream()
+                .collect(Collectors.toMap(Bed::getId, bed -> bed, (a, b) -> a));
+
+        if (event.isReleased()) {
+            for (BedOccupancyChangedEvent.BedChange change : event.getChanges()) {
+                Bed bed = beds.get(change.getBedId());
+                if (bed != null) {
+                    state.release(bed, change.getStudentId());
+                }
+            }
+        } else if (event.isAssigned()) {
+            Map<String, RoommateProfile> residents = loadProfiles(event.getChanges().stream()
+                    .map(BedOccupancyChangedEvent.BedChange::getStudentId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+            for (BedOccupancyChangedEvent.BedChange change : event.getChanges()) {
+                Bed bed = beds.get(change.getBedId());
+                String dormitoryId = bed != null ? bed.getDormitoryId() : change.getDormitoryId();
+                state.occupy(dormitoryId, change.getBedId(), residents.get(change.getStudentId()));
+            }
+        }
+    }
+
+    private LiveAllocationState currentState() {
+        if (state == null || System.nanoTime() - stateLoadedAtNanos > stateTtlSeconds * 1_000_000_000L) {
+            state = loadState();
+            stateLoadedAtNanos = System.nanoTime();
+        }
+        return state;
+    }
+
+    /**
+     * 从数据库加载全部床位、宿舍楼栋和楼层以及在住学生画像
+     */
+    private LiveAllocationState loadState() {
+        List<Bed> beds = bedMapper.selectList(null);
+        Map<String, String> buildingByDormitory = new HashMap<>();
+        Map<String, Integer> floorByDormitory = new HashMap<>();
+        for (Dormitory dormitory : dormitoryMapper.selectList(null)) {
+            if (dormitory.getBuildingId() != null) {
+                buildingByDormitory.put(dormitory.getId(), dormitory.getBuildingId());
+            }
+            if (dormitory.getFloorNumber() != null) {
+                floorByDormitory.put(dormitory.getId(), dormitory.getFloorNumber());
+            }
+        }
+        Map<String, String> genderTypeByBuilding = new HashMap<>();
+        for (Building building : buildingMapper.selectList(null)) {
+            if (building.getGenderType() != null) {
+                genderTypeByBuilding.put(building.getId(), building.getGenderType());
+            }
+        }
+        LiveAllocationState live = new LiveAllocationState(beds, buildingByDormitory, genderTypeByBuilding,
+                floorByDormitory);
+
+        List<DormitoryAllocation> activeAllocations = allocationMapper.selectList(
+                Wrappers.<DormitoryAllocation>lambdaQuery().eq(DormitoryAllocation::getStatus, "在住"));
+        Map<String, String> dormitoryByBed = beds.stream()
+                .collect(Collectors.toMap(Bed::getId, Bed::getDormitoryId, (a, b) -> a));
+        Map<String, RoommateProfile> residents = loadProfiles(activeAllocations.stream()
+                .map(DormitoryAllocation::getStudentId)
+                .collect(Collectors.toList()));
+        for (DormitoryAllocation allocation : activeAllocations) {
+            String dormitoryId = dormitoryByBed.getOrDefault(allocation.getBedId(), allocation.getDormitoryId());
+            live.occupy(dormitoryId, allocation.getBedId(), residents.get(allocation.getStudentId()));
+        }
+        return live;
+    }
+
+    /**
+     * 批量加载学生画像：学生、问卷答案和标签各一次查询
+     */
+    private Map<String, RoommateProfile> loadProfiles(List<String> studentIds) {
+        Map<String, RoommateProfile> profiles = new HashMap<>();
+        if (studentIds.isEmpty()) {
+            return profiles;
+        }
+        Map<String, QuestionnaireAnswer> answers = new HashMap<>();
+        for (QuestionnaireAnswer answer : questionnaireMapper.selectByStudentIds(studentIds)) {
+            answers.put(answer.getStudentId(), answer);
+        }
+        Map<String, List<RoommateTag>> tags = new HashMap<>();
+        for (RoommateTag tag : tagMapper.selectByStudentIds(studentIds)) {
+            tags.computeIfAbsent(tag.getStudentId(), k -> new ArrayList<>()).add(tag);
+        }
+        for (Student student : studentMapper.selectBatchIds(studentIds)) {
+            profiles.put(student.getId(), new RoommateProfile(student,
+                    answers.get(student.getId()), tags.get(student.getId())));
+        }
+        return profiles;
+    }
+
+    /**
+     * 写入分配记录并占用床位，床位已被其他操作占用时整体回滚
+     */
+    private List<Map<String, Object>> persist(List<BedPlacement> placements) {
+        List<Map<String, Object>> allocations = new ArrayList<>();
+        if (placements.isEmpty()) {
+            return allocations;
+        }
+
+        List<DormitoryAllocation> rows = new ArrayList<>(placements.size());
+        List<String> bedIds = new ArrayList<>(placements.size());
+        List<BedOccupancyChangedEvent.BedChange> changes = new ArrayList<>(placements.size());
+        for (BedPlacement placement : placements) {
+            DormitoryAllocation allocation = new DormitoryAllocation();
+            allocation.setStudentId(placement.getStudent().getStudentId());
+            allocation.setDormitoryId(placement.getDormitoryId());
+            allocation.setBedId(placement.getBed().getId());
+            allocation.setCheckInDate(LocalDate.now());
+            allocation.setStatus("在住");
+            rows.add(allocation);
+            bedIds.add(placement.getBed().getId());
+            changes.add(new BedOccupancyChangedEvent.BedChange(placement.getBed().getId(),
+                    placement.getDormitoryId(), placement.getStudent().getStudentId()));
+        }
+
+        int occupied = bedMapper.updateStatusByIds(bedIds, "可用", "已占用");
+        if (occupied != bedIds.size()) {
+            throw new IllegalStateException("部分床位已被占用，请重新分配");
+        }
+        allocationMapper.insertBatch(rows);
+        eventPublisher.publishEvent(BedOccupancyChangedEvent.assigned(changes));
+
+        for (int i = 0; i < placements.size(); i++) {
+            BedPlacement placement = placements.get(i);
+            Student student = placement.getStudent().getStudent();
+            Bed bed = placement.getBed();
+            bed.setStatus("已占用");
+
+            Map<String, Object> allocationResult = new HashMap<>();
+            allocationResult.put("studentId", student.getId());
+            allocationResult.put("studentName", student.getName());
+            allocationResult.put("bedId", bed.getId());
+            allocationResult.put("dormitoryId", placement.getDormitoryId());
+            allocationResult.put("bedType", bed.getBedType());
+            allocationResult.put("gender", student.getGender());
+            allocationResult.put("allocationId", rows.get(i).getId());
+            allocations.add(allocationResult);
+        }
+        return allocations;
+    }
+
+    /**
+     * 事务回滚时内存状态已与数据库不一致，需丢弃
+     */
+    private void invalidateOnRollback() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        invalidate();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.ihome.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生活习惯特征编码
+ * 标签名和问卷答案（题目+选项）分别驻留为从 0 开始的整数编号，画像以 long[] 位图保存，
+ * 标签 Jaccard 相似度和问卷一致项数都可以用按位与加 popcount 计算，比较时不再创建集合或比较字符串。
+ *
+ * 编号在进程内全局共享且只增不减；标签和问卷选项都是有限的词表，不会无限增长
+ */
+public final class LifestyleFeatures {
+
+    private static final Map<String, Integer> TAG_IDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_TAG_ID = new AtomicInteger();
+
+    private static final Map<String, Integer> ANSWER_IDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ANSWER_ID = new AtomicInteger();
+
+    private static final long[] EMPTY = new long[0];
+
+    private LifestyleFeatures() {
+    }
+
+    /**
+     * 标签名的编号，首次出现时分配
+     */
+    public static int tagId(String tagName) {
+        return TAG_IDS.computeIfAbsent(tagName, k -> NEXT_TAG_ID.getAndIncrement());
+    }
+
+    /**
+     * 已分配的标签编号，标签从未出现过时返回 -1
+     */
+    public static int existingTagId(String tagName) {
+        Integer id = tagName == null ? null : TAG_IDS.get(tagName);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * 第 question 题选择 option 的独热编号，首次出现时分配
+     */
+    public static int answerId(int question, String option) {
+        return ANSWER_IDS.computeIfAbsent(question + "=" + option, k -> NEXT_ANSWER_ID.getAndIncrement());
+    }
+
+    /**
+     * 标签集合的位图，空集合返回长度为 0 的数组
+     */
+    public static long[] encodeTags(Collection<String> tagNames) {
+        if (tagNames.isEmpty()) {
+            return EMPTY;
+        }
+        int[] ids = new int[tagNames.size()];
+        int max = 0;
+        int i = 0;
+        for (String tagName : tagNames) {
+            ids[i] = tagId(tagName);
+            max = Math.max(max, ids[i]);
+            i++;
+        }
+        long[] bits = new long[(max >>> 6) + 1];
+        for (int id : ids) {
+            bits[id >>> 6] |= 1L << id;
+        }
+        return bits;
+    }
+
+    /**
+     * 问卷答案的独热位图，每道已作答的题目恰好置一位，未作答（null）的题目不置位
+     */
+    public static long[] encodeAnswers(String... options) {
+        int[] ids = new int[options.length];
+        int max = -1;
+        for (int q = 0; q < options.length; q++) {
+            ids[q] = options[q] != null ? answerId(q, options[q]) : -1;
+            max = Math.max(max, ids[q]);
+        }
+        if (max < 0) {
+            return EMPTY;
+        }
+        long[] bits = new long[(max >>> 6) + 1];
+        for (int id : ids) {
+            if (id >= 0) {
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 已作答题目的掩码，第 q 位表示第 q 题有答案
+     */
+    public static int answeredMask(String... options) {
+        int mask = 0;
+        for (int q = 0; q < options.length; q++) {
+            if (options[q] != null) {
+                mask |= 1 << q;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 两个位图的公共置位数
+     */
+    public static int intersectionCount(long[] a, long[] b) {
+        int length = Math.min(a.length, b.length);
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+
+    /**
+     * 位图的置位数
+     */
+    public static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * 位图是否包含编号 id
+     */
+    public static boolean contains(long[] bits, int id) {
+        int word = id >>> 6;
+        return id >= 0 && word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+}
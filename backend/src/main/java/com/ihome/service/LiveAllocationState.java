@@ -0,0 +1,193 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 常驻内存的分配状态，供增量分配使用
+ * 记录每间宿舍的空闲床位（下铺在前）和在住学生画像；非线程安全，由调用方加锁
+ */
+public class LiveAllocationState {
+
+    private final Map<String, Room> rooms = new LinkedHashMap<>();
+    private final Map<String, String> dormitoryByResident = new HashMap<>();
+    private final Map<String, String> buildingByDormitory;
+    private final Map<String, String> genderTypeByBuilding;
+    private final Map<String, Integer> floorByDormitory;
+
+    /**
+     * @param beds 全部床位
+     * @param buildingByDormitory 宿舍ID -> 楼栋ID
+     * @param genderTypeByBuilding 楼栋ID -> 楼栋性别类型（M/F/MIXED）
+     * @param floorByDormitory 宿舍ID -> 楼层
+     */
+    public LiveAllocationState(List<Bed> beds, Map<String, String> buildingByDormitory,
+                               Map<String, String> genderTypeByBuilding, Map<String, Integer> floorByDormitory) {
+        this.buildingByDormitory = buildingByDormitory;
+        this.genderTypeByBuilding = genderTypeByBuilding;
+        this.floorByDormitory = floorByDormitory;
+        for (Bed bed : beds) {
+            Room room = rooms.computeIfAbsent(bed.getDormitoryId(),
+                    id -> new Room(id, buildingByDormitory.get(id)));
+            if ("可用".equals(bed.getStatus())) {
+                room.addFreeBed(bed);
+            }
+        }
+    }
+
+    /**
+     * 为学生选择最合适的床位并更新状态
+     * 优先选择已有同性别住户、平均兼容度最高的未住满宿舍，其次才是空宿舍；宿舍内下铺优先
+     * @param permitted 硬约束允许该学生入住的床位
+     * @return 床位安排，没有可用床位时返回 null
+     */
+    public BedPlacement place(RoommateProfile student, Predicate<Bed> permitted) {
+        String gender = student.getStudent().getGender();
+        Room best = null;
+        Bed bestBed = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (Room room : rooms.values()) {
+            if (room.freeBeds.isEmpty() || !isCompatible(room, gender)) {
+                continue;
+            }
+            Bed bed = room.freeBeds.stream().filter(permitted).findFirst().orElse(null);
+            if (bed == null) {
+                continue;
+            }
+            double score = room.residents.isEmpty() ? -1.0 : room.averageCompatibility(student);
+            if (score > bestScore) {
+                best = room;
+                bestBed = bed;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        Bed bed = bestBed;
+        best.freeBeds.remove(bed);
+        best.residents.put(student.getStudent().getId(), student);
+        dormitoryByResident.put(student.getStudent().getId(), best.dormitoryId);
+        return new BedPlacement(student, bed);
+    }
+
+    /**
+     * 记录床位已被占用（幂等）
+     */
+    public void occupy(String dormitoryId, String bedId, RoommateProfile resident) {
+        Room room = rooms.get(dormitoryId);
+        if (room == null) {
+            return;
+        }
+        room.freeBeds.removeIf(bed -> bed.getId().equals(bedId));
+        if (resident != null) {
+            room.residents.put(resident.getStudent().getId(), resident);
+            dormitoryByResident.put(resident.getStudent().getId(), dormitoryId);
+        }
+    }
+
+    /**
+     * 记录床位已被释放（幂等）
+     */
+    public void release(Bed bed, String studentId) {
+        Room room = rooms.computeIfAbsent(bed.getDormitoryId(), id -> new Room(id, null));
+        if (room.freeBeds.stream().noneMatch(free -> free.getId().equals(bed.getId()))) {
+            room.addFreeBed(bed);
+        }
+        if (studentId != null) {
+            room.residents.remove(studentId);
+            dormitoryByResident.remove(studentId, bed.getDormitoryId());
+        }
+    }
+
+    public boolean isResident(String studentId) {
+        return dormitoryByResident.containsKey(studentId);
+    }
+
+    /**
+     * 当前全部空闲床位
+     */
+    public List<Bed> getFreeBeds() {
+        List<Bed> beds = new ArrayList<>();
+        for (Room room : rooms.values()) {
+            beds.addAll(room.freeBeds);
+        }
+        return beds;
+    }
+
+    /**
+     * 以当前状态构建宿舍入住索引，供硬约束判断床位
+     */
+    public DormitoryOccupancyIndex toOccupancyIndex() {
+        Map<String, String> residentGenders = new HashMap<>();
+        for (Room room : rooms.values()) {
+            for (RoommateProfile resident : room.residents.values()) {
+                residentGenders.merge(room.dormitoryId, resident.getStudent().getGender(),
+                        (a, b) -> a.equals(b) ? a : DormitoryOccupancyIndex.MIXED);
+            }
+        }
+        return new DormitoryOccupancyIndex(getFreeBeds(), buildingByDormitory, genderTypeByBuilding,
+                residentGenders, floorByDormitory);
+    }
+
+    public int getFreeBedCount() {
+        int count = 0;
+        for (Room room : rooms.values()) {
+            count += room.freeBeds.size();
+        }
+        return count;
+    }
+
+    private boolean isCompatible(Room room, String gender) {
+        String genderType = room.buildingId != null ? genderTypeByBuilding.get(room.buildingId) : null;
+        if (genderType != null && !DormitoryOccupancyIndex.MIXED.equals(genderType)
+                && !genderType.equals(DormitoryOccupancyIndex.genderCode(gender))) {
+            return false;
+        }
+        for (RoommateProfile resident : room.residents.values()) {
+            if (!gender.equals(resident.getStudent().getGender())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Room {
+        private final String dormitoryId;
+        private final String buildingId;
+        private final List<Bed> freeBeds = new ArrayList<>();
+        private final Map<String, RoommateProfile> residents = new LinkedHashMap<>();
+
+        Room(String dormitoryId, String buildingId) {
+            this.dormitoryId = dormitoryId;
+            this.buildingId = buildingId;
+        }
+
+        void addFreeBed(Bed bed) {
+            // 下铺插在所有上铺之前
+            if ("下铺".equals(bed.getBedType())) {
+                int position = 0;
+                while (position < freeBeds.size() && "下铺".equals(freeBeds.get(position).getBedType())) {
+                    position++;
+                }
+                freeBeds.add(position, bed);
+            } else {
+                freeBeds.add(bed);
+            }
+        }
+
+        double averageCompatibility(RoommateProfile student) {
+            double total = 0.0;
+            for (RoommateProfile resident : residents.values()) {
+                total += student.compatibilityWith(resident);
+            }
+            return total / residents.size();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.ihome.service;
+
+import com.ihome.common.RoomOccupancy;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.mapper.DormitoryMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 宿舍占用汇总（楼栋 -> 楼层 -> 宿舍）
+ * 宿舍表左连接床位表一次分组查询得到每间宿舍的床位数和已占用数，再一次遍历汇总到楼层、房型和楼栋。
+ *
+ * 汇总结果按楼栋缓存：床位入住变化后只失效涉及的楼栋，下次读取时只重新查询该楼栋；
+ * 没有发布事件的写操作（如管理员新增宿舍、修改床位）由缓存的最长使用时间兜底
+ */
+@Service
+public class OccupancyRollupService {
+
+    @Autowired
+    private DormitoryMapper dormitoryMapper;
+
+    @Value("${statistics.occupancy-rollup.max-age-minutes:10}")
+    private long maxAgeMinutes;
+
+    /**
+     * 楼栋ID -> 汇总；失效的楼栋从这里移除
+     */
+    private final Map<String, BuildingRollup> cache = new HashMap<>();
+
+    /**
+     * 全部楼栋，全量加载时确定
+     */
+    private final Set<String> knownBuildings = new TreeSet<>();
+
+    private final Map<String, String> buildingByDormitory = new HashMap<>();
+
+    /**
+     * 最近一次全量加载的时间；为 null 表示尚未全量加载
+     */
+    private LocalDateTime fullyLoadedAt;
+
+    /**
+     * 各楼栋汇总：楼栋ID -> 宿舍数、床位数、已占用、空闲和使用率
+     */
+    public synchronized Map<String, Map<String, Object>> buildingSummaries() {
+        ensureAllLoaded();
+        Map<String, Map<String, Object>> summaries = new LinkedHashMap<>();
+        for (String buildingId : knownBuildings) {
+            summaries.put(buildingId, cache.get(buildingId).totals.toMap());
+        }
+        return summaries;
+    }
+
+    /**
+     * 楼栋按楼层下钻，每层列出各宿舍的占用情况
+     * @return 楼栋不存在时返回 null
+     */
+    public synchronized Map<String, Object> floorBreakdown(String buildingId) {
+        BuildingRollup rollup = building(buildingId);
+        if (rollup == null) {
+            return null;
+        }
+        Map<String, Object> result = rollup.totals.toMap();
+        result.put("buildingId", buildingId);
+        List<Map<String, Object>> floors = new ArrayList<>();
+        for (FloorRollup floor : rollup.floors.values()) {
+            Map<String, Object> floorMap = floor.totals.toMap();
+            floorMap.put("floorNumber", floor.floorNumber);
+            List<Map<String, Object>> rooms = new ArrayList<>(floor.rooms.size());
+            for (RoomOccupancy room : floor.rooms) {
+                rooms.add(roomMap(room));
+            }
+            floorMap.put("rooms", rooms);
+            floors.add(floorMap);
+        }
+        result.put("floors", floors);
+        return result;
+    }
+
+    /**
+     * 按房型下钻
+     * @param buildingId 只统计该楼栋；为 null 时统计全校
+     * @return 楼栋不存在时返回 null
+     */
+    public synchronized List<Map<String, Object>> roomTypeBreakdown(String buildingId) {
+        Map<String, Counts> byRoomType = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        if (buildingId == null) {
+            ensureAllLoaded();
+            for (String known : knownBuildings) {
+                mergeRoomTypes(cache.get(known), byRoomType);
+            }
+        } else {
+            BuildingRollup rollup = building(buildingId);
+            if (rollup == null) {
+                return null;
+            }
+            mergeRoomTypes(rollup, byRoomType);
+        }
+        List<Map<String, Object>> roomTypes = new ArrayList<>(byRoomType.size());
+        for (Map.Entry<String, Counts> entry : byRoomType.entrySet()) {
+            Map<String, Object> roomType = entry.getValue().toMap();
+            roomType.put("roomType", entry.getKey());
+            roomTypes.add(roomType);
+        }
+        return roomTypes;
+    }
+
+    /**
+     * 床位入住变化后失效涉及的楼栋；宿舍不在已知楼栋中（如新建的宿舍）时失效全部缓存
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBedOccupancyChanged(BedOccupancyChangedEvent event) {
+        for (BedOccupancyChangedEvent.BedChange change : event.getChanges()) {
+            evict(change.getDormitoryId());
+            evict(change.getFromDormitoryId());
+        }
+    }
+
+    /**
+     * 清空全部缓存，下次读取时重新加载
+     */
+    public synchronized void invalidateAll() {
+        cache.clear();
+        knownBuildings.clear();
+        buildingByDormitory.clear();
+        fullyLoadedAt = null;
+    }
+
+    private void evict(String dormitoryId) {
+        if (dormitoryId == null) {
+            return;
+        }
+        String buildingId = buildingByDormitory.get(dormitoryId);
+        if (buildingId != null) {
+            cache.remove(buildingId);
+        } else if (fullyLoadedAt != null) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * 保证全部楼栋都已加载：未全量加载或已过期时一次查询全部，否则只重新查询失效的楼栋
+     */
+    private void ensureAllLoaded() {
+        if (fullyLoadedAt == null || expired(fullyLoadedAt)) {
+            invalidateAll();
+            Map<String, List<RoomOccupancy>> roomsByBuilding = new LinkedHashMap<>();
+            for (RoomOccupancy room : dormitoryMapper.selectRoomOccupancy(null)) {
+                roomsByBuilding.computeIfAbsent(room.getBuildingId(), k -> new ArrayList<>()).add(room);
+            }
+            for (Map.Entry<String, List<RoomOccupancy>> entry : roomsByBuilding.entrySet()) {
+                put(new BuildingRollup(entry.getKey(), entry.getValue()));
+            }
+            fullyLoadedAt = LocalDateTime.now();
+            return;
+        }
+        for (String buildingId : new ArrayList<>(knownBuildings)) {
+            building(buildingId);
+        }
+    }
+
+    private BuildingRollup building(String buildingId) {
+        BuildingRollup rollup = cache.get(buildingId);
+        if (rollup != null && !expired(rollup.loadedAt)) {
+            return rollup;
+        }
+        List<RoomOccupancy> rooms = dormitoryMapper.selectRoomOccupancy(buildingId);
+        if (rooms.isEmpty()) {
+            cache.remove(buildingId);
+            knownBuildings.remove(buildingId);
+            return null;
+        }
+        rollup = new BuildingRollup(buildingId, rooms);
+        put(rollup);
+        return rollup;
+    }
+
+    private void put(BuildingRollup rollup) {
+        cache.put(rollup.buildingId, rollup);
+        knownBuildings.add(rollup.buildingId);
+        for (FloorRollup floor : rollup.floors.values()) {
+            for (RoomOccupancy room : floor.rooms) {
+                buildingByDormitory.put(room.getDormitoryId(), rollup.buildingId);
+            }
+        }
+    }
+
+    private boolean expired(LocalDateTime loadedAt) {
+        return maxAgeMinutes > 0 && loadedAt.isBefore(LocalDateTime.now().minusMinutes(maxAgeMinutes));
+    }
+
+    private static void mergeRoomTypes(BuildingRollup rollup, Map<String, Counts> byRoomType) {
+        for (Map.Entry<String, Counts> entry : rollup.roomTypes.entrySet()) {
+            byRoomType.computeIfAbsent(entry.getKey(), k -> new Counts()).add(entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> roomMap(RoomOccupancy room) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("dormitoryId", room.getDormitoryId());
+        map.put("roomNumber", room.getRoomNumber());
+        map.put("roomType", room.getRoomType());
+        map.put("totalBeds", room.getTotalBeds());
+        map.put("occupiedBeds", room.getOccupiedBeds());
+        map.put("availableBeds", room.getTotalBeds() - room.getOccupiedBeds());
+        map.put("occupancyRate", rate(room.getOccupiedBeds(), room.getTotalBeds()));
+        return map;
+    }
+
+    private static double rate(int occupiedBeds, int totalBeds) {
+        return totalBeds > 0 ? (double) occupiedBeds / totalBeds * 100 : 0;
+    }
+
+    /**
+     * 宿舍数、床位数和已占用床位数
+     */
+    private static class Counts {
+        private int dormitories;
+        private int totalBeds;
+        private int occupiedBeds;
+
+        void add(RoomOccupancy room) {
+            dormitories++;
+            totalBeds += room.getTotalBeds();
+            occupiedBeds += room.getOccupiedBeds();
+        }
+
+        void add(Counts other) {
+            dormitories += other.dormitories;
+            totalBeds += other.totalBeds;
+            occupiedBeds += other.occupiedBeds;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("totalDormitories", dormitories);
+            map.put("totalBeds", totalBeds);
+            map.put("occupiedBeds", occupiedBeds);
+            map.put("availableBeds", totalBeds - occupiedBeds);
+            map.put("occupancyRate", rate(occupiedBeds, totalBeds));
+            return map;
+        }
+    }
+
+    private static class FloorRollup {
+        private final Integer floorNumber;
+        private final Counts totals = new Counts();
+        private final List<RoomOccupancy> rooms = new ArrayList<>();
+
+        FloorRollup(Integer floorNumber) {
+            this.floorNumber = floorNumber;
+        }
+    }
+
+    /**
+     * 一个楼栋的汇总，宿舍按楼层、房号排序后一次遍历同时累加到楼栋、楼层和房型
+     */
+    private static class BuildingRollup {
+        private final String buildingId;
+        private final LocalDateTime loadedAt = LocalDateTime.now();
+        private final Counts totals = new Counts();
+        private final Map<Integer, FloorRollup> floors = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        private final Map<String, Counts> roomTypes = new HashMap<>();
+
+        BuildingRollup(String buildingId, List<RoomOccupancy> rooms) {
+            this.buildingId = buildingId;
+            for (RoomOccupancy room : rooms) {
+                totals.add(room);
+                FloorRollup floor = floors.computeIfAbsent(room.getFloorNumber(), FloorRollup::new);
+                floor.totals.add(room);
+                floor.rooms.add(room);
+                roomTypes.computeIfAbsent(room.getRoomType(), k -> new Counts()).add(room);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ihome.service;
+
+import java.util.List;
+
+/**
+ * 室友分组算法
+ * 把同一专业、同一性别的学生安排到房间床位上，只做计算，不访问数据库
+ */
+public interface RoomGroupingSolver {
+
+    /**
+     * 算法名称，对应分配接口的 solver 参数
+     */
+    String getName();
+
+    /**
+     * @param students 已按兼容性分数降序排列的学生
+     * @param rooms 可用房间，按优先顺序排列，床位下铺在前
+     * @param deadlineNanos 时间预算截止点（System.nanoTime），超时后应尽快完成剩余分配
+     * @return 床位安排结果，每个学生、每张床位至多出现一次
+     */
+    List<BedPlacement> solve(List<RoommateProfile> students, List<RoomSlot> rooms, long deadlineNanos);
+}
@@ -0,0 +1,596 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.DormitoryAllocationMapper;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 宿舍室友融洽度
+ * 为每个宿舍维护在住学生两两兼容度之和，以及作息、卫生、噪音三项问卷答案的分布。
+ * 选床、退宿、调换和问卷/标签修改后按事件增量更新：学生入住或离开只计算其与同宿舍室友的兼容度，
+ * O(宿舍人数)；查询直接读取聚合结果。
+ *
+ * 单个宿舍首次查询时按需加载；查询全部宿舍时一次性加载全校在住学生。
+ * 数据库查询都在对象锁之外执行，锁内只读写内存中的聚合，全校加载期间查询和事件不会被阻塞：
+ * 加载开始后应用的变化同时记入该次加载的日志，加载结果替换进来之后按顺序重放，变化不会丢失
+ */
+@Service
+public class RoomHarmonyService {
+
+    @Autowired
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Autowired
+    private RoommateTagMapper tagMapper;
+
+    /**
+     * 事件处理串行执行（读取画像和应用变化），后提交的变化总是读到更新的数据
+     */
+    private final Object eventLock = new Object();
+
+    /**
+     * 同一时间只有一次全校加载
+     */
+    private final Object loadAllLock = new Object();
+
+    // 以下状态只在持有对象锁时访问
+
+    /**
+     * 已加载的宿舍聚合
+     */
+    private final Map<String, RoomHarmony> rooms = new HashMap<>();
+
+    /**
+     * 已加载宿舍的在住学生 -> 宿舍
+     */
+    private final Map<String, String> dormitoryByStudent = new HashMap<>();
+
+    /**
+     * 是否已加载全部宿舍
+     */
+    private boolean fullyLoaded;
+
+    /**
+     * 进行中的加载各自的变化日志
+     */
+    private final Set<List<Change>> loadJournals = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * 查询宿舍的融洽度
+     */
+    public Map<String, Object> getHarmony(String dormitoryId) {
+        RoomHarmony room = loadedRooms(Collections.singletonList(dormitoryId)).get(dormitoryId);
+        synchronized (this) {
+            return room.toMap(dormitoryId);
+        }
+    }
+
+    /**
+     * 融洽度最低的宿舍（至少两人在住），供管理员优先关注
+     * @param limit 返回数量
+     */
+    public List<Map<String, Object>> lowestHarmony(int limit) {
+        while (true) {
+            loadAll();
+            synchronized (this) {
+                // 加载后又被清空时重新加载
+                if (fullyLoaded) {
+                    return rooms.entrySet().stream()
+                            .filter(entry -> entry.getValue().pairCount() > 0)
+                            .sorted(Comparator.comparingDouble((Map.Entry<String, RoomHarmony> entry) -> entry.getValue().average())
+                                    .thenComparing(Map.Entry::getKey))
+                            .limit(Math.max(limit, 0))
+                            .map(entry -> entry.getValue().toMap(entry.getKey()))
+                            .collect(Collectors.toList());
+                }
+            }
+        }
+    }
+
+    /**
+     * 宿舍在住学生的画像（只读副本），供调换评估等场景使用
+     */
+    public List<RoommateProfile> residents(String dormitoryId) {
+        RoomHarmony room = loadedRooms(Collections.singletonList(dormitoryId)).get(dormitoryId);
+        synchronized (this) {
+            return new ArrayList<>(room.members.values());
+        }
+    }
+
+    /**
+     * 评估一组换床同时执行后各相关宿舍的融洽度变化，不修改聚合
+     * 使用已缓存的宿舍画像，只重算受影响宿舍的室友对
+     * @return rooms：每个相关宿舍调换前后的人数、兼容度之和与平均融洽度；pairwiseSumDelta：兼容度之和的总变化
+     */
+    public Map<String, Object> evaluateMoves(List<PlannedMove> moves) {
+        Map<String, PlannedMove> moveByStudent = new LinkedHashMap<>();
+        Set<String> dormitoryIds = new LinkedHashSet<>();
+        for (PlannedMove move : moves) {
+            moveByStudent.putIfAbsent(move.getStudentId(), move);
+        }
+        for (PlannedMove move : moveByStudent.values()) {
+            for (String dormitoryId : Arrays.asList(move.getFromDormitoryId(), move.getToDormitoryId())) {
+                if (dormitoryId != null) {
+                    dormitoryIds.add(dormitoryId);
+                }
+            }
+        }
+        Map<String, RoomHarmony> loaded = loadedRooms(dormitoryIds);
+
+        // 锁内复制调换前的宿舍成员和汇总，之后的计算不再访问共享状态
+        Map<String, Map<String, RoommateProfile>> residentsAfter = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> summariesBefore = new HashMap<>();
+        Map<String, Double> pairSumsBefore = new HashMap<>();
+        Map<String, Double> averagesBefore = new HashMap<>();
+        Map<String, RoommateProfile> movingProfiles = new HashMap<>();
+        synchronized (this) {
+            for (String dormitoryId : dormitoryIds) {
+                RoomHarmony room = loaded.get(dormitoryId);
+                residentsAfter.put(dormitoryId, new LinkedHashMap<>(room.members));
+                summariesBefore.put(dormitoryId, room.summary());
+                pairSumsBefore.put(dormitoryId, room.pairSum());
+                averagesBefore.put(dormitoryId, room.pairCount() > 0 ? room.average() : null);
+            }
+            for (PlannedMove move : moveByStudent.values()) {
+                RoommateProfile profile = move.getFromDormitoryId() != null
+                        ? loaded.get(move.getFromDormitoryId()).members.get(move.getStudentId()) : null;
+                if (profile != null) {
+                    movingProfiles.put(move.getStudentId(), profile);
+                }
+            }
+        }
+        List<String> missing = moveByStudent.keySet().stream()
+                .filter(studentId -> !movingProfiles.containsKey(studentId))
+                .collect(Collectors.toList());
+        movingProfiles.putAll(loadProfiles(missing));
+
+        // 先全部离开再全部入住，循环调换中的学生互不影响
+        for (PlannedMove move : moveByStudent.values()) {
+            if (move.getFromDormitoryId() != null) {
+                residentsAfter.get(move.getFromDormitoryId()).remove(move.getStudentId());
+            }
+        }
+        for (PlannedMove move : moveByStudent.values()) {
+            RoommateProfile profile = movingProfiles.get(move.getStudentId());
+            if (move.getToDormitoryId() != null && profile != null) {
+                residentsAfter.get(move.getToDormitoryId()).put(move.getStudentId(), profile);
+            }
+        }
+
+        List<Map<String, Object>> roomResults = new ArrayList<>();
+        double totalDelta = 0.0;
+        for (Map.Entry<String, Map<String, RoommateProfile>> entry : residentsAfter.entrySet()) {
+            RoomHarmony after = new RoomHarmony();
+            for (RoommateProfile profile : entry.getValue().values()) {
+                after.add(profile);
+            }
+            double pairSumDelta = after.pairSum() - pairSumsBefore.get(entry.getKey());
+            Double averageBefore = averagesBefore.get(entry.getKey());
+            Map<String, Object> roomResult = new HashMap<>();
+            roomResult.put("dormitoryId", entry.getKey());
+            roomResult.put("before", summariesBefore.get(entry.getKey()));
+            roomResult.put("after", after.summary());
+            roomResult.put("pairwiseSumDelta", pairSumDelta);
+            roomResult.put("harmonyDelta", averageBefore != null && after.pairCount() > 0
+                    ? after.average() - averageBefore : null);
+            roomResults.add(roomResult);
+            totalDelta += pairSumDelta;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("rooms", roomResults);
+        result.put("pairwiseSumDelta", totalDelta);
+        return result;
+    }
+
+    /**
+     * 入住、退宿和换床提交后更新涉及的宿舍；未加载的宿舍在首次查询时读取最新数据
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBedOccupancyChanged(BedOccupancyChangedEvent event) {
+        synchronized (eventLock) {
+            List<BedOccupancyChangedEvent.BedChange> arrivals = new ArrayList<>();
+            List<Change> changes = new ArrayList<>();
+            for (BedOccupancyChangedEvent.BedChange change : event.getChanges()) {
+                if (change.getStudentId() == null) {
+                    continue;
+                }
+                if ((event.isAssigned() || event.isMoved()) && change.getDormitoryId() != null) {
+                    arrivals.add(change);
+                } else if (event.isReleased() || event.isMoved()) {
+                    changes.add(Change.leave(change.getStudentId()));
+                }
+            }
+            synchronized (this) {
+                if (!tracking()) {
+                    return;
+                }
+                // 没有进行中的加载时，只需要入住已加载宿舍的学生画像
+                if (loadJournals.isEmpty() && !fullyLoaded) {
+                    arrivals.removeIf(change -> {
+                        if (rooms.containsKey(change.getDormitoryId())) {
+                            return false;
+                        }
+                        changes.add(Change.leave(change.getStudentId()));
+                        return true;
+                    });
+                }
+            }
+            Map<String, RoommateProfile> profiles = loadProfiles(arrivals.stream()
+                    .map(BedOccupancyChangedEvent.BedChange::getStudentId)
+                    .collect(Collectors.toList()));
+            for (BedOccupancyChangedEvent.BedChange change : arrivals) {
+                RoommateProfile profile = profiles.get(change.getStudentId());
+                changes.add(profile != null ? Change.join(change.getDormitoryId(), profile)
+                        : Change.leave(change.getStudentId()));
+            }
+            apply(changes);
+        }
+    }
+
+    /**
+     * 问卷或标签修改后，用新画像替换学生在宿舍中的旧画像
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoommateProfileChanged(RoommateProfileChangedEvent event) {
+        synchronized (eventLock) {
+            List<String> affected;
+            synchronized (this) {
+                // 有进行中的加载时，加载结果里可能包含任意学生
+                affected = event.getStudentIds().stream()
+                        .filter(studentId -> !loadJournals.isEmpty() || dormitoryByStudent.containsKey(studentId))
+                        .collect(Collectors.toList());
+            }
+            if (affected.isEmpty()) {
+                return;
+            }
+            Map<String, RoommateProfile> profiles = loadProfiles(affected);
+            List<Change> changes = new ArrayList<>(affected.size());
+            for (String studentId : affected) {
+                changes.add(Change.replace(studentId, profiles.get(studentId)));
+            }
+            apply(changes);
+        }
+    }
+
+    /**
+     * 清空全部聚合，下次查询时重新加载
+     */
+    public synchronized void invalidateAll() {
+        rooms.clear();
+        dormitoryByStudent.clear();
+        fullyLoaded = false;
+    }
+
+    private boolean tracking() {
+        return !rooms.isEmpty() || !loadJournals.isEmpty();
+    }
+
+    /**
+     * 应用一个事件的变化，并记入进行中加载的日志
+     */
+    private synchronized void apply(List<Change> changes) {
+        for (Change change : changes) {
+            change.applyTo(this);
+        }
+        for (List<Change> journal : loadJournals) {
+            journal.addAll(changes);
+        }
+    }
+
+    /**
+     * 返回各宿舍的聚合，未加载的宿舍在锁外查询后放入
+     */
+    private Map<String, RoomHarmony> loadedRooms(Collection<String> dormitoryIds) {
+        while (true) {
+            List<String> missing = new ArrayList<>();
+            List<Change> journal = new ArrayList<>();
+            synchronized (this) {
+                Map<String, RoomHarmony> loaded = new HashMap<>();
+                for (String dormitoryId : dormitoryIds) {
+                    RoomHarmony room = rooms.get(dormitoryId);
+                    if (room != null) {
+                        loaded.put(dormitoryId, room);
+                    } else {
+                        missing.add(dormitoryId);
+                    }
+                }
+                if (missing.isEmpty()) {
+                    return loaded;
+                }
+                loadJournals.add(journal);
+            }
+            Map<String, Collection<RoommateProfile>> residents = new HashMap<>();
+            try {
+                for (String dormitoryId : missing) {
+                    residents.put(dormitoryId, loadProfiles(
+                            allocationMapper.selectResidentIdsByDormitoryId(dormitoryId)).values());
+                }
+            } finally {
+                synchronized (this) {
+                    loadJournals.remove(journal);
+                }
+            }
+            synchronized (this) {
+                for (Map.Entry<String, Collection<RoommateProfile>> entry : residents.entrySet()) {
+                    // 其他线程已先加载的宿舍保持不变
+                    if (rooms.containsKey(entry.getKey())) {
+                        continue;
+                    }
+                    rooms.put(entry.getKey(), new RoomHarmony());
+                    for (RoommateProfile profile : entry.getValue()) {
+                        join(entry.getKey(), profile);
+                    }
+                }
+                replay(journal);
+            }
+        }
+    }
+
+    /**
+     * 锁外查询全校在住学生，整体替换聚合后重放加载期间的变化
+     */
+    private void loadAll() {
+        synchronized (loadAllLock) {
+            List<Change> journal = new ArrayList<>();
+            synchronized (this) {
+                if (fullyLoaded) {
+                    return;
+                }
+                loadJournals.add(journal);
+            }
+            Map<String, String> dormitories = new HashMap<>();
+            Map<String, RoommateProfile> profiles;
+            try {
+                for (Map<String, Object> row : allocationMapper.selectResidentDormitories()) {
+                    dormitories.put((String) row.get("studentId"), (String) row.get("dormitoryId"));
+                }
+                profiles = loadProfiles(new ArrayList<>(dormitories.keySet()));
+            } finally {
+                synchronized (this) {
+                    loadJournals.remove(journal);
+                }
+            }
+            synchronized (this) {
+                invalidateAll();
+                for (Map.Entry<String, String> entry : dormitories.entrySet()) {
+                    RoommateProfile profile = profiles.get(entry.getKey());
+                    if (profile != null && entry.getValue() != null) {
+                        join(entry.getValue(), profile);
+                    }
+                }
+                fullyLoaded = true;
+                replay(journal);
+            }
+        }
+    }
+
+    /**
+     * 重放加载期间的变化；加载时已读到的变化再次应用结果不变
+     */
+    private void replay(List<Change> journal) {
+        for (Change change : journal) {
+            change.applyTo(this);
+        }
+    }
+
+    private void join(String dormitoryId, RoommateProfile profile) {
+        rooms.computeIfAbsent(dormitoryId, k -> new RoomHarmony()).add(profile);
+        dormitoryByStudent.put(profile.getStudentId(), dormitoryId);
+    }
+
+    /**
+     * @return 学生原来所在的宿舍，不在已加载的宿舍中时返回 null
+     */
+    private String leave(String studentId) {
+        String dormitoryId = dormitoryByStudent.remove(studentId);
+        if (dormitoryId != null) {
+            rooms.get(dormitoryId).remove(studentId);
+        }
+        return dormitoryId;
+    }
+
+    /**
+     * 批量加载画像：学生、标签和问卷各一次查询
+     */
+    private Map<String, RoommateProfile> loadProfiles(List<String> studentIds) {
+        if (studentIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<RoommateTag>> tagsByStudent = new HashMap<>();
+        for (RoommateTag tag : tagMapper.selectByStudentIds(studentIds)) {
+            tagsByStudent.computeIfAbsent(tag.getStudentId(), k -> new ArrayList<>()).add(tag);
+        }
+        Map<String, QuestionnaireAnswer> answersByStudent = new HashMap<>();
+        for (QuestionnaireAnswer answer : questionnaireMapper.selectByStudentIds(studentIds)) {
+            answersByStudent.put(answer.getStudentId(), answer);
+        }
+        Map<String, RoommateProfile> profiles = new HashMap<>();
+        for (Student student : studentMapper.selectBatchIds(studentIds)) {
+            profiles.put(student.getId(), new RoommateProfile(student, answersByStudent.get(student.getId()),
+                    tagsByStudent.get(student.getId())));
+        }
+        return profiles;
+    }
+
+    /**
+     * 一个宿舍的融洽度聚合
+     */
+    static class RoomHarmony {
+        private final Map<String, RoommateProfile> members = new LinkedHashMap<>();
+        private final Map<String, Integer> sleepHistogram = new TreeMap<>();
+        private final Map<String, Integer> cleanlinessHistogram = new TreeMap<>();
+        private final Map<String, Integer> noiseHistogram = new TreeMap<>();
+        private double pairSum;
+
+        /**
+         * 学生入住：累加其与每名室友的兼容度
+         */
+        void add(RoommateProfile profile) {
+            remove(profile.getStudentId());
+            for (RoommateProfile member : members.values()) {
+                pairSum += profile.compatibilityWith(member);
+            }
+            members.put(profile.getStudentId(), profile);
+            count(sleepHistogram, profile.getSleepTimePreference(), 1);
+            count(cleanlinessHistogram, profile.getCleanlinessLevel(), 1);
+            count(noiseHistogram, profile.getNoiseTolerance(), 1);
+        }
+
+        /**
+         * 学生离开：减去其与每名室友的兼容度
+         */
+        void remove(String studentId) {
+            RoommateProfile profile = members.remove(studentId);
+            if (profile == null) {
+                return;
+            }
+            for (RoommateProfile member : members.values()) {
+                pairSum -= profile.compatibilityWith(member);
+            }
+            if (members.size() < 2) {
+                pairSum = 0.0; // 消除浮点累计误差
+            }
+            count(sleepHistogram, profile.getSleepTimePreference(), -1);
+            count(cleanlinessHistogram, profile.getCleanlinessLevel(), -1);
+            count(noiseHistogram, profile.getNoiseTolerance(), -1);
+        }
+
+        int pairCount() {
+            int n = members.size();
+            return n * (n - 1) / 2;
+        }
+
+        /**
+         * 室友两两兼容度的平均值，不足两人时为 0
+         */
+        double average() {
+            int pairs = pairCount();
+            return pairs > 0 ? pairSum / pairs : 0.0;
+        }
+
+        double pairSum() {
+            return pairSum;
+        }
+
+        /**
+         * 人数、兼容度之和与平均融洽度
+         */
+        Map<String, Object> summary() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("residentCount", members.size());
+            map.put("pairwiseSum", pairSum);
+            map.put("harmonyScore", pairCount() > 0 ? average() : null);
+            return map;
+        }
+
+        Map<String, Object> toMap(String dormitoryId) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("dormitoryId", dormitoryId);
+            map.put("residentCount", members.size());
+            map.put("pairCount", pairCount());
+            map.put("pairwiseSum", pairSum);
+            map.put("harmonyScore", pairCount() > 0 ? average() : null);
+            map.put("residentIds", new ArrayList<>(members.keySet()));
+            Map<String, Object> histograms = new HashMap<>();
+            histograms.put("sleepTimePreference", new TreeMap<>(sleepHistogram));
+            histograms.put("cleanlinessLevel", new TreeMap<>(cleanlinessHistogram));
+            histograms.put("noiseTolerance", new TreeMap<>(noiseHistogram));
+            map.put("histograms", histograms);
+            return map;
+        }
+
+        private static void count(Map<String, Integer> histogram, String answer, int delta) {
+            if (answer == null) {
+                return;
+            }
+            histogram.merge(answer, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    /**
+     * 一名学生的变化，结果只取决于变化本身（离开、入住某宿舍、替换画像），重复应用结果不变
+     */
+    private static class Change {
+        private final String studentId;
+        private final String dormitoryId;
+        private final RoommateProfile profile;
+        private final boolean replace;
+
+        private Change(String studentId, String dormitoryId, RoommateProfile profile, boolean replace) {
+            this.studentId = studentId;
+            this.dormitoryId = dormitoryId;
+            this.profile = profile;
+            this.replace = replace;
+        }
+
+        static Change leave(String studentId) {
+            return new Change(studentId, null, null, false);
+        }
+
+        static Change join(String dormitoryId, RoommateProfile profile) {
+            return new Change(profile.getStudentId(), dormitoryId, profile, false);
+        }
+
+        /**
+         * 替换画像，学生留在原宿舍；profile 为 null（学生已删除）时离开
+         */
+        static Change replace(String studentId, RoommateProfile profile) {
+            return new Change(studentId, null, profile, true);
+        }
+
+        void applyTo(RoomHarmonyService service) {
+            String previous = service.leave(studentId);
+            String target = replace ? previous : dormitoryId;
+            // 未加载的宿舍在首次查询时读取最新数据
+            if (profile != null && target != null
+                    && (service.fullyLoaded || service.rooms.containsKey(target))) {
+                service.join(target, profile);
+            }
+        }
+    }
+
+    /**
+     * 一名学生计划从一个宿舍换到另一个宿舍；新入住时原宿舍为 null
+     */
+    public static class PlannedMove {
+        private final String studentId;
+        private final String fromDormitoryId;
+        private final String toDormitoryId;
+
+        public PlannedMove(String studentId, String fromDormitoryId, String toDormitoryId) {
+            this.studentId = studentId;
+            this.fromDormitoryId = fromDormitoryId;
+            this.toDormitoryId = toDormitoryId;
+        }
+
+        public String getStudentId() {
+            return studentId;
+        }
+
+        public String getFromDormitoryId() {
+            return fromDormitoryId;
+        }
+
+        public String getToDormitoryId() {
+            return toDormitoryId;
+        }
+    }
+}
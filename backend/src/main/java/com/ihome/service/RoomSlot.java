@@ -0,0 +1,31 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+
+import java.util.List;
+
+/**
+ * 分组算法中的一个房间：宿舍ID及其剩余可用床位（下铺在前）
+ */
+public class RoomSlot {
+
+    private final String dormitoryId;
+    private final List<Bed> freeBeds;
+
+    public RoomSlot(String dormitoryId, List<Bed> freeBeds) {
+        this.dormitoryId = dormitoryId;
+        this.freeBeds = freeBeds;
+    }
+
+    public String getDormitoryId() {
+        return dormitoryId;
+    }
+
+    public List<Bed> getFreeBeds() {
+        return freeBeds;
+    }
+
+    public int getCapacity() {
+        return freeBeds.size();
+    }
+}
@@ -0,0 +1,302 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 室友兼容度 Top-K 索引
+ * 按"专业/性别"划分群组，首次查询某个群组时一次性加载群组学生的问卷和标签，
+ * 计算两两兼容度并为每名学生保留最兼容的 K 个同学；之后的查询只读取已排好序的列表。
+ * 问卷或标签修改后按事件局部刷新：只重算变化学生与群组其他学生的兼容度，O(群组人数)
+ */
+@Service
+public class RoommateCompatibilityIndex {
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Autowired
+    private RoommateTagMapper tagMapper;
+
+    /**
+     * 每名学生保留的候选人数
+     */
+    @Value("${allocation.suggestions.top-k:10}")
+    private int topK = 10;
+
+    /**
+     * 群组键（专业/性别）-> 群组
+     */
+    private final Map<String, Cohort> cohorts = new ConcurrentHashMap<>();
+
+    /**
+     * 查询与学生最兼容的同专业同性别同学
+     * @param limit 返回人数，超过 K 时按 K 截断
+     * @return 按兼容度降序排列的候选
+     */
+    public List<Match> topMatches(Student student, int limit) {
+        Cohort cohort = cohorts.computeIfAbsent(cohortKey(student),
+                key -> buildCohort(student.getMajor(), student.getGender()));
+        return cohort.top(student.getId(), Math.min(limit, topK));
+    }
+
+    /**
+     * 问卷或标签提交后局部刷新；学生换了专业或性别时从原群组移除
+     * 只刷新已经加载过的群组，未加载的群组在首次查询时读取最新数据
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoommateProfileChanged(RoommateProfileChangedEvent event) {
+        if (cohorts.isEmpty() || event.getStudentIds().isEmpty()) {
+            return;
+        }
+        Map<String, Student> students = studentMapper.selectBatchIds(event.getStudentIds()).stream()
+                .collect(Collectors.toMap(Student::getId, student -> student, (a, b) -> a));
+        for (String studentId : event.getStudentIds()) {
+            Student student = students.get(studentId);
+            String key = student != null ? cohortKey(student) : null;
+            for (Map.Entry<String, Cohort> entry : cohorts.entrySet()) {
+                if (!entry.getKey().equals(key)) {
+                    entry.getValue().remove(studentId);
+                }
+            }
+        }
+
+        List<Student> refreshed = students.values().stream()
+                .filter(student -> cohorts.containsKey(cohortKey(student)))
+                .collect(Collectors.toList());
+        if (refreshed.isEmpty()) {
+            return;
+        }
+        for (RoommateProfile profile : loadProfiles(refreshed)) {
+            // 与首次构建互斥：群组正在构建时等待构建完成后再更新
+            cohorts.computeIfPresent(cohortKey(profile.getStudent()), (key, cohort) -> {
+                cohort.upsert(profile);
+                return cohort;
+            });
+        }
+    }
+
+    /**
+     * 清空全部群组，下次查询时重新构建
+     */
+    public void invalidateAll() {
+        cohorts.clear();
+    }
+
+    private Cohort buildCohort(String major, String gender) {
+        List<Student> members = studentMapper.selectByMajor(major).stream()
+                .filter(student -> Objects.equals(student.getGender(), gender))
+                .collect(Collectors.toList());
+        Cohort cohort = new Cohort(topK);
+        cohort.build(loadProfiles(members));
+        return cohort;
+    }
+
+    /**
+     * 批量加载画像：标签和问卷各一次查询
+     */
+    private List<RoommateProfile> loadProfiles(List<Student> students) {
+        if (students.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> studentIds = students.stream().map(Student::getId).collect(Collectors.toList());
+        Map<String, List<RoommateTag>> tagsByStudent = new HashMap<>();
+        for (RoommateTag tag : tagMapper.selectByStudentIds(studentIds)) {
+            tagsByStudent.computeIfAbsent(tag.getStudentId(), k -> new ArrayList<>()).add(tag);
+        }
+        Map<String, QuestionnaireAnswer> answersByStudent = new HashMap<>();
+        for (QuestionnaireAnswer answer : questionnaireMapper.selectByStudentIds(studentIds)) {
+            answersByStudent.put(answer.getStudentId(), answer);
+        }
+        List<RoommateProfile> profiles = new ArrayList<>(students.size());
+        for (Student student : students) {
+            profiles.add(new RoommateProfile(student, answersByStudent.get(student.getId()),
+                    tagsByStudent.get(student.getId())));
+        }
+        return profiles;
+    }
+
+    private static String cohortKey(Student student) {
+        return student.getMajor() + "/" + student.getGender();
+    }
+
+    /**
+     * 一名候选同学及其兼容度
+     */
+    public static class Match {
+        private final Student student;
+        private final double score;
+
+        public Match(Student student, double score) {
+            this.student = student;
+            this.score = score;
+        }
+
+        public Student getStudent() {
+            return student;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * 兼容度降序，分数相同时按学生ID升序，保证结果稳定
+     */
+    private static final Comparator<Match> BEST_FIRST = Comparator.comparingDouble(Match::getScore).reversed()
+            .thenComparing(match -> match.getStudent().getId());
+
+    /**
+     * 一个专业/性别群组：成员画像和每名成员的 Top-K 列表
+     * 所有方法在群组对象上同步
+     */
+    static class Cohort {
+        private final int k;
+        private final Map<String, RoommateProfile> members = new LinkedHashMap<>();
+        private final Map<String, List<Match>> topByStudent = new HashMap<>();
+
+        /**
+         * 列表中的候选被移除或分数下降、可能已不是前 K 名的学生，查询时重新扫描
+         */
+        private final Set<String> stale = new HashSet<>();
+
+        Cohort(int k) {
+            this.k = Math.max(1, k);
+        }
+
+        synchronized void build(List<RoommateProfile> profiles) {
+            members.clear();
+            topByStudent.clear();
+            stale.clear();
+            List<RoommateProfile> list = new ArrayList<>(profiles);
+            for (RoommateProfile profile : list) {
+                members.put(profile.getStudentId(), profile);
+                topByStudent.put(profile.getStudentId(), new ArrayList<>(k + 1));
+            }
+            // 每对学生只计算一次兼容度，同时更新双方的列表
+            for (int i = 0; i < list.size(); i++) {
+                RoommateProfile a = list.get(i);
+                for (int j = i + 1; j < list.size(); j++) {
+                    RoommateProfile b = list.get(j);
+                    double score = a.compatibilityWith(b);
+                    offer(topByStudent.get(a.getStudentId()), new Match(b.getStudent(), score));
+                    offer(topByStudent.get(b.getStudentId()), new Match(a.getStudent(), score));
+                }
+            }
+        }
+
+        synchronized List<Match> top(String studentId, int limit) {
+            if (!members.containsKey(studentId)) {
+                return Collections.emptyList();
+            }
+            if (stale.remove(studentId)) {
+                rescan(studentId);
+            }
+            List<Match> top = topByStudent.get(studentId);
+            return new ArrayList<>(top.subList(0, Math.min(Math.max(limit, 0), top.size())));
+        }
+
+        /**
+         * 加入新成员或替换已有成员的画像，重算其与其他成员的兼容度
+         */
+        synchronized void upsert(RoommateProfile profile) {
+            String studentId = profile.getStudentId();
+            members.put(studentId, profile);
+            List<Match> own = new ArrayList<>(k + 1);
+            for (RoommateProfile other : members.values()) {
+                if (other == profile) {
+                    continue;
+                }
+                double score = profile.compatibilityWith(other);
+                offer(own, new Match(other.getStudent(), score));
+
+                List<Match> top = topByStudent.get(other.getStudentId());
+                int existing = indexOf(top, studentId);
+                if (existing >= 0) {
+                    double previous = top.get(existing).getScore();
+                    top.remove(existing);
+                    if (score < previous && members.size() - 1 > k) {
+                        // 分数下降，列表外可能有更好的候选
+                        stale.add(other.getStudentId());
+                    }
+                }
+                offer(top, new Match(profile.getStudent(), score));
+            }
+            topByStudent.put(studentId, own);
+            stale.remove(studentId);
+        }
+
+        /**
+         * 移除成员；列表中含有该成员的学生标记为待重新扫描
+         */
+        synchronized void remove(String studentId) {
+            if (members.remove(studentId) == null) {
+                return;
+            }
+            topByStudent.remove(studentId);
+            stale.remove(studentId);
+            for (Map.Entry<String, List<Match>> entry : topByStudent.entrySet()) {
+                int existing = indexOf(entry.getValue(), studentId);
+                if (existing >= 0) {
+                    entry.getValue().remove(existing);
+                    stale.add(entry.getKey());
+                }
+            }
+        }
+
+        synchronized int size() {
+            return members.size();
+        }
+
+        private void rescan(String studentId) {
+            RoommateProfile profile = members.get(studentId);
+            List<Match> top = new ArrayList<>(k + 1);
+            for (RoommateProfile other : members.values()) {
+                if (other != profile) {
+                    offer(top, new Match(other.getStudent(), profile.compatibilityWith(other)));
+                }
+            }
+            topByStudent.put(studentId, top);
+        }
+
+        /**
+         * 插入有序列表，超过 K 个时丢弃最后一个
+         */
+        private void offer(List<Match> top, Match match) {
+            if (top.size() >= k && BEST_FIRST.compare(match, top.get(top.size() - 1)) >= 0) {
+                return;
+            }
+            int position = Collections.binarySearch(top, match, BEST_FIRST);
+            top.add(position >= 0 ? position : -position - 1, match);
+            if (top.size() > k) {
+                top.remove(top.size() - 1);
+            }
+        }
+
+        private static int indexOf(List<Match> top, String studentId) {
+            for (int i = 0; i < top.size(); i++) {
+                if (top.get(i).getStudent().getId().equals(studentId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 室友匹配画像
+ * 汇总学生的基本信息、问卷答案和标签，供分组算法计算两两兼容度。
+ * 标签和问卷答案在构造时编码为位图（见 {@link LifestyleFeatures}），两两比较只做按位运算，不分配对象
+ */
+public class RoommateProfile {
+
+    private final Student student;
+    private final String sleepTimePreference;
+    private final String cleanlinessLevel;
+    private final String noiseTolerance;
+    private final Set<String> tagNames;
+    private final long[] tagBits;
+    private final int tagCount;
+    private final long[] answerBits;
+    private final int answeredMask;
+
+    public RoommateProfile(Student student, QuestionnaireAnswer answer, Collection<RoommateTag> tags) {
+        this.student = student;
+        this.sleepTimePreference = answer != null ? answer.getSleepTimePreference() : null;
+        this.cleanlinessLevel = answer != null ? answer.getCleanlinessLevel() : null;
+        this.noiseTolerance = answer != null ? answer.getNoiseTolerance() : null;
+        this.tagNames = new HashSet<>();
+        if (tags != null) {
+            for (RoommateTag tag : tags) {
+                if (tag.getTagName() != null) {
+                    tagNames.add(tag.getTagName());
+                }
+            }
+        }
+        this.tagBits = LifestyleFeatures.encodeTags(tagNames);
+        this.tagCount = tagNames.size();
+        this.answerBits = LifestyleFeatures.encodeAnswers(sleepTimePreference, cleanlinessLevel, noiseTolerance);
+        this.answeredMask = LifestyleFeatures.answeredMask(sleepTimePreference, cleanlinessLevel, noiseTolerance);
+    }
+
+    public Student getStudent() {
+        return student;
+    }
+
+    public String getStudentId() {
+        return student.getId();
+    }
+
+    public String getSleepTimePreference() {
+        return sleepTimePreference;
+    }
+
+    public String getCleanlinessLevel() {
+        return cleanlinessLevel;
+    }
+
+    public String getNoiseTolerance() {
+        return noiseTolerance;
+    }
+
+    /**
+     * 学生是否有某个标签（问卷生成或手动选择）
+     */
+    public boolean hasTag(String tagName) {
+        return LifestyleFeatures.contains(tagBits, LifestyleFeatures.existingTagId(tagName));
+    }
+
+    /**
+     * 学生的全部标签名
+     */
+    public Set<String> getTagNames() {
+        return Collections.unmodifiableSet(tagNames);
+    }
+
+    /**
+     * 标签和问卷答案的特征编号集合（升序），供 MinHash 签名使用
+     * 标签编号为偶数、问卷答案编号为奇数，两类编号不会冲突
+     */
+    int[] features() {
+        int[] features = new int[tagCount + Integer.bitCount(answeredMask)];
+        int n = 0;
+        n = appendFeatures(tagBits, 0, features, n);
+        appendFeatures(answerBits, 1, features, n);
+        Arrays.sort(features);
+        return features;
+    }
+
+    private static int appendFeatures(long[] bits, int kind, int[] features, int n) {
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                features[n++] = id * 2 + kind;
+                remaining &= remaining - 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 生活习惯分组键：作息、卫生、噪音三项答案相同的学生键值相同
+     */
+    public String getHabitKey() {
+        return nullToEmpty(sleepTimePreference) + "|" + nullToEmpty(cleanlinessLevel) + "|" + nullToEmpty(noiseTolerance);
+    }
+
+    /**
+     * 计算与另一名学生的室友兼容度（0-1）
+     * 问卷匹配40%、标签相似度30%、专业匹配30%，与调换推荐的算法一致
+     */
+    public double compatibilityWith(RoommateProfile other) {
+        return questionnaireCompatibility(other) * 0.4
+                + tagCompatibility(other) * 0.3
+                + majorCompatibility(other) * 0.3;
+    }
+
+    /**
+     * 问卷匹配度：双方都作答的题目中答案一致的比例，没有共同作答的题目时为 0.5
+     */
+    public double questionnaireCompatibility(RoommateProfile other) {
+        // 每道已作答的题目只置一位，公共置位数即答案一致的题数
+        int factors = Integer.bitCount(answeredMask & other.answeredMask);
+        if (factors == 0) {
+            return 0.5; // 没有问卷时返回中等匹配度
+        }
+        return (double) LifestyleFeatures.intersectionCount(answerBits, other.answerBits) / factors;
+    }
+
+    /**
+     * 标签匹配度：标签集合的 Jaccard 相似度，任一方没有标签时为 0.5
+     */
+    public double tagCompatibility(RoommateProfile other) {
+        if (tagCount == 0 || other.tagCount == 0) {
+            return 0.5;
+        }
+
+        int commonTags = LifestyleFeatures.intersectionCount(tagBits, other.tagBits);
+        int totalTags = tagCount + other.tagCount - commonTags;
+
+        return totalTags > 0 ? (double) commonTags / totalTags : 0.5;
+    }
+
+    /**
+     * 专业匹配度：同专业 1.0，不同专业 0.7，专业未知时 0.5
+     */
+    public double majorCompatibility(RoommateProfile other) {
+        String major = student.getMajor();
+        String otherMajor = other.student.getMajor();
+        if (major != null && otherMajor != null) {
+            return major.equals(otherMajor) ? 1.0 : 0.7;
+        }
+        return 0.5;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,263 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 全校室友相似度近似检索（MinHash + LSH）
+ * 每名学生由标签和问卷答案组成特征集合，计算 MinHash 签名并按行带（band）分桶，
+ * 查询时只取与该学生至少在一个带上同桶的学生作为候选，再用精确的加权兼容度排序，
+ * 不必与全校学生逐一比较。
+ *
+ * 签名参数为 20 个带 × 每带 3 行，特征集合 Jaccard 相似度约 0.37 以上的学生大概率成为候选。
+ * 首次查询时一次性加载全校学生，问卷或标签修改后按事件只更新变化学生的签名和桶
+ */
+@Service
+public class RoommateSimilarityIndex {
+
+    static final int BANDS = 20;
+    static final int ROWS_PER_BAND = 3;
+    private static final int HASHES = BANDS * ROWS_PER_BAND;
+
+    /**
+     * 固定种子生成的哈希函数参数，签名在重启前后保持一致
+     */
+    private static final long[] HASH_MULTIPLIERS = new long[HASHES];
+    private static final long[] HASH_OFFSETS = new long[HASHES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EEDL);
+        for (int i = 0; i < HASHES; i++) {
+            HASH_MULTIPLIERS[i] = random.nextLong() | 1L;
+            HASH_OFFSETS[i] = random.nextLong();
+        }
+    }
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Autowired
+    private RoommateTagMapper tagMapper;
+
+    /**
+     * 学生ID -> 画像和各带的桶键；为 null 表示尚未加载
+     */
+    private Map<String, Entry> entries;
+
+    /**
+     * 每个带一张桶表：桶键 -> 学生ID
+     */
+    private final List<Map<Long, Set<String>>> buckets = new ArrayList<>(BANDS);
+
+    public RoommateSimilarityIndex() {
+        for (int band = 0; band < BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 查询全校与学生最相似的同性别同学
+     * 没有任何标签和问卷答案的学生无法计算签名，返回空列表
+     * @param limit 返回人数
+     * @return 按兼容度降序排列的候选；学生不存在时返回 null
+     */
+    public synchronized List<RoommateCompatibilityIndex.Match> similarStudents(String studentId, int limit) {
+        ensureLoaded();
+        Entry entry = entries.get(studentId);
+        if (entry == null) {
+            return null;
+        }
+        String gender = entry.profile.getStudent().getGender();
+        List<RoommateCompatibilityIndex.Match> matches = new ArrayList<>();
+        for (String candidateId : candidates(entry)) {
+            RoommateProfile candidate = entries.get(candidateId).profile;
+            if (!Objects.equals(candidate.getStudent().getGender(), gender)) {
+                continue;
+            }
+            matches.add(new RoommateCompatibilityIndex.Match(candidate.getStudent(),
+                    entry.profile.compatibilityWith(candidate)));
+        }
+        matches.sort(Comparator.comparingDouble(RoommateCompatibilityIndex.Match::getScore).reversed()
+                .thenComparing(match -> match.getStudent().getId()));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, Math.max(limit, 0))) : matches;
+    }
+
+    /**
+     * 问卷或标签提交后更新变化学生的签名；索引尚未加载时忽略
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRoommateProfileChanged(RoommateProfileChangedEvent event) {
+        if (entries == null || event.getStudentIds().isEmpty()) {
+            return;
+        }
+        List<Student> students = studentMapper.selectBatchIds(event.getStudentIds());
+        Set<String> found = students.stream().map(Student::getId).collect(Collectors.toSet());
+        for (String studentId : event.getStudentIds()) {
+            if (!found.contains(studentId)) {
+                remove(studentId);
+            }
+        }
+        if (students.isEmpty()) {
+            return;
+        }
+        List<String> studentIds = students.stream().map(Student::getId).collect(Collectors.toList());
+        for (RoommateProfile profile : buildProfiles(students,
+                tagMapper.selectByStudentIds(studentIds), questionnaireMapper.selectByStudentIds(studentIds))) {
+            remove(profile.getStudentId());
+            add(profile);
+        }
+    }
+
+    /**
+     * 清空索引，下次查询时重新加载
+     */
+    public synchronized void invalidateAll() {
+        entries = null;
+        buckets.forEach(Map::clear);
+    }
+
+    synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    private void ensureLoaded() {
+        if (entries != null) {
+            return;
+        }
+        entries = new HashMap<>();
+        buckets.forEach(Map::clear);
+        for (RoommateProfile profile : buildProfiles(studentMapper.selectList(null),
+                tagMapper.selectList(null), questionnaireMapper.selectList(null))) {
+            add(profile);
+        }
+    }
+
+    private List<RoommateProfile> buildProfiles(List<Student> students, List<RoommateTag> tags,
+                                                List<QuestionnaireAnswer> answers) {
+        Map<String, List<RoommateTag>> tagsByStudent = new HashMap<>();
+        for (RoommateTag tag : tags) {
+            tagsByStudent.computeIfAbsent(tag.getStudentId(), k -> new ArrayList<>()).add(tag);
+        }
+        Map<String, QuestionnaireAnswer> answersByStudent = new HashMap<>();
+        for (QuestionnaireAnswer answer : answers) {
+            answersByStudent.put(answer.getStudentId(), answer);
+        }
+        List<RoommateProfile> profiles = new ArrayList<>(students.size());
+        for (Student student : students) {
+            profiles.add(new RoommateProfile(student, answersByStudent.get(student.getId()),
+                    tagsByStudent.get(student.getId())));
+        }
+        return profiles;
+    }
+
+    private void add(RoommateProfile profile) {
+        long[] bandKeys = bandKeys(profile.features());
+        entries.put(profile.getStudentId(), new Entry(profile, bandKeys));
+        if (bandKeys == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            buckets.get(band).computeIfAbsent(bandKeys[band], k -> new HashSet<>()).add(profile.getStudentId());
+        }
+    }
+
+    private void remove(String studentId) {
+        Entry entry = entries.remove(studentId);
+        if (entry == null || entry.bandKeys == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            Map<Long, Set<String>> table = buckets.get(band);
+            Set<String> bucket = table.get(entry.bandKeys[band]);
+            if (bucket != null) {
+                bucket.remove(studentId);
+                if (bucket.isEmpty()) {
+                    table.remove(entry.bandKeys[band]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 与学生至少在一个带上同桶的其他学生
+     */
+    private Set<String> candidates(Entry entry) {
+        Set<String> candidates = new HashSet<>();
+        if (entry.bandKeys == null) {
+            return candidates;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            Set<String> bucket = buckets.get(band).get(entry.bandKeys[band]);
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+        candidates.remove(entry.profile.getStudentId());
+        return candidates;
+    }
+
+    /**
+     * 特征集合的 MinHash 签名，按带合并为桶键；特征集合为空时返回 null
+     */
+    static long[] bandKeys(int[] features) {
+        if (features.length == 0) {
+            return null;
+        }
+        long[] signature = new long[HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (int feature : features) {
+            for (int i = 0; i < HASHES; i++) {
+                long hash = mix(feature * HASH_MULTIPLIERS[i] + HASH_OFFSETS[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        long[] bandKeys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = 0; row < ROWS_PER_BAND; row++) {
+                key = mix(key * 31 + signature[band * ROWS_PER_BAND + row]);
+            }
+            bandKeys[band] = key;
+        }
+        return bandKeys;
+    }
+
+    /**
+     * 64 位混合函数（MurmurHash3 fmix64）
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static class Entry {
+        private final RoommateProfile profile;
+        private final long[] bandKeys;
+
+        Entry(RoommateProfile profile, long[] bandKeys) {
+            this.profile = profile;
+            this.bandKeys = bandKeys;
+        }
+    }
+}
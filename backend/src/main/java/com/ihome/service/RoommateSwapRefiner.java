@@ -0,0 +1,189 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.ToDoubleBiFunction;
+import java.util.random.RandomGenerator;
+
+/**
+ * 室友交换优化（两两交换爬山）
+ * 在分组算法得到的床位安排基础上，随机挑选不同宿舍的两名学生，
+ * 若交换床位能提高两间宿舍内室友兼容度之和则执行交换。
+ *
+ * 调用方需保证传入的安排属于同一性别（通常是同一楼栋同一性别），
+ * 床位不变，只交换学生；只考虑本次分配的学生，不含宿舍原有住户。
+ * 超出时间预算或连续多次尝试没有改进时结束。
+ */
+public class RoommateSwapRefiner {
+
+    /**
+     * 每名学生平均允许的连续无改进尝试次数
+     */
+    private static final int STALE_ATTEMPTS_PER_STUDENT = 50;
+
+    /**
+     * 每隔多少次尝试检查一次时间预算
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    /**
+     * @param placements 同一性别的床位安排
+     * @param random 随机数发生器，固定种子时结果可复现（不考虑时间预算截断）
+     * @param deadlineNanos 时间预算截止点（System.nanoTime）
+     * @return 优化结果
+     */
+    public Result refine(List<BedPlacement> placements, RandomGenerator random, long deadlineNanos) {
+        return refine(placements, RoommateProfile::compatibilityWith, (student, bed) -> true, random, deadlineNanos);
+    }
+
+    /**
+     * @param placements 同一性别的床位安排
+     * @param objective 室友对的目标分，所有宿舍室友对之和越大越好
+     * @param permits 硬约束：学生能否入住某张床位，交换后两人都必须被允许
+     * @param random 随机数发生器，固定种子时结果可复现（不考虑时间预算截断）
+     * @param deadlineNanos 时间预算截止点（System.nanoTime）
+     * @return 优化结果
+     */
+    public Result refine(List<BedPlacement> placements,
+                         ToDoubleBiFunction<RoommateProfile, RoommateProfile> objective,
+                         BiPredicate<RoommateProfile, Bed> permits,
+                         RandomGenerator random, long deadlineNanos) {
+        int n = placements.size();
+        RoommateProfile[] students = new RoommateProfile[n];
+        int[] roomOf = new int[n];
+        Map<String, List<Integer>> slotsByDormitory = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            students[i] = placements.get(i).getStudent();
+            slotsByDormitory.computeIfAbsent(placements.get(i).getDormitoryId(), k -> new ArrayList<>()).add(i);
+        }
+        int[][] rooms = new int[slotsByDormitory.size()][];
+        int roomIndex = 0;
+        long pairs = 0;
+        for (List<Integer> slots : slotsByDormitory.values()) {
+            rooms[roomIndex] = slots.stream().mapToInt(Integer::intValue).toArray();
+            for (int slot : rooms[roomIndex]) {
+                roomOf[slot] = roomIndex;
+            }
+            pairs += (long) slots.size() * (slots.size() - 1) / 2;
+            roomIndex++;
+        }
+
+        double scoreBefore = 0.0;
+        for (int[] room : rooms) {
+            for (int i = 0; i < room.length; i++) {
+                for (int j = i + 1; j < room.length; j++) {
+                    scoreBefore += objective.applyAsDouble(students[room[i]], students[room[j]]);
+                }
+            }
+        }
+
+        double score = scoreBefore;
+        int swaps = 0;
+        if (rooms.length > 1) {
+            long staleLimit = Math.max(1000L, (long) n * STALE_ATTEMPTS_PER_STUDENT);
+            long stale = 0;
+            long attempts = 0;
+            while (stale < staleLimit) {
+                if (++attempts % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadlineNanos) {
+                    break;
+                }
+                int a = random.nextInt(n);
+                int b = random.nextInt(n);
+                if (roomOf[a] == roomOf[b]
+                        || !permits.test(students[a], placements.get(b).getBed())
+                        || !permits.test(students[b], placements.get(a).getBed())) {
+                    stale++;
+                    continue;
+                }
+                // 交换后两间宿舍兼容度之和的变化
+                double delta = affinity(students[b], rooms[roomOf[a]], a, students, objective)
+                        - affinity(students[a], rooms[roomOf[a]], a, students, objective)
+                        + affinity(students[a], rooms[roomOf[b]], b, students, objective)
+                        - affinity(students[b], rooms[roomOf[b]], b, students, objective);
+                if (delta > 1e-9) {
+                    RoommateProfile swapped = students[a];
+                    students[a] = students[b];
+                    students[b] = swapped;
+                    score += delta;
+                    swaps++;
+                    stale = 0;
+                } else {
+                    stale++;
+                }
+            }
+        }
+
+        List<BedPlacement> refined = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            refined.add(new BedPlacement(students[i], placements.get(i).getBed()));
+        }
+        return new Result(refined, swaps, pairs, scoreBefore, score);
+    }
+
+    /**
+     * 学生与宿舍内除 excludedSlot 外其他室友的目标分之和
+     */
+    private double affinity(RoommateProfile student, int[] room, int excludedSlot, RoommateProfile[] students,
+                            ToDoubleBiFunction<RoommateProfile, RoommateProfile> objective) {
+        double total = 0.0;
+        for (int slot : room) {
+            if (slot != excludedSlot) {
+                total += objective.applyAsDouble(student, students[slot]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 优化结果：新的床位安排和优化前后的室友兼容度
+     */
+    public static class Result {
+        private final List<BedPlacement> placements;
+        private final int swaps;
+        private final long pairs;
+        private final double scoreBefore;
+        private final double scoreAfter;
+
+        Result(List<BedPlacement> placements, int swaps, long pairs, double scoreBefore, double scoreAfter) {
+            this.placements = placements;
+            this.swaps = swaps;
+            this.pairs = pairs;
+            this.scoreBefore = scoreBefore;
+            this.scoreAfter = scoreAfter;
+        }
+
+        public List<BedPlacement> getPlacements() {
+            return placements;
+        }
+
+        public int getSwaps() {
+            return swaps;
+        }
+
+        /**
+         * 参与计算的室友对数
+         */
+        public long getPairs() {
+            return pairs;
+        }
+
+        /**
+         * 优化前所有宿舍室友目标分之和
+         */
+        public double getScoreBefore() {
+            return scoreBefore;
+        }
+
+        /**
+         * 优化后所有宿舍室友目标分之和
+         */
+        public double getScoreAfter() {
+            return scoreAfter;
+        }
+    }
+}
@@ -2,13 +2,18 @@ package com.ihome.service;
 
 import com.ihome.entity.*;
 import com.ihome.mapper.*;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 数据统计和报表服务类
@@ -38,63 +43,37 @@ public class StatisticsService {
     @Autowired
     private DormitorySwitchMapper switchMapper;
 
+    @Autowired
+    private DashboardCounterStore dashboardCounterStore;
+
+    @Autowired
+    private OccupancyRollupService occupancyRollupService;
+
+    @Autowired
+    private TrendRollupService trendRollupService;
+
+    /**
+     * 综合报表各部分的超时时间（毫秒），从该部分取得执行许可、开始执行时计时
+     */
+    @Value("${statistics.report.section-timeout-ms:10000}")
+    private long reportSectionTimeoutMs = 10000;
+
+    /**
+     * 综合报表同时执行的部分数上限，即报表最多同时占用的数据库连接数
+     */
+    @Value("${statistics.report.max-concurrency:4}")
+    private int reportMaxConcurrency = 4;
+
+    private final ExecutorService reportExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Semaphore reportPermits;
+
     /**
      * 获取仪表盘统计数据
+     * 由常驻内存、按事件增量维护的计数器直接给出，见 {@link DashboardCounterStore}
      */
     public Map<String, Object> getDashboardStatistics() {
-        Map<String, Object> statistics = new HashMap<>();
-        
-        // 学生统计
-        long totalStudents = studentMapper.selectCount(null);
-        long allocatedStudents = allocationMapper.selectCount(null);
-        long unallocatedStudents = totalStudents - allocatedStudents;
-        
-        // 宿舍统计
-        long totalDormitories = dormitoryMapper.selectCount(null);
-        long totalBeds = bedMapper.selectCount(null);
-        long occupiedBeds = bedMapper.selectList(null).stream()
-                .filter(bed -> "已占用".equals(bed.getStatus()))
-                .count();
-        long availableBeds = totalBeds - occupiedBeds;
-        
-        // 缴费统计
-        long totalPayments = paymentMapper.selectCount(null);
-        // PaymentRecord没有status字段，暂时设为0
-        long pendingPayments = 0;
-        
-        // 维修统计
-        long totalRepairs = repairMapper.selectCount(null);
-        long pendingRepairs = repairMapper.selectList(null).stream()
-                .filter(repair -> "待处理".equals(repair.getStatus()))
-                .count();
-        
-        // 调换统计
-        long totalSwitches = switchMapper.selectCount(null);
-        long pendingSwitches = switchMapper.selectList(null).stream()
-                .filter(switchRequest -> "待审核".equals(switchRequest.getStatus()))
-                .count();
-        
-        statistics.put("totalStudents", totalStudents);
-        statistics.put("allocatedStudents", allocatedStudents);
-        statistics.put("unallocatedStudents", unallocatedStudents);
-        statistics.put("allocationRate", totalStudents > 0 ? (double) allocatedStudents / totalStudents * 100 : 0);
-        
-        statistics.put("totalDormitories", totalDormitories);
-        statistics.put("totalBeds", totalBeds);
-        statistics.put("occupiedBeds", occupiedBeds);
-        statistics.put("availableBeds", availableBeds);
-        statistics.put("occupancyRate", totalBeds > 0 ? (double) occupiedBeds / totalBeds * 100 : 0);
-        
-        statistics.put("totalPayments", totalPayments);
-        statistics.put("pendingPayments", pendingPayments);
-        
-        statistics.put("totalRepairs", totalRepairs);
-        statistics.put("pendingRepairs", pendingRepairs);
-        
-        statistics.put("totalSwitches", totalSwitches);
-        statistics.put("pendingSwitches", pendingSwitches);
-        
-        return statistics;
+        return dashboardCounterStore.getDashboardStatistics();
     }
 
     /**
@@ -136,48 +115,22 @@ public class StatisticsService {
     public Map<String, Object> getDormitoryUsageStatistics() {
         Map<String, Object> statistics = new HashMap<>();
         
-        // 按楼栋统计
-        Map<String, Map<String, Object>> buildingStats = new HashMap<>();
-        List<Dormitory> dormitories = dormitoryMapper.selectList(null);
-        
-        for (Dormitory dormitory : dormitories) {
-            String buildingId = dormitory.getBuildingId();
-            buildingStats.computeIfAbsent(buildingId, k -> {
-                Map<String, Object> stats = new HashMap<>();
-                stats.put("totalDormitories", 0);
-                stats.put("totalBeds", 0);
-                stats.put("occupiedBeds", 0);
-                stats.put("availableBeds", 0);
-                return stats;
-            });
-            
-            Map<String, Object> stats = buildingStats.get(buildingId);
-            stats.put("totalDormitories", (Integer) stats.get("totalDormitories") + 1);
-            
-            // 统计床位
-            List<Bed> beds = bedMapper.selectList(null).stream()
-                    .filter(bed -> dormitory.getId().equals(bed.getDormitoryId()))
-                    .toList();
-            
-            stats.put("totalBeds", (Integer) stats.get("totalBeds") + beds.size());
-            
-            long occupiedBeds = beds.stream()
-                    .filter(bed -> "已占用".equals(bed.getStatus()))
-                    .count();
-            
-            stats.put("occupiedBeds", (Integer) stats.get("occupiedBeds") + (int) occupiedBeds);
-            stats.put("availableBeds", (Integer) stats.get("totalBeds") - (Integer) stats.get("occupiedBeds"));
-        }
+        // 按楼栋、房型统计，由按楼栋缓存的占用汇总给出
+        statistics.put("buildingStatistics", occupancyRollupService.buildingSummaries());
+        statistics.put("roomTypeStatistics", occupancyRollupService.roomTypeBreakdown(null));
         
-        // 计算使用率
-        for (Map<String, Object> stats : buildingStats.values()) {
-            int totalBeds = (Integer) stats.get("totalBeds");
-            int occupiedBeds = (Integer) stats.get("occupiedBeds");
-            stats.put("occupancyRate", totalBeds > 0 ? (double) occupiedBeds / totalBeds * 100 : 0);
+        return statistics;
+    }
+
+    /**
+     * 获取楼栋各楼层、各宿舍的使用情况
+     * @return 楼栋不存在时返回 null
+     */
+    public Map<String, Object> getBuildingUsageStatistics(String buildingId) {
+        Map<String, Object> statistics = occupancyRollupService.floorBreakdown(buildingId);
+        if (statistics != null) {
+            statistics.put("roomTypeStatistics", occupancyRollupService.roomTypeBreakdown(buildingId));
         }
-        
-        statistics.put("buildingStatistics", buildingStats);
-        
         return statistics;
     }
 
@@ -303,37 +256,163 @@ public class StatisticsService {
      * 获取趋势分析数据
      */
     public Map<String, Object> getTrendAnalysis() {
-        Map<String, Object> trends = new HashMap<>();
-        
-        // 最近7天的数据趋势
-        LocalDate endDate = LocalDate.now();
-        LocalDate startDate = endDate.minusDays(7);
-        
-        // 这里可以实现更复杂的趋势分析逻辑
-        // 暂时返回基础数据
-        
-        trends.put("period", "最近7天");
-        trends.put("startDate", startDate.toString());
-        trends.put("endDate", endDate.toString());
+        return getTrendAnalysis(null, null, null);
+    }
+
+    /**
+     * 获取指定范围、粒度的趋势分析，由每日汇总表累加得到
+     * @param startDate 开始日期（yyyy-MM-dd），为空时按粒度取最近7天、12周或12个月
+     * @param endDate 结束日期（yyyy-MM-dd），为空时为今天
+     * @param granularity 统计粒度 day/week/month，为空时按天
+     */
+    public Map<String, Object> getTrendAnalysis(String startDate, String endDate, String granularity) {
+        String unit = granularity == null || granularity.isEmpty() ? TrendRollupService.DAY : granularity;
+        LocalDate end = endDate == null || endDate.isEmpty() ? LocalDate.now() : LocalDate.parse(endDate);
+        LocalDate start;
+        String period = null;
+        if (startDate != null && !startDate.isEmpty()) {
+            start = LocalDate.parse(startDate);
+        } else if (TrendRollupService.MONTH.equals(unit)) {
+            start = end.minusMonths(11).withDayOfMonth(1);
+            period = "最近12个月";
+        } else if (TrendRollupService.WEEK.equals(unit)) {
+            start = end.minusWeeks(11).with(DayOfWeek.MONDAY);
+            period = "最近12周";
+        } else {
+            start = end.minusDays(7);
+            period = "最近7天";
+        }
         
+        Map<String, Object> trends = trendRollupService.trends(start, end, unit);
+        if (period != null) {
+            trends.put("period", period);
+        }
         return trends;
     }
 
     /**
      * 生成综合报表
+     * 各部分在虚拟线程中并发执行，同时执行的部分数受许可数限制，避免报表占满共享连接池；
+     * 每个部分的超时从它取得许可开始计算，排队等待许可的部分不会因为排在后面而超时。
+     * 超时或失败的部分不影响其他部分，在 failedSections 中给出原因，complete 为 false。
+     *
+     * 已开始的部分不会被中断：中断正在执行 JDBC 调用的虚拟线程会关闭连接的套接字，
+     * 把损坏的连接还给共享连接池。超时的部分在后台执行完并归还许可，结果丢弃；
+     * 只有尚未开始的部分会被取消。排队时间也有上限（每轮许可一个超时时间），
+     * 前面的部分迟迟不结束时，排队的部分标记为未执行
      */
     public Map<String, Object> generateComprehensiveReport() {
+        Map<String, Callable<Object>> sections = new LinkedHashMap<>();
+        sections.put("dashboard", this::getDashboardStatistics);
+        sections.put("studentDistribution", this::getStudentDistributionStatistics);
+        sections.put("dormitoryUsage", this::getDormitoryUsageStatistics);
+        sections.put("paymentStats", () -> getPaymentStatistics(null, null));
+        sections.put("repairStats", () -> getRepairStatistics(null, null));
+        sections.put("switchStats", this::getSwitchStatistics);
+        sections.put("trends", this::getTrendAnalysis);
+
+        Semaphore permits = reportPermits();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(reportSectionTimeoutMs);
+        int permitCount = Math.max(1, reportMaxConcurrency);
+        long rounds = (sections.size() + permitCount - 1) / permitCount;
+        long queueDeadline = System.nanoTime() + timeout * rounds;
+        Map<String, ReportSection> reportSections = new LinkedHashMap<>();
+        for (Map.Entry<String, Callable<Object>> section : sections.entrySet()) {
+            ReportSection reportSection = new ReportSection();
+            reportSection.future = reportExecutor.submit(() -> {
+                permits.acquire();
+                try {
+                    reportSection.startedAt = System.nanoTime();
+                    if (!reportSection.state.compareAndSet(ReportSection.QUEUED, ReportSection.RUNNING)) {
+                        return null;
+                    }
+                    return section.getValue().call();
+                } finally {
+                    permits.release();
+                }
+            });
+            reportSections.put(section.getKey(), reportSection);
+        }
+
         Map<String, Object> report = new HashMap<>();
-        
-        report.put("dashboard", getDashboardStatistics());
-        report.put("studentDistribution", getStudentDistributionStatistics());
-        report.put("dormitoryUsage", getDormitoryUsageStatistics());
-        report.put("paymentStats", getPaymentStatistics(null, null));
-        report.put("repairStats", getRepairStatistics(null, null));
-        report.put("switchStats", getSwitchStatistics());
-        report.put("trends", getTrendAnalysis());
+        Map<String, String> failedSections = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, ReportSection> entry : reportSections.entrySet()) {
+                ReportSection section = entry.getValue();
+                try {
+                    while (true) {
+                        boolean started = section.state.get() == ReportSection.RUNNING;
+                        long deadline = started ? section.startedAt + timeout : queueDeadline;
+                        try {
+                            report.put(entry.getKey(), section.future.get(
+                                    Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                            break;
+                        } catch (TimeoutException e) {
+                            if (section.abandon()) {
+                                failedSections.put(entry.getKey(), "等待执行超时，未执行");
+                                break;
+                            }
+                            // 等待期间刚开始执行的部分，改为从开始执行时计时
+                            if (started || System.nanoTime() - section.startedAt >= timeout) {
+                                failedSections.put(entry.getKey(), "超时");
+                                break;
+                            }
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    failedSections.put(entry.getKey(), "生成失败: " + e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failedSections.put(entry.getKey(), "已中断");
+                }
+            }
+        } finally {
+            for (ReportSection section : reportSections.values()) {
+                section.abandon();
+            }
+        }
+
+        report.put("complete", failedSections.isEmpty());
+        report.put("failedSections", failedSections);
         report.put("generatedAt", LocalDateTime.now());
         
         return report;
     }
+
+    /**
+     * 综合报表中的一个部分：排队、执行中或已放弃（只有尚未开始的部分可以放弃）
+     */
+    private static class ReportSection {
+        static final int QUEUED = 0;
+        static final int RUNNING = 1;
+        static final int ABANDONED = 2;
+
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        volatile long startedAt;
+        Future<Object> future;
+
+        /**
+         * 放弃尚未开始的部分；它只可能阻塞在等待许可上，中断不会影响数据库连接
+         * @return 是否放弃成功，已开始或已放弃时返回 false
+         */
+        boolean abandon() {
+            if (!state.compareAndSet(QUEUED, ABANDONED)) {
+                return false;
+            }
+            future.cancel(true);
+            return true;
+        }
+    }
+
+    private synchronized Semaphore reportPermits() {
+        if (reportPermits == null) {
+            reportPermits = new Semaphore(Math.max(1, reportMaxConcurrency));
+        }
+        return reportPermits;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reportExecutor.shutdownNow();
+    }
 }
@@ -0,0 +1,290 @@
+package com.ihome.service;
+
+import com.ihome.entity.DormitorySwitch;
+
+import java.util.*;
+
+/**
+ * 调换申请多方匹配
+ * 把待审核的调换申请看作有向图：每个申请从申请人当前床位指向想要的床位
+ * （指定的目标床位，或目标学生当前的床位），想要的床位若正被另一个申请的申请人占用，
+ * 则连一条边到那个申请。每个申请最多一条出边，图中的环就是 k 人循环调换（2 人即互换），
+ * 终点是空闲床位的路径就是链式调换：链尾先搬进空床位，其余人依次搬进前一人腾出的床位。
+ *
+ * 先找出全部环，再为每张空闲床位选最长的链；每个申请最多出现在一个方案中。
+ * 时间复杂度 O(申请数)，数千条申请可以在每次提交时即时重算
+ */
+public class SwitchCycleMatcher {
+
+    public static final String TYPE_SWAP = "互换";
+    public static final String TYPE_CYCLE = "循环调换";
+    public static final String TYPE_CHAIN = "链式调换";
+
+    /**
+     * @param pending 待审核申请，按申请时间升序；同一床位有多个申请时只取最早的一个
+     * @param bedByTargetStudent 目标学生学号 -> 其当前床位
+     * @param freeBeds 当前空闲的床位
+     * @return 可执行的调换方案，环在前、链在后
+     */
+    public List<Proposal> match(List<DormitorySwitch> pending, Map<String, String> bedByTargetStudent,
+                                Set<String> freeBeds) {
+        // 每张床位只保留一个申请
+        List<DormitorySwitch> requests = new ArrayList<>();
+        Map<String, Integer> requestByCurrentBed = new HashMap<>();
+        for (DormitorySwitch request : pending) {
+            if (request.getCurrentBedId() != null && !requestByCurrentBed.containsKey(request.getCurrentBedId())) {
+                requestByCurrentBed.put(request.getCurrentBedId(), requests.size());
+                requests.add(request);
+            }
+        }
+
+        int n = requests.size();
+        String[] wanted = new String[n];
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++) {
+            wanted[i] = wantedBed(requests.get(i), bedByTargetStudent);
+            Integer holder = wanted[i] != null ? requestByCurrentBed.get(wanted[i]) : null;
+            next[i] = holder != null && holder != i ? holder : -1;
+        }
+
+        List<Proposal> proposals = new ArrayList<>();
+        boolean[] used = new boolean[n];
+        findCycles(requests, wanted, next, used, proposals);
+        findChains(requests, wanted, next, freeBeds, used, proposals);
+        return proposals;
+    }
+
+    private static String wantedBed(DormitorySwitch request, Map<String, String> bedByTargetStudent) {
+        if (request.getTargetStudentId() != null && !request.getTargetStudentId().trim().isEmpty()) {
+            return bedByTargetStudent.get(request.getTargetStudentId());
+        }
+        if (request.getTargetBedId() != null && !request.getTargetBedId().trim().isEmpty()) {
+            return request.getTargetBedId();
+        }
+        return null;
+    }
+
+    /**
+     * 出度不超过 1 的图上三色遍历找环
+     */
+    private void findCycles(List<DormitorySwitch> requests, String[] wanted, int[] next, boolean[] used,
+                            List<Proposal> proposals) {
+        int n = next.length;
+        // 0 未访问，1 在当前路径上，2 已处理
+        byte[] state = new byte[n];
+        int[] path = new int[n];
+        for (int start = 0; start < n; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            int length = 0;
+            int node = start;
+            while (node >= 0 && state[node] == 0) {
+                state[node] = 1;
+                path[length++] = node;
+                node = next[node];
+            }
+            if (node >= 0 && state[node] == 1) {
+                // 回到当前路径上的节点：从该节点到路径末尾构成环
+                int from = length - 1;
+                while (path[from] != node) {
+                    from--;
+                }
+                List<Move> moves = new ArrayList<>(length - from);
+                for (int k = from; k < length; k++) {
+                    used[path[k]] = true;
+                    moves.add(move(requests.get(path[k]), wanted[path[k]]));
+                }
+                proposals.add(new Proposal(moves.size() == 2 ? TYPE_SWAP : TYPE_CYCLE, moves, null));
+            }
+            for (int k = 0; k < length; k++) {
+                state[path[k]] = 2;
+            }
+        }
+    }
+
+    /**
+     * 为每张空闲床位选出最长的链
+     * 不在环上的节点构成以"想要空闲床位的申请"为根的入树，链就是从根出发沿入边的一条路径
+     */
+    private void findChains(List<DormitorySwitch> requests, String[] wanted, int[] next, Set<String> freeBeds,
+                            boolean[] used, List<Proposal> proposals) {
+        int n = next.length;
+        int[][] predecessors = predecessors(next, used);
+
+        // 按申请顺序收集想要各空闲床位的根节点
+        Map<String, List<Integer>> rootsByFreeBed = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (!used[i] && next[i] < 0 && wanted[i] != null && freeBeds.contains(wanted[i])) {
+                rootsByFreeBed.computeIfAbsent(wanted[i], k -> new ArrayList<>()).add(i);
+            }
+        }
+        if (rootsByFreeBed.isEmpty()) {
+            return;
+        }
+
+        int[] depth = depths(rootsByFreeBed, predecessors, n);
+        for (Map.Entry<String, List<Integer>> entry : rootsByFreeBed.entrySet()) {
+            int best = -1;
+            for (int root : entry.getValue()) {
+                if (best < 0 || depth[root] > depth[best]) {
+                    best = root;
+                }
+            }
+            // 从根出发每一步选子树最深的前驱
+            List<Move> moves = new ArrayList<>(depth[best]);
+            int node = best;
+            while (node >= 0) {
+                used[node] = true;
+                moves.add(move(requests.get(node), wanted[node]));
+                int deepest = -1;
+                for (int predecessor : predecessors[node]) {
+                    if (deepest < 0 || depth[predecessor] > depth[deepest]) {
+                        deepest = predecessor;
+                    }
+                }
+                node = deepest;
+            }
+            proposals.add(new Proposal(TYPE_CHAIN, moves, entry.getKey()));
+        }
+    }
+
+    private static int[][] predecessors(int[] next, boolean[] used) {
+        int n = next.length;
+        int[] counts = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (!used[i] && next[i] >= 0 && !used[next[i]]) {
+                counts[next[i]]++;
+            }
+        }
+        int[][] predecessors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            predecessors[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!used[i] && next[i] >= 0 && !used[next[i]]) {
+                predecessors[next[i]][counts[next[i]]++] = i;
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * 各节点子树的最大深度（含自身），按后序迭代计算，避免长链递归过深
+     */
+    private static int[] depths(Map<String, List<Integer>> rootsByFreeBed, int[][] predecessors, int n) {
+        int[] depth = new int[n];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (List<Integer> roots : rootsByFreeBed.values()) {
+            for (int root : roots) {
+                stack.push(root);
+                while (!stack.isEmpty()) {
+                    int node = stack.peek();
+                    if (depth[node] == 0) {
+                        // 首次访问：标记后先处理前驱
+                        depth[node] = -1;
+                        for (int predecessor : predecessors[node]) {
+                            stack.push(predecessor);
+                        }
+                        continue;
+                    }
+                    stack.pop();
+                    if (depth[node] == -1) {
+                        int max = 0;
+                        for (int predecessor : predecessors[node]) {
+                            max = Math.max(max, depth[predecessor]);
+                        }
+                        depth[node] = max + 1;
+                    }
+                }
+            }
+        }
+        return depth;
+    }
+
+    private static Move move(DormitorySwitch request, String toBedId) {
+        return new Move(request.getId(), request.getApplicantId(), request.getCurrentBedId(), toBedId);
+    }
+
+    /**
+     * 一个调换方案：需要同时执行的一组申请
+     */
+    public static class Proposal {
+        private final String type;
+        private final List<Move> moves;
+        private final String freeBedId;
+
+        Proposal(String type, List<Move> moves, String freeBedId) {
+            this.type = type;
+            this.moves = Collections.unmodifiableList(moves);
+            this.freeBedId = freeBedId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * 环按边的方向排列；链从搬进空闲床位的申请开始
+         */
+        public List<Move> getMoves() {
+            return moves;
+        }
+
+        /**
+         * 链式调换占用的空闲床位，环为 null
+         */
+        public String getFreeBedId() {
+            return freeBedId;
+        }
+
+        /**
+         * 链式调换最后腾出的床位（链头申请人的原床位），环为 null
+         */
+        public String getVacatedBedId() {
+            return freeBedId != null ? moves.get(moves.size() - 1).getFromBedId() : null;
+        }
+
+        public Set<Integer> getSwitchIds() {
+            Set<Integer> switchIds = new TreeSet<>();
+            for (Move move : moves) {
+                switchIds.add(move.getSwitchId());
+            }
+            return switchIds;
+        }
+    }
+
+    /**
+     * 一名申请人从原床位搬到新床位
+     */
+    public static class Move {
+        private final Integer switchId;
+        private final String studentId;
+        private final String fromBedId;
+        private final String toBedId;
+
+        Move(Integer switchId, String studentId, String fromBedId, String toBedId) {
+            this.switchId = switchId;
+            this.studentId = studentId;
+            this.fromBedId = fromBedId;
+            this.toBedId = toBedId;
+        }
+
+        public Integer getSwitchId() {
+            return switchId;
+        }
+
+        public String getStudentId() {
+            return studentId;
+        }
+
+        public String getFromBedId() {
+            return fromBedId;
+        }
+
+        public String getToBedId() {
+            return toBedId;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.ihome.service;
+
+import com.ihome.entity.DailyStatistics;
+import com.ihome.mapper.DailyStatisticsMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 趋势分析的每日汇总
+ * 定时任务从水位（已汇总到的日期）之后开始，按天分组统计入住、退宿、维修、调换和缴费，写入 daily_statistics，
+ * 每批的删除、写入和推进水位在同一个事务中完成，某批失败时整批回滚，下次从该批重做，读取方不会看到缺失的日期。
+ * 已汇总的日期在之后仍可能变化：分配撤销（已撤销）、缴费退款（已退款），以及按 updated_at 归日的维修完成数，
+ * 因此每次还会重新汇总水位前 restateDays 天，这个窗口之外的修改不再反映到汇总行中。
+ *
+ * 查询任意日期范围时，水位及之前的日期直接累加汇总行，水位之后（通常只有今天）才查询业务表，
+ * 按天、周、月分桶的耗时只与天数有关，与业务表大小无关
+ */
+@Service
+public class TrendRollupService {
+
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+    public static final String MONTH = "month";
+
+    static final String WATERMARK = "daily_statistics";
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendRollupService.class);
+
+    @Autowired
+    private DailyStatisticsMapper dailyStatisticsMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${statistics.trends.backfill-days:365}")
+    private int backfillDays;
+
+    @Value("${statistics.trends.batch-days:31}")
+    private int batchDays;
+
+    @Value("${statistics.trends.restate-days:7}")
+    private int restateDays;
+
+    /**
+     * 定时汇总已经结束的日期
+     */
+    @Scheduled(cron = "${statistics.trends.rollup-cron:0 10 * * * *}")
+    public void scheduledRollUp() {
+        try {
+            rollUp(LocalDate.now());
+        } catch (Exception e) {
+            logger.error("每日统计汇总失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把水位之后、today 之前的日期逐批汇总入库，并重新汇总 today 前 restateDays 天；
+     * 首次执行时从 today 前 backfillDays 天开始
+     * @return 本次汇总（含重新汇总）的天数
+     */
+    public synchronized int rollUp(LocalDate today) {
+        LocalDate watermark = dailyStatisticsMapper.selectWatermark(WATERMARK);
+        LocalDate from = watermark != null ? watermark.plusDays(1) : today.minusDays(backfillDays);
+        LocalDate restateFrom = today.minusDays(Math.max(restateDays, 0));
+        if (watermark != null && restateFrom.isBefore(from)) {
+            from = restateFrom;
+        }
+        int days = 0;
+        while (from.isBefore(today)) {
+            LocalDate to = from.plusDays(Math.max(batchDays, 1));
+            if (to.isAfter(today)) {
+                to = today;
+            }
+            List<DailyStatistics> rows = aggregate(from, to);
+            writeBatch(from, to, rows, watermark);
+            // 重新汇总水位之前的日期时水位不后退
+            if (watermark == null || to.minusDays(1).isAfter(watermark)) {
+                watermark = to.minusDays(1);
+            }
+            days += rows.size();
+            from = to;
+        }
+        return days;
+    }
+
+    /**
+     * 在一个事务中用 rows 替换 [from, to) 的汇总行并推进水位
+     * @param watermark 当前水位；为 null 表示尚未汇总过
+     */
+    private void writeBatch(LocalDate from, LocalDate to, List<DailyStatistics> rows, LocalDate watermark) {
+        LocalDate last = to.minusDays(1);
+        transactionTemplate.execute(status -> {
+            dailyStatisticsMapper.deleteRange(from, to);
+            dailyStatisticsMapper.insertBatch(rows);
+            if (watermark == null) {
+                dailyStatisticsMapper.insertWatermark(WATERMARK, last);
+            } else if (last.isAfter(watermark)) {
+                dailyStatisticsMapper.updateWatermark(WATERMARK, last);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 按粒度分桶的趋势
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @param granularity day、week（周一开始）或 month
+     */
+    public Map<String, Object> trends(LocalDate startDate, LocalDate endDate, String granularity) {
+        if (!DAY.equals(granularity) && !WEEK.equals(granularity) && !MONTH.equals(granularity)) {
+            throw new IllegalArgumentException("不支持的统计粒度: " + granularity);
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+
+        Map<LocalDate, Bucket> buckets = new TreeMap<>();
+        Bucket totals = new Bucket();
+        for (DailyStatistics day : dailyRange(startDate, endDate.plusDays(1))) {
+            buckets.computeIfAbsent(bucketStart(day.getStatDate(), granularity), k -> new Bucket()).add(day);
+            totals.add(day);
+        }
+
+        List<Map<String, Object>> series = new ArrayList<>(buckets.size());
+        for (Map.Entry<LocalDate, Bucket> entry : buckets.entrySet()) {
+            Map<String, Object> point = entry.getValue().toMap();
+            point.put("period", MONTH.equals(granularity)
+                    ? entry.getKey().toString().substring(0, 7) : entry.getKey().toString());
+            point.put("startDate", entry.getKey().toString());
+            series.add(point);
+        }
+
+        Map<String, Object> trends = new HashMap<>();
+        trends.put("startDate", startDate.toString());
+        trends.put("endDate", endDate.toString());
+        trends.put("granularity", granularity);
+        trends.put("series", series);
+        trends.put("totals", totals.toMap());
+        return trends;
+    }
+
+    /**
+     * [from, to) 内每天一行：水位及之前读汇总表，之后实时从业务表汇总
+     */
+    List<DailyStatistics> dailyRange(LocalDate from, LocalDate to) {
+        LocalDate watermark = dailyStatisticsMapper.selectWatermark(WATERMARK);
+        List<DailyStatistics> days = new ArrayList<>();
+        LocalDate liveFrom = from;
+        if (watermark != null && !watermark.isBefore(from)) {
+            LocalDate storedTo = watermark.plusDays(1).isBefore(to) ? watermark.plusDays(1) : to;
+            days.addAll(dailyStatisticsMapper.selectRange(from, storedTo));
+            liveFrom = storedTo;
+        }
+        if (liveFrom.isBefore(to)) {
+            days.addAll(aggregate(liveFrom, to));
+        }
+        return days;
+    }
+
+    /**
+     * 从业务表按天分组汇总 [from, to)，没有数据的日期也生成全 0 的一行
+     */
+    List<DailyStatistics> aggregate(LocalDate from, LocalDate to) {
+        Map<LocalDate, DailyStatistics> byDate = new TreeMap<>();
+        for (LocalDate date = from; date.isBefore(to); date = date.plusDays(1)) {
+            byDate.put(date, empty(date));
+        }
+        merge(byDate, dailyStatisticsMapper.countCheckIns(from, to),
+                (day, row) -> day.setCheckIns(row.getCheckIns()));
+        merge(byDate, dailyStatisticsMapper.countCheckOuts(from, to),
+                (day, row) -> day.setCheckOuts(row.getCheckOuts()));
+        merge(byDate, dailyStatisticsMapper.countRepairsOpened(from, to),
+                (day, row) -> day.setRepairsOpened(row.getRepairsOpened()));
+        merge(byDate, dailyStatisticsMapper.countRepairsClosed(from, to),
+                (day, row) -> day.setRepairsClosed(row.getRepairsClosed()));
+        merge(byDate, dailyStatisticsMapper.countSwitchRequests(from, to),
+                (day, row) -> day.setSwitchRequests(row.getSwitchRequests()));
+        merge(byDate, dailyStatisticsMapper.sumPayments(from, to), (day, row) -> {
+            day.setPaymentCount(row.getPaymentCount());
+            day.setPaymentAmount(row.getPaymentAmount() != null ? row.getPaymentAmount() : BigDecimal.ZERO);
+        });
+        return new ArrayList<>(byDate.values());
+    }
+
+    private static void merge(Map<LocalDate, DailyStatistics> byDate, List<DailyStatistics> rows,
+                              BiConsumer<DailyStatistics, DailyStatistics> setter) {
+        for (DailyStatistics row : rows) {
+            DailyStatistics day = byDate.get(row.getStatDate());
+            if (day != null) {
+                setter.accept(day, row);
+            }
+        }
+    }
+
+    private static DailyStatistics empty(LocalDate date) {
+        DailyStatistics day = new DailyStatistics();
+        day.setStatDate(date);
+        day.setCheckIns(0);
+        day.setCheckOuts(0);
+        day.setRepairsOpened(0);
+        day.setRepairsClosed(0);
+        day.setSwitchRequests(0);
+        day.setPaymentCount(0);
+        day.setPaymentAmount(BigDecimal.ZERO);
+        return day;
+    }
+
+    private static LocalDate bucketStart(LocalDate date, String granularity) {
+        if (WEEK.equals(granularity)) {
+            return date.with(DayOfWeek.MONDAY);
+        }
+        if (MONTH.equals(granularity)) {
+            return date.withDayOfMonth(1);
+        }
+        return date;
+    }
+
+    /**
+     * 一个时间桶内各指标之和
+     */
+    private static class Bucket {
+        private long checkIns;
+        private long checkOuts;
+        private long repairsOpened;
+        private long repairsClosed;
+        private long switchRequests;
+        private long paymentCount;
+        private BigDecimal paymentAmount = BigDecimal.ZERO;
+
+        void add(DailyStatistics day) {
+            checkIns += value(day.getCheckIns());
+            checkOuts += value(day.getCheckOuts());
+            repairsOpened += value(day.getRepairsOpened());
+            repairsClosed += value(day.getRepairsClosed());
+            switchRequests += value(day.getSwitchRequests());
+            paymentCount += value(day.getPaymentCount());
+            if (day.getPaymentAmount() != null) {
+                paymentAmount = paymentAmount.add(day.getPaymentAmount());
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("checkIns", checkIns);
+            map.put("checkOuts", checkOuts);
+            map.put("repairsOpened", repairsOpened);
+            map.put("repairsClosed", repairsClosed);
+            map.put("switchRequests", switchRequests);
+            map.put("paymentCount", paymentCount);
+            map.put("paymentAmount", paymentAmount);
+            return map;
+        }
+
+        private static long value(Integer count) {
+            return count != null ? count : 0;
+        }
+    }
+}
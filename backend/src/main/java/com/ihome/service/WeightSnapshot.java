@@ -0,0 +1,57 @@
+package com.ihome.service;
+
+import com.ihome.entity.AlgorithmWeights;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 算法权重配置快照（不可变）
+ * 每次权重变更生成新版本，分配运行记录所用的版本号
+ */
+public class WeightSnapshot {
+
+    private final long version;
+    private final Map<String, Double> weights;
+    private final Map<String, AlgorithmWeights> rowsByType;
+    private final LocalDateTime loadedAt;
+
+    WeightSnapshot(long version, Map<String, Double> weights, Map<String, AlgorithmWeights> rowsByType) {
+        this.version = version;
+        this.weights = Collections.unmodifiableMap(new HashMap<>(weights));
+        this.rowsByType = Collections.unmodifiableMap(new HashMap<>(rowsByType));
+        this.loadedAt = LocalDateTime.now();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 生效的权重：默认权重叠加数据库中已启用的配置
+     */
+    public Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    /**
+     * 数据库中的权重配置行（含未启用的），按权重类型索引
+     */
+    AlgorithmWeights getRow(String weightType) {
+        return rowsByType.get(weightType);
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("version", version);
+        map.put("weights", weights);
+        map.put("loadedAt", loadedAt);
+        return map;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ihome.service.constraint;
+
+import com.ihome.entity.Bed;
+import com.ihome.service.DormitoryOccupancyIndex;
+import com.ihome.service.RoommateProfile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 无障碍需求（硬约束）：带"行动不便"标签的学生只能安排下铺，且宿舍位于低楼层
+ */
+@Component
+public class AccessibilityConstraint implements AllocationConstraint {
+
+    public static final String TAG = "行动不便";
+
+    /**
+     * 低楼层上限（含）
+     */
+    private static final int MAX_FLOOR = 2;
+
+    @Override
+    public String getName() {
+        return "accessibility";
+    }
+
+    @Override
+    public boolean isHard() {
+        return true;
+    }
+
+    @Override
+    public String requirementOf(RoommateProfile student) {
+        return student.hasTag(TAG) ? TAG : "";
+    }
+
+    @Override
+    public boolean permits(String requirement, Bed bed, DormitoryOccupancyIndex index) {
+        if (requirement.isEmpty()) {
+            return true;
+        }
+        if (!"下铺".equals(bed.getBedType())) {
+            return false;
+        }
+        // 楼层未知时只要求下铺
+        Integer floor = index.getFloorNumber(bed.getDormitoryId());
+        return floor == null || floor <= MAX_FLOOR;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ihome.service.constraint;
+
+import com.ihome.entity.Bed;
+import com.ihome.service.DormitoryOccupancyIndex;
+import com.ihome.service.RoommateProfile;
+
+import java.util.List;
+
+/**
+ * 分配约束插件
+ * 硬约束在评分和分组之前剪掉不允许的床位；软约束为室友组合加分，计入交换优化的目标函数。
+ * 实现类注册为 Spring Bean 即可被分配引擎自动使用
+ */
+public interface AllocationConstraint {
+
+    /**
+     * 约束名称
+     */
+    String getName();
+
+    /**
+     * 是否为硬约束
+     */
+    boolean isHard();
+
+    /**
+     * 硬约束：学生在该约束下的需求分类，如性别、"行动不便"。
+     * 同一分类的学生对任意床位的判定结果必须相同，引擎按分类缓存剪枝结果，
+     * 因此剪枝开销与分类数、床位数成正比，与学生人数无关。
+     * 对所有学生一视同仁时返回空字符串
+     */
+    default String requirementOf(RoommateProfile student) {
+        return "";
+    }
+
+    /**
+     * 硬约束：该需求分类的学生能否入住这张床位
+     * @param requirement requirementOf 返回的需求分类
+     * @param index 本次运行开始时的宿舍入住索引（住户性别、楼栋、楼层）
+     */
+    default boolean permits(String requirement, Bed bed, DormitoryOccupancyIndex index) {
+        return true;
+    }
+
+    /**
+     * 软约束：两名室友的匹配分（0-1）
+     */
+    default double roommateScore(RoommateProfile student, RoommateProfile roommate) {
+        return 0.0;
+    }
+
+    /**
+     * 软约束：匹配分计入目标函数时的权重
+     */
+    default double getWeight() {
+        return 0.0;
+    }
+
+    /**
+     * 内置约束，未通过 Spring 注入时使用
+     */
+    static List<AllocationConstraint> defaults() {
+        return List.of(
+                new GenderConstraint(),
+                new BuildingGenderTypeConstraint(),
+                new AccessibilityConstraint(),
+                new MajorClusteringConstraint(),
+                new GradeGroupingConstraint()
+        );
+    }
+}
@@ -0,0 +1,33 @@
+package com.ihome.service.constraint;
+
+import com.ihome.entity.Bed;
+import com.ihome.service.DormitoryOccupancyIndex;
+import com.ihome.service.RoommateProfile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 楼栋性别类型（硬约束）：男生楼只住男生、女生楼只住女生，MIXED 或未配置的楼栋不限制
+ */
+@Component
+public class BuildingGenderTypeConstraint implements AllocationConstraint {
+
+    @Override
+    public String getName() {
+        return "buildingGenderType";
+    }
+
+    @Override
+    public boolean isHard() {
+        return true;
+    }
+
+    @Override
+    public String requirementOf(RoommateProfile student) {
+        return student.getStudent().getGender();
+    }
+
+    @Override
+    public boolean permits(String gender, Bed bed, DormitoryOccupancyIndex index) {
+        return index.isBuildingCompatible(bed.getDormitoryId(), gender);
+    }
+}
@@ -0,0 +1,122 @@
+package com.ihome.service.constraint;
+
+import com.ihome.entity.Bed;
+import com.ihome.service.DormitoryOccupancyIndex;
+import com.ihome.service.RoommateProfile;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 一次分配运行的约束评估器
+ * 学生按各硬约束的需求分类组合成需求类，每个需求类允许的床位集合在首次使用时计算一次并缓存，
+ * 之后的分组预留、剩余分配和交换优化都只查集合，不再调用约束。
+ * 可在分配线程池的多个线程中并发使用
+ */
+public class ConstraintEvaluator {
+
+    private static final String SEPARATOR = "|";
+
+    private final List<AllocationConstraint> hardConstraints;
+    private final List<AllocationConstraint> softConstraints;
+    private final List<Bed> availableBeds;
+    private final DormitoryOccupancyIndex index;
+
+    /**
+     * 需求类 -> 允许的床位ID
+     */
+    private final Map<String, Set<String>> permittedBedIds = new ConcurrentHashMap<>();
+
+    /**
+     * 学生ID -> 需求类
+     */
+    private final Map<String, String> requirementByStudent = new ConcurrentHashMap<>();
+
+    /**
+     * @param constraints 参与本次运行的约束
+     * @param availableBeds 本次运行开始时的可用床位
+     * @param index 本次运行开始时的宿舍入住索引
+     */
+    public ConstraintEvaluator(List<AllocationConstraint> constraints, List<Bed> availableBeds,
+                               DormitoryOccupancyIndex index) {
+        this.hardConstraints = constraints.stream().filter(AllocationConstraint::isHard).collect(Collectors.toList());
+        this.softConstraints = constraints.stream()
+                .filter(constraint -> !constraint.isHard() && constraint.getWeight() != 0.0)
+                .collect(Collectors.toList());
+        this.availableBeds = availableBeds;
+        this.index = index;
+    }
+
+    /**
+     * 学生的需求类：各硬约束需求分类按约束顺序拼接，需求类相同的学生允许的床位完全相同
+     */
+    public String requirementOf(RoommateProfile student) {
+        return requirementByStudent.computeIfAbsent(student.getStudentId(), id -> hardConstraints.stream()
+                .map(constraint -> Objects.toString(constraint.requirementOf(student), ""))
+                .collect(Collectors.joining(SEPARATOR)));
+    }
+
+    /**
+     * 需求类的可读名称：去重后的非空需求分类，如 "男"、"女/行动不便"
+     */
+    public static String label(String requirement) {
+        return Arrays.stream(requirement.split("\\" + SEPARATOR))
+                .filter(part -> !part.isEmpty())
+                .distinct()
+                .collect(Collectors.joining("/"));
+    }
+
+    /**
+     * 需求类的学生能否入住这张床位
+     */
+    public boolean permits(String requirement, Bed bed) {
+        return permittedBedIds.computeIfAbsent(requirement, this::prune).contains(bed.getId());
+    }
+
+    public boolean permits(RoommateProfile student, Bed bed) {
+        return permits(requirementOf(student), bed);
+    }
+
+    /**
+     * 预先计算各需求类允许的床位
+     * 硬约束读取的是入住索引的当前状态，应在开始预留宿舍之前调用，使结果与计算顺序无关
+     * @return 需求类 -> 允许的床位数
+     */
+    public Map<String, Integer> prepare(Collection<String> requirements) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String requirement : requirements) {
+            counts.put(requirement, permittedBedIds.computeIfAbsent(requirement, this::prune).size());
+        }
+        return counts;
+    }
+
+    /**
+     * 交换优化的目标函数：室友兼容度加上各软约束的加权匹配分
+     */
+    public double objective(RoommateProfile student, RoommateProfile roommate) {
+        double score = student.compatibilityWith(roommate);
+        for (AllocationConstraint constraint : softConstraints) {
+            score += constraint.getWeight() * constraint.roommateScore(student, roommate);
+        }
+        return score;
+    }
+
+    /**
+     * 对一个需求类逐一检查所有可用床位，需求分类按约束顺序对应
+     */
+    private Set<String> prune(String requirement) {
+        String[] parts = requirement.split("\\" + SEPARATOR, -1);
+        Set<String> permitted = new HashSet<>();
+        for (Bed bed : availableBeds) {
+            boolean allowed = true;
+            for (int i = 0; i < hardConstraints.size() && allowed; i++) {
+                allowed = hardConstraints.get(i).permits(i < parts.length ? parts[i] : "", bed, index);
+            }
+            if (allowed) {
+                permitted.add(bed.getId());
+            }
+        }
+        return permitted;
+    }
+}
@@ -0,0 +1,34 @@
+package com.ihome.service.constraint;
+
+import com.ihome.entity.Bed;
+import com.ihome.service.DormitoryOccupancyIndex;
+import com.ihome.service.RoommateProfile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 同性别入住（硬约束）：宿舍已有住户时，只允许同性别学生入住
+ */
+@Component
+public class GenderConstraint implements AllocationConstraint {
+
+    @Override
+    public String getName() {
+        return "gender";
+    }
+
+    @Override
+    public boolean isHard() {
+        return true;
+    }
+
+    @Override
+    public String requirementOf(RoommateProfile student) {
+        return student.getStudent().getGender();
+    }
+
+    @Override
+    public boolean permits(String gender, Bed bed, DormitoryOccupancyIndex index) {
+        String residentGender = index.getResidentGender(bed.getDormitoryId());
+        return residentGender == null || residentGender.equals(gender);
+    }
+}
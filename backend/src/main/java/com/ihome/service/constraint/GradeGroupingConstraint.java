@@ -0,0 +1,34 @@
+package com.ihome.service.constraint;
+
+import com.ihome.service.RoommateProfile;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * 同年级分组（软约束）：同年级的室友加分
+ */
+@Component
+public class GradeGroupingConstraint implements AllocationConstraint {
+
+    @Override
+    public String getName() {
+        return "gradeGrouping";
+    }
+
+    @Override
+    public boolean isHard() {
+        return false;
+    }
+
+    @Override
+    public double roommateScore(RoommateProfile student, RoommateProfile roommate) {
+        String grade = student.getStudent().getGrade();
+        return grade != null && Objects.equals(grade, roommate.getStudent().getGrade()) ? 1.0 : 0.0;
+    }
+
+    @Override
+    public double getWeight() {
+        return 0.1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.ihome.service.constraint;
+
+import com.ihome.service.RoommateProfile;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * 同专业聚集（软约束）：同专业的室友加分
+ */
+@Component
+public class MajorClusteringConstraint implements AllocationConstraint {
+
+    @Override
+    public String getName() {
+        return "majorClustering";
+    }
+
+    @Override
+    public boolean isHard() {
+        return false;
+    }
+
+    @Override
+    public double roommateScore(RoommateProfile student, RoommateProfile roommate) {
+        String major = student.getStudent().getMajor();
+        return major != null && Objects.equals(major, roommate.getStudent().getMajor()) ? 1.0 : 0.0;
+    }
+
+    @Override
+    public double getWeight() {
+        return 0.1;
+    }
+}
@@ -190,6 +190,7 @@ CREATE TABLE IF NOT EXISTS dormitory_allocations (
     check_in_date DATE COMMENT '入住日期',
     check_out_date DATE COMMENT '退宿日期',
     status VARCHAR(50) NOT NULL DEFAULT '在住' COMMENT '状态',
+    run_id BIGINT COMMENT '分配批次ID（智能分配生成的记录）',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     FOREIGN KEY (student_id) REFERENCES students(id) ON DELETE CASCADE ON UPDATE CASCADE,
@@ -198,7 +199,8 @@ CREATE TABLE IF NOT EXISTS dormitory_allocations (
     INDEX idx_student_id (student_id),
     INDEX idx_bed_id (bed_id),
     INDEX idx_dormitory_id (dormitory_id),
-    INDEX idx_status (status)
+    INDEX idx_status (status),
+    INDEX idx_run_status (run_id, status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='宿舍分配表';
 
 -- 12. 宿舍调换表
@@ -377,3 +379,58 @@ CREATE TABLE IF NOT EXISTS electricity_payments (
     INDEX idx_payment_status (payment_status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='电费缴费记录表';
 
+-- 20. 分配候补表
+CREATE TABLE IF NOT EXISTS allocation_waitlist (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '候补ID',
+    student_id VARCHAR(50) NOT NULL COMMENT '学生ID',
+    status VARCHAR(20) NOT NULL DEFAULT '等待中' COMMENT '状态(等待中/已分配/已取消)',
+    bed_id VARCHAR(50) COMMENT '分配到的床位ID',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '登记时间',
+    allocated_at TIMESTAMP NULL COMMENT '分配时间',
+    FOREIGN KEY (student_id) REFERENCES students(id) ON DELETE CASCADE ON UPDATE CASCADE,
+    INDEX idx_student_status (student_id, status),
+    INDEX idx_status_created (status, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='分配候补表';
+
+-- 21. 分配批次表
+CREATE TABLE IF NOT EXISTS allocation_runs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '批次ID',
+    solver VARCHAR(50) NOT NULL COMMENT '分组算法',
+    seed BIGINT NOT NULL COMMENT '随机种子',
+    weights_version BIGINT COMMENT '权重快照版本',
+    weights TEXT COMMENT '本次使用的权重(JSON)',
+    status VARCHAR(20) NOT NULL DEFAULT '已完成' COMMENT '状态(已完成/已回滚)',
+    total_allocated INT NOT NULL DEFAULT 0 COMMENT '分配人数',
+    rolled_back_count INT COMMENT '回滚人数',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    rolled_back_at TIMESTAMP NULL COMMENT '回滚时间',
+    INDEX idx_created_at (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='分配批次表';
+
+-- 22. 每日统计汇总表
+CREATE TABLE IF NOT EXISTS daily_statistics (
+    stat_date DATE PRIMARY KEY COMMENT '统计日期',
+    check_ins INT NOT NULL DEFAULT 0 COMMENT '入住人数',
+    check_outs INT NOT NULL DEFAULT 0 COMMENT '退宿人数',
+    repairs_opened INT NOT NULL DEFAULT 0 COMMENT '新建维修工单数',
+    repairs_closed INT NOT NULL DEFAULT 0 COMMENT '完成维修工单数',
+    switch_requests INT NOT NULL DEFAULT 0 COMMENT '调换申请数',
+    payment_count INT NOT NULL DEFAULT 0 COMMENT '缴费笔数',
+    payment_amount DECIMAL(12,2) NOT NULL DEFAULT 0 COMMENT '缴费金额',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '汇总时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='每日统计汇总表';
+
+-- 23. 统计汇总水位表
+CREATE TABLE IF NOT EXISTS statistics_watermarks (
+    name VARCHAR(50) PRIMARY KEY COMMENT '汇总任务名称',
+    processed_date DATE NOT NULL COMMENT '已汇总到的日期（含）',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='统计汇总水位表';
+
+-- 24. 算法权重版本表
+CREATE TABLE IF NOT EXISTS algorithm_weights_version (
+    id INT PRIMARY KEY COMMENT '固定为1',
+    version BIGINT NOT NULL COMMENT '权重版本号，每次权重变更在同一事务中递增',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='算法权重版本表';
+
@@ -140,6 +140,7 @@ CREATE TABLE IF NOT EXISTS dormitory_allocations (
     check_in_date DATE,
     check_out_date DATE,
     status VARCHAR(50) NOT NULL DEFAULT '在住',
+    run_id BIGINT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
@@ -231,3 +232,53 @@ CREATE TABLE IF NOT EXISTS algorithm_weights (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 17. 分配候补表
+CREATE TABLE IF NOT EXISTS allocation_waitlist (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    student_id VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT '等待中',
+    bed_id VARCHAR(50),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    allocated_at TIMESTAMP NULL
+);
+
+-- 18. 分配批次表
+CREATE TABLE IF NOT EXISTS allocation_runs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    solver VARCHAR(50) NOT NULL,
+    seed BIGINT NOT NULL,
+    weights_version BIGINT,
+    weights TEXT,
+    status VARCHAR(20) NOT NULL DEFAULT '已完成',
+    total_allocated INT NOT NULL DEFAULT 0,
+    rolled_back_count INT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    rolled_back_at TIMESTAMP NULL
+);
+
+-- 19. 每日统计汇总表
+CREATE TABLE IF NOT EXISTS daily_statistics (
+    stat_date DATE PRIMARY KEY,
+    check_ins INT NOT NULL DEFAULT 0,
+    check_outs INT NOT NULL DEFAULT 0,
+    repairs_opened INT NOT NULL DEFAULT 0,
+    repairs_closed INT NOT NULL DEFAULT 0,
+    switch_requests INT NOT NULL DEFAULT 0,
+    payment_count INT NOT NULL DEFAULT 0,
+    payment_amount DECIMAL(12,2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 20. 统计汇总水位表
+CREATE TABLE IF NOT EXISTS statistics_watermarks (
+    name VARCHAR(50) PRIMARY KEY,
+    processed_date DATE NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 21. 算法权重版本表
+CREATE TABLE IF NOT EXISTS algorithm_weights_version (
+    id INT PRIMARY KEY,
+    version BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
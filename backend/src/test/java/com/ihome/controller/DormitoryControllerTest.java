@@ -6,6 +6,7 @@ import com.ihome.entity.Student;
 import com.ihome.entity.Bed;
 import com.ihome.mapper.*;
 import com.ihome.service.DormitoryService;
+import com.ihome.service.RoomHarmonyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -63,6 +64,9 @@ public class DormitoryControllerTest {
     @MockBean
     private DormitoryService dormitoryService;
 
+    @MockBean
+    private RoomHarmonyService roomHarmonyService;
+
     private Dormitory testDormitory;
     private DormitoryAllocation testAllocation;
     private Bed testBed;
@@ -244,5 +248,19 @@ public class DormitoryControllerTest {
         // 验证调用
         verify(bedMapper).selectList(any());
     }
-}
 
+    @Test
+    void testGetDormitoryHarmony_Success() throws Exception {
+        Map<String, Object> harmony = new HashMap<>();
+        harmony.put("dormitoryId", "D001");
+        harmony.put("residentCount", 3);
+        harmony.put("harmonyScore", 0.8);
+        when(roomHarmonyService.getHarmony("D001")).thenReturn(harmony);
+
+        mockMvc.perform(get("/dorms/D001/harmony"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.residentCount").value(3))
+                .andExpect(jsonPath("$.data.harmonyScore").value(0.8));
+    }
+}
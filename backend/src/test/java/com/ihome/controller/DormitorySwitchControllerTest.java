@@ -179,5 +179,40 @@ public class DormitorySwitchControllerTest {
 
         verify(switchService).reviewSwitchRequest(eq(1), eq("approved"), eq("admin001"), eq("同意调换"));
     }
-}
 
+    @Test
+    void testExecuteSwitchMatch_Success() throws Exception {
+        Map<String, Object> serviceResult = new HashMap<>();
+        serviceResult.put("success", true);
+        serviceResult.put("message", "多方调换完成");
+        when(switchService.executeSwitchMatch(eq(Arrays.asList(1, 2, 3)), eq("admin001"))).thenReturn(serviceResult);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("switchIds", Arrays.asList(1, 2, 3));
+        requestBody.put("reviewerId", "admin001");
+
+        mockMvc.perform(post("/switches/matches/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestBody))
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true));
+
+        verify(switchService).executeSwitchMatch(eq(Arrays.asList(1, 2, 3)), eq("admin001"));
+    }
+
+    @Test
+    void testEvaluatePendingSwitches_Success() throws Exception {
+        Map<String, Object> evaluation = new HashMap<>();
+        evaluation.put("switchId", 1);
+        evaluation.put("pairwiseSumDelta", 0.3);
+        when(switchService.evaluatePendingSwitches()).thenReturn(Arrays.asList(evaluation));
+
+        mockMvc.perform(get("/switches/pending/evaluation")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data[0].switchId").value(1))
+                .andExpect(jsonPath("$.data[0].pairwiseSumDelta").value(0.3));
+    }
+}
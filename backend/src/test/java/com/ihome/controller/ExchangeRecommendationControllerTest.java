@@ -3,6 +3,9 @@ package com.ihome.controller;
 import com.ihome.entity.DormitoryAllocation;
 import com.ihome.entity.Student;
 import com.ihome.mapper.*;
+import com.ihome.service.ExchangeRecommendationStore;
+import com.ihome.service.RoommateCompatibilityIndex;
+import com.ihome.service.RoommateSimilarityIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +23,8 @@ import com.ihome.config.TestWebSecurityConfig;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -61,6 +66,12 @@ public class ExchangeRecommendationControllerTest {
     @MockBean
     private BedMapper bedMapper;
 
+    @MockBean
+    private ExchangeRecommendationStore recommendationStore;
+
+    @MockBean
+    private RoommateSimilarityIndex similarityIndex;
+
     private Student testStudent;
     private DormitoryAllocation testAllocation;
 
@@ -86,42 +97,13 @@ public class ExchangeRecommendationControllerTest {
 
     @Test
     void testGetRecommendations_Success() throws Exception {
-        // 模拟数据库查询
-        // 使用调用顺序来区分不同的selectList调用
-        // 第一次：getCurrentAllocation -> 查询student_id="2024001"和status="在住"
-        // 第二次：getRoommateIds -> 查询bed_id="B001"和status="在住"
-        when(allocationMapper.selectList(any(com.baomidou.mybatisplus.core.conditions.query.QueryWrapper.class)))
-            .thenReturn(Arrays.asList(testAllocation))  // getCurrentAllocation
-            .thenReturn(Arrays.asList());  // getRoommateIds (返回空，表示没有室友)
-        
-        // getRoommateIds需要bedMapper.selectById
-        com.ihome.entity.Bed testBed = new com.ihome.entity.Bed();
-        testBed.setId("B001");
-        testBed.setDormitoryId("D001");
-        when(bedMapper.selectById("B001")).thenReturn(testBed);
-        
-        // calculateCompatibility需要studentMapper.selectById
-        when(studentMapper.selectById("2024001")).thenReturn(testStudent);
-        Student anotherStudent = new Student();
-        anotherStudent.setId("2024002");
-        anotherStudent.setName("李四");
-        anotherStudent.setMajor("计算机科学");
-        anotherStudent.setCollege("计算机学院");
-        when(studentMapper.selectById("2024002")).thenReturn(anotherStudent);
-        
-        // studentMapper.selectList返回包含候选学生的列表
-        when(studentMapper.selectList(null)).thenReturn(Arrays.asList(testStudent, anotherStudent));
-        
-        // calculateCompatibility需要的mocks
-        when(questionnaireMapper.selectByStudentId("2024001")).thenReturn(null);
-        when(questionnaireMapper.selectByStudentId("2024002")).thenReturn(null);
-        // calculateTagCompatibility会调用两次roommateTagMapper.selectList（一次查询studentId1，一次查询studentId2）
-        when(roommateTagMapper.selectList(any(com.baomidou.mybatisplus.core.conditions.query.QueryWrapper.class)))
-            .thenReturn(Arrays.asList())  // 第一次调用（studentId1）
-            .thenReturn(Arrays.asList());  // 第二次调用（studentId2）
-        
-        // generateRecommendationReason也需要studentMapper.selectById
-        // 已经在上面配置了
+        // 推荐由后台存储预先计算，请求只按学号读取一次
+        Map<String, Object> recommendation = new HashMap<>();
+        recommendation.put("targetStudentId", "2024002");
+        recommendation.put("targetStudentName", "李四");
+        recommendation.put("compatibilityScore", 0.82);
+        recommendation.put("recommendationReason", "同专业学生；生活习惯高度匹配");
+        when(recommendationStore.getRecommendations("2024001")).thenReturn(Arrays.asList(recommendation));
 
         // 执行测试
         mockMvc.perform(get("/exchange/recommendations/for-student")
@@ -129,15 +111,33 @@ public class ExchangeRecommendationControllerTest {
                         .header("Authorization", "Bearer test-token"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true))
-                .andExpect(jsonPath("$.data").isArray());
+                .andExpect(jsonPath("$.data").isArray())
+                .andExpect(jsonPath("$.data[0].targetStudentId").value("2024002"));
 
-        verify(allocationMapper, atLeastOnce()).selectList(any());
-        verify(studentMapper).selectList(null);
+        verify(recommendationStore).getRecommendations("2024001");
+        verify(studentMapper, never()).selectList(any());
+        verify(allocationMapper, never()).selectList(any());
+    }
+
+    @Test
+    void testGetRecommendations_ResidentNotYetInStore() throws Exception {
+        // 刚入住的学生在下次重建前没有推荐，返回空列表
+        when(recommendationStore.getRecommendations("2024001")).thenReturn(null);
+        when(allocationMapper.selectList(any(com.baomidou.mybatisplus.core.conditions.query.QueryWrapper.class)))
+            .thenReturn(Arrays.asList(testAllocation));
+
+        mockMvc.perform(get("/exchange/recommendations/for-student")
+                        .param("studentId", "2024001")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data").isEmpty());
     }
 
     @Test
     void testGetRecommendations_NoAllocation() throws Exception {
-        // 模拟没有分配记录 - getCurrentAllocation返回空列表
+        // 推荐存储中没有该学生，且没有分配记录 - getCurrentAllocation返回空列表
+        when(recommendationStore.getRecommendations("2024001")).thenReturn(null);
         when(allocationMapper.selectList(any(com.baomidou.mybatisplus.core.conditions.query.QueryWrapper.class)))
             .thenReturn(Arrays.asList());  // getCurrentAllocation返回空
 
@@ -151,5 +151,23 @@ public class ExchangeRecommendationControllerTest {
 
         verify(allocationMapper).selectList(any());
     }
-}
 
+    @Test
+    void testGetSimilarStudents_Success() throws Exception {
+        Student similar = new Student();
+        similar.setId("2024003");
+        similar.setName("王五");
+        similar.setMajor("软件工程");
+        when(similarityIndex.similarStudents("2024001", 5))
+            .thenReturn(Arrays.asList(new RoommateCompatibilityIndex.Match(similar, 0.79)));
+
+        mockMvc.perform(get("/exchange/recommendations/similar")
+                        .param("studentId", "2024001")
+                        .param("limit", "5")
+                        .header("Authorization", "Bearer test-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data[0].targetStudentId").value("2024003"))
+                .andExpect(jsonPath("$.data[0].compatibilityScore").value(0.79));
+    }
+}
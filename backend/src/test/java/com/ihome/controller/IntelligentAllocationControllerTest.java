@@ -1,6 +1,13 @@
 package com.ihome.controller;
 
+import com.ihome.service.AlgorithmWeightsService;
+import com.ihome.service.AllocationJob;
+import com.ihome.service.AllocationJobService;
+import com.ihome.service.AllocationOptions;
+import com.ihome.service.AllocationRunService;
 import com.ihome.service.AllocationService;
+import com.ihome.service.AllocationWaitlistService;
+import com.ihome.service.IncrementalAllocationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,6 +55,21 @@ public class IntelligentAllocationControllerTest {
     @MockBean
     private AllocationService allocationService;
 
+    @MockBean
+    private AllocationJobService allocationJobService;
+
+    @MockBean
+    private IncrementalAllocationService incrementalAllocationService;
+
+    @MockBean
+    private AllocationWaitlistService allocationWaitlistService;
+
+    @MockBean
+    private AlgorithmWeightsService weightsService;
+
+    @MockBean
+    private AllocationRunService allocationRunService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -66,7 +88,7 @@ public class IntelligentAllocationControllerTest {
         serviceResult.put("totalUnallocated", 0);
 
         // 模拟服务调用
-        when(allocationService.intelligentAllocation(anyList())).thenReturn(serviceResult);
+        when(allocationService.intelligentAllocation(anyList(), any(AllocationOptions.class))).thenReturn(serviceResult);
 
         // 执行测试
         mockMvc.perform(post("/allocation/intelligent")
@@ -77,7 +99,33 @@ public class IntelligentAllocationControllerTest {
                 .andExpect(jsonPath("$.success").value(true))
                 .andExpect(jsonPath("$.data.totalAllocated").value(2));
 
-        verify(allocationService).intelligentAllocation(anyList());
+        verify(allocationService).intelligentAllocation(anyList(), any(AllocationOptions.class));
+    }
+
+    @Test
+    void testIntelligentAllocation_WithSolver() throws Exception {
+        // 准备测试数据
+        List<String> studentIds = Arrays.asList("2024001", "2024002");
+        Map<String, Object> serviceResult = new HashMap<>();
+        serviceResult.put("allocations", Arrays.asList());
+        serviceResult.put("solver", "clustering");
+
+        // 模拟服务调用
+        when(allocationService.intelligentAllocation(anyList(), any(AllocationOptions.class))).thenReturn(serviceResult);
+
+        // 执行测试
+        mockMvc.perform(post("/allocation/intelligent")
+                        .param("solver", "clustering")
+                        .param("timeBudgetMs", "500")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(studentIds))
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.solver").value("clustering"));
+
+        verify(allocationService).intelligentAllocation(anyList(), argThat(options ->
+                "clustering".equals(options.getSolver()) && Long.valueOf(500).equals(options.getTimeBudgetMs())));
     }
 
     @Test
@@ -94,7 +142,102 @@ public class IntelligentAllocationControllerTest {
                 .andExpect(jsonPath("$.success").value(false))
                 .andExpect(jsonPath("$.message").value("学生ID列表不能为空"));
 
-        verify(allocationService, never()).intelligentAllocation(anyList());
+        verify(allocationService, never()).intelligentAllocation(anyList(), any(AllocationOptions.class));
+    }
+
+    @Test
+    void testSubmitAllocationJob_Success() throws Exception {
+        // 准备测试数据
+        List<String> studentIds = Arrays.asList("2024001", "2024002");
+        AllocationJob job = new AllocationJob("job-1", studentIds, AllocationOptions.defaults());
+
+        // 模拟服务调用
+        when(allocationJobService.submit(anyList(), any(AllocationOptions.class))).thenReturn(job);
+
+        // 执行测试
+        mockMvc.perform(post("/allocation/jobs")
+                        .param("parallel", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(studentIds))
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.jobId").value("job-1"))
+                .andExpect(jsonPath("$.data.status").value(AllocationJob.STATUS_PENDING));
+
+        verify(allocationJobService).submit(anyList(), argThat(AllocationOptions::isParallel));
+        verify(allocationService, never()).intelligentAllocation(anyList(), any(AllocationOptions.class));
+    }
+
+    @Test
+    void testGetAllocationJob_NotFound() throws Exception {
+        when(allocationJobService.getJob("missing")).thenReturn(null);
+
+        // 执行测试
+        mockMvc.perform(get("/allocation/jobs/{jobId}", "missing")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("分配任务不存在或已过期"));
+    }
+
+    @Test
+    void testCancelAllocationJob_Success() throws Exception {
+        Map<String, Object> serviceResult = new HashMap<>();
+        serviceResult.put("success", true);
+        serviceResult.put("message", "已请求取消分配任务");
+        when(allocationJobService.cancel("job-1")).thenReturn(serviceResult);
+
+        // 执行测试
+        mockMvc.perform(delete("/allocation/jobs/{jobId}", "job-1")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data").value("已请求取消分配任务"));
+
+        verify(allocationJobService).cancel("job-1");
+    }
+
+    @Test
+    void testCancelAllocationJob_TooLate() throws Exception {
+        Map<String, Object> serviceResult = new HashMap<>();
+        serviceResult.put("success", false);
+        serviceResult.put("message", "分配结果正在写入或已提交，无法取消");
+        when(allocationJobService.cancel("job-1")).thenReturn(serviceResult);
+
+        // 执行测试
+        mockMvc.perform(delete("/allocation/jobs/{jobId}", "job-1")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("分配结果正在写入或已提交，无法取消"));
+    }
+
+    @Test
+    void testSimulateAllocation_Success() throws Exception {
+        // 准备测试数据
+        Map<String, Object> request = new HashMap<>();
+        request.put("studentIds", Arrays.asList("2024001", "2024002"));
+        request.put("weights", Map.of("MAJOR", 0.6));
+        Map<String, Object> serviceResult = new HashMap<>();
+        serviceResult.put("allocations", Arrays.asList());
+        serviceResult.put("simulated", true);
+
+        // 模拟服务调用
+        when(allocationService.simulateAllocation(anyList(), any(AllocationOptions.class))).thenReturn(serviceResult);
+
+        // 执行测试
+        mockMvc.perform(post("/allocation/simulate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.simulated").value(true));
+
+        verify(allocationService).simulateAllocation(anyList(), argThat(options ->
+                Double.valueOf(0.6).equals(options.getWeights().get("MAJOR"))));
+        verify(allocationService, never()).intelligentAllocation(anyList(), any(AllocationOptions.class));
     }
 
     @Test
@@ -141,5 +284,87 @@ public class IntelligentAllocationControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true));
     }
-}
 
+    @Test
+    void testIncrementalAllocation_Success() throws Exception {
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalAllocated", 1);
+        when(incrementalAllocationService.allocate(anyList())).thenReturn(result);
+
+        mockMvc.perform(post("/allocation/incremental")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList("2024001")))
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.totalAllocated").value(1));
+
+        verify(incrementalAllocationService).allocate(Arrays.asList("2024001"));
+    }
+
+    @Test
+    void testJoinWaitlist_Success() throws Exception {
+        when(allocationWaitlistService.join(anyList())).thenReturn(2);
+
+        mockMvc.perform(post("/allocation/waitlist")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList("2024001", "2024002")))
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data").value(2));
+    }
+
+    @Test
+    void testCancelWaitlist_NotWaiting() throws Exception {
+        when(allocationWaitlistService.cancel("2024001")).thenReturn(false);
+
+        mockMvc.perform(delete("/allocation/waitlist/{studentId}", "2024001")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void testUpdateWeights_InvalidValue() throws Exception {
+        doThrow(new IllegalArgumentException("权重值必须在0到1之间: TAG"))
+                .when(weightsService).updateWeights(anyMap());
+
+        mockMvc.perform(put("/allocation/weights")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("TAG", 1.5)))
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void testRollbackAllocationRun_Success() throws Exception {
+        Map<String, Object> result = new HashMap<>();
+        result.put("runId", 5);
+        result.put("revokedAllocations", 120);
+        when(allocationRunService.rollback(5L)).thenReturn(result);
+
+        mockMvc.perform(post("/allocation/runs/{runId}/rollback", 5)
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.revokedAllocations").value(120));
+    }
+
+    @Test
+    void testDiffAllocationRuns_Success() throws Exception {
+        Map<String, Object> diff = new HashMap<>();
+        diff.put("unchangedCount", 3);
+        diff.put("moved", Collections.emptyList());
+        when(allocationRunService.diff(1L, 2L)).thenReturn(diff);
+
+        mockMvc.perform(get("/allocation/runs/diff")
+                        .param("from", "1")
+                        .param("to", "2")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.unchangedCount").value(3));
+    }
+}
@@ -111,6 +111,47 @@ public class StatisticsControllerTest {
         verify(statisticsService).getDormitoryUsageStatistics();
     }
 
+    @Test
+    void testGetBuildingUsageStatistics_Success() throws Exception {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("buildingId", "A");
+        statistics.put("floors", java.util.List.of(Map.of("floorNumber", 1, "occupiedBeds", 3)));
+        when(statisticsService.getBuildingUsageStatistics("A")).thenReturn(statistics);
+
+        mockMvc.perform(get("/statistics/dormitories/usage/buildings/A")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.floors[0].occupiedBeds").value(3));
+    }
+
+    @Test
+    void testGetBuildingUsageStatistics_NotFound() throws Exception {
+        when(statisticsService.getBuildingUsageStatistics("Z")).thenReturn(null);
+
+        mockMvc.perform(get("/statistics/dormitories/usage/buildings/Z")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("楼栋不存在"));
+    }
+
+    @Test
+    void testGetTrendAnalysis_WithRange() throws Exception {
+        Map<String, Object> trends = new HashMap<>();
+        trends.put("granularity", "month");
+        when(statisticsService.getTrendAnalysis("2026-01-01", "2026-06-30", "month")).thenReturn(trends);
+
+        mockMvc.perform(get("/statistics/trends")
+                        .param("startDate", "2026-01-01")
+                        .param("endDate", "2026-06-30")
+                        .param("granularity", "month")
+                        .header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.granularity").value("month"));
+    }
+
     @Test
     void testGetPaymentStatistics_Success() throws Exception {
         // 准备测试数据
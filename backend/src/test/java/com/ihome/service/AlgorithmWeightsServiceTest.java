@@ -0,0 +1,161 @@
+package com.ihome.service;
+
+import com.ihome.entity.AlgorithmWeights;
+import com.ihome.mapper.AlgorithmWeightsMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 算法权重配置服务测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class AlgorithmWeightsServiceTest {
+
+    @Mock
+    private AlgorithmWeightsMapper weightsMapper;
+
+    @InjectMocks
+    private AlgorithmWeightsService weightsService;
+
+    private List<AlgorithmWeights> rows;
+
+    /**
+     * 模拟版本表：null 表示还没有记录
+     */
+    private Long storedVersion;
+
+    @BeforeEach
+    void setUp() {
+        rows = new ArrayList<>(Arrays.asList(
+            createWeight(1L, "TAG", 0.4, true),
+            createWeight(2L, "MAJOR", 0.3, false)
+        ));
+        storedVersion = null;
+        when(weightsMapper.selectList(null)).thenAnswer(invocation -> new ArrayList<>(rows));
+        when(weightsMapper.selectVersion()).thenAnswer(invocation -> storedVersion);
+        when(weightsMapper.incrementVersion()).thenAnswer(invocation -> {
+            if (storedVersion == null) {
+                return 0;
+            }
+            storedVersion++;
+            return 1;
+        });
+        when(weightsMapper.insertVersion(anyLong())).thenAnswer(invocation -> {
+            storedVersion = invocation.getArgument(0);
+            return 1;
+        });
+    }
+
+    private AlgorithmWeights createWeight(Long id, String weightType, Double weightValue, Boolean enabled) {
+        AlgorithmWeights weight = new AlgorithmWeights();
+        weight.setId(id);
+        weight.setWeightType(weightType);
+        weight.setWeightValue(weightValue);
+        weight.setEnabled(enabled);
+        return weight;
+    }
+
+    @Test
+    void testGetSnapshot_LoadsOnceAndAppliesEnabledRows() {
+        WeightSnapshot first = weightsService.getSnapshot();
+        WeightSnapshot second = weightsService.getSnapshot();
+
+        assertSame(first, second);
+        assertEquals(1L, first.getVersion());
+        assertEquals(0.4, first.getWeights().get("TAG"));
+        // 未启用的配置不覆盖默认值
+        assertEquals(0.35, first.getWeights().get("MAJOR"));
+        assertEquals(0.20, first.getWeights().get("BED_TYPE"));
+        verify(weightsMapper, times(1)).selectList(null);
+    }
+
+    @Test
+    void testUpdateWeight_UpdatesRowAndBumpsVersion() {
+        WeightSnapshot before = weightsService.getSnapshot();
+
+        rows.set(0, createWeight(1L, "TAG", 0.6, true));
+        weightsService.updateWeight("TAG", 0.6);
+
+        ArgumentCaptor<AlgorithmWeights> captor = ArgumentCaptor.forClass(AlgorithmWeights.class);
+        verify(weightsMapper).updateById(captor.capture());
+        assertEquals(1L, captor.getValue().getId());
+        assertEquals(0.6, captor.getValue().getWeightValue());
+
+        // 旧快照保持不变
+        assertEquals(0.4, before.getWeights().get("TAG"));
+        assertEquals(2L, weightsService.getSnapshot().getVersion());
+        assertEquals(0.6, weightsService.getSnapshot().getWeights().get("TAG"));
+    }
+
+    @Test
+    void testReload_RestartKeepsDurableVersion() {
+        weightsService.updateWeight("TAG", 0.5);
+        weightsService.updateWeight("TAG", 0.6);
+        WeightSnapshot beforeRestart = weightsService.getSnapshot();
+        assertEquals(3L, beforeRestart.getVersion());
+
+        // 重启：新的服务实例从数据库读取版本号，不会从 1 重新计数
+        AlgorithmWeightsService restarted = new AlgorithmWeightsService();
+        ReflectionTestUtils.setField(restarted, "weightsMapper", weightsMapper);
+        assertEquals(3L, restarted.getSnapshot().getVersion());
+
+        rows.set(0, createWeight(1L, "TAG", 0.7, true));
+        restarted.updateWeight("TAG", 0.7);
+        assertEquals(4L, restarted.getSnapshot().getVersion());
+        assertEquals(0.7, restarted.getSnapshot().getWeights().get("TAG"));
+    }
+
+    @Test
+    void testReload_RetriesWhenVersionChangesDuringLoad() {
+        // 加载权重期间有其他实例提交了变更：重新加载，快照的版本号与权重一致
+        storedVersion = 5L;
+        when(weightsMapper.selectList(null)).thenAnswer(invocation -> {
+            List<AlgorithmWeights> loaded = new ArrayList<>(rows);
+            if (storedVersion == 5L) {
+                rows.set(0, createWeight(1L, "TAG", 0.9, true));
+                storedVersion = 6L;
+            }
+            return loaded;
+        });
+
+        WeightSnapshot snapshot = weightsService.reload();
+
+        assertEquals(6L, snapshot.getVersion());
+        assertEquals(0.9, snapshot.getWeights().get("TAG"));
+        verify(weightsMapper, times(2)).selectList(null);
+    }
+
+    @Test
+    void testUpdateWeight_InsertsMissingType() {
+        weightsService.updateWeight("QUESTIONNAIRE", 0.3);
+
+        verify(weightsMapper).insert(argThat((AlgorithmWeights weight) ->
+                "QUESTIONNAIRE".equals(weight.getWeightType()) && weight.getEnabled()));
+        verify(weightsMapper, never()).updateById(any(AlgorithmWeights.class));
+    }
+
+    @Test
+    void testUpdateWeights_RejectsOutOfRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> weightsService.updateWeights(Map.of("TAG", 1.5)));
+        verify(weightsMapper, never()).updateById(any(AlgorithmWeights.class));
+    }
+}
@@ -0,0 +1,160 @@
+package com.ihome.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 异步分配任务服务测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class AllocationJobServiceTest {
+
+    @Mock
+    private AllocationService allocationService;
+
+    @InjectMocks
+    private AllocationJobService allocationJobService;
+
+    @Test
+    void testSubmit_CompletesWithResult() throws Exception {
+        // 模拟分配：汇报分组进度后返回结果
+        Map<String, Object> serviceResult = new HashMap<>();
+        serviceResult.put("totalAllocated", 2);
+        when(allocationService.intelligentAllocation(anyList(), any(AllocationOptions.class))).thenAnswer(invocation -> {
+            AllocationOptions options = invocation.getArgument(1);
+            options.getMonitor().onPartitionsCreated(Map.of("计算机科学/男", 2));
+            options.getMonitor().onPartitionSolved("计算机科学/男", 2, 0);
+            options.getMonitor().onPersisted(2, 2);
+            return serviceResult;
+        });
+
+        // 执行测试
+        AllocationJob job = allocationJobService.submit(Arrays.asList("S001", "S002"), AllocationOptions.defaults());
+        awaitFinished(job);
+
+        // 验证结果
+        Map<String, Object> status = allocationJobService.getJob(job.getId()).toStatusMap();
+        assertEquals(AllocationJob.STATUS_COMPLETED, status.get("status"));
+        assertEquals(serviceResult, status.get("result"));
+        assertEquals(1, status.get("solvedPartitions"));
+        assertEquals(2, status.get("persisted"));
+        assertEquals(1, allocationJobService.listJobs().size());
+    }
+
+    @Test
+    void testSubmit_Failure() throws Exception {
+        when(allocationService.intelligentAllocation(anyList(), any(AllocationOptions.class)))
+                .thenThrow(new IllegalArgumentException("未知的分组算法: unknown"));
+
+        // 执行测试
+        AllocationJob job = allocationJobService.submit(Arrays.asList("S001"), AllocationOptions.defaults());
+        awaitFinished(job);
+
+        // 验证结果
+        Map<String, Object> status = job.toStatusMap();
+        assertEquals(AllocationJob.STATUS_FAILED, status.get("status"));
+        assertEquals("未知的分组算法: unknown", status.get("error"));
+    }
+
+    @Test
+    void testCancel_RunningJob() throws Exception {
+        // 模拟长时间运行的分配：在检查点发现取消后抛出 CancellationException
+        CountDownLatch started = new CountDownLatch(1);
+        when(allocationService.intelligentAllocation(anyList(), any(AllocationOptions.class))).thenAnswer(invocation -> {
+            AllocationOptions options = invocation.getArgument(1);
+            started.countDown();
+            while (!options.getMonitor().isCancelled()) {
+                Thread.onSpinWait();
+            }
+            throw new CancellationException("分配任务已取消");
+        });
+
+        AllocationJob job = allocationJobService.submit(Arrays.asList("S001"), AllocationOptions.defaults());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 执行测试
+        Map<String, Object> cancelled = allocationJobService.cancel(job.getId());
+        assertTrue((Boolean) cancelled.get("success"));
+        assertEquals("已请求取消分配任务", cancelled.get("message"));
+        awaitFinished(job);
+
+        // 验证结果
+        assertEquals(AllocationJob.STATUS_CANCELLED, job.getStatus());
+        assertFalse((Boolean) allocationJobService.cancel(job.getId()).get("success"));
+    }
+
+    @Test
+    void testCancel_RefusedOncePersisting() throws Exception {
+        // 模拟分配：进入写库阶段后等待，期间的取消请求应被拒绝，任务正常完成
+        CountDownLatch persisting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(allocationService.intelligentAllocation(anyList(), any(AllocationOptions.class))).thenAnswer(invocation -> {
+            AllocationOptions options = invocation.getArgument(1);
+            assertTrue(options.getMonitor().beginPersisting());
+            persisting.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return new HashMap<String, Object>();
+        });
+
+        AllocationJob job = allocationJobService.submit(Arrays.asList("S001"), AllocationOptions.defaults());
+        assertTrue(persisting.await(5, TimeUnit.SECONDS));
+
+        // 执行测试
+        Map<String, Object> result = allocationJobService.cancel(job.getId());
+        release.countDown();
+        awaitFinished(job);
+
+        // 验证结果
+        assertFalse((Boolean) result.get("success"));
+        assertEquals("分配结果正在写入或已提交，无法取消", result.get("message"));
+        assertFalse(job.isCancelled());
+        assertEquals(AllocationJob.STATUS_COMPLETED, job.getStatus());
+    }
+
+    @Test
+    void testCancel_QueuedJobDoesNotInterrupt() {
+        // 排队中的任务直接取消，只从队列移除而不中断线程，之后也不会再开始执行
+        AllocationJob job = new AllocationJob("job-1", Arrays.asList("S001"), AllocationOptions.defaults());
+        Future<?> future = mock(Future.class);
+        job.setFuture(future);
+
+        Map<String, Object> result = job.requestCancel();
+
+        assertTrue((Boolean) result.get("success"));
+        assertEquals("分配任务已取消", result.get("message"));
+        assertEquals(AllocationJob.STATUS_CANCELLED, job.getStatus());
+        verify(future).cancel(false);
+        verify(future, never()).cancel(true);
+        assertFalse(job.start());
+        assertFalse(job.beginPersisting());
+    }
+
+    @Test
+    void testCancel_UnknownJob() {
+        Map<String, Object> result = allocationJobService.cancel("not-exist");
+        assertFalse((Boolean) result.get("success"));
+        assertEquals("分配任务不存在或已过期", result.get("message"));
+        assertNull(allocationJobService.getJob("not-exist"));
+    }
+
+    private void awaitFinished(AllocationJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished(), "任务应在超时前结束");
+    }
+}
@@ -0,0 +1,144 @@
+package com.ihome.service;
+
+import com.ihome.entity.AllocationRun;
+import com.ihome.entity.Bed;
+import com.ihome.entity.DormitoryAllocation;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.mapper.AllocationRunMapper;
+import com.ihome.mapper.BedMapper;
+import com.ihome.mapper.DormitoryAllocationMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分配批次服务测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class AllocationRunServiceTest {
+
+    @Mock
+    private AllocationRunMapper runMapper;
+
+    @Mock
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Mock
+    private BedMapper bedMapper;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private AllocationRunService allocationRunService;
+
+    private AllocationRun createRun(Long id, String status) {
+        AllocationRun run = new AllocationRun();
+        run.setId(id);
+        run.setStatus(status);
+        run.setTotalAllocated(2);
+        return run;
+    }
+
+    private DormitoryAllocation createAllocation(String studentId, String dormitoryId, String bedId) {
+        DormitoryAllocation allocation = new DormitoryAllocation();
+        allocation.setStudentId(studentId);
+        allocation.setDormitoryId(dormitoryId);
+        allocation.setBedId(bedId);
+        allocation.setStatus("在住");
+        return allocation;
+    }
+
+    @Test
+    void testCreateRun_RecordsWeights() {
+        Map<String, Double> weights = new HashMap<>();
+        weights.put("MAJOR", 0.35);
+        weights.put("TAG", 0.15);
+
+        AllocationRun run = allocationRunService.createRun("greedy", 42L, 3L, weights, 10);
+
+        verify(runMapper).insert(run);
+        assertEquals("{\"MAJOR\":0.35,\"TAG\":0.15}", run.getWeights());
+        assertEquals(42L, run.getSeed());
+        assertEquals(3L, run.getWeightsVersion());
+        assertEquals("已完成", run.getStatus());
+    }
+
+    @Test
+    void testRollback_UsesSetBasedStatements() {
+        when(runMapper.selectById(5L)).thenReturn(createRun(5L, "已完成"));
+        when(allocationMapper.selectActiveByRunId(5L)).thenReturn(Arrays.asList(
+            createAllocation("S001", "D001", "B001"),
+            createAllocation("S002", "D001", "B002")
+        ));
+        when(bedMapper.releaseByRunId(5L)).thenReturn(2);
+        when(allocationMapper.revokeByRunId(eq(5L), any(LocalDate.class))).thenReturn(2);
+        when(runMapper.markRolledBack(eq(5L), eq(2), any(LocalDateTime.class))).thenReturn(1);
+
+        Map<String, Object> result = allocationRunService.rollback(5L);
+
+        assertEquals(2, result.get("revokedAllocations"));
+        assertEquals(2, result.get("releasedBeds"));
+        // 不逐行更新
+        verify(bedMapper, never()).updateById(any(Bed.class));
+        verify(allocationMapper, never()).updateById(any(DormitoryAllocation.class));
+
+        ArgumentCaptor<BedOccupancyChangedEvent> event = ArgumentCaptor.forClass(BedOccupancyChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertTrue(event.getValue().isReleased());
+        assertEquals(2, event.getValue().getChanges().size());
+    }
+
+    @Test
+    void testRollback_AlreadyRolledBack() {
+        when(runMapper.selectById(5L)).thenReturn(createRun(5L, "已回滚"));
+
+        assertThrows(IllegalStateException.class, () -> allocationRunService.rollback(5L));
+        verify(bedMapper, never()).releaseByRunId(anyLong());
+        verify(allocationMapper, never()).revokeByRunId(anyLong(), any());
+    }
+
+    @Test
+    void testDiff_ClassifiesChanges() {
+        when(runMapper.selectById(1L)).thenReturn(createRun(1L, "已回滚"));
+        when(runMapper.selectById(2L)).thenReturn(createRun(2L, "已完成"));
+        when(allocationMapper.selectByRunId(1L)).thenReturn(Arrays.asList(
+            createAllocation("S001", "D001", "B001"),
+            createAllocation("S002", "D001", "B002"),
+            createAllocation("S003", "D002", "B003")
+        ));
+        when(allocationMapper.selectByRunId(2L)).thenReturn(Arrays.asList(
+            createAllocation("S001", "D001", "B001"),
+            createAllocation("S002", "D002", "B004"),
+            createAllocation("S004", "D002", "B003")
+        ));
+
+        Map<String, Object> diff = allocationRunService.diff(1L, 2L);
+
+        assertEquals(1, diff.get("unchangedCount"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> moved = (List<Map<String, Object>>) diff.get("moved");
+        assertEquals(1, moved.size());
+        assertEquals("S002", moved.get(0).get("studentId"));
+        assertEquals("B002", moved.get(0).get("fromBedId"));
+        assertEquals("B004", moved.get(0).get("toBedId"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> added = (List<Map<String, Object>>) diff.get("added");
+        assertEquals("S004", added.get(0).get("studentId"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> removed = (List<Map<String, Object>>) diff.get("removed");
+        assertEquals("S003", removed.get(0).get("studentId"));
+    }
+}
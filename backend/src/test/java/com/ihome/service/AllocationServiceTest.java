@@ -5,12 +5,15 @@ import com.ihome.mapper.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -50,6 +53,15 @@ public class AllocationServiceTest {
     
     @Mock
     private AlgorithmWeightsMapper weightsMapper;
+    
+    @Mock
+    private BuildingMapper buildingMapper;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private AllocationRunService runService;
 
     @InjectMocks
     private AllocationService allocationService;
@@ -59,11 +71,54 @@ public class AllocationServiceTest {
     private List<QuestionnaireAnswer> testQuestionnaires;
     private List<RoommateTag> testTags;
     private List<AlgorithmWeights> testWeights;
+    private int generatedAllocationId;
 
     @BeforeEach
     void setUp() {
         // 初始化测试数据
         setupTestData();
+
+        // 权重快照服务使用真实实现，读取模拟的权重Mapper
+        AlgorithmWeightsService weightsService = new AlgorithmWeightsService();
+        ReflectionTestUtils.setField(weightsService, "weightsMapper", weightsMapper);
+        when(weightsMapper.selectVersion()).thenReturn(null);
+        ReflectionTestUtils.setField(allocationService, "weightsService", weightsService);
+
+        // 室友兼容度索引使用真实实现，读取模拟的学生、问卷和标签Mapper
+        RoommateCompatibilityIndex compatibilityIndex = new RoommateCompatibilityIndex();
+        ReflectionTestUtils.setField(compatibilityIndex, "studentMapper", studentMapper);
+        ReflectionTestUtils.setField(compatibilityIndex, "questionnaireMapper", questionnaireMapper);
+        ReflectionTestUtils.setField(compatibilityIndex, "tagMapper", tagMapper);
+        ReflectionTestUtils.setField(allocationService, "compatibilityIndex", compatibilityIndex);
+        
+        // 批量查询学生：返回各测试按ID模拟的学生
+        when(studentMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            List<Student> students = new ArrayList<>();
+            for (Object id : invocation.getArgument(0, Collection.class)) {
+                Student student = studentMapper.selectById((String) id);
+                if (student != null) {
+                    students.add(student);
+                }
+            }
+            return students;
+        });
+
+        // 模拟批量写库：床位全部占用成功，分配记录依次回填ID
+        when(bedMapper.updateStatusByIds(anyCollection(), anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.getArgument(0, Collection.class).size());
+        when(allocationMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<DormitoryAllocation> rows = invocation.getArgument(0);
+            for (DormitoryAllocation row : rows) {
+                row.setId(++generatedAllocationId);
+            }
+            return rows.size();
+        });
+        when(runService.createRun(anyString(), anyLong(), anyLong(), anyMap(), anyInt())).thenAnswer(invocation -> {
+            AllocationRun run = new AllocationRun();
+            run.setId(7L);
+            run.setSeed(invocation.getArgument(1));
+            return run;
+        });
     }
 
     private void setupTestData() {
@@ -200,8 +255,514 @@ public class AllocationServiceTest {
         }
         
         // 验证数据库操作被调用
-        verify(allocationMapper, atLeastOnce()).insert(any(DormitoryAllocation.class));
-        verify(bedMapper, atLeastOnce()).updateById(any(Bed.class));
+        verify(allocationMapper, atLeastOnce()).insertBatch(anyList());
+        verify(bedMapper, atLeastOnce()).updateStatusByIds(anyCollection(), eq("可用"), eq("已占用"));
+        verify(allocationMapper, never()).insert(any(DormitoryAllocation.class));
+    }
+
+    @Test
+    void testIntelligentAllocation_ScoringLoadsCohortOnce() {
+        // 评分阶段应一次性加载整批学生的标签和权重，查询次数与学生人数无关
+        List<String> studentIds = Arrays.asList("S001", "S002", "S003", "S004");
+
+        when(studentMapper.selectById("S001")).thenReturn(testStudents.get(0));
+        when(studentMapper.selectById("S002")).thenReturn(testStudents.get(1));
+        when(studentMapper.selectById("S003")).thenReturn(testStudents.get(2));
+        when(studentMapper.selectById("S004")).thenReturn(testStudents.get(3));
+
+        when(bedMapper.selectList(null)).thenReturn(testBeds);
+        when(tagMapper.selectByStudentIds(anyCollection())).thenReturn(testTags);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(allocationMapper.selectByDormitoryId(anyString())).thenReturn(new ArrayList<>());
+
+        // 执行测试
+        allocationService.intelligentAllocation(studentIds);
+
+        // 验证查询次数
+        verify(tagMapper, times(1)).selectByStudentIds(anyCollection());
+        verify(tagMapper, never()).selectByStudentId(anyString());
+        verify(weightsMapper, times(1)).selectList(null);
+    }
+
+    @Test
+    void testSimulateAllocation_StudentQueriesIndependentOfCohortSize() {
+        // 学生、标签和问卷按批量大小分批查询：10 人和 120 人都只查询一次，超过批量大小时按批数查询
+        ReflectionTestUtils.setField(allocationService, "batchSize", 200);
+        when(bedMapper.selectList(null)).thenReturn(testBeds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+
+        for (int size : new int[]{10, 120}) {
+            reset(studentMapper);
+            List<Student> cohort = cohort(size);
+            when(studentMapper.selectBatchIds(anyCollection())).thenReturn(cohort);
+
+            allocationService.simulateAllocation(ids(cohort), AllocationOptions.defaults());
+
+            verify(studentMapper, times(1)).selectBatchIds(anyCollection());
+            verify(studentMapper, never()).selectById(any());
+        }
+
+        reset(studentMapper, tagMapper, questionnaireMapper);
+        List<Student> cohort = cohort(450);
+        when(studentMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> requested = invocation.getArgument(0, Collection.class);
+            return cohort.stream().filter(student -> requested.contains(student.getId())).toList();
+        });
+
+        Map<String, Object> result = allocationService.simulateAllocation(ids(cohort), AllocationOptions.defaults());
+
+        verify(studentMapper, times(3)).selectBatchIds(anyCollection());
+        verify(studentMapper, never()).selectById(any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> tagChunks = ArgumentCaptor.forClass(Collection.class);
+        verify(tagMapper, times(3)).selectByStudentIds(tagChunks.capture());
+        assertEquals(Arrays.asList(200, 200, 50), tagChunks.getAllValues().stream().map(Collection::size).toList());
+        verify(questionnaireMapper, times(3)).selectByStudentIds(anyCollection());
+        assertEquals(450, (Integer) result.get("totalAllocated") + (Integer) result.get("totalUnallocated"));
+    }
+
+    private List<Student> cohort(int size) {
+        List<Student> students = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            students.add(createStudent(String.format("C%04d", i), "学生" + i,
+                    i % 2 == 0 ? "男" : "女", "计算机科学", "2023"));
+        }
+        return students;
+    }
+
+    private static List<String> ids(List<Student> students) {
+        List<String> ids = new ArrayList<>(students.size());
+        for (Student student : students) {
+            ids.add(student.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testIntelligentAllocation_ClusteringSolver() {
+        // 聚类分组算法：每个学生、每张床位最多分配一次
+        List<String> studentIds = Arrays.asList("S001", "S002", "S003", "S004");
+        List<Bed> beds = Arrays.asList(
+            createBed("B001", "D001", "下铺", "可用"),
+            createBed("B002", "D001", "上铺", "可用"),
+            createBed("B003", "D002", "下铺", "可用"),
+            createBed("B004", "D002", "上铺", "可用"),
+            createBed("B005", "D003", "下铺", "可用"),
+            createBed("B006", "D003", "上铺", "可用")
+        );
+
+        when(studentMapper.selectById("S001")).thenReturn(testStudents.get(0));
+        when(studentMapper.selectById("S002")).thenReturn(testStudents.get(1));
+        when(studentMapper.selectById("S003")).thenReturn(testStudents.get(2));
+        when(studentMapper.selectById("S004")).thenReturn(testStudents.get(3));
+
+        when(bedMapper.selectList(null)).thenReturn(beds);
+        when(questionnaireMapper.selectByStudentIds(anyCollection())).thenReturn(testQuestionnaires);
+        when(tagMapper.selectByStudentIds(anyCollection())).thenReturn(testTags);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(allocationMapper.selectByDormitoryId(anyString())).thenReturn(new ArrayList<>());
+
+        AllocationOptions options = AllocationOptions.defaults();
+        options.setSolver("clustering");
+
+        // 执行测试
+        Map<String, Object> result = allocationService.intelligentAllocation(studentIds, options);
+
+        // 验证结果
+        assertEquals("clustering", result.get("solver"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allocations = (List<Map<String, Object>>) result.get("allocations");
+        Set<Object> allocatedStudents = new HashSet<>();
+        Set<Object> allocatedBeds = new HashSet<>();
+        for (Map<String, Object> allocation : allocations) {
+            assertTrue(allocatedStudents.add(allocation.get("studentId")));
+            assertTrue(allocatedBeds.add(allocation.get("bedId")));
+        }
+        assertEquals(4, allocations.size());
+    }
+
+    @Test
+    void testSimulateAllocation_RefinementGroupsCompatibleRoommates() {
+        // 四名同专业男生，作息两两相同；交换优化后作息相同的学生住同一间
+        List<Student> students = Arrays.asList(
+            createStudent("M001", "甲", "男", "计算机科学", "2023"),
+            createStudent("M002", "乙", "男", "计算机科学", "2023"),
+            createStudent("M003", "丙", "男", "计算机科学", "2023"),
+            createStudent("M004", "丁", "男", "计算机科学", "2023")
+        );
+        for (Student student : students) {
+            when(studentMapper.selectById(student.getId())).thenReturn(student);
+        }
+        when(bedMapper.selectList(null)).thenReturn(testBeds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(questionnaireMapper.selectByStudentIds(anyCollection())).thenReturn(Arrays.asList(
+            createQuestionnaire("M001", "早睡", "爱整洁", "安静", "愿意"),
+            createQuestionnaire("M002", "晚睡", "一般", "能接受一点噪音", "一般"),
+            createQuestionnaire("M003", "早睡", "爱整洁", "安静", "愿意"),
+            createQuestionnaire("M004", "晚睡", "一般", "能接受一点噪音", "一般")
+        ));
+
+        AllocationOptions options = AllocationOptions.defaults();
+        options.setSeed(1L);
+        options.setRefine(true);
+
+        Map<String, Object> result = allocationService.simulateAllocation(
+                Arrays.asList("M001", "M002", "M003", "M004"), options);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> refinement = (Map<String, Object>) result.get("refinement");
+        assertNotNull(refinement);
+        assertTrue((Double) refinement.get("averageCompatibilityAfter")
+                >= (Double) refinement.get("averageCompatibilityBefore"));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allocations = (List<Map<String, Object>>) result.get("allocations");
+        assertEquals(4, allocations.size());
+        Map<Object, Object> dormitoryByStudent = new HashMap<>();
+        for (Map<String, Object> allocation : allocations) {
+            dormitoryByStudent.put(allocation.get("studentId"), allocation.get("dormitoryId"));
+        }
+        assertEquals(dormitoryByStudent.get("M001"), dormitoryByStudent.get("M003"));
+        assertEquals(dormitoryByStudent.get("M002"), dormitoryByStudent.get("M004"));
+    }
+
+    @Test
+    void testIntelligentAllocation_ParallelPartitions() {
+        // 并行模式：各专业/性别分组预留的宿舍互不重叠，床位不会被重复分配
+        List<Student> students = new ArrayList<>();
+        String[] majors = {"计算机科学", "软件工程", "数学", "物理"};
+        for (int i = 0; i < 24; i++) {
+            students.add(createStudent(String.format("P%03d", i), "学生" + i,
+                    i % 2 == 0 ? "男" : "女", majors[i % majors.length], "2023"));
+        }
+        List<Bed> beds = new ArrayList<>();
+        for (int d = 0; d < 8; d++) {
+            for (int b = 0; b < 4; b++) {
+                beds.add(createBed(String.format("PB%02d%d", d, b), String.format("PD%02d", d),
+                        b < 2 ? "下铺" : "上铺", "可用"));
+            }
+        }
+
+        for (Student student : students) {
+            when(studentMapper.selectById(student.getId())).thenReturn(student);
+        }
+        when(bedMapper.selectList(null)).thenReturn(beds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(allocationMapper.selectByDormitoryId(anyString())).thenReturn(new ArrayList<>());
+
+        AllocationOptions options = AllocationOptions.defaults();
+        options.setParallel(true);
+
+        // 执行测试
+        Map<String, Object> result = allocationService.intelligentAllocation(
+                students.stream().map(Student::getId).collect(java.util.stream.Collectors.toList()), options);
+
+        // 验证结果
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allocations = (List<Map<String, Object>>) result.get("allocations");
+        assertEquals(24, allocations.size());
+        assertEquals(0, result.get("totalUnallocated"));
+
+        Set<Object> allocatedBeds = new HashSet<>();
+        Map<Object, Set<Object>> dormitoryGenders = new HashMap<>();
+        for (Map<String, Object> allocation : allocations) {
+            assertTrue(allocatedBeds.add(allocation.get("bedId")));
+            dormitoryGenders.computeIfAbsent(allocation.get("dormitoryId"), k -> new HashSet<>())
+                    .add(allocation.get("gender"));
+        }
+        for (Set<Object> genders : dormitoryGenders.values()) {
+            assertEquals(1, genders.size());
+        }
+    }
+
+    @Test
+    void testIntelligentAllocation_SpilloverUsesLeftoverBeds() {
+        // 两个同性别分组各需 3 个床位，只有两间 4 人间：第二个分组剩下的学生使用第一间宿舍用剩的床位
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            students.add(createStudent("L00" + i, "学生" + i, "男", i < 3 ? "计算机科学" : "软件工程", "2023"));
+        }
+        List<Bed> beds = new ArrayList<>();
+        for (int b = 0; b < 4; b++) {
+            beds.add(createBed("LA" + b, "LD1", "下铺", "可用"));
+        }
+        for (int b = 0; b < 2; b++) {
+            beds.add(createBed("LB" + b, "LD2", "下铺", "可用"));
+        }
+
+        for (Student student : students) {
+            when(studentMapper.selectById(student.getId())).thenReturn(student);
+        }
+        when(bedMapper.selectList(null)).thenReturn(beds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(allocationMapper.selectByDormitoryId(anyString())).thenReturn(new ArrayList<>());
+
+        // 执行测试
+        Map<String, Object> result = allocationService.intelligentAllocation(
+                students.stream().map(Student::getId).collect(java.util.stream.Collectors.toList()));
+
+        // 验证结果
+        assertEquals(6, result.get("totalAllocated"));
+        assertEquals(0, result.get("totalUnallocated"));
+    }
+
+    @Test
+    void testIntelligentAllocation_BatchedPersistence() {
+        // 5 名学生、每批 2 行：分 3 批写入，分配记录ID全部回填
+        ReflectionTestUtils.setField(allocationService, "batchSize", 2);
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            students.add(createStudent("W00" + i, "学生" + i, "男", "计算机科学", "2023"));
+        }
+        List<Bed> beds = new ArrayList<>();
+        for (int b = 0; b < 6; b++) {
+            beds.add(createBed("WB" + b, "WD" + (b / 3), b % 3 == 0 ? "下铺" : "上铺", "可用"));
+        }
+
+        for (Student student : students) {
+            when(studentMapper.selectById(student.getId())).thenReturn(student);
+        }
+        when(bedMapper.selectList(null)).thenReturn(beds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(allocationMapper.selectByDormitoryId(anyString())).thenReturn(new ArrayList<>());
+
+        // 执行测试
+        Map<String, Object> result = allocationService.intelligentAllocation(
+                students.stream().map(Student::getId).collect(java.util.stream.Collectors.toList()));
+
+        // 验证结果
+        assertEquals(5, result.get("totalAllocated"));
+        verify(allocationMapper, times(3)).insertBatch(anyList());
+        verify(bedMapper, times(3)).updateStatusByIds(anyCollection(), eq("可用"), eq("已占用"));
+        verify(bedMapper, never()).updateById(any(Bed.class));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allocations = (List<Map<String, Object>>) result.get("allocations");
+        for (Map<String, Object> allocation : allocations) {
+            assertNotNull(allocation.get("allocationId"));
+        }
+
+        // 每条分配记录都带上本次分配批次号
+        assertEquals(7L, result.get("runId"));
+        verify(runService).createRun(eq("greedy"), anyLong(), anyLong(), anyMap(), eq(5));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DormitoryAllocation>> rows = ArgumentCaptor.forClass(List.class);
+        verify(allocationMapper, times(3)).insertBatch(rows.capture());
+        for (List<DormitoryAllocation> chunk : rows.getAllValues()) {
+            for (DormitoryAllocation row : chunk) {
+                assertEquals(7L, row.getRunId());
+            }
+        }
+    }
+
+    @Test
+    void testIntelligentAllocation_BedTakenConcurrently() {
+        // 床位在计算期间被其他操作占用：抛出异常，由事务整体回滚
+        when(studentMapper.selectById("S001")).thenReturn(testStudents.get(0));
+        when(bedMapper.selectList(null)).thenReturn(testBeds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(allocationMapper.selectByDormitoryId(anyString())).thenReturn(new ArrayList<>());
+        when(bedMapper.updateStatusByIds(anyCollection(), anyString(), anyString())).thenReturn(0);
+
+        // 执行测试并验证异常
+        assertThrows(IllegalStateException.class,
+                () -> allocationService.intelligentAllocation(Arrays.asList("S001")));
+        verify(allocationMapper, never()).insertBatch(anyList());
+    }
+
+    @Test
+    void testSimulateAllocation_NoWrites() {
+        // 模拟分配：返回预计结果、楼栋入住率和分数分布，但不写入数据库
+        List<String> studentIds = Arrays.asList("S001", "S002", "S003", "S004");
+        List<Bed> beds = new ArrayList<>(testBeds);
+        beds.add(createBed("B005", "D003", "下铺", "已占用"));
+
+        when(studentMapper.selectById("S001")).thenReturn(testStudents.get(0));
+        when(studentMapper.selectById("S002")).thenReturn(testStudents.get(1));
+        when(studentMapper.selectById("S003")).thenReturn(testStudents.get(2));
+        when(studentMapper.selectById("S004")).thenReturn(testStudents.get(3));
+        when(bedMapper.selectList(null)).thenReturn(beds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(allocationMapper.selectByDormitoryId(anyString())).thenReturn(new ArrayList<>());
+
+        Dormitory d1 = new Dormitory();
+        d1.setId("D001");
+        d1.setBuildingId("BLD1");
+        Dormitory d2 = new Dormitory();
+        d2.setId("D002");
+        d2.setBuildingId("BLD1");
+        Dormitory d3 = new Dormitory();
+        d3.setId("D003");
+        d3.setBuildingId("BLD2");
+        when(dormitoryMapper.selectList(null)).thenReturn(Arrays.asList(d1, d2, d3));
+        Building building = new Building();
+        building.setId("BLD1");
+        building.setBuildingName("1号楼");
+        when(buildingMapper.selectList(null)).thenReturn(Arrays.asList(building));
+
+        AllocationOptions options = AllocationOptions.defaults();
+        options.setWeights(Map.of("MAJOR", 0.9));
+
+        // 执行测试
+        Map<String, Object> result = allocationService.simulateAllocation(studentIds, options);
+
+        // 验证结果
+        assertEquals(true, result.get("simulated"));
+        assertEquals(4, result.get("totalAllocated"));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> occupancy = (List<Map<String, Object>>) result.get("occupancyByBuilding");
+        assertEquals(2, occupancy.size());
+        Map<String, Object> first = occupancy.get(0);
+        assertEquals("1号楼", first.get("buildingName"));
+        assertEquals(4, first.get("totalBeds"));
+        assertEquals(0, first.get("occupiedBeds"));
+        assertEquals(4, first.get("projectedOccupiedBeds"));
+        assertEquals(1, occupancy.get(1).get("occupiedBeds"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> distribution = (Map<String, Object>) result.get("scoreDistribution");
+        assertEquals(4L, distribution.get("count"));
+
+        // 验证没有任何写操作
+        verify(allocationMapper, never()).insertBatch(anyList());
+        verify(allocationMapper, never()).insert(any(DormitoryAllocation.class));
+        verify(bedMapper, never()).updateStatusByIds(anyCollection(), anyString(), anyString());
+        verify(bedMapper, never()).updateById(any(Bed.class));
+        for (Bed bed : testBeds) {
+            assertEquals("可用", bed.getStatus());
+        }
+    }
+
+    @Test
+    void testSimulateAllocation_SameSeedIsReproducible() {
+        List<String> studentIds = Arrays.asList("S001", "S002", "S003", "S004");
+        for (Student student : testStudents) {
+            when(studentMapper.selectById(student.getId())).thenReturn(student);
+        }
+        when(bedMapper.selectList(null)).thenReturn(testBeds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(tagMapper.selectByStudentIds(anyList())).thenReturn(testTags);
+
+        // 相同种子：顺序执行与并行执行的结果一致，并在结果中返回种子
+        AllocationOptions sequential = AllocationOptions.defaults();
+        sequential.setSeed(42L);
+        AllocationOptions parallel = AllocationOptions.defaults();
+        parallel.setSeed(42L);
+        parallel.setParallel(true);
+
+        Map<String, Object> first = allocationService.simulateAllocation(studentIds, sequential);
+        Map<String, Object> second = allocationService.simulateAllocation(studentIds, parallel);
+
+        assertEquals(42L, first.get("seed"));
+        // 两次运行使用同一个权重快照，只查询一次权重配置
+        assertEquals(1L, first.get("weightsVersion"));
+        assertEquals(1L, second.get("weightsVersion"));
+        verify(weightsMapper, times(1)).selectList(null);
+        assertEquals(first.get("allocations"), second.get("allocations"));
+        assertEquals(first.get("scoreDistribution"), second.get("scoreDistribution"));
+
+        // 未指定种子时生成新种子，便于事后复现
+        Map<String, Object> unseeded = allocationService.simulateAllocation(studentIds, AllocationOptions.defaults());
+        assertNotNull(unseeded.get("seed"));
+    }
+
+    @Test
+    void testCalculateCompatibilityScores_SeededRandomIsDeterministic() {
+        AllocationService.ScoringContext scoring = new AllocationService.ScoringContext(
+                new HashMap<>(), new HashMap<>(), new HashMap<>(), 1L);
+
+        double[] first = allocationService.calculateCompatibilityScores(testStudents, scoring,
+                AllocationService.partitionRandom(7L, "计算机科学/男"));
+        double[] second = allocationService.calculateCompatibilityScores(testStudents, scoring,
+                AllocationService.partitionRandom(7L, "计算机科学/男"));
+
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void testIntelligentAllocation_OccupancyIndexPrunesByGender() {
+        // D001 所在楼栋为女生楼，D002 已有女生入住，男生只能分到 D003
+        List<String> studentIds = Arrays.asList("S001", "S002");
+        List<Bed> beds = new ArrayList<>(testBeds);
+        beds.add(createBed("B005", "D003", "下铺", "可用"));
+        beds.add(createBed("B006", "D003", "上铺", "可用"));
+
+        when(studentMapper.selectById("S001")).thenReturn(testStudents.get(0));
+        when(studentMapper.selectById("S002")).thenReturn(testStudents.get(1));
+        when(bedMapper.selectList(null)).thenReturn(beds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+
+        Dormitory d1 = new Dormitory();
+        d1.setId("D001");
+        d1.setBuildingId("BF");
+        when(dormitoryMapper.selectList(null)).thenReturn(Arrays.asList(d1));
+        Building femaleBuilding = new Building();
+        femaleBuilding.setId("BF");
+        femaleBuilding.setGenderType("F");
+        when(buildingMapper.selectList(null)).thenReturn(Arrays.asList(femaleBuilding));
+        Map<String, Object> resident = new HashMap<>();
+        resident.put("dormitoryId", "D002");
+        resident.put("gender", "女");
+        when(allocationMapper.selectResidentGenders()).thenReturn(Arrays.asList(resident));
+
+        // 执行测试
+        Map<String, Object> result = allocationService.intelligentAllocation(studentIds);
+
+        // 验证结果
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allocations = (List<Map<String, Object>>) result.get("allocations");
+        assertEquals(2, allocations.size());
+        for (Map<String, Object> allocation : allocations) {
+            assertEquals("D003", allocation.get("dormitoryId"));
+        }
+
+        // 入住索引一次性加载，不再逐间宿舍查询住户
+        verify(allocationMapper, times(1)).selectResidentGenders();
+        verify(allocationMapper, never()).selectByDormitoryId(anyString());
+    }
+
+    @Test
+    void testIntelligentAllocation_AccessibilityConstraintUsesLowFloorLowerBed() {
+        // S001 行动不便，只能分到低楼层宿舍 D002 的下铺；D001 在 5 楼
+        List<String> studentIds = Arrays.asList("S001", "S002");
+        when(studentMapper.selectById("S001")).thenReturn(testStudents.get(0));
+        when(studentMapper.selectById("S002")).thenReturn(testStudents.get(1));
+        when(bedMapper.selectList(null)).thenReturn(testBeds);
+        when(weightsMapper.selectList(null)).thenReturn(testWeights);
+        when(tagMapper.selectByStudentIds(anyCollection())).thenReturn(Arrays.asList(
+            createTag("S001", "行动不便"),
+            createTag("S002", "友善")
+        ));
+
+        Dormitory d1 = new Dormitory();
+        d1.setId("D001");
+        d1.setFloorNumber(5);
+        Dormitory d2 = new Dormitory();
+        d2.setId("D002");
+        d2.setFloorNumber(1);
+        when(dormitoryMapper.selectList(null)).thenReturn(Arrays.asList(d1, d2));
+
+        Map<String, Object> result = allocationService.intelligentAllocation(studentIds);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allocations = (List<Map<String, Object>>) result.get("allocations");
+        assertEquals(2, allocations.size());
+        for (Map<String, Object> allocation : allocations) {
+            if ("S001".equals(allocation.get("studentId"))) {
+                assertEquals("B003", allocation.get("bedId"));
+            }
+        }
+    }
+
+    @Test
+    void testIntelligentAllocation_UnknownSolver() {
+        AllocationOptions options = AllocationOptions.defaults();
+        options.setSolver("unknown");
+
+        // 执行测试并验证异常
+        assertThrows(IllegalArgumentException.class,
+                () -> allocationService.intelligentAllocation(Arrays.asList("S001"), options));
     }
 
     @Test
@@ -0,0 +1,202 @@
+package com.ihome.service;
+
+import com.ihome.common.StatusCount;
+import com.ihome.entity.Dormitory;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RequestStatusChangedEvent;
+import com.ihome.mapper.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 仪表盘计数器测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class DashboardCounterStoreTest {
+
+    @Mock
+    private StudentMapper studentMapper;
+
+    @Mock
+    private DormitoryMapper dormitoryMapper;
+
+    @Mock
+    private BedMapper bedMapper;
+
+    @Mock
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Mock
+    private PaymentRecordMapper paymentMapper;
+
+    @Mock
+    private RepairOrderMapper repairMapper;
+
+    @Mock
+    private DormitorySwitchMapper switchMapper;
+
+    @InjectMocks
+    private DashboardCounterStore counterStore;
+
+    @BeforeEach
+    void setUp() {
+        when(studentMapper.selectCount(null)).thenReturn(100L);
+        when(dormitoryMapper.selectCount(null)).thenReturn(50L);
+        when(paymentMapper.selectCount(null)).thenReturn(150L);
+        when(allocationMapper.selectCount(any())).thenReturn(80L);
+        when(dormitoryMapper.selectBuildingIds()).thenReturn(Arrays.asList(dormitory("D1", "A"), dormitory("D2", "B")));
+        when(bedMapper.countByStatus()).thenReturn(Arrays.asList(
+                new StatusCount("已占用", 150L), new StatusCount("可用", 50L)));
+        when(bedMapper.countByBuildingAndStatus()).thenReturn(Arrays.asList(
+                new StatusCount("A", "已占用", 100L), new StatusCount("A", "可用", 20L),
+                new StatusCount("B", "已占用", 50L), new StatusCount("B", "可用", 30L)));
+        when(repairMapper.countByStatus()).thenReturn(Arrays.asList(
+                new StatusCount("待处理", 12L), new StatusCount("已完成", 18L)));
+        when(switchMapper.countByStatus()).thenReturn(Collections.singletonList(new StatusCount("已通过", 10L)));
+    }
+
+    @Test
+    void testGetDashboardStatistics_LoadsFromGroupedCounts() {
+        Map<String, Object> result = counterStore.getDashboardStatistics();
+
+        assertEquals(100L, result.get("totalStudents"));
+        assertEquals(80L, result.get("allocatedStudents"));
+        assertEquals(20L, result.get("unallocatedStudents"));
+        assertEquals(200L, result.get("totalBeds"));
+        assertEquals(150L, result.get("occupiedBeds"));
+        assertEquals(50L, result.get("availableBeds"));
+        assertEquals(75.0, result.get("occupancyRate"));
+        assertEquals(30L, result.get("totalRepairs"));
+        assertEquals(12L, result.get("pendingRepairs"));
+        assertEquals(10L, result.get("totalSwitches"));
+        assertEquals(0L, result.get("pendingSwitches"));
+        assertEquals(30L, building(result, "B").get("availableBeds"));
+
+        // 再次读取直接使用内存中的计数，不再查询数据库；状态计数不整表加载
+        counterStore.getDashboardStatistics();
+        verify(bedMapper, times(1)).countByStatus();
+        verify(studentMapper, times(1)).selectCount(null);
+        verify(bedMapper, never()).selectList(any());
+        verify(repairMapper, never()).selectList(any());
+    }
+
+    @Test
+    void testEvents_UpdateCountersWithoutQueries() {
+        counterStore.getDashboardStatistics();
+
+        counterStore.onBedOccupancyChanged(BedOccupancyChangedEvent.assigned(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("B9", "D2", "S9"))));
+        counterStore.onBedOccupancyChanged(BedOccupancyChangedEvent.moved(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("B1", "D1", "S1", "B2", "D2"))));
+        counterStore.onRequestStatusChanged(RequestStatusChangedEvent.repair(null, "待处理"));
+        counterStore.onRequestStatusChanged(RequestStatusChangedEvent.repair("待处理", "已完成"));
+        counterStore.onRequestStatusChanged(RequestStatusChangedEvent.repair("待处理", "处理中"));
+        counterStore.onRequestStatusChanged(RequestStatusChangedEvent.switchRequest(null, "待审核"));
+        counterStore.onRequestStatusChanged(RequestStatusChangedEvent.switchRequests("待审核", "已通过", 1));
+
+        Map<String, Object> result = counterStore.getDashboardStatistics();
+        assertEquals(81L, result.get("allocatedStudents"));
+        assertEquals(151L, result.get("occupiedBeds"));
+        assertEquals(49L, result.get("availableBeds"));
+        assertEquals(101L, building(result, "A").get("occupiedBeds"));
+        assertEquals(19L, building(result, "A").get("availableBeds"));
+        assertEquals(50L, building(result, "B").get("occupiedBeds"));
+        assertEquals(30L, building(result, "B").get("availableBeds"));
+        assertEquals(31L, result.get("totalRepairs"));
+        assertEquals(11L, result.get("pendingRepairs"));
+        assertEquals(11L, result.get("totalSwitches"));
+        assertEquals(0L, result.get("pendingSwitches"));
+        verify(bedMapper, times(1)).countByStatus();
+    }
+
+    @Test
+    void testReconcile_ReplacesDriftedCounters() {
+        // 尚未加载时对账不查询数据库
+        counterStore.reconcile();
+        verify(bedMapper, never()).countByStatus();
+
+        counterStore.getDashboardStatistics();
+        counterStore.onRequestStatusChanged(RequestStatusChangedEvent.repair(null, "待处理"));
+        assertEquals(13L, counterStore.getDashboardStatistics().get("pendingRepairs"));
+
+        // 数据库中的实际数量以对账结果为准
+        when(repairMapper.countByStatus()).thenReturn(Arrays.asList(
+                new StatusCount("待处理", 5L), new StatusCount("已完成", 25L)));
+        counterStore.reconcile();
+
+        Map<String, Object> result = counterStore.getDashboardStatistics();
+        assertEquals(5L, result.get("pendingRepairs"));
+        assertEquals(30L, result.get("totalRepairs"));
+        verify(bedMapper, times(2)).countByStatus();
+    }
+
+    @Test
+    void testReconcile_RequeriesCountersChangedDuringLoad() {
+        counterStore.getDashboardStatistics();
+
+        // 对账查询维修状态时，另一个线程提交了一个新的待处理工单和一次选床；
+        // 本次查询已读到新工单，在住人数和床位在之前的查询中还是旧值
+        AtomicBoolean committed = new AtomicBoolean();
+        when(allocationMapper.selectCount(any())).thenAnswer(invocation -> committed.get() ? 81L : 80L);
+        when(bedMapper.countByBuildingAndStatus()).thenAnswer(invocation -> committed.get()
+                ? Arrays.asList(new StatusCount("A", "已占用", 100L), new StatusCount("A", "可用", 20L),
+                        new StatusCount("B", "已占用", 51L), new StatusCount("B", "可用", 29L))
+                : Arrays.asList(new StatusCount("A", "已占用", 100L), new StatusCount("A", "可用", 20L),
+                        new StatusCount("B", "已占用", 50L), new StatusCount("B", "可用", 30L)));
+        when(repairMapper.countByStatus()).thenAnswer(invocation -> {
+            if (!committed.getAndSet(true)) {
+                Thread writer = new Thread(() -> {
+                    counterStore.onRequestStatusChanged(RequestStatusChangedEvent.repair(null, "待处理"));
+                    counterStore.onBedOccupancyChanged(BedOccupancyChangedEvent.assigned(Collections.singletonList(
+                            new BedOccupancyChangedEvent.BedChange("B9", "D2", "S9"))));
+                });
+                writer.start();
+                writer.join(5000);
+                assertFalse(writer.isAlive(), "事件处理不应等待对账查询");
+            }
+            return Arrays.asList(new StatusCount("待处理", 6L), new StatusCount("已完成", 25L));
+        });
+        counterStore.reconcile();
+
+        // 涉及的计数重新查询，新工单不重复计入
+        Map<String, Object> result = counterStore.getDashboardStatistics();
+        assertEquals(6L, result.get("pendingRepairs"));
+        assertEquals(31L, result.get("totalRepairs"));
+        assertEquals(81L, result.get("allocatedStudents"));
+        assertEquals(51L, building(result, "B").get("occupiedBeds"));
+        verify(repairMapper, times(3)).countByStatus();
+        verify(switchMapper, times(2)).countByStatus();
+        verify(studentMapper, times(2)).selectCount(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> building(Map<String, Object> result, String buildingId) {
+        for (Map<String, Object> building : (List<Map<String, Object>>) result.get("buildings")) {
+            if (buildingId.equals(building.get("buildingId"))) {
+                return building;
+            }
+        }
+        return fail("楼栋不存在: " + buildingId);
+    }
+
+    private static Dormitory dormitory(String id, String buildingId) {
+        Dormitory dormitory = new Dormitory();
+        dormitory.setId(id);
+        dormitory.setBuildingId(buildingId);
+        return dormitory;
+    }
+}
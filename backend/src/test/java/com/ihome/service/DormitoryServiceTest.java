@@ -3,17 +3,20 @@ package com.ihome.service;
 import com.ihome.entity.Bed;
 import com.ihome.entity.Dormitory;
 import com.ihome.entity.DormitoryAllocation;
+import com.ihome.event.BedOccupancyChangedEvent;
 import com.ihome.mapper.BedMapper;
 import com.ihome.mapper.DormitoryAllocationMapper;
 import com.ihome.mapper.DormitoryMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDate;
 import java.util.Arrays;
@@ -39,6 +42,9 @@ public class DormitoryServiceTest {
     @Mock
     private DormitoryAllocationMapper allocationMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private DormitoryService dormitoryService;
 
@@ -235,6 +241,13 @@ public class DormitoryServiceTest {
         verify(allocationMapper).selectList(any());
         verify(bedMapper).selectById("B001");
         verify(dormitoryMapper).selectById("D001");
+
+        // 退宿后发布床位释放事件，供候补自动分配
+        ArgumentCaptor<BedOccupancyChangedEvent> eventCaptor = ArgumentCaptor.forClass(BedOccupancyChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertTrue(eventCaptor.getValue().isReleased());
+        assertEquals("B001", eventCaptor.getValue().getChanges().get(0).getBedId());
+        assertEquals(studentId, eventCaptor.getValue().getChanges().get(0).getStudentId());
     }
 }
 
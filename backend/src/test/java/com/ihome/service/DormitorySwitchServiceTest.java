@@ -1,17 +1,22 @@
 package com.ihome.service;
 
+import com.ihome.entity.Bed;
 import com.ihome.entity.DormitoryAllocation;
 import com.ihome.entity.DormitorySwitch;
 import com.ihome.entity.Student;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RequestStatusChangedEvent;
 import com.ihome.mapper.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -43,6 +48,12 @@ public class DormitorySwitchServiceTest {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private RoomHarmonyService roomHarmonyService;
+
     @InjectMocks
     private DormitorySwitchService switchService;
 
@@ -160,5 +171,135 @@ public class DormitorySwitchServiceTest {
         // 注意：实际实现可能返回不同的结果，这里只验证方法执行
         verify(switchMapper).selectById(1);
     }
-}
 
+    private DormitorySwitch pendingSwitch(int id, String applicantId, String currentBedId, String targetBedId) {
+        DormitorySwitch request = new DormitorySwitch();
+        request.setId(id);
+        request.setApplicantId(applicantId);
+        request.setCurrentBedId(currentBedId);
+        request.setTargetBedId(targetBedId);
+        request.setStatus("待审核");
+        return request;
+    }
+
+    private DormitoryAllocation allocation(String studentId, String bedId) {
+        DormitoryAllocation allocation = new DormitoryAllocation();
+        allocation.setStudentId(studentId);
+        allocation.setBedId(bedId);
+        allocation.setDormitoryId("D-" + bedId);
+        allocation.setStatus("在住");
+        return allocation;
+    }
+
+    private Bed bed(String id, String status) {
+        Bed bed = new Bed();
+        bed.setId(id);
+        bed.setDormitoryId("D-" + id);
+        bed.setStatus(status);
+        return bed;
+    }
+
+    /**
+     * 两人链式调换：S1 搬进空床位 F1，S2 接替 S1 的床位 B1
+     */
+    private List<DormitorySwitch> setupChain() {
+        List<DormitorySwitch> pending = Arrays.asList(
+            pendingSwitch(11, "S1", "B1", "F1"),
+            pendingSwitch(12, "S2", "B2", "B1")
+        );
+        when(switchMapper.selectPendingSwitches()).thenReturn(pending);
+        when(switchMapper.selectBatchIds(anyCollection())).thenReturn(pending);
+        Map<String, Bed> beds = new HashMap<>();
+        beds.put("F1", bed("F1", "可用"));
+        beds.put("B1", bed("B1", "已占用"));
+        beds.put("B2", bed("B2", "已占用"));
+        when(bedMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            List<Bed> result = new ArrayList<>();
+            for (Object id : ids) {
+                result.add(beds.get(id));
+            }
+            return result;
+        });
+        when(bedMapper.selectById("B2")).thenReturn(beds.get("B2"));
+        when(allocationMapper.selectActiveByStudentIds(anyCollection()))
+                .thenReturn(Arrays.asList(allocation("S1", "B1"), allocation("S2", "B2")));
+        return pending;
+    }
+
+    @Test
+    void testFindSwitchMatches_ChainIntoFreeBed() {
+        setupChain();
+
+        List<Map<String, Object>> matches = switchService.findSwitchMatches();
+
+        assertEquals(1, matches.size());
+        assertEquals("链式调换", matches.get(0).get("type"));
+        assertEquals(Arrays.asList(11, 12), matches.get(0).get("switchIds"));
+        assertEquals("F1", matches.get(0).get("freeBedId"));
+    }
+
+    @Test
+    void testExecuteSwitchMatch_AppliesWholeChain() {
+        List<DormitorySwitch> pending = setupChain();
+        when(bedMapper.updateStatusByIds(anyCollection(), anyString(), anyString())).thenReturn(1);
+
+        Map<String, Object> result = switchService.executeSwitchMatch(Arrays.asList(12, 11), "admin001");
+
+        assertTrue((Boolean) result.get("success"));
+        verify(bedMapper).updateStatusByIds(Collections.singletonList("F1"), "可用", "已占用");
+        verify(bedMapper).updateStatusByIds(Collections.singletonList("B2"), "已占用", "可用");
+        verify(allocationMapper, times(2)).updateById(any(DormitoryAllocation.class));
+        for (DormitorySwitch request : pending) {
+            assertEquals("已通过", request.getStatus());
+            assertNotNull(request.getCompleteTime());
+        }
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(eventCaptor.capture());
+        BedOccupancyChangedEvent moved = (BedOccupancyChangedEvent) eventCaptor.getAllValues().get(0);
+        assertTrue(moved.isMoved());
+        assertEquals(2, moved.getChanges().size());
+        RequestStatusChangedEvent approved = (RequestStatusChangedEvent) eventCaptor.getAllValues().get(1);
+        assertEquals("已通过", approved.getToStatus());
+        assertEquals(2, approved.getCount());
+    }
+
+    @Test
+    void testExecuteSwitchMatch_StaleProposalRejected() {
+        setupChain();
+
+        // 方案只包含链中的一部分，与当前匹配结果不一致
+        Map<String, Object> result = switchService.executeSwitchMatch(Collections.singletonList(12), "admin001");
+
+        assertFalse((Boolean) result.get("success"));
+        assertEquals("调换方案已失效，请重新匹配", result.get("message"));
+        verify(allocationMapper, never()).updateById(any(DormitoryAllocation.class));
+        verify(bedMapper, never()).updateStatusByIds(anyCollection(), anyString(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEvaluatePendingSwitches_ResolvesSwapIntoTwoMoves() {
+        DormitorySwitch swap = pendingSwitch(21, "S1", "B1", null);
+        swap.setTargetStudentId("S2");
+        when(switchMapper.selectPendingSwitches()).thenReturn(Collections.singletonList(swap));
+        when(allocationMapper.selectActiveByStudentIds(anyCollection()))
+                .thenReturn(Collections.singletonList(allocation("S2", "B2")));
+        when(bedMapper.selectBatchIds(anyCollection())).thenReturn(Arrays.asList(bed("B1", "已占用"), bed("B2", "已占用")));
+        when(roomHarmonyService.evaluateMoves(anyList())).thenAnswer(invocation -> new HashMap<>());
+
+        List<Map<String, Object>> evaluations = switchService.evaluatePendingSwitches();
+
+        assertEquals(1, evaluations.size());
+        assertEquals(21, evaluations.get(0).get("switchId"));
+        ArgumentCaptor<List<RoomHarmonyService.PlannedMove>> movesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(roomHarmonyService).evaluateMoves(movesCaptor.capture());
+        List<RoomHarmonyService.PlannedMove> moves = movesCaptor.getValue();
+        assertEquals(2, moves.size());
+        assertEquals("S1", moves.get(0).getStudentId());
+        assertEquals("D-B1", moves.get(0).getFromDormitoryId());
+        assertEquals("D-B2", moves.get(0).getToDormitoryId());
+        assertEquals("S2", moves.get(1).getStudentId());
+        assertEquals("D-B1", moves.get(1).getToDormitoryId());
+    }
+}
@@ -0,0 +1,241 @@
+package com.ihome.service;
+
+import com.ihome.entity.DormitoryAllocation;
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.DormitoryAllocationMapper;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 调换推荐候选存储测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ExchangeRecommendationStoreTest {
+
+    @Mock
+    private StudentMapper studentMapper;
+
+    @Mock
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Mock
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Mock
+    private RoommateTagMapper roommateTagMapper;
+
+    @InjectMocks
+    private ExchangeRecommendationStore recommendationStore;
+
+    @BeforeEach
+    void setUp() {
+        when(studentMapper.selectList(null)).thenReturn(Arrays.asList(
+            createStudent("S001", "男", "计算机科学"),
+            createStudent("S002", "男", "计算机科学"),
+            createStudent("S003", "男", "计算机科学"),
+            createStudent("S004", "男", "计算机科学"),
+            createStudent("S005", "女", "计算机科学"),
+            createStudent("S006", "男", "计算机科学")
+        ));
+        // S001、S002 同宿舍；S006 未入住
+        when(allocationMapper.selectList(any())).thenReturn(Arrays.asList(
+            createAllocation("S001", "D001"),
+            createAllocation("S002", "D001"),
+            createAllocation("S003", "D002"),
+            createAllocation("S004", "D003"),
+            createAllocation("S005", "D004")
+        ));
+        when(questionnaireMapper.selectList(null)).thenReturn(Arrays.asList(
+            createAnswer("S001", "早睡", "爱整洁", "安静"),
+            createAnswer("S002", "早睡", "爱整洁", "安静"),
+            createAnswer("S003", "早睡", "爱整洁", "安静"),
+            createAnswer("S004", "晚睡", "一般", "能接受一点噪音"),
+            createAnswer("S005", "早睡", "爱整洁", "安静"),
+            createAnswer("S006", "早睡", "爱整洁", "安静")
+        ));
+        when(roommateTagMapper.selectList(null)).thenReturn(new ArrayList<RoommateTag>());
+    }
+
+    private Student createStudent(String id, String gender, String major) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName("学生" + id);
+        student.setGender(gender);
+        student.setMajor(major);
+        return student;
+    }
+
+    private DormitoryAllocation createAllocation(String studentId, String dormitoryId) {
+        DormitoryAllocation allocation = new DormitoryAllocation();
+        allocation.setStudentId(studentId);
+        allocation.setDormitoryId(dormitoryId);
+        allocation.setBedId(dormitoryId + "-" + studentId);
+        allocation.setStatus("在住");
+        return allocation;
+    }
+
+    private QuestionnaireAnswer createAnswer(String studentId, String sleep, String cleanliness, String noise) {
+        QuestionnaireAnswer answer = new QuestionnaireAnswer();
+        answer.setStudentId(studentId);
+        answer.setSleepTimePreference(sleep);
+        answer.setCleanlinessLevel(cleanliness);
+        answer.setNoiseTolerance(noise);
+        return answer;
+    }
+
+    private List<String> targetIds(List<Map<String, Object>> recommendations) {
+        return recommendations.stream()
+                .map(recommendation -> (String) recommendation.get("targetStudentId"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testGetRecommendations_FiltersByGenderResidencyAndRoommates() {
+        List<Map<String, Object>> recommendations = recommendationStore.getRecommendations("S001");
+
+        // 排除室友 S002、女生 S005、未入住的 S006，S004 匹配度不足 50%
+        assertEquals(Collections.singletonList("S003"), targetIds(recommendations));
+        assertEquals(0.85, (Double) recommendations.get(0).get("compatibilityScore"), 1e-9);
+        assertEquals("同专业学生；生活习惯高度匹配", recommendations.get(0).get("recommendationReason"));
+
+        // 未入住的学生没有推荐
+        assertNull(recommendationStore.getRecommendations("S006"));
+    }
+
+    @Test
+    void testGetRecommendations_SingleBuildServesAllStudents() {
+        recommendationStore.getRecommendations("S001");
+        recommendationStore.getRecommendations("S003");
+        recommendationStore.getRecommendations("S005");
+
+        // 首次读取时构建一次（固定 4 次查询），之后只读内存
+        verify(studentMapper, times(1)).selectList(null);
+        verify(allocationMapper, times(1)).selectList(any());
+        verify(questionnaireMapper, times(1)).selectList(null);
+        verify(roommateTagMapper, times(1)).selectList(null);
+        verify(studentMapper, never()).selectById(any());
+    }
+
+    @Test
+    void testRefreshIfStale_RefreshesOnlyChangedStudents() {
+        recommendationStore.getRecommendations("S001");
+        recommendationStore.refreshIfStale();
+        verify(studentMapper, times(1)).selectList(null);
+        verify(studentMapper, never()).selectBatchIds(anyCollection());
+
+        // S004 修改问卷后与 S001 生活习惯一致：只重新加载 S004，不全量重建
+        when(questionnaireMapper.selectByStudentIds(anyCollection())).thenReturn(Collections.singletonList(
+            createAnswer("S004", "早睡", "爱整洁", "安静")));
+        when(roommateTagMapper.selectByStudentIds(anyCollection())).thenReturn(new ArrayList<RoommateTag>());
+        when(allocationMapper.selectList(any())).thenReturn(Collections.singletonList(createAllocation("S004", "D003")));
+        when(studentMapper.selectBatchIds(anyCollection())).thenReturn(Collections.singletonList(
+            createStudent("S004", "男", "计算机科学")));
+
+        recommendationStore.onRoommateProfileChanged(RoommateProfileChangedEvent.of("S004"));
+        recommendationStore.refreshIfStale();
+
+        verify(studentMapper, times(1)).selectList(null);
+        verify(studentMapper).selectBatchIds(Collections.singletonList("S004"));
+        assertEquals(Arrays.asList("S003", "S004"), targetIds(recommendationStore.getRecommendations("S001")));
+        assertEquals(Arrays.asList("S001", "S002", "S003"),
+                targetIds(recommendationStore.getRecommendations("S004")));
+    }
+
+    @Test
+    void testRefreshIfStale_MoveUpdatesRoommateExclusion() {
+        assertEquals(Collections.singletonList("S003"), targetIds(recommendationStore.getRecommendations("S001")));
+
+        // S003 搬入 D001 后成为 S001 的室友，不再推荐；S006 入住后加入推荐
+        when(questionnaireMapper.selectByStudentIds(anyCollection())).thenReturn(Arrays.asList(
+            createAnswer("S003", "早睡", "爱整洁", "安静"),
+            createAnswer("S006", "早睡", "爱整洁", "安静")));
+        when(roommateTagMapper.selectByStudentIds(anyCollection())).thenReturn(new ArrayList<RoommateTag>());
+        when(allocationMapper.selectList(any())).thenReturn(Arrays.asList(
+            createAllocation("S003", "D001"),
+            createAllocation("S006", "D005")));
+        when(studentMapper.selectBatchIds(anyCollection())).thenReturn(Arrays.asList(
+            createStudent("S003", "男", "计算机科学"),
+            createStudent("S006", "男", "计算机科学")));
+
+        recommendationStore.onBedOccupancyChanged(BedOccupancyChangedEvent.moved(Collections.singletonList(
+            new BedOccupancyChangedEvent.BedChange("D001-S003", "D001", "S003", "D002-S003", "D002"))));
+        recommendationStore.onBedOccupancyChanged(BedOccupancyChangedEvent.assigned(Collections.singletonList(
+            new BedOccupancyChangedEvent.BedChange("D005-S006", "D005", "S006"))));
+        recommendationStore.refreshIfStale();
+
+        assertEquals(Collections.singletonList("S006"), targetIds(recommendationStore.getRecommendations("S001")));
+        assertEquals(Collections.singletonList("S006"), targetIds(recommendationStore.getRecommendations("S003")));
+        assertEquals(Arrays.asList("S001", "S002", "S003"),
+                targetIds(recommendationStore.getRecommendations("S006")));
+        verify(studentMapper, times(1)).selectList(null);
+    }
+
+    @Test
+    void testGetRecommendations_ConcurrentFirstReadsBuildOnce() throws Exception {
+        when(studentMapper.selectList(null)).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return Arrays.asList(createStudent("S001", "男", "计算机科学"), createStudent("S003", "男", "计算机科学"));
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> recommendationStore.getRecommendations("S001"));
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join(5000);
+        }
+
+        verify(studentMapper, times(1)).selectList(null);
+        assertEquals(Collections.singletonList("S003"), targetIds(recommendationStore.getRecommendations("S001")));
+    }
+
+    @Test
+    void testGetRecommendations_StudentsWithoutProfileMatchSameMajor() {
+        // 没有问卷和标签的学生无法分桶，与同专业同性别的学生互为候选
+        when(studentMapper.selectList(null)).thenReturn(Arrays.asList(
+            createStudent("S001", "男", "计算机科学"),
+            createStudent("S002", "男", "计算机科学"),
+            createStudent("S003", "男", "软件工程"),
+            createStudent("S004", "男", "计算机科学")
+        ));
+        when(allocationMapper.selectList(any())).thenReturn(Arrays.asList(
+            createAllocation("S001", "D001"),
+            createAllocation("S002", "D002"),
+            createAllocation("S003", "D003"),
+            createAllocation("S004", "D004")
+        ));
+        when(questionnaireMapper.selectList(null)).thenReturn(Arrays.asList(
+            createAnswer("S002", "早睡", "爱整洁", "安静"),
+            createAnswer("S004", "早睡", "爱整洁", "安静")
+        ));
+
+        // S001 与同专业学生匹配度均为 0.65；不同专业的 S003 为 0.56，但不在同一专业候选中
+        List<Map<String, Object>> recommendations = recommendationStore.getRecommendations("S001");
+        assertEquals(Arrays.asList("S002", "S004"), targetIds(recommendations));
+        assertEquals(0.65, (Double) recommendations.get(0).get("compatibilityScore"), 1e-9);
+        assertTrue(targetIds(recommendationStore.getRecommendations("S002")).contains("S001"));
+    }
+}
@@ -0,0 +1,217 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+import com.ihome.entity.Dormitory;
+import com.ihome.entity.DormitoryAllocation;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.mapper.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 增量分配服务测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class IncrementalAllocationServiceTest {
+
+    @Mock
+    private StudentMapper studentMapper;
+
+    @Mock
+    private DormitoryMapper dormitoryMapper;
+
+    @Mock
+    private BuildingMapper buildingMapper;
+
+    @Mock
+    private BedMapper bedMapper;
+
+    @Mock
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Mock
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Mock
+    private RoommateTagMapper tagMapper;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private IncrementalAllocationService incrementalAllocationService;
+
+    private Map<String, Student> students;
+    private Bed freeUpperBed;
+
+    @BeforeEach
+    void setUp() {
+        students = new HashMap<>();
+        students.put("S001", createStudent("S001", "男"));
+        students.put("S002", createStudent("S002", "男"));
+        students.put("S003", createStudent("S003", "女"));
+
+        // D001 已住一名男生，剩一张上铺；D002 为空宿舍
+        freeUpperBed = createBed("B002", "D001", "上铺", "可用");
+        List<Bed> beds = Arrays.asList(
+            createBed("B001", "D001", "下铺", "已占用"),
+            freeUpperBed,
+            createBed("B003", "D002", "上铺", "可用"),
+            createBed("B004", "D002", "下铺", "可用")
+        );
+        DormitoryAllocation resident = new DormitoryAllocation();
+        resident.setStudentId("S001");
+        resident.setDormitoryId("D001");
+        resident.setBedId("B001");
+        resident.setStatus("在住");
+
+        when(bedMapper.selectList(null)).thenReturn(beds);
+        when(dormitoryMapper.selectList(null)).thenReturn(new ArrayList<>());
+        when(buildingMapper.selectList(null)).thenReturn(new ArrayList<>());
+        when(allocationMapper.selectList(any())).thenReturn(Collections.singletonList(resident));
+        when(questionnaireMapper.selectByStudentIds(anyList())).thenReturn(new ArrayList<>());
+        when(tagMapper.selectByStudentIds(anyList())).thenReturn(new ArrayList<>());
+        when(studentMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(students::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(bedMapper.updateStatusByIds(anyCollection(), anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.getArgument(0, Collection.class).size());
+        when(allocationMapper.insertBatch(anyList())).thenAnswer(invocation -> invocation.getArgument(0, List.class).size());
+    }
+
+    private Student createStudent(String id, String gender) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName("学生" + id);
+        student.setGender(gender);
+        student.setMajor("计算机科学");
+        student.setStatus("在校");
+        return student;
+    }
+
+    private Bed createBed(String id, String dormitoryId, String bedType, String status) {
+        Bed bed = new Bed();
+        bed.setId(id);
+        bed.setDormitoryId(dormitoryId);
+        bed.setBedType(bedType);
+        bed.setStatus(status);
+        return bed;
+    }
+
+    private Dormitory createDormitory(String id, int floorNumber) {
+        Dormitory dormitory = new Dormitory();
+        dormitory.setId(id);
+        dormitory.setFloorNumber(floorNumber);
+        return dormitory;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> bedByStudent(Map<String, Object> result) {
+        Map<String, String> beds = new HashMap<>();
+        for (Map<String, Object> allocation : (List<Map<String, Object>>) result.get("allocations")) {
+            beds.put((String) allocation.get("studentId"), (String) allocation.get("bedId"));
+        }
+        return beds;
+    }
+
+    @Test
+    void testAllocate_FillsPartialRoomAndPrefersLowerBed() {
+        Map<String, Object> result = incrementalAllocationService.allocate(Arrays.asList("S002", "S003"));
+
+        Map<String, String> beds = bedByStudent(result);
+        // 男生补进已有同性别住户的宿舍，女生进入空宿舍的下铺
+        assertEquals("B002", beds.get("S002"));
+        assertEquals("B004", beds.get("S003"));
+        assertEquals(2, result.get("totalAllocated"));
+        assertEquals(1, result.get("remainingFreeBeds"));
+
+        ArgumentCaptor<BedOccupancyChangedEvent> eventCaptor = ArgumentCaptor.forClass(BedOccupancyChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertTrue(eventCaptor.getValue().isAssigned());
+        assertEquals(2, eventCaptor.getValue().getChanges().size());
+    }
+
+    @Test
+    void testAllocate_SkipsResidents() {
+        Map<String, Object> result = incrementalAllocationService.allocate(Arrays.asList("S001"));
+
+        assertEquals(Collections.singletonList("S001"), result.get("alreadyResident"));
+        assertEquals(0, result.get("totalAllocated"));
+        verify(bedMapper, never()).updateStatusByIds(anyCollection(), anyString(), anyString());
+    }
+
+    @Test
+    void testAllocate_ReusesStateAndAppliesReleasedBeds() {
+        incrementalAllocationService.allocate(Arrays.asList("S002"));
+        assertEquals(2, incrementalAllocationService.getFreeBedCount());
+
+        // 退宿释放床位后，内存状态按事件更新，无需重新加载
+        when(bedMapper.selectBatchIds(anyCollection())).thenReturn(Collections.singletonList(freeUpperBed));
+        incrementalAllocationService.onBedOccupancyChanged(BedOccupancyChangedEvent.released(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("B002", "D001", "S002"))));
+
+        assertEquals(3, incrementalAllocationService.getFreeBedCount());
+        verify(bedMapper, times(1)).selectList(null);
+    }
+
+    @Test
+    void testAllocate_AppliesHardConstraintsToCandidateBeds() {
+        // S004 行动不便：D001 只剩上铺，D002 在 5 楼，没有允许的床位
+        students.put("S004", createStudent("S004", "男"));
+        RoommateTag tag = new RoommateTag();
+        tag.setStudentId("S004");
+        tag.setTagName("行动不便");
+        when(tagMapper.selectByStudentIds(anyList())).thenAnswer(invocation ->
+                invocation.getArgument(0, List.class).contains("S004")
+                        ? Collections.singletonList(tag) : new ArrayList<>());
+        when(dormitoryMapper.selectList(null)).thenReturn(Arrays.asList(
+                createDormitory("D001", 1), createDormitory("D002", 5)));
+
+        Map<String, Object> result = incrementalAllocationService.allocate(Arrays.asList("S004"));
+
+        assertEquals(Collections.singletonList("S004"), result.get("unallocatedStudents"));
+        verify(bedMapper, never()).updateStatusByIds(anyCollection(), anyString(), anyString());
+
+        // D002 改在 2 楼：进入空宿舍的下铺，而不是有同性别室友的 D001 的上铺
+        incrementalAllocationService.invalidate();
+        when(dormitoryMapper.selectList(null)).thenReturn(Arrays.asList(
+                createDormitory("D001", 1), createDormitory("D002", 2)));
+
+        result = incrementalAllocationService.allocate(Arrays.asList("S004", "S002"));
+
+        Map<String, String> beds = bedByStudent(result);
+        assertEquals("B004", beds.get("S004"));
+        assertEquals("B002", beds.get("S002"));
+    }
+
+    @Test
+    void testAllocate_StaleBedInvalidatesState() {
+        when(bedMapper.updateStatusByIds(anyCollection(), anyString(), anyString())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class,
+                () -> incrementalAllocationService.allocate(Arrays.asList("S002")));
+
+        // 内存状态被丢弃，下次使用时重新从数据库加载
+        incrementalAllocationService.getFreeBedCount();
+        verify(bedMapper, times(2)).selectList(null);
+    }
+}
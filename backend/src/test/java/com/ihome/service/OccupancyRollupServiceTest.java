@@ -0,0 +1,126 @@
+package com.ihome.service;
+
+import com.ihome.common.RoomOccupancy;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.mapper.DormitoryMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 宿舍占用汇总测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class OccupancyRollupServiceTest {
+
+    @Mock
+    private DormitoryMapper dormitoryMapper;
+
+    @InjectMocks
+    private OccupancyRollupService rollupService;
+
+    private List<RoomOccupancy> rooms;
+
+    @BeforeEach
+    void setUp() {
+        rooms = new ArrayList<>(Arrays.asList(
+                room("A101", "A", 1, "4人间", 4, 4),
+                room("A102", "A", 1, "4人间", 4, 1),
+                room("A201", "A", 2, "2人间", 2, 0),
+                room("B101", "B", 1, "4人间", 4, 2)));
+        when(dormitoryMapper.selectRoomOccupancy(null)).thenAnswer(invocation -> new ArrayList<>(rooms));
+        when(dormitoryMapper.selectRoomOccupancy(anyString())).thenAnswer(invocation -> {
+            String buildingId = invocation.getArgument(0);
+            return rooms.stream().filter(room -> buildingId.equals(room.getBuildingId())).collect(Collectors.toList());
+        });
+    }
+
+    @Test
+    void testBuildingSummaries_RollsUpRooms() {
+        Map<String, Map<String, Object>> summaries = rollupService.buildingSummaries();
+
+        assertEquals(Arrays.asList("A", "B"), new ArrayList<>(summaries.keySet()));
+        Map<String, Object> a = summaries.get("A");
+        assertEquals(3, a.get("totalDormitories"));
+        assertEquals(10, a.get("totalBeds"));
+        assertEquals(5, a.get("occupiedBeds"));
+        assertEquals(5, a.get("availableBeds"));
+        assertEquals(50.0, a.get("occupancyRate"));
+
+        Map<String, Object> campus4 = rollupService.roomTypeBreakdown(null).stream()
+                .filter(type -> "4人间".equals(type.get("roomType"))).findFirst().orElseThrow();
+        assertEquals(12, campus4.get("totalBeds"));
+        assertEquals(7, campus4.get("occupiedBeds"));
+
+        // 全量加载只查询一次
+        verify(dormitoryMapper, times(1)).selectRoomOccupancy(null);
+        verify(dormitoryMapper, never()).selectRoomOccupancy(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFloorBreakdown_DrillsDownToRooms() {
+        Map<String, Object> building = rollupService.floorBreakdown("A");
+
+        List<Map<String, Object>> floors = (List<Map<String, Object>>) building.get("floors");
+        assertEquals(2, floors.size());
+        assertEquals(1, floors.get(0).get("floorNumber"));
+        assertEquals(8, floors.get(0).get("totalBeds"));
+        assertEquals(5, floors.get(0).get("occupiedBeds"));
+        List<Map<String, Object>> rooms = (List<Map<String, Object>>) floors.get(0).get("rooms");
+        assertEquals(Arrays.asList("A101", "A102"),
+                rooms.stream().map(room -> room.get("dormitoryId")).collect(Collectors.toList()));
+        assertEquals(3, rooms.get(1).get("availableBeds"));
+
+        assertNull(rollupService.floorBreakdown("Z"));
+    }
+
+    @Test
+    void testBedChange_ReloadsOnlyAffectedBuilding() {
+        rollupService.buildingSummaries();
+
+        rooms.set(1, room("A102", "A", 1, "4人间", 4, 2));
+        rollupService.onBedOccupancyChanged(BedOccupancyChangedEvent.assigned(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("A102-2", "A102", "S1"))));
+
+        Map<String, Map<String, Object>> summaries = rollupService.buildingSummaries();
+        assertEquals(6, summaries.get("A").get("occupiedBeds"));
+        assertEquals(2, summaries.get("B").get("occupiedBeds"));
+        verify(dormitoryMapper, times(1)).selectRoomOccupancy(null);
+        verify(dormitoryMapper, times(1)).selectRoomOccupancy("A");
+        verify(dormitoryMapper, never()).selectRoomOccupancy("B");
+
+        // 新建宿舍的床位变化：楼栋列表可能已变化，重新全量加载
+        rooms.add(room("C101", "C", 1, "4人间", 4, 1));
+        rollupService.onBedOccupancyChanged(BedOccupancyChangedEvent.assigned(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("C101-1", "C101", "S2"))));
+        assertTrue(rollupService.buildingSummaries().containsKey("C"));
+        verify(dormitoryMapper, times(2)).selectRoomOccupancy(null);
+    }
+
+    private static RoomOccupancy room(String dormitoryId, String buildingId, int floor, String roomType,
+                                      int totalBeds, int occupiedBeds) {
+        RoomOccupancy room = new RoomOccupancy();
+        room.setDormitoryId(dormitoryId);
+        room.setBuildingId(buildingId);
+        room.setFloorNumber(floor);
+        room.setRoomNumber(dormitoryId.substring(1));
+        room.setRoomType(roomType);
+        room.setTotalBeds(totalBeds);
+        room.setOccupiedBeds(occupiedBeds);
+        return room;
+    }
+}
@@ -0,0 +1,235 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.BedOccupancyChangedEvent;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.DormitoryAllocationMapper;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 宿舍室友融洽度测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RoomHarmonyServiceTest {
+
+    @Mock
+    private DormitoryAllocationMapper allocationMapper;
+
+    @Mock
+    private StudentMapper studentMapper;
+
+    @Mock
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Mock
+    private RoommateTagMapper tagMapper;
+
+    @InjectMocks
+    private RoomHarmonyService roomHarmonyService;
+
+    private Map<String, Student> students;
+    private Map<String, QuestionnaireAnswer> answers;
+
+    @BeforeEach
+    void setUp() {
+        students = new HashMap<>();
+        answers = new HashMap<>();
+        addStudent("S001", "早睡", "爱整洁", "安静");
+        addStudent("S002", "早睡", "爱整洁", "安静");
+        addStudent("S003", "晚睡", "一般", "能接受一点噪音");
+        addStudent("S004", "早睡", "爱整洁", "安静");
+
+        when(allocationMapper.selectResidentIdsByDormitoryId("D001")).thenReturn(Arrays.asList("S001", "S002", "S003"));
+        when(allocationMapper.selectResidentIdsByDormitoryId("D002")).thenReturn(new ArrayList<>());
+        when(studentMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(students::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(questionnaireMapper.selectByStudentIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(answers::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(tagMapper.selectByStudentIds(anyCollection())).thenReturn(new ArrayList<RoommateTag>());
+    }
+
+    private void addStudent(String id, String sleep, String cleanliness, String noise) {
+        Student student = new Student();
+        student.setId(id);
+        student.setGender("男");
+        student.setMajor("计算机科学");
+        students.put(id, student);
+        setAnswer(id, sleep, cleanliness, noise);
+    }
+
+    private void setAnswer(String id, String sleep, String cleanliness, String noise) {
+        QuestionnaireAnswer answer = new QuestionnaireAnswer();
+        answer.setStudentId(id);
+        answer.setSleepTimePreference(sleep);
+        answer.setCleanlinessLevel(cleanliness);
+        answer.setNoiseTolerance(noise);
+        answers.put(id, answer);
+    }
+
+    /**
+     * 直接按画像两两计算的兼容度之和
+     */
+    private double recomputed(String... studentIds) {
+        List<RoommateProfile> profiles = new ArrayList<>();
+        for (String studentId : studentIds) {
+            profiles.add(new RoommateProfile(students.get(studentId), answers.get(studentId), null));
+        }
+        double sum = 0.0;
+        for (int i = 0; i < profiles.size(); i++) {
+            for (int j = i + 1; j < profiles.size(); j++) {
+                sum += profiles.get(i).compatibilityWith(profiles.get(j));
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetHarmony_AggregatesPairsAndHistograms() {
+        Map<String, Object> harmony = roomHarmonyService.getHarmony("D001");
+
+        assertEquals(3, harmony.get("residentCount"));
+        assertEquals(3, harmony.get("pairCount"));
+        assertEquals(recomputed("S001", "S002", "S003"), (Double) harmony.get("pairwiseSum"), 1e-9);
+        Map<String, Object> histograms = (Map<String, Object>) harmony.get("histograms");
+        Map<String, Integer> sleep = (Map<String, Integer>) histograms.get("sleepTimePreference");
+        assertEquals(2, sleep.get("早睡"));
+        assertEquals(1, sleep.get("晚睡"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEvents_UpdateLoadedRoomsIncrementally() {
+        roomHarmonyService.getHarmony("D001");
+        roomHarmonyService.getHarmony("D002");
+
+        // S003 调到 D002，S004 入住 D001
+        roomHarmonyService.onBedOccupancyChanged(BedOccupancyChangedEvent.moved(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("B201", "D002", "S003", "B103", "D001"))));
+        roomHarmonyService.onBedOccupancyChanged(BedOccupancyChangedEvent.assigned(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("B103", "D001", "S004"))));
+
+        Map<String, Object> d001 = roomHarmonyService.getHarmony("D001");
+        assertEquals(recomputed("S001", "S002", "S004"), (Double) d001.get("pairwiseSum"), 1e-9);
+        assertEquals(0.85, (Double) d001.get("harmonyScore"), 1e-9);
+        assertEquals(Collections.singletonList("S003"), roomHarmonyService.getHarmony("D002").get("residentIds"));
+
+        // S001 改了问卷，只替换其画像
+        setAnswer("S001", "晚睡", "一般", "安静");
+        roomHarmonyService.onRoommateProfileChanged(RoommateProfileChangedEvent.of("S001"));
+        d001 = roomHarmonyService.getHarmony("D001");
+        assertEquals(recomputed("S001", "S002", "S004"), (Double) d001.get("pairwiseSum"), 1e-9);
+        Map<String, Integer> sleep = (Map<String, Integer>) ((Map<String, Object>) d001.get("histograms")).get("sleepTimePreference");
+        assertEquals(1, sleep.get("晚睡"));
+
+        // S002 退宿
+        roomHarmonyService.onBedOccupancyChanged(BedOccupancyChangedEvent.released(Collections.singletonList(
+                new BedOccupancyChangedEvent.BedChange("B102", "D001", "S002"))));
+        assertEquals(2, roomHarmonyService.getHarmony("D001").get("residentCount"));
+
+        // 每个宿舍只从数据库加载一次
+        verify(allocationMapper, times(1)).selectResidentIdsByDormitoryId("D001");
+    }
+
+    @Test
+    void testLowestHarmony_OrdersRoomsByAverage() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String[] pair : new String[][]{{"S001", "D001"}, {"S002", "D001"}, {"S003", "D002"}, {"S004", "D002"}}) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("studentId", pair[0]);
+            row.put("dormitoryId", pair[1]);
+            rows.add(row);
+        }
+        when(allocationMapper.selectResidentDormitories()).thenReturn(rows);
+
+        List<Map<String, Object>> lowest = roomHarmonyService.lowestHarmony(10);
+
+        assertEquals(2, lowest.size());
+        assertEquals("D002", lowest.get(0).get("dormitoryId"));
+        assertEquals("D001", lowest.get(1).get("dormitoryId"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLowestHarmony_EventDuringLoadDoesNotBlockAndSurvives() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String[] pair : new String[][]{{"S001", "D001"}, {"S002", "D001"}, {"S003", "D002"}, {"S004", "D002"}}) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("studentId", pair[0]);
+            row.put("dormitoryId", pair[1]);
+            rows.add(row);
+        }
+        // 全校加载读到旧数据的同时，S003 退宿的事件在另一个线程提交
+        when(allocationMapper.selectResidentDormitories()).thenAnswer(invocation -> {
+            Thread checkout = new Thread(() -> roomHarmonyService.onBedOccupancyChanged(
+                    BedOccupancyChangedEvent.released(Collections.singletonList(
+                            new BedOccupancyChangedEvent.BedChange("B201", "D002", "S003")))));
+            checkout.start();
+            checkout.join(5000);
+            assertFalse(checkout.isAlive(), "事件处理不应等待全校加载");
+            return rows;
+        });
+
+        List<Map<String, Object>> lowest = roomHarmonyService.lowestHarmony(10);
+
+        // 加载结果替换进来后重放了退宿，D002 只剩一人
+        assertEquals(1, lowest.size());
+        assertEquals("D001", lowest.get(0).get("dormitoryId"));
+        assertEquals(Collections.singletonList("S004"), roomHarmonyService.getHarmony("D002").get("residentIds"));
+        verify(allocationMapper, times(1)).selectResidentDormitories();
+        verify(allocationMapper, never()).selectResidentIdsByDormitoryId(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEvaluateMoves_SwapReportsBothRoomsWithoutChangingAggregate() {
+        addStudent("S005", "晚睡", "一般", "能接受一点噪音");
+        when(allocationMapper.selectResidentIdsByDormitoryId("D002")).thenReturn(Arrays.asList("S004", "S005"));
+
+        // S003 与 S004 互换：两间宿舍的作息都变得一致
+        Map<String, Object> evaluation = roomHarmonyService.evaluateMoves(Arrays.asList(
+                new RoomHarmonyService.PlannedMove("S003", "D001", "D002"),
+                new RoomHarmonyService.PlannedMove("S004", "D002", "D001")));
+
+        List<Map<String, Object>> rooms = (List<Map<String, Object>>) evaluation.get("rooms");
+        assertEquals(2, rooms.size());
+        Map<String, Object> d001 = rooms.get(0);
+        assertEquals("D001", d001.get("dormitoryId"));
+        Map<String, Object> after = (Map<String, Object>) d001.get("after");
+        assertEquals(recomputed("S001", "S002", "S004"), (Double) after.get("pairwiseSum"), 1e-9);
+        assertTrue((Double) d001.get("harmonyDelta") > 0);
+        Map<String, Object> d002After = (Map<String, Object>) rooms.get(1).get("after");
+        assertEquals(recomputed("S003", "S005"), (Double) d002After.get("pairwiseSum"), 1e-9);
+        double expectedDelta = recomputed("S001", "S002", "S004") + recomputed("S003", "S005")
+                - recomputed("S001", "S002", "S003") - recomputed("S004", "S005");
+        assertEquals(expectedDelta, (Double) evaluation.get("pairwiseSumDelta"), 1e-9);
+
+        // 评估不修改聚合
+        assertEquals(new HashSet<>(Arrays.asList("S001", "S002", "S003")),
+                new HashSet<>((List<String>) roomHarmonyService.getHarmony("D001").get("residentIds")));
+    }
+}
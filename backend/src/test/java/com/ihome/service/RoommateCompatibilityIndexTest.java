@@ -0,0 +1,132 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 室友兼容度索引测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RoommateCompatibilityIndexTest {
+
+    @Mock
+    private StudentMapper studentMapper;
+
+    @Mock
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Mock
+    private RoommateTagMapper tagMapper;
+
+    @InjectMocks
+    private RoommateCompatibilityIndex compatibilityIndex;
+
+    private Map<String, Student> students;
+    private Map<String, QuestionnaireAnswer> answers;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(compatibilityIndex, "topK", 2);
+        students = new LinkedHashMap<>();
+        answers = new HashMap<>();
+        addStudent("S001", "男", "早睡", "爱整洁", "安静");
+        addStudent("S002", "男", "早睡", "爱整洁", "安静");
+        addStudent("S003", "男", "早睡", "爱整洁", "能接受一点噪音");
+        addStudent("S004", "男", "晚睡", "一般", "能接受一点噪音");
+        addStudent("S005", "女", "早睡", "爱整洁", "安静");
+
+        when(studentMapper.selectByMajor("计算机科学")).thenAnswer(invocation -> new ArrayList<>(students.values()));
+        when(studentMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(students::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(questionnaireMapper.selectByStudentIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(answers::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(tagMapper.selectByStudentIds(anyCollection())).thenReturn(new ArrayList<RoommateTag>());
+    }
+
+    private void addStudent(String id, String gender, String sleep, String cleanliness, String noise) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName("学生" + id);
+        student.setGender(gender);
+        student.setMajor("计算机科学");
+        students.put(id, student);
+        setAnswer(id, sleep, cleanliness, noise);
+    }
+
+    private void setAnswer(String studentId, String sleep, String cleanliness, String noise) {
+        QuestionnaireAnswer answer = new QuestionnaireAnswer();
+        answer.setStudentId(studentId);
+        answer.setSleepTimePreference(sleep);
+        answer.setCleanlinessLevel(cleanliness);
+        answer.setNoiseTolerance(noise);
+        answers.put(studentId, answer);
+    }
+
+    private List<String> topIds(String studentId, int limit) {
+        return compatibilityIndex.topMatches(students.get(studentId), limit).stream()
+                .map(match -> match.getStudent().getId())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testTopMatches_SameGenderBestFirstAndCohortLoadedOnce() {
+        assertEquals(Arrays.asList("S002", "S003"), topIds("S001", 5));
+        assertEquals(Collections.singletonList("S002"), topIds("S001", 1));
+        assertEquals(Arrays.asList("S001", "S003"), topIds("S002", 5));
+
+        // 群组只加载一次，后续查询不访问数据库
+        verify(studentMapper, times(1)).selectByMajor("计算机科学");
+        verify(questionnaireMapper, times(1)).selectByStudentIds(anyCollection());
+    }
+
+    @Test
+    void testProfileChanged_RefreshesAffectedLists() {
+        assertEquals(Arrays.asList("S002", "S003"), topIds("S001", 5));
+
+        // S004 改成与 S001 完全相同的作息，S002 改成完全不同
+        setAnswer("S004", "早睡", "爱整洁", "安静");
+        setAnswer("S002", "晚睡", "一般", "能接受一点噪音");
+        compatibilityIndex.onRoommateProfileChanged(new RoommateProfileChangedEvent(Arrays.asList("S004", "S002")));
+
+        assertEquals(Arrays.asList("S004", "S003"), topIds("S001", 5));
+        assertEquals(Arrays.asList("S001", "S003"), topIds("S004", 5));
+        verify(studentMapper, times(1)).selectByMajor("计算机科学");
+    }
+
+    @Test
+    void testProfileChanged_StudentLeavesCohort() {
+        assertEquals(Arrays.asList("S002", "S003"), topIds("S001", 5));
+
+        // S002 转专业，从原群组中移除，S001 的列表重新扫描补位
+        students.get("S002").setMajor("软件工程");
+        compatibilityIndex.onRoommateProfileChanged(RoommateProfileChangedEvent.of("S002"));
+
+        assertEquals(Arrays.asList("S003", "S004"), topIds("S001", 5));
+    }
+}
@@ -0,0 +1,79 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 室友匹配画像测试
+ */
+public class RoommateProfileTest {
+
+    private RoommateProfile createProfile(String id, String major, String sleepTime, String cleanliness,
+                                          String noise, String... tagNames) {
+        Student student = new Student();
+        student.setId(id);
+        student.setGender("男");
+        student.setMajor(major);
+        QuestionnaireAnswer answer = new QuestionnaireAnswer();
+        answer.setStudentId(id);
+        answer.setSleepTimePreference(sleepTime);
+        answer.setCleanlinessLevel(cleanliness);
+        answer.setNoiseTolerance(noise);
+        List<RoommateTag> tags = new ArrayList<>();
+        for (String tagName : tagNames) {
+            RoommateTag tag = new RoommateTag();
+            tag.setStudentId(id);
+            tag.setTagName(tagName);
+            tags.add(tag);
+        }
+        return new RoommateProfile(student, answer, tags);
+    }
+
+    @Test
+    void testQuestionnaireCompatibility_OnlyCountsQuestionsBothAnswered() {
+        RoommateProfile a = createProfile("S001", "计算机科学", "早睡", "爱整洁", null);
+        RoommateProfile b = createProfile("S002", "计算机科学", "早睡", "一般", "安静");
+        RoommateProfile unanswered = createProfile("S003", "计算机科学", null, null, null);
+
+        // 共同作答两题，一题一致
+        assertEquals(0.5, a.questionnaireCompatibility(b), 1e-9);
+        // 相同选项出现在不同题目中不算一致
+        RoommateProfile c = createProfile("S004", "计算机科学", "安静", "早睡", "爱整洁");
+        assertEquals(0.0, a.questionnaireCompatibility(c), 1e-9);
+        assertEquals(0.5, a.questionnaireCompatibility(unanswered), 1e-9);
+    }
+
+    @Test
+    void testTagCompatibility_JaccardAcrossManyWords() {
+        // 标签编号超过 64 个，位图跨越多个 long
+        String[] many = new String[80];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = "测试标签" + i;
+        }
+        RoommateProfile a = createProfile("S001", "计算机科学", null, null, null, many);
+        RoommateProfile b = createProfile("S002", "计算机科学", null, null, null, "测试标签1", "测试标签79", "测试标签外");
+
+        assertEquals(2.0 / 81, a.tagCompatibility(b), 1e-9);
+        assertEquals(a.tagCompatibility(b), b.tagCompatibility(a), 1e-12);
+        assertEquals(0.5, a.tagCompatibility(createProfile("S003", "计算机科学", null, null, null)), 1e-9);
+        assertTrue(b.hasTag("测试标签79"));
+        assertFalse(b.hasTag("测试标签2"));
+        assertFalse(b.hasTag("从未出现的标签"));
+    }
+
+    @Test
+    void testCompatibilityWith_WeightsComponents() {
+        RoommateProfile a = createProfile("S001", "计算机科学", "早睡", "爱整洁", "安静", "安静", "整洁");
+        RoommateProfile b = createProfile("S002", "软件工程", "早睡", "爱整洁", "安静", "安静", "友善");
+
+        // 问卷 1.0 * 0.4 + 标签 1/3 * 0.3 + 不同专业 0.7 * 0.3
+        assertEquals(0.4 + 0.1 + 0.21, a.compatibilityWith(b), 1e-9);
+    }
+}
@@ -0,0 +1,151 @@
+package com.ihome.service;
+
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.event.RoommateProfileChangedEvent;
+import com.ihome.mapper.QuestionnaireAnswerMapper;
+import com.ihome.mapper.RoommateTagMapper;
+import com.ihome.mapper.StudentMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 全校室友相似度近似检索测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RoommateSimilarityIndexTest {
+
+    @Mock
+    private StudentMapper studentMapper;
+
+    @Mock
+    private QuestionnaireAnswerMapper questionnaireMapper;
+
+    @Mock
+    private RoommateTagMapper tagMapper;
+
+    @InjectMocks
+    private RoommateSimilarityIndex similarityIndex;
+
+    private Map<String, Student> students;
+    private Map<String, QuestionnaireAnswer> answers;
+    private Map<String, List<RoommateTag>> tags;
+
+    @BeforeEach
+    void setUp() {
+        students = new LinkedHashMap<>();
+        answers = new HashMap<>();
+        tags = new HashMap<>();
+        addStudent("S001", "男", "早睡", "爱整洁", "安静", "安静", "整洁", "爱学习");
+        addStudent("S002", "男", "早睡", "爱整洁", "安静", "安静", "整洁", "爱学习");
+        addStudent("S003", "男", "晚睡", "一般", "能接受一点噪音", "吵闹", "作息不规律", "夜猫子");
+        addStudent("S004", "女", "早睡", "爱整洁", "安静", "安静", "整洁", "爱学习");
+
+        when(studentMapper.selectList(isNull())).thenAnswer(invocation -> new ArrayList<>(students.values()));
+        when(questionnaireMapper.selectList(isNull())).thenAnswer(invocation -> new ArrayList<>(answers.values()));
+        when(tagMapper.selectList(isNull())).thenAnswer(invocation -> tags.values().stream()
+                .flatMap(List::stream).collect(Collectors.toList()));
+        when(studentMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(students::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(questionnaireMapper.selectByStudentIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(answers::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(tagMapper.selectByStudentIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> ids = invocation.getArgument(0);
+            return ids.stream().map(tags::get).filter(Objects::nonNull)
+                    .flatMap(List::stream).collect(Collectors.toList());
+        });
+    }
+
+    private void addStudent(String id, String gender, String sleep, String cleanliness, String noise,
+                            String... tagNames) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName("学生" + id);
+        student.setGender(gender);
+        student.setMajor("计算机科学");
+        students.put(id, student);
+        QuestionnaireAnswer answer = new QuestionnaireAnswer();
+        answer.setStudentId(id);
+        answer.setSleepTimePreference(sleep);
+        answer.setCleanlinessLevel(cleanliness);
+        answer.setNoiseTolerance(noise);
+        answers.put(id, answer);
+        setTags(id, tagNames);
+    }
+
+    private void setTags(String id, String... tagNames) {
+        List<RoommateTag> list = new ArrayList<>();
+        for (String tagName : tagNames) {
+            RoommateTag tag = new RoommateTag();
+            tag.setStudentId(id);
+            tag.setTagName(tagName);
+            list.add(tag);
+        }
+        tags.put(id, list);
+    }
+
+    private List<String> similarIds(String studentId) {
+        return similarityIndex.similarStudents(studentId, 10).stream()
+                .map(match -> match.getStudent().getId())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testSimilarStudents_FindsIdenticalProfilesOfSameGender() {
+        // 特征完全相同的同学必然同桶；异性和毫无共同特征的同学不是候选
+        assertEquals(Collections.singletonList("S002"), similarIds("S001"));
+        assertEquals(1.0, similarityIndex.similarStudents("S001", 10).get(0).getScore(), 1e-9);
+        assertNull(similarityIndex.similarStudents("S999", 10));
+        assertEquals(4, similarityIndex.size());
+    }
+
+    @Test
+    void testBandKeys_IdenticalFeaturesShareEveryBucket() {
+        long[] a = RoommateSimilarityIndex.bandKeys(new int[]{2, 5, 8});
+        long[] b = RoommateSimilarityIndex.bandKeys(new int[]{2, 5, 8});
+        long[] c = RoommateSimilarityIndex.bandKeys(new int[]{4, 7, 10});
+
+        assertArrayEquals(a, b);
+        assertEquals(RoommateSimilarityIndex.BANDS, a.length);
+        assertFalse(Arrays.equals(a, c));
+        assertNull(RoommateSimilarityIndex.bandKeys(new int[0]));
+    }
+
+    @Test
+    void testProfileChange_UpdatesOnlyChangedStudent() {
+        assertEquals(Collections.singletonList("S002"), similarIds("S001"));
+
+        // S003 重新提交问卷，标签和答案变得与 S001 相同
+        addStudent("S003", "男", "早睡", "爱整洁", "安静", "安静", "整洁", "爱学习");
+        similarityIndex.onRoommateProfileChanged(RoommateProfileChangedEvent.of("S003"));
+
+        assertEquals(Arrays.asList("S002", "S003"), similarIds("S001"));
+        verify(studentMapper, times(1)).selectList(isNull());
+
+        // S002 的标签改为与其他人完全不同，问卷答案清空后不再是候选
+        answers.remove("S002");
+        setTags("S002", "独居", "游戏", "晚归");
+        similarityIndex.onRoommateProfileChanged(RoommateProfileChangedEvent.of("S002"));
+
+        assertEquals(Collections.singletonList("S003"), similarIds("S001"));
+    }
+}
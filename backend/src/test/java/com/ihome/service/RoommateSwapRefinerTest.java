@@ -0,0 +1,89 @@
+package com.ihome.service;
+
+import com.ihome.entity.Bed;
+import com.ihome.entity.QuestionnaireAnswer;
+import com.ihome.entity.Student;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 室友交换优化测试
+ */
+public class RoommateSwapRefinerTest {
+
+    private final RoommateSwapRefiner refiner = new RoommateSwapRefiner();
+
+    private RoommateProfile createProfile(String id, String sleepTime, String cleanliness, String noise) {
+        Student student = new Student();
+        student.setId(id);
+        student.setGender("男");
+        student.setMajor("计算机科学");
+        QuestionnaireAnswer answer = new QuestionnaireAnswer();
+        answer.setStudentId(id);
+        answer.setSleepTimePreference(sleepTime);
+        answer.setCleanlinessLevel(cleanliness);
+        answer.setNoiseTolerance(noise);
+        return new RoommateProfile(student, answer, null);
+    }
+
+    private Bed createBed(String id, String dormitoryId) {
+        Bed bed = new Bed();
+        bed.setId(id);
+        bed.setDormitoryId(dormitoryId);
+        bed.setStatus("可用");
+        return bed;
+    }
+
+    @Test
+    void testRefine_GroupsSimilarHabitsTogether() {
+        RoommateProfile early1 = createProfile("S001", "早睡", "爱整洁", "安静");
+        RoommateProfile early2 = createProfile("S002", "早睡", "爱整洁", "安静");
+        RoommateProfile late1 = createProfile("S003", "晚睡", "一般", "能接受一点噪音");
+        RoommateProfile late2 = createProfile("S004", "晚睡", "一般", "能接受一点噪音");
+
+        // 初始安排：每间宿舍一个早睡、一个晚睡
+        List<BedPlacement> placements = Arrays.asList(
+            new BedPlacement(early1, createBed("B001", "D001")),
+            new BedPlacement(late1, createBed("B002", "D001")),
+            new BedPlacement(early2, createBed("B003", "D002")),
+            new BedPlacement(late2, createBed("B004", "D002"))
+        );
+
+        RoommateSwapRefiner.Result result = refiner.refine(placements, new SplittableRandom(1L), Long.MAX_VALUE);
+
+        Map<String, Set<String>> residentsByDormitory = new HashMap<>();
+        for (BedPlacement placement : result.getPlacements()) {
+            residentsByDormitory.computeIfAbsent(placement.getDormitoryId(), k -> new HashSet<>())
+                    .add(placement.getStudent().getStudentId());
+        }
+        assertTrue(residentsByDormitory.containsValue(Set.of("S001", "S002")));
+        assertTrue(residentsByDormitory.containsValue(Set.of("S003", "S004")));
+        assertTrue(result.getSwaps() > 0);
+        assertTrue(result.getScoreAfter() > result.getScoreBefore());
+        assertEquals(2, result.getPairs());
+
+        // 床位不变，只交换学生
+        List<String> bedIds = new ArrayList<>();
+        for (BedPlacement placement : result.getPlacements()) {
+            bedIds.add(placement.getBed().getId());
+        }
+        assertEquals(Arrays.asList("B001", "B002", "B003", "B004"), bedIds);
+    }
+
+    @Test
+    void testRefine_SingleRoomUnchanged() {
+        List<BedPlacement> placements = Arrays.asList(
+            new BedPlacement(createProfile("S001", "早睡", "爱整洁", "安静"), createBed("B001", "D001")),
+            new BedPlacement(createProfile("S002", "晚睡", "一般", "安静"), createBed("B002", "D001"))
+        );
+
+        RoommateSwapRefiner.Result result = refiner.refine(placements, new SplittableRandom(1L), Long.MAX_VALUE);
+
+        assertEquals(0, result.getSwaps());
+        assertEquals(result.getScoreBefore(), result.getScoreAfter());
+        assertEquals("S001", result.getPlacements().get(0).getStudent().getStudentId());
+    }
+}
@@ -2,14 +2,20 @@ package com.ihome.service;
 
 import com.ihome.entity.*;
 import com.ihome.mapper.*;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -41,6 +47,15 @@ public class StatisticsServiceTest {
     @Mock
     private DormitorySwitchMapper switchMapper;
 
+    @Mock
+    private DashboardCounterStore dashboardCounterStore;
+
+    @Mock
+    private OccupancyRollupService occupancyRollupService;
+
+    @Mock
+    private TrendRollupService trendRollupService;
+
     @InjectMocks
     private StatisticsService statisticsService;
 
@@ -49,33 +64,24 @@ public class StatisticsServiceTest {
         // 测试前准备
     }
 
+    @AfterEach
+    void tearDown() {
+        // 超时的报表部分不会被中断，测试结束时停止它们，避免占用后续测试的线程
+        statisticsService.shutdown();
+    }
+
     @Test
     void testGetDashboardStatistics_Success() {
-        // 模拟数据库查询
-        when(studentMapper.selectCount(null)).thenReturn(100L);
-        when(allocationMapper.selectCount(null)).thenReturn(80L);
-        when(dormitoryMapper.selectCount(null)).thenReturn(50L);
-        when(bedMapper.selectCount(null)).thenReturn(200L);
-        when(bedMapper.selectList(null)).thenReturn(Arrays.asList());
-        when(paymentMapper.selectCount(null)).thenReturn(150L);
-        when(repairMapper.selectCount(null)).thenReturn(30L);
-        when(repairMapper.selectList(null)).thenReturn(Arrays.asList());
-        when(switchMapper.selectCount(null)).thenReturn(10L);
-        when(switchMapper.selectList(null)).thenReturn(Arrays.asList());
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("totalStudents", 100L);
+        when(dashboardCounterStore.getDashboardStatistics()).thenReturn(statistics);
 
         // 执行测试
         Map<String, Object> result = statisticsService.getDashboardStatistics();
 
-        // 验证结果
-        assertNotNull(result);
-        assertTrue(result.containsKey("totalStudents"));
-        assertTrue(result.containsKey("totalDormitories"));
-        assertTrue(result.containsKey("totalBeds"));
+        // 验证结果：直接由计数器给出，不查询数据库
         assertEquals(100L, result.get("totalStudents"));
-
-        // 验证调用
-        verify(studentMapper).selectCount(null);
-        verify(dormitoryMapper).selectCount(null);
+        verifyNoInteractions(studentMapper, bedMapper, repairMapper, switchMapper);
     }
 
     @Test
@@ -105,17 +111,11 @@ public class StatisticsServiceTest {
 
     @Test
     void testGetDormitoryUsageStatistics_Success() {
-        // 准备测试数据
-        Dormitory dorm1 = new Dormitory();
-        dorm1.setBedCount(4);
-        dorm1.setCurrentOccupancy(3);
-        Dormitory dorm2 = new Dormitory();
-        dorm2.setBedCount(4);
-        dorm2.setCurrentOccupancy(2);
-
-        // 模拟数据库查询
-        when(dormitoryMapper.selectList(null)).thenReturn(Arrays.asList(dorm1, dorm2));
-        when(bedMapper.selectList(null)).thenReturn(Arrays.asList());
+        // 模拟占用汇总
+        Map<String, Map<String, Object>> buildings = new LinkedHashMap<>();
+        buildings.put("A", Map.of("totalBeds", 8, "occupiedBeds", 5));
+        when(occupancyRollupService.buildingSummaries()).thenReturn(buildings);
+        when(occupancyRollupService.roomTypeBreakdown(null)).thenReturn(Collections.emptyList());
 
         // 执行测试
         Map<String, Object> result = statisticsService.getDormitoryUsageStatistics();
@@ -123,10 +123,27 @@ public class StatisticsServiceTest {
         // 验证结果
         assertNotNull(result);
         assertTrue(result.containsKey("buildingStatistics"));
-        // 注意：totalDormitories, totalBeds, occupancyRate 在 buildingStatistics 内部
+        assertSame(buildings, result.get("buildingStatistics"));
+        // 不再逐间宿舍加载床位
+        verifyNoInteractions(bedMapper, dormitoryMapper);
+    }
 
-        // 验证调用
-        verify(dormitoryMapper).selectList(null);
+    @Test
+    void testGetTrendAnalysis_DefaultRanges() {
+        when(trendRollupService.trends(any(), any(), anyString())).thenAnswer(invocation -> new HashMap<>());
+
+        Map<String, Object> result = statisticsService.getTrendAnalysis();
+        assertEquals("最近7天", result.get("period"));
+        verify(trendRollupService).trends(LocalDate.now().minusDays(7), LocalDate.now(), "day");
+
+        result = statisticsService.getTrendAnalysis(null, "2026-10-18", "month");
+        assertEquals("最近12个月", result.get("period"));
+        verify(trendRollupService).trends(LocalDate.of(2025, 11, 1), LocalDate.of(2026, 10, 18), "month");
+
+        // 指定开始日期时不返回默认周期说明
+        result = statisticsService.getTrendAnalysis("2026-01-01", "2026-03-31", "week");
+        assertNull(result.get("period"));
+        verify(trendRollupService).trends(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31), "week");
     }
 
     @Test
@@ -169,5 +186,110 @@ public class StatisticsServiceTest {
         // 验证调用
         verify(repairMapper).selectList(null);
     }
-}
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGenerateComprehensiveReport_RunsSectionsConcurrently() {
+        stubReportSections(400);
+
+        long start = System.nanoTime();
+        Map<String, Object> report = statisticsService.generateComprehensiveReport();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(true, report.get("complete"));
+        assertTrue(((Map<String, String>) report.get("failedSections")).isEmpty());
+        for (String section : Arrays.asList("dashboard", "studentDistribution", "dormitoryUsage",
+                "paymentStats", "repairStats", "switchStats", "trends")) {
+            assertTrue(report.containsKey(section), section);
+        }
+        // 三个各 400ms 的部分并发执行，总耗时接近最慢的一个而不是 1200ms
+        assertTrue(elapsedMs < 1000, "elapsed " + elapsedMs + "ms");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGenerateComprehensiveReport_ReportsTimedOutAndFailedSections() {
+        ReflectionTestUtils.setField(statisticsService, "reportSectionTimeoutMs", 200L);
+        stubReportSections(5000);
+        when(repairMapper.selectList(null)).thenThrow(new RuntimeException("连接失败"));
+
+        long start = System.nanoTime();
+        Map<String, Object> report = statisticsService.generateComprehensiveReport();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(false, report.get("complete"));
+        Map<String, String> failed = (Map<String, String>) report.get("failedSections");
+        assertEquals("超时", failed.get("paymentStats"));
+        assertEquals("超时", failed.get("trends"));
+        assertEquals("生成失败: 连接失败", failed.get("repairStats"));
+        assertFalse(report.containsKey("repairStats"));
+        assertTrue(report.containsKey("dashboard"));
+        assertTrue(report.containsKey("dormitoryUsage"));
+        assertTrue(elapsedMs < 2000, "elapsed " + elapsedMs + "ms");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGenerateComprehensiveReport_TimeoutStartsWhenSectionRuns() {
+        // 只有一个许可，三个各 200ms 的部分依次执行，排在后面的部分不因排队而超时
+        ReflectionTestUtils.setField(statisticsService, "reportSectionTimeoutMs", 300L);
+        ReflectionTestUtils.setField(statisticsService, "reportMaxConcurrency", 1);
+        stubReportSections(200);
+
+        Map<String, Object> report = statisticsService.generateComprehensiveReport();
+
+        assertEquals(true, report.get("complete"), String.valueOf(report.get("failedSections")));
+        assertTrue(report.containsKey("trends"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGenerateComprehensiveReport_DoesNotInterruptRunningSections() throws InterruptedException {
+        ReflectionTestUtils.setField(statisticsService, "reportSectionTimeoutMs", 100L);
+        ReflectionTestUtils.setField(statisticsService, "reportMaxConcurrency", 1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        when(paymentMapper.selectList(null)).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return Collections.emptyList();
+        });
+
+        Map<String, Object> report = statisticsService.generateComprehensiveReport();
+
+        // 超时的部分在后台执行完，不被中断；它一直占着许可，排在后面的部分超过排队上限（7 轮 × 100ms）后未开始就被取消
+        Map<String, String> failed = (Map<String, String>) report.get("failedSections");
+        assertEquals("超时", failed.get("paymentStats"));
+        assertTrue(failed.containsValue("等待执行超时，未执行"), String.valueOf(failed));
+        assertTrue(finished.await(3, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+    }
+
+    /**
+     * 缴费、学生分布和趋势三个部分各耗时 slowMs，其余部分立即返回
+     * 慢的部分只放在非 synchronized 的方法上：在 synchronized 方法中休眠会占住虚拟线程的载体线程
+     */
+    private void stubReportSections(long slowMs) {
+        when(dashboardCounterStore.getDashboardStatistics()).thenReturn(new HashMap<>());
+        when(studentMapper.selectList(null)).thenAnswer(invocation -> {
+            Thread.sleep(slowMs);
+            return Collections.emptyList();
+        });
+        when(trendRollupService.trends(any(), any(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(slowMs);
+            return new HashMap<>();
+        });
+        when(occupancyRollupService.buildingSummaries()).thenReturn(new LinkedHashMap<>());
+        when(occupancyRollupService.roomTypeBreakdown(null)).thenReturn(Collections.emptyList());
+        when(paymentMapper.selectList(null)).thenAnswer(invocation -> {
+            Thread.sleep(slowMs);
+            return Collections.emptyList();
+        });
+        lenient().when(repairMapper.selectList(null)).thenReturn(Collections.emptyList());
+        when(switchMapper.selectList(null)).thenReturn(Collections.emptyList());
+    }
+}
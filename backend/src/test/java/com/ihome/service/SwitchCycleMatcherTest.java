@@ -0,0 +1,114 @@
+package com.ihome.service;
+
+import com.ihome.entity.DormitorySwitch;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 调换申请多方匹配测试
+ */
+public class SwitchCycleMatcherTest {
+
+    private final SwitchCycleMatcher matcher = new SwitchCycleMatcher();
+
+    private DormitorySwitch toBed(int id, String applicantId, String currentBedId, String targetBedId) {
+        DormitorySwitch request = new DormitorySwitch();
+        request.setId(id);
+        request.setApplicantId(applicantId);
+        request.setCurrentBedId(currentBedId);
+        request.setTargetBedId(targetBedId);
+        request.setStatus("待审核");
+        return request;
+    }
+
+    private DormitorySwitch toStudent(int id, String applicantId, String currentBedId, String targetStudentId) {
+        DormitorySwitch request = toBed(id, applicantId, currentBedId, null);
+        request.setTargetStudentId(targetStudentId);
+        return request;
+    }
+
+    @Test
+    void testMatch_FindsSwapAndThreeWayCycle() {
+        List<DormitorySwitch> pending = Arrays.asList(
+            toBed(1, "S1", "B1", "B2"),
+            toStudent(2, "S2", "B2", "S3"),
+            toBed(3, "S3", "B3", "B1"),
+            toBed(4, "S4", "B4", "B5"),
+            toBed(5, "S5", "B5", "B4"),
+            // 想要的床位属于环中的申请人，但环已经满足，不能再参与
+            toBed(6, "S6", "B6", "B1")
+        );
+        Map<String, String> bedByTargetStudent = Collections.singletonMap("S3", "B3");
+
+        List<SwitchCycleMatcher.Proposal> proposals = matcher.match(pending, bedByTargetStudent, Collections.emptySet());
+
+        assertEquals(2, proposals.size());
+        Map<Set<Integer>, String> types = new HashMap<>();
+        for (SwitchCycleMatcher.Proposal proposal : proposals) {
+            types.put(proposal.getSwitchIds(), proposal.getType());
+            for (SwitchCycleMatcher.Move move : proposal.getMoves()) {
+                assertNotEquals(move.getFromBedId(), move.getToBedId());
+            }
+        }
+        assertEquals(SwitchCycleMatcher.TYPE_CYCLE, types.get(new TreeSet<>(Arrays.asList(1, 2, 3))));
+        assertEquals(SwitchCycleMatcher.TYPE_SWAP, types.get(new TreeSet<>(Arrays.asList(4, 5))));
+    }
+
+    @Test
+    void testMatch_PicksLongestChainIntoFreeBed() {
+        List<DormitorySwitch> pending = Arrays.asList(
+            toBed(1, "S1", "B1", "F1"),
+            toBed(2, "S2", "B2", "F1"),
+            toBed(3, "S3", "B3", "B2"),
+            toBed(4, "S4", "B4", "B3")
+        );
+
+        List<SwitchCycleMatcher.Proposal> proposals = matcher.match(pending, Collections.emptyMap(),
+                Collections.singleton("F1"));
+
+        assertEquals(1, proposals.size());
+        SwitchCycleMatcher.Proposal chain = proposals.get(0);
+        assertEquals(SwitchCycleMatcher.TYPE_CHAIN, chain.getType());
+        assertEquals("F1", chain.getFreeBedId());
+        assertEquals("B4", chain.getVacatedBedId());
+        // 链尾先搬进空床位，其余人依次接替
+        List<Integer> order = new ArrayList<>();
+        for (SwitchCycleMatcher.Move move : chain.getMoves()) {
+            order.add(move.getSwitchId());
+        }
+        assertEquals(Arrays.asList(2, 3, 4), order);
+    }
+
+    @Test
+    void testMatch_ThousandsOfRequestsUseEachRequestOnce() {
+        int n = 5000;
+        SplittableRandom random = new SplittableRandom(42L);
+        List<DormitorySwitch> pending = new ArrayList<>();
+        Set<String> freeBeds = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            String target = random.nextInt(10) == 0 ? "F" + random.nextInt(n / 10) : "B" + random.nextInt(n);
+            pending.add(toBed(i, "S" + i, "B" + i, target));
+        }
+        for (int i = 0; i < n / 10; i++) {
+            freeBeds.add("F" + i);
+        }
+
+        long start = System.nanoTime();
+        List<SwitchCycleMatcher.Proposal> proposals = matcher.match(pending, Collections.emptyMap(), freeBeds);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Set<Integer> seen = new HashSet<>();
+        Set<String> takenBeds = new HashSet<>();
+        for (SwitchCycleMatcher.Proposal proposal : proposals) {
+            for (SwitchCycleMatcher.Move move : proposal.getMoves()) {
+                assertTrue(seen.add(move.getSwitchId()));
+                assertTrue(takenBeds.add(move.getToBedId()));
+            }
+        }
+        assertFalse(proposals.isEmpty());
+        assertTrue(elapsedMillis < 1000, "耗时 " + elapsedMillis + "ms");
+    }
+}
@@ -0,0 +1,211 @@
+package com.ihome.service;
+
+import com.ihome.entity.DailyStatistics;
+import com.ihome.mapper.DailyStatisticsMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 每日统计汇总测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TrendRollupServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    @Mock
+    private DailyStatisticsMapper mapper;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 当前是否在事务回调中
+     */
+    private boolean inTransaction;
+
+    @InjectMocks
+    private TrendRollupService trendRollupService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(trendRollupService, "backfillDays", 30);
+        ReflectionTestUtils.setField(trendRollupService, "batchDays", 4);
+        ReflectionTestUtils.setField(trendRollupService, "restateDays", 0);
+        when(mapper.countCheckIns(any(), any())).thenReturn(Collections.emptyList());
+        when(mapper.countCheckOuts(any(), any())).thenReturn(Collections.emptyList());
+        when(mapper.countRepairsOpened(any(), any())).thenReturn(Collections.emptyList());
+        when(mapper.countRepairsClosed(any(), any())).thenReturn(Collections.emptyList());
+        when(mapper.countSwitchRequests(any(), any())).thenReturn(Collections.emptyList());
+        when(mapper.sumPayments(any(), any())).thenReturn(Collections.emptyList());
+        doAnswer(invocation -> {
+            inTransaction = true;
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction = false;
+            }
+        }).when(transactionTemplate).execute(any());
+    }
+
+    @Test
+    void testRollUp_ResumesFromWatermarkInBatches() {
+        when(mapper.selectWatermark(TrendRollupService.WATERMARK)).thenReturn(TODAY.minusDays(7));
+        DailyStatistics checkIns = new DailyStatistics();
+        checkIns.setStatDate(TODAY.minusDays(5));
+        checkIns.setCheckIns(3);
+        when(mapper.countCheckIns(TODAY.minusDays(6), TODAY.minusDays(2))).thenReturn(Collections.singletonList(checkIns));
+
+        int days = trendRollupService.rollUp(TODAY);
+
+        // 水位之后到昨天共 6 天，每批 4 天
+        assertEquals(6, days);
+        verify(mapper).deleteRange(TODAY.minusDays(6), TODAY.minusDays(2));
+        verify(mapper).deleteRange(TODAY.minusDays(2), TODAY);
+        verify(mapper).updateWatermark(TrendRollupService.WATERMARK, TODAY.minusDays(3));
+        verify(mapper).updateWatermark(TrendRollupService.WATERMARK, TODAY.minusDays(1));
+        verify(mapper, never()).insertWatermark(anyString(), any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DailyStatistics>> rows = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(2)).insertBatch(rows.capture());
+        List<DailyStatistics> first = rows.getAllValues().get(0);
+        assertEquals(4, first.size());
+        assertEquals(TODAY.minusDays(6), first.get(0).getStatDate());
+        // 没有数据的日期也有一行全 0 的记录
+        assertEquals(0, first.get(0).getCheckIns());
+        assertEquals(3, first.get(1).getCheckIns());
+        assertEquals(BigDecimal.ZERO, first.get(1).getPaymentAmount());
+    }
+
+    @Test
+    void testRollUp_FirstRunBackfillsAndCaughtUpRunDoesNothing() {
+        when(mapper.selectWatermark(TrendRollupService.WATERMARK)).thenReturn(null);
+
+        assertEquals(30, trendRollupService.rollUp(TODAY));
+        verify(mapper).insertWatermark(TrendRollupService.WATERMARK, TODAY.minusDays(27));
+
+        reset(mapper);
+        when(mapper.selectWatermark(TrendRollupService.WATERMARK)).thenReturn(TODAY.minusDays(1));
+        assertEquals(0, trendRollupService.rollUp(TODAY));
+        verify(mapper, never()).insertBatch(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRollUp_RestatesRecentDaysAfterRollback() {
+        ReflectionTestUtils.setField(trendRollupService, "restateDays", 3);
+        when(mapper.selectWatermark(TrendRollupService.WATERMARK)).thenReturn(TODAY.minusDays(2));
+        when(mapper.countCheckIns(TODAY.minusDays(3), TODAY)).thenReturn(Collections.singletonList(checkIns(TODAY.minusDays(2), 2)));
+
+        assertEquals(3, trendRollupService.rollUp(TODAY));
+        verify(mapper).updateWatermark(TrendRollupService.WATERMARK, TODAY.minusDays(1));
+
+        // 汇总之后撤销了一条分配：水位已到昨天，下次执行仍重新汇总最近 3 天
+        reset(mapper);
+        setUp();
+        ReflectionTestUtils.setField(trendRollupService, "restateDays", 3);
+        when(mapper.selectWatermark(TrendRollupService.WATERMARK)).thenReturn(TODAY.minusDays(1));
+        when(mapper.countCheckIns(TODAY.minusDays(3), TODAY)).thenReturn(Collections.singletonList(checkIns(TODAY.minusDays(2), 1)));
+
+        assertEquals(3, trendRollupService.rollUp(TODAY));
+        verify(mapper).deleteRange(TODAY.minusDays(3), TODAY);
+        ArgumentCaptor<List<DailyStatistics>> rows = ArgumentCaptor.forClass(List.class);
+        verify(mapper).insertBatch(rows.capture());
+        assertEquals(1, rows.getValue().get(1).getCheckIns());
+        // 水位不后退
+        verify(mapper, never()).updateWatermark(anyString(), any());
+        verify(mapper, never()).insertWatermark(anyString(), any());
+    }
+
+    @Test
+    void testRollUp_WritesEachBatchInOneTransaction() {
+        ReflectionTestUtils.setField(trendRollupService, "restateDays", 3);
+        when(mapper.selectWatermark(TrendRollupService.WATERMARK)).thenReturn(TODAY.minusDays(1));
+        List<String> writes = new ArrayList<>();
+        doAnswer(invocation -> {
+            writes.add("delete:" + inTransaction);
+            return 3;
+        }).when(mapper).deleteRange(any(), any());
+        doAnswer(invocation -> {
+            writes.add("insert:" + inTransaction);
+            throw new IllegalStateException("insert failed");
+        }).when(mapper).insertBatch(any());
+
+        // 重新汇总的批次写入失败时异常抛出，由事务回滚删除，已汇总的日期不会变成空
+        assertThrows(IllegalStateException.class, () -> trendRollupService.rollUp(TODAY));
+        assertEquals(Arrays.asList("delete:true", "insert:true"), writes);
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(mapper, never()).updateWatermark(anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTrends_SumsStoredBucketsAndLiveTail() {
+        LocalDate watermark = LocalDate.of(2026, 3, 1);
+        when(mapper.selectWatermark(TrendRollupService.WATERMARK)).thenReturn(watermark);
+        when(mapper.selectRange(LocalDate.of(2026, 2, 27), watermark.plusDays(1))).thenReturn(Arrays.asList(
+                day(LocalDate.of(2026, 2, 27), 2, "100.00"),
+                day(LocalDate.of(2026, 2, 28), 1, "50.50"),
+                day(watermark, 4, "10.00")));
+        DailyStatistics live = new DailyStatistics();
+        live.setStatDate(LocalDate.of(2026, 3, 2));
+        live.setPaymentCount(1);
+        live.setPaymentAmount(new BigDecimal("20.00"));
+        when(mapper.sumPayments(watermark.plusDays(1), LocalDate.of(2026, 3, 3)))
+                .thenReturn(Collections.singletonList(live));
+
+        Map<String, Object> trends = trendRollupService.trends(
+                LocalDate.of(2026, 2, 27), LocalDate.of(2026, 3, 2), TrendRollupService.MONTH);
+
+        List<Map<String, Object>> series = (List<Map<String, Object>>) trends.get("series");
+        assertEquals(2, series.size());
+        assertEquals("2026-02", series.get(0).get("period"));
+        assertEquals(3L, series.get(0).get("checkIns"));
+        assertEquals(new BigDecimal("150.50"), series.get(0).get("paymentAmount"));
+        assertEquals("2026-03", series.get(1).get("period"));
+        assertEquals(4L, series.get(1).get("checkIns"));
+        assertEquals(new BigDecimal("30.00"), series.get(1).get("paymentAmount"));
+        assertEquals(7L, ((Map<String, Object>) trends.get("totals")).get("checkIns"));
+
+        // 水位及之前的日期不再查询业务表
+        verify(mapper, never()).countCheckIns(eq(LocalDate.of(2026, 2, 27)), any());
+        assertThrows(IllegalArgumentException.class,
+                () -> trendRollupService.trends(TODAY, TODAY, "year"));
+    }
+
+    private static DailyStatistics checkIns(LocalDate date, int checkIns) {
+        DailyStatistics day = new DailyStatistics();
+        day.setStatDate(date);
+        day.setCheckIns(checkIns);
+        return day;
+    }
+
+    private static DailyStatistics day(LocalDate date, int checkIns, String paymentAmount) {
+        DailyStatistics day = new DailyStatistics();
+        day.setStatDate(date);
+        day.setCheckIns(checkIns);
+        day.setPaymentCount(1);
+        day.setPaymentAmount(new BigDecimal(paymentAmount));
+        return day;
+    }
+}
@@ -0,0 +1,114 @@
+package com.ihome.service.constraint;
+
+import com.ihome.entity.Bed;
+import com.ihome.entity.RoommateTag;
+import com.ihome.entity.Student;
+import com.ihome.service.DormitoryOccupancyIndex;
+import com.ihome.service.RoommateProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 约束评估器测试
+ */
+public class ConstraintEvaluatorTest {
+
+    private Student createStudent(String id, String gender, String grade) {
+        Student student = new Student();
+        student.setId(id);
+        student.setGender(gender);
+        student.setMajor("计算机科学");
+        student.setGrade(grade);
+        return student;
+    }
+
+    private RoommateProfile createProfile(Student student, String... tagNames) {
+        List<RoommateTag> tags = new ArrayList<>();
+        for (String tagName : tagNames) {
+            RoommateTag tag = new RoommateTag();
+            tag.setStudentId(student.getId());
+            tag.setTagName(tagName);
+            tags.add(tag);
+        }
+        return new RoommateProfile(student, null, tags);
+    }
+
+    private Bed createBed(String id, String dormitoryId, String bedType) {
+        Bed bed = new Bed();
+        bed.setId(id);
+        bed.setDormitoryId(dormitoryId);
+        bed.setBedType(bedType);
+        bed.setStatus("可用");
+        return bed;
+    }
+
+    @Test
+    void testPermits_PrunesOncePerRequirementClass() {
+        List<Bed> beds = Arrays.asList(
+            createBed("B001", "D001", "下铺"),
+            createBed("B002", "D001", "上铺"),
+            createBed("B003", "D002", "下铺")
+        );
+        Map<String, Integer> floors = new HashMap<>();
+        floors.put("D001", 1);
+        floors.put("D002", 6);
+        DormitoryOccupancyIndex index = new DormitoryOccupancyIndex(beds, Collections.emptyMap(),
+                Collections.emptyMap(), Collections.emptyMap(), floors);
+
+        AtomicInteger checks = new AtomicInteger();
+        AllocationConstraint counting = new AccessibilityConstraint() {
+            @Override
+            public boolean permits(String requirement, Bed bed, DormitoryOccupancyIndex index) {
+                checks.incrementAndGet();
+                return super.permits(requirement, bed, index);
+            }
+        };
+        ConstraintEvaluator evaluator = new ConstraintEvaluator(
+                Arrays.asList(new GenderConstraint(), counting), beds, index);
+
+        List<RoommateProfile> regular = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            regular.add(createProfile(createStudent("S" + i, "男", "2023")));
+        }
+        RoommateProfile accessible = createProfile(createStudent("A001", "男", "2023"), "行动不便");
+        Set<String> requirements = new HashSet<>();
+        for (RoommateProfile profile : regular) {
+            requirements.add(evaluator.requirementOf(profile));
+        }
+        requirements.add(evaluator.requirementOf(accessible));
+
+        Map<String, Integer> counts = evaluator.prepare(requirements);
+        assertEquals(2, counts.size());
+        for (RoommateProfile profile : regular) {
+            for (Bed bed : beds) {
+                assertTrue(evaluator.permits(profile, bed));
+            }
+        }
+        assertTrue(evaluator.permits(accessible, beds.get(0)));
+        assertFalse(evaluator.permits(accessible, beds.get(1)));
+        assertFalse(evaluator.permits(accessible, beds.get(2)));
+
+        // 两个需求类各检查一遍床位，与学生人数无关
+        assertEquals(2 * beds.size(), checks.get());
+        assertEquals("男/行动不便", ConstraintEvaluator.label(evaluator.requirementOf(accessible)));
+        assertEquals("男", ConstraintEvaluator.label(evaluator.requirementOf(regular.get(0))));
+    }
+
+    @Test
+    void testObjective_AddsWeightedSoftConstraintScores() {
+        ConstraintEvaluator evaluator = new ConstraintEvaluator(
+                Collections.singletonList(new GradeGroupingConstraint()), Collections.emptyList(),
+                new DormitoryOccupancyIndex(Collections.emptyList(), Collections.emptyMap(),
+                        Collections.emptyMap(), Collections.emptyMap()));
+        RoommateProfile a = createProfile(createStudent("S001", "男", "2023"));
+        RoommateProfile b = createProfile(createStudent("S002", "男", "2023"));
+        RoommateProfile c = createProfile(createStudent("S003", "男", "2024"));
+
+        assertEquals(a.compatibilityWith(b) + 0.1, evaluator.objective(a, b), 1e-9);
+        assertEquals(a.compatibilityWith(c), evaluator.objective(a, c), 1e-9);
+    }
+}